@@ -31,6 +31,7 @@ import org.nzdis.micro.exceptions.RoleNotInitializedOnThisAgentException;
 import org.nzdis.micro.inspector.annotations.Inspect;
 import org.nzdis.micro.messaging.AbstractCommunicator;
 import org.nzdis.micro.messaging.MTRuntime;
+import org.nzdis.micro.random.MersenneTwisterFast;
 import org.nzdis.micro.util.SimpleSemaphore;
 
 /**
@@ -162,6 +163,78 @@ public abstract class AbstractAgent extends AbstractCommunicator implements Agen
 		return messageFilterRoles;
 	}
 	
+	/** random number stream of this agent (null if not yet requested) */
+	private volatile MersenneTwisterFast randomStream = null;
+	/** seed revision the random number stream has been derived for */
+	private volatile int randomStreamRevision;
+	private final Object randomStreamLock = new Object();
+	
+	/**
+	 * Returns the random number stream of this agent. It is created upon first 
+	 * request and restarts upon seed changes, so that its sequence only depends on 
+	 * the platform seed and the agent name (see MTRuntime.getRandomNoGenerator(String)).
+	 * @return random number generator of this agent
+	 */
+	public MersenneTwisterFast getRandomNoGenerator(){
+		MersenneTwisterFast stream = randomStream;
+		if(stream == null || randomStreamRevision != MTRuntime.getRandomNumberGeneratorSeedRevision()){
+			synchronized(randomStreamLock){
+				final int revision = MTRuntime.getRandomNumberGeneratorSeedRevision();
+				stream = randomStream;
+				if(stream == null || randomStreamRevision != revision){
+					stream = MTRuntime.createRandomNoGenerator(agentName);
+					randomStreamRevision = revision;
+					randomStream = stream;
+				}
+			}
+		}
+		return stream;
+	}
+	
+	/** compiled index of the message filter roles played by this agent (null if to be rebuilt) */
+	private volatile MessageFilterIndex ownFilterIndex = null;
+	
+	/** compiled index of the message filters held in this agent's group */
+	private volatile MessageFilterIndex groupFilterIndex = null;
+	
+	/**
+	 * Returns the compiled index of the message filter roles played by this agent.
+	 */
+	private MessageFilterIndex getOwnFilterIndex(){
+		MessageFilterIndex index = ownFilterIndex;
+		if(index == null || !index.isCurrent(getMessageFilterRoles())){
+			index = new MessageFilterIndex(getMessageFilterRoles(), getMessageFilterRoles().toArray());
+			ownFilterIndex = index;
+		}
+		return index;
+	}
+	
+	/**
+	 * Returns the compiled index of the message filters in this agent's group 
+	 * (only on subgroup level, not recursively).
+	 */
+	private MessageFilterIndex getGroupFilterIndex(){
+		final Group memberGroup = getGroup();
+		/* DefaultGroup returns its indexed array, which is only replaced upon change; 
+		 * for other implementations the index is rebuilt for each lookup */
+		final Role[] filters = memberGroup instanceof DefaultGroup ? 
+				((DefaultGroup)memberGroup).getMemberRolesByType(MessageFilter.class) : 
+				memberGroup.findRolesByTypeNonRecursive(MessageFilter.class, false);
+		MessageFilterIndex index = groupFilterIndex;
+		if(index == null || !index.isCurrent(filters)){
+			index = new MessageFilterIndex(filters, filters);
+			groupFilterIndex = index;
+		}
+		return index;
+	}
+	
+	/**
+	 * Marks the compiled index of own message filter roles for rebuild.
+	 */
+	void invalidateMessageFilterIndex(){
+		ownFilterIndex = null;
+	}
+	
 	/** List for managing prohibited roles */
 	private ArrayList<Class> prohibitedRoles = null;
 	
@@ -275,6 +348,7 @@ public abstract class AbstractAgent extends AbstractCommunicator implements Agen
 				}
 			}
 			this.agentNameInitialized = true;
+			MTConnector.indexAgentName(this);
 			if(MTRuntime.getOutputLevel() > 0){
 				System.out.print(this.agentName);
 			}
@@ -363,18 +437,12 @@ public abstract class AbstractAgent extends AbstractCommunicator implements Agen
 		//print("Message filter registered: " + messageFilterRegistered);
 		if(group != null || messageFilterRolesRegistered){
 			
-			MicroMessage msg = new MicroMessage();
 			/* if received message is already a MessageFilter message, 
-			 * strip the encapsulating message before passing on to
-			 * own message filter (else cascaded encapsulation)
+			 * check the encapsulated message instead (else cascaded encapsulation)
 			 */
+			MicroMessage messageToFilter = message;
 			if(message.containsKey(MicroMessage.MSG_PARAM_MSG_TO_FILTER)){
-				/* extract message filter payload for encapsulation in own
-				 * message */
-				msg.setCustomField(MicroMessage.MSG_PARAM_MSG_TO_FILTER, message.getCustomField(MicroMessage.MSG_PARAM_MSG_TO_FILTER));
-			} else {
-				/* introduce new message */
-				msg.setCustomField(MicroMessage.MSG_PARAM_MSG_TO_FILTER, message);
+				messageToFilter = (MicroMessage)message.getCustomField(MicroMessage.MSG_PARAM_MSG_TO_FILTER);
 			}
 			
 			//block message filter processing if complete processing of previous message is required
@@ -393,44 +461,37 @@ public abstract class AbstractAgent extends AbstractCommunicator implements Agen
 			
 			//check if holding the filter role itself
 			if(messageFilterRolesRegistered){
-				/* access own message filter synchronously but make copy of list first as of potentially 
-				 * changing registrations during execution (e.g. registration of new message filter as result
-				 * of processing of message) */
-				ArrayList<MessageFilter> copiedList = (ArrayList<MessageFilter>)messageFilterRoles.clone();
-				Iterator<MessageFilter> it = copiedList.iterator();
-				MessageFilter targetRole;
-				while(it.hasNext()){
-					targetRole = it.next();
-					if(passThrough){
-						passThrough = ((MessageFilter)targetRole).processingByNonMessageFiltersAllowed();
-					}
-
-					//print("Sent to filter " + targetRole.getAgent().getAgentName() + ": " + msg.toString());
-
-					//synchronous
-					targetRole.handleMessage(msg);
-					//asynchronous
-					//msg.setRecipient(targetRole.getAgent().getAgentName());
-					//send(msg);
+				/* access own message filters synchronously; the compiled index is an immutable 
+				 * snapshot, so registrations of new message filters as result of processing 
+				 * of the message do not interfere */
+				MessageFilterIndex filters = getOwnFilterIndex();
+				if(passThrough){
+					passThrough = filters.allowsPassThrough();
 				}
+				filters.apply(messageToFilter, agentName);
 			}
 			
 			//check if subgroup holds filter role (only on subgroup level, not recursively!)
 			if(group != null){
-				if(getGroup().findRolesByTypeNonRecursive(MessageFilter.class, false).length > 0){
-					//print("Group: " + getGroup().toString());
-					//print("Number of subfilters: " + getGroup().findRoles(MessageFilter.class).length);
-					Role[] filters = getGroup().findRolesByTypeNonRecursive(MessageFilter.class, false);
-
-					for(int i=0; i<filters.length; i++){
-						
-						msg.setRecipient(filters[i].getAgent().getAgentName());
-						if(passThrough){
-							passThrough = ((MessageFilter)filters[i]).processingByNonMessageFiltersAllowed();
+				MessageFilterIndex filters = getGroupFilterIndex();
+				if(filters.size() > 0){
+					if(passThrough){
+						passThrough = filters.allowsPassThrough();
+					}
+					//only address filter agents with candidate matches or interest in failed matches
+					int[] addressed = filters.addressed(filters.match(messageToFilter));
+					if(addressed.length > 0){
+						ImmutableMicroMessage envelope = ImmutableMicroMessage.builder().sender(agentName)
+								.customField(MicroMessage.MSG_PARAM_MSG_TO_FILTER, messageToFilter).build();
+						ArrayList<Agent> filterAgents = new ArrayList<Agent>(addressed.length);
+						for(int i=0; i<addressed.length; i++){
+							Agent filterAgent = filters.getFilter(addressed[i]).getAgent();
+							//filter agents check all of their filters upon receipt
+							if(!filterAgents.contains(filterAgent)){
+								filterAgents.add(filterAgent);
+								send(envelope.withRecipient(filterAgent.getAgentName()));
+							}
 						}
-						//print("Sent to own group's filter " + filters[i].getAgent().getAgentName() + ": " + msg.toString());
-						
-						send(msg);
 					}
 				}
 			}
@@ -543,6 +604,7 @@ public abstract class AbstractAgent extends AbstractCommunicator implements Agen
 				disposeAllRoles();
 			}
 			this.state = DEAD;
+			MTConnector.removeAgentNameFromIndex(this);
 			//unregistering from message transport (as roles might send final messages during disposal)
 			if(MTRegistered){
 				unregisterMT();
@@ -594,7 +656,7 @@ public abstract class AbstractAgent extends AbstractCommunicator implements Agen
 	 */
 	public void sendGroupcast(MicroMessage message, Group group){
 		if(!message.sendUnchanged){
-			message.setSender(agentName);
+			message = message.withSender(agentName, agentHandle);
 		}
 		if(MTRegistered && (state == ACTIVE || state == DYING)){
 			if(group == null){
@@ -738,6 +800,7 @@ public abstract class AbstractAgent extends AbstractCommunicator implements Agen
 				//print(new StringBuffer("Role ").append(role).append(" is Message filter."));
 				activateMTSupport();
 				getMessageFilterRoles().add((MessageFilter)role);
+				ownFilterIndex = null;
 				messageFilterRolesRegistered = true;
 			} else {
 				if(role instanceof SocialRole){
@@ -999,9 +1062,13 @@ public abstract class AbstractAgent extends AbstractCommunicator implements Agen
 				MTConnector.unregisterRole(agentName, role);
 			}
 			roles.remove(role);
+			if(owner != null){
+				getOwnerGroup().deregisterRoleForAgent(this, role);
+			}
 			getSocialRoles().remove(role);
 			getReactiveRoles().remove(role);
 			getMessageFilterRoles().remove(role);
+			ownFilterIndex = null;
 			if(messageFilterRoles.isEmpty()){
 				messageFilterRolesRegistered = false;
 			}
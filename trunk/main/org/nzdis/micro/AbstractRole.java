@@ -35,6 +35,7 @@ import org.nzdis.micro.exceptions.RoleAlreadyInitializedException;
 import org.nzdis.micro.exceptions.RoleNotInitializedException;
 import org.nzdis.micro.inspector.annotations.Inspect;
 import org.nzdis.micro.messaging.MTRuntime;
+import org.nzdis.micro.random.MersenneTwisterFast;
 
 
 /**
@@ -624,5 +625,15 @@ public abstract class AbstractRole implements Role, Serializable {
 	public String me(){
 		return getAgent().getAgentName();
 	}
+	
+	/**
+	 * Returns the random number stream of this role's agent. The sequence 
+	 * only depends on the platform seed and the agent name (see 
+	 * MTRuntime.getRandomNoGenerator(String)).
+	 * @return random number generator of agent
+	 */
+	protected MersenneTwisterFast getRandomNoGenerator(){
+		return ((AbstractAgent)getAgent()).getRandomNoGenerator();
+	}
 
 }
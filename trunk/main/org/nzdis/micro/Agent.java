@@ -197,4 +197,33 @@ public interface Agent {
 	 * Removes all sub-agents acting as message filters registered in this agent's group.
 	 */
 	public void clearMessageFilters();
+	
+	/**
+	 * Limits the number of undelivered messages for this agent 
+	 * (overrides platform default).
+	 * @param capacity Maximal number of undelivered messages (0: unbounded)
+	 * @param overflowPolicy Behaviour on full mailbox (see @MailboxOverflowPolicies)
+	 */
+	public void setMailboxLimit(int capacity, String overflowPolicy);
+	
+	/**
+	 * Limits the number of undelivered messages for this agent 
+	 * (overrides platform default).
+	 * @param capacity Maximal number of undelivered messages (0: unbounded)
+	 * @param overflowPolicy Behaviour on full mailbox (see @MailboxOverflowPolicies)
+	 * @param blockTimeout Maximal time (in ms) a sender is blocked (BLOCK policy)
+	 */
+	public void setMailboxLimit(int capacity, String overflowPolicy, long blockTimeout);
+	
+	/**
+	 * Returns the number of messages to this agent dropped as of a full mailbox.
+	 * @return number of dropped messages
+	 */
+	public long getDroppedMessageCount();
+	
+	/**
+	 * Returns the number of messages to this agent rejected as of a full mailbox.
+	 * @return number of rejected messages
+	 */
+	public long getRejectedMessageCount();
 }
@@ -0,0 +1,38 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro;
+
+/**
+ * An AgentWeightProvider determines the initial selection weight of agents 
+ * for weighted randomcasts (see MTConnector.sendWeightedRandomcast()). 
+ * It is consulted once upon registration of each agent; later changes 
+ * are to be set using MTConnector.setAgentWeight().
+ */
+public interface AgentWeightProvider {
+
+	/**
+	 * Returns the selection weight for a newly registered agent.
+	 * @param agentName Agent name
+	 * @return weight (0: not selected)
+	 */
+	double getWeight(String agentName);
+	
+}
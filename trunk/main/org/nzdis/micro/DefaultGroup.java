@@ -21,12 +21,17 @@
 package org.nzdis.micro;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import org.nzdis.micro.constants.RoleStates;
 import org.nzdis.micro.exceptions.RegisteredOwnerInOwnGroupException;
 import org.nzdis.micro.messaging.MTRuntime;
 import org.nzdis.micro.util.SimpleSemaphore;
+import org.nzdis.micro.util.TypeHierarchy;
 
 /**
  * Default implementation of a Group role. Each agent by default can
@@ -48,19 +53,12 @@ final class DefaultGroup extends AbstractRole implements Group {
   private transient AgentLoader loader;
   private String groupName;
 
-  // List of Roles
-  private List<Role> roles = null;
-  
-  private List<Role> getRolesList(){
-	  if(roles == null){
-		  roles =  new ArrayList<Role>(2);
-	  }
-	  return roles;
-  }
-  
   // List of Agents
   private List<Agent> agents = null;
 
+  /** copy-on-write snapshot of members for groupcasts, invalidated upon membership changes */
+  private volatile Agent[] memberSnapshot = null;
+  
   private List<Agent> getAgentsList(){
 	  if(agents == null){
 		  agents = new ArrayList<Agent>(2);
@@ -68,25 +66,25 @@ final class DefaultGroup extends AbstractRole implements Group {
 	  return agents;
   }
   
-  // List of Intents
-  private List<Class> intents = null;
+  /** members of this group for lock-free membership checks from sub-groups */
+  private final ConcurrentHashMap<Agent, Boolean> members = new ConcurrentHashMap<Agent, Boolean>(2);
   
-  private List<Class> getIntentsList(){
-	  if(intents == null){
-		  intents = new ArrayList<Class>(3);
-	  }
-	  return intents;
-  }
+  /** index of the roles played by the members of this group */
+  private final MemberIndex memberIndex = new MemberIndex();
   
-  // Mapping of intents to agents
-  private ConcurrentHashMap<Class, Agent> intentAgentMap = null;
-
-  private ConcurrentHashMap<Class, Agent> getIntentAgentMap(){
-	  if(intentAgentMap == null){
-		  intentAgentMap = new ConcurrentHashMap<Class, Agent>(3);
-	  }
-	  return intentAgentMap;
-  }
+  /** index of the roles played by all agents below the group owner (members and their sub-groups) */
+  private final MemberIndex subtreeIndex = new MemberIndex();
+  
+  /** 
+   * serializes membership changes with subtree index updates along the owner chain, 
+   * so that no update uses a stale chain (acquired after the group's own lock, 
+   * before the locks of individual indexes and never held while calling into an 
+   * agent; as every chain ends at the root group, per-group locks taken top-down 
+   * would serialize on the root anyway) 
+   */
+  private static final Object hierarchyLock = new Object();
+  
+  private static final Role[] NO_ROLES = new Role[0];
   
   private transient SimpleSemaphore semaphore = null;
 
@@ -149,7 +147,7 @@ final class DefaultGroup extends AbstractRole implements Group {
    * @return array of agents capable of achieving the given intent.
    */
   @Override
-  public final Agent[] findAgentsByIntent(final Class intentType, boolean includeGroupOwnerInSearch) {  
+  public final Agent[] findAgentsByIntent(final Class<?> intentType, boolean includeGroupOwnerInSearch) {  
 	  return agentByIntentSearch(intentType, true, includeGroupOwnerInSearch);
   }
   
@@ -161,45 +159,12 @@ final class DefaultGroup extends AbstractRole implements Group {
    * @return - array of agents
    */
   @Override
-  public final Agent[] findAgentsByIntentNonRecursive(final Class intentType, boolean includeGroupOwnerInSearch) {  
+  public final Agent[] findAgentsByIntentNonRecursive(final Class<?> intentType, boolean includeGroupOwnerInSearch) {  
 	  return agentByIntentSearch(intentType, false, includeGroupOwnerInSearch);
   }
 
-  private Agent[] agentByIntentSearch(final Class intentType, boolean recursive, boolean includeGroupOwner){
-	  final List<Agent> aList = new ArrayList<Agent>();
-	  
-	  if(includeGroupOwner){
-		  Class[] intentTypes = groupOwner.getApplicableIntents();
-		  for(int i = 0; i < intentTypes.length; i++){
-			  if(intentTypes[i].equals(intentType)){
-				  if(!aList.contains(groupOwner)){
-					  aList.add(groupOwner);
-					  break;
-				  }
-			  }
-		  }
-	  }
-	  
-	  if(getIntentsList().contains(intentType)){
-		  Agent agent = getIntentAgentMap().get(intentType);
-		  if(!aList.contains(agent)){
-			  aList.add(agent);
-		  }
-	  }
-	    
-	  if(recursive){
-		  //recursive search
-		  for (int i = 0; i < getAgentsList().size(); i++ ) {
-			  final Agent[] p = ((Agent)agents.get(i)).getGroup().findAgentsByIntent(intentType, false);
-			  for (int j = 0; j < p.length; j++ ){
-				  Agent agent = p[j];
-				  if(!aList.contains(agent)){
-					  aList.add(agent);
-				  }
-			  }
-		  }
-	  }
-	  return (Agent[])aList.toArray(new Agent[aList.size()]);
+  private Agent[] agentByIntentSearch(final Class<?> intentType, boolean recursive, boolean includeGroupOwner){
+	  return agentsOf(roleByIntentSearch(intentType, recursive, includeGroupOwner));
   }
   
   /**
@@ -210,7 +175,7 @@ final class DefaultGroup extends AbstractRole implements Group {
    * @return array of agent names for a given capability.
    */
    @Override
-   public synchronized final String[] findAgentNamesByRoleType(final Class roleType, boolean includeGroupOwnerInSearch) {
+   public final String[] findAgentNamesByRoleType(final Class<?> roleType, boolean includeGroupOwnerInSearch) {
  	  return agentNameByRoleSearch(roleType, true, includeGroupOwnerInSearch);
    }
 
@@ -222,49 +187,18 @@ final class DefaultGroup extends AbstractRole implements Group {
     * @return array of agent names for a given capability.
     */
    @Override
-    public synchronized final String[] findAgentNamesByRoleTypeNonRecursive (final Class roleType, boolean includeGroupOwnerInSearch) {
+    public final String[] findAgentNamesByRoleTypeNonRecursive (final Class<?> roleType, boolean includeGroupOwnerInSearch) {
  	   return agentNameByRoleSearch(roleType, false, includeGroupOwnerInSearch);
     }
    
-  private String[] agentNameByRoleSearch(final Class roleType, boolean recursive, boolean includeGroupOwner){
-	   	final List<String> aList = new ArrayList<String>();
-	    
-	   	if(includeGroupOwner){
-	   		Role[] ownerRoles = groupOwner.getRoles();
-	   		for(int i = 0; i < ownerRoles.length; i++) {
-	  	      if(roleType.isInstance(ownerRoles[i])){
-	  	    	  Role role = ownerRoles[i];
-	  	    	  if(!aList.contains(role.getAgent().getAgentName())){
-	  	    		  aList.add(role.getAgent().getAgentName());
-	  	    	  }
-	  	      }
-	  	    }
-	   	}
-	   	
-	   	//search this group
-	    for (int i = 0; i < getRolesList().size(); i++) {
-	      if (roleType.isInstance(roles.get(i))){
-	    	  Role role = roles.get(i);
-	    	  if(!aList.contains(role.getAgent().getAgentName())){
-	    		  aList.add(role.getAgent().getAgentName());
-	    	  }
-	      }
-	    }
-	    
-	    if(recursive){
-		    //recursive search
-		    for (int i = 0; i < getAgentsList().size(); i++ ) {
-		      final Role[] p = ((AbstractAgent) agents.get(i)).getGroup().findRolesByType(roleType, false);
-		      for (int j = 0; j < p.length; j++ ) {
-		    	  Role role = p[j];
-		    	  if(!aList.contains(role.getAgent().getAgentName())){
-		    		  aList.add(role.getAgent().getAgentName());
-		    	  }
-		      }
-		    }
-	    } 
-	    return (String[]) aList.toArray (new String[aList.size()]);
+  private String[] agentNameByRoleSearch(final Class<?> roleType, boolean recursive, boolean includeGroupOwner){
+	  final Agent[] found = agentByRoleSearch(roleType, recursive, includeGroupOwner);
+	  final String[] names = new String[found.length];
+	  for(int i = 0; i < found.length; i++){
+		  names[i] = found[i].getAgentName();
 	  }
+	  return names;
+  }
   
   /**
    * Looks up agents by their capabilities recursively throughout
@@ -274,7 +208,7 @@ final class DefaultGroup extends AbstractRole implements Group {
    * @return array of agents for a given capability.
    */
    @Override
-   public synchronized final Agent[] findAgentsByRoleType(final Class roleType, boolean includeGroupOwnerInSearch) {
+   public final Agent[] findAgentsByRoleType(final Class<?> roleType, boolean includeGroupOwnerInSearch) {
  	  return agentByRoleSearch(roleType, true, includeGroupOwnerInSearch);
    }
 
@@ -286,50 +220,24 @@ final class DefaultGroup extends AbstractRole implements Group {
     * @return array of agents for a given capability.
     */
    @Override
-    public synchronized final Agent[] findAgentsByRoleTypeNonRecursive (final Class roleType, boolean includeGroupOwnerInSearch) {
+    public final Agent[] findAgentsByRoleTypeNonRecursive (final Class<?> roleType, boolean includeGroupOwnerInSearch) {
  	   return agentByRoleSearch(roleType, false, includeGroupOwnerInSearch);
     }
   
-  private Agent[] agentByRoleSearch(final Class roleType, boolean recursive, boolean includeGroupOwner){
-   	final List<Agent> aList = new ArrayList<Agent>();
-    
-   	if(includeGroupOwner){
-   		Role[] ownerRoles = groupOwner.getRoles();
-   		for(int i = 0; i < ownerRoles.length; i++) {
-  	      if(roleType.isInstance(ownerRoles[i])){
-  	    	  Role role = ownerRoles[i];
-  	    	  if(!aList.contains(role.getAgent())){
-  	    		  aList.add(role.getAgent());
-  	    	  }
-  	      }
-  	    }
-   	}
-   	
-   	//search this group
-    for (int i = 0; i < getRolesList().size(); i++) {
-      if (roleType.isInstance(roles.get(i))){
-    	  Role role = roles.get(i);
-    	  if(!aList.contains(role.getAgent())){
-    		  aList.add(role.getAgent());
-    	  }
-      }
-    }
-    
-    if(recursive){
-	    //recursive search
-	    for (int i = 0; i < getAgentsList().size(); i++ ) {
-	      final Role[] p = ((AbstractAgent) agents.get(i)).getGroup().findRolesByType(roleType, false);
-	      for (int j = 0; j < p.length; j++ ) {
-	    	  Role role = p[j];
-	    	  if(!aList.contains(role.getAgent())){
-	    		  aList.add(role.getAgent());
-	    	  }
-	      }
-	    }
-    } 
-    return (Agent[]) aList.toArray (new Agent[aList.size()]);
+  private Agent[] agentByRoleSearch(final Class<?> roleType, boolean recursive, boolean includeGroupOwner){
+	  return agentsOf(roleByRoleSearch(roleType, recursive, includeGroupOwner));
   }
   
+  /**
+   * Returns the distinct agents playing the given roles (in order of first occurrence).
+   */
+  private static Agent[] agentsOf(final Role[] found){
+	  final LinkedHashSet<Agent> aSet = new LinkedHashSet<Agent>();
+	  for(int i = 0; i < found.length; i++){
+		  aSet.add(found[i].getAgent());
+	  }
+	  return aSet.toArray(new Agent[aSet.size()]);
+  }
   
   /**
   * Looks up agents by their capabilities recursively throughout
@@ -339,7 +247,7 @@ final class DefaultGroup extends AbstractRole implements Group {
   * @return array of roles for a given capability.
   */
   @Override
-  public synchronized final Role[] findRolesByType(final Class roleType, boolean includeGroupOwnerInSearch) {
+  public final Role[] findRolesByType(final Class<?> roleType, boolean includeGroupOwnerInSearch) {
 	  return roleByRoleSearch(roleType, true, includeGroupOwnerInSearch);
   }
 
@@ -350,48 +258,29 @@ final class DefaultGroup extends AbstractRole implements Group {
    * @param includeGroupOwnerInSearch indicates if group owner is to be included in lookup
    * @return array of roles for a given capability.
    */
-   public synchronized final Role[] findRolesByTypeNonRecursive (final Class roleType, boolean includeGroupOwnerInSearch) {
+   public final Role[] findRolesByTypeNonRecursive (final Class<?> roleType, boolean includeGroupOwnerInSearch) {
 	   return roleByRoleSearch(roleType, false, includeGroupOwnerInSearch);
    }
   
-   private Role[] roleByRoleSearch(final Class roleType, boolean recursive, boolean includeGroupOwner){
-	   	final List<Role> rList = new ArrayList<Role>();
-	    
-	   	if(includeGroupOwner){
-	   		Role[] ownerRoles = groupOwner.getRoles();
-	   		for(int i = 0; i < ownerRoles.length; i++) {
-	  	      if(roleType.isInstance(ownerRoles[i])){
-	  	    	  Role role = ownerRoles[i];
-	  	    	  if(!rList.contains(role)){
-	  	    		  rList.add(role);
-	  	    	  }
-	  	      }
-	  	    }
-	   	}
-	   	
-	   	//search this group
-	    for (int i = 0; i < getRolesList().size(); i++) {
-	      if (roleType.isInstance(roles.get(i))){
-	    	  Role role = roles.get(i);
-	    	  if(!rList.contains(role)){
-	    		  rList.add(role);
-	    	  }
-	      }
-	    }
-	    
-	    if(recursive){
-		    //recursive search
-		    for (int i = 0; i < getAgentsList().size(); i++ ) {
-		      final Role[] p = ((AbstractAgent) agents.get(i)).getGroup().findRolesByType(roleType, false);
-		      for (int j = 0; j < p.length; j++ ) {
-		    	  Role role = p[j];
-		    	  if(!rList.contains(role)){
-		    		  rList.add(role);
-		    	  }
-		      }
-		    }
-	    } 
-	    return (Role[]) rList.toArray (new Role[rList.size()]);
+   private Role[] roleByRoleSearch(final Class<?> roleType, boolean recursive, boolean includeGroupOwner){
+	   final Role[] local = memberIndex.getRolesByType(roleType);
+	   if(!includeGroupOwner && !recursive){
+		   return local.length == 0 ? local : local.clone();
+	   }
+	   final LinkedHashSet<Role> rSet = new LinkedHashSet<Role>();
+	   if(includeGroupOwner){
+		   Role[] ownerRoles = groupOwner.getRoles();
+		   for(int i = 0; i < ownerRoles.length; i++) {
+			   if(roleType.isInstance(ownerRoles[i])){
+				   rSet.add(ownerRoles[i]);
+			   }
+		   }
+	   }
+	   addAll(rSet, local);
+	   if(recursive){
+		   addAll(rSet, subtreeIndex.getRolesByType(roleType));
+	   }
+	   return rSet.toArray(new Role[rSet.size()]);
    }
    
    /**
@@ -400,7 +289,7 @@ final class DefaultGroup extends AbstractRole implements Group {
     * @param intentType - Intent type to be looked up.
     * @param includeGroupOwnerInSearch indicates if group owner is to be included in lookup
     */
-   public Role[] findRolesByIntent(final Class intentType, boolean includeGroupOwnerInSearch){
+   public Role[] findRolesByIntent(final Class<?> intentType, boolean includeGroupOwnerInSearch){
 	   return roleByIntentSearch(intentType, true, includeGroupOwnerInSearch);
    }
    
@@ -410,66 +299,87 @@ final class DefaultGroup extends AbstractRole implements Group {
     * @param intentType Intent type to be looked up.
     * @param includeGroupOwnerInSearch indicates if group owner is to be included in lookup
     */
-   public Role[] findRolesByIntentNonRecursive(final Class intentType, boolean includeGroupOwnerInSearch){
+   public Role[] findRolesByIntentNonRecursive(final Class<?> intentType, boolean includeGroupOwnerInSearch){
 	   return roleByIntentSearch(intentType, false, includeGroupOwnerInSearch);
    }
    
-   private Role[] roleByIntentSearch(final Class intentType, boolean recursive, boolean includeGroupOwner){
-	   	final List<Role> rList = new ArrayList<Role>();
-	   	
-	   	if(includeGroupOwner){
-	   		Role[] ownerRoles = groupOwner.getRoles();
-	   		for(int i = 0; i < ownerRoles.length; i++) {
-	  	      if(ownerRoles[i].hasApplicableIntentType(intentType)){
-	  	    	  Role role = ownerRoles[i];
-	  	    	  if(!rList.contains(role)){
-	  	    		  rList.add(role);
-	  	    	  }
-	  	      }
-	  	    }
-	   	}
-	   	
-	    // search this group
-	    for(int i=0; i<getRolesList().size(); i++) {
-	      if(roles.get(i).hasApplicableIntentType(intentType)){
-	    	  Role role = roles.get(i);
-	    	  if(!rList.contains(role)){
-	    		  rList.add(role);
-	    	  }
-	      }
-	    }
-	    
-	    if(recursive){
-	    	for(int i = 0; i < getAgentsList().size(); i++){
-	    		final Role[] p = ((AbstractAgent) agents.get(i)).getGroup().findRolesByIntent(intentType, false);
-	    		for (int j = 0; j < p.length; j++ ){
-	    			Role role = p[j];
-	    			if(!rList.contains(role)){
-	  	    		  rList.add(role);
-	  	    	  	}
-			    }
-	    	}
-	    }
-	    return (Role[]) rList.toArray (new Role [rList.size()]);
+   private Role[] roleByIntentSearch(final Class<?> intentType, boolean recursive, boolean includeGroupOwner){
+	   final Role[] local = memberIndex.getRolesByIntent(intentType);
+	   if(!includeGroupOwner && !recursive){
+		   return local.length == 0 ? local : local.clone();
+	   }
+	   final LinkedHashSet<Role> rSet = new LinkedHashSet<Role>();
+	   if(includeGroupOwner){
+		   //intent types are only compared for identity
+		   @SuppressWarnings("unchecked")
+		   final Class<Intent> applicableType = (Class<Intent>) intentType;
+		   Role[] ownerRoles = groupOwner.getRoles();
+		   for(int i = 0; i < ownerRoles.length; i++) {
+			   if(ownerRoles[i].hasApplicableIntentType(applicableType)){
+				   rSet.add(ownerRoles[i]);
+			   }
+		   }
+	   }
+	   addAll(rSet, local);
+	   if(recursive){
+		   addAll(rSet, subtreeIndex.getRolesByIntent(intentType));
+	   }
+	   return rSet.toArray(new Role[rSet.size()]);
+   }
+   
+   /**
+    * Returns the roles of a given type played by members of this group 
+    * as shared array. The array instance changes whenever the set of 
+    * matching roles changes.
+    * @param roleType type of the role
+    * @return roles (array must not be modified)
+    */
+   Role[] getMemberRolesByType(final Class<?> roleType){
+	   return memberIndex.getRolesByType(roleType);
+   }
+   
+   private static void addAll(final LinkedHashSet<Role> rSet, final Role[] found){
+	   for(int i = 0; i < found.length; i++){
+		   rSet.add(found[i]);
+	   }
    }
    
    /**
-    * Finds agents by name inside this group and in sub-groups.
+    * Finds agents by name inside this group and in sub-groups. Candidates
+    * are resolved via the platform-wide name index; the first one whose 
+    * owner path leads to this group's owner is returned.
     * @param name - Agent name to be looked up
     * @return resolved agent
     */
    public Agent findAgentByName(String name){
-	   for(int i = 0; i < getAgentsList().size(); i++){
-		   if(agents.get(i).getAgentName().equals(name)){
-			   return agents.get(i);
+	   final AbstractAgent[] candidates = MTConnector.getIndexedAgents(name);
+	   for(int i = 0; i < candidates.length; i++){
+		   if(isBelowOwner(candidates[i])){
+			   return candidates[i];
 		   }
 	   }
-	   for(int i=0; i<agents.size(); i++){
-		   return agents.get(i).getGroup().findAgentByName(name);
-	   }
 	   return null;
    }
    
+   /**
+    * Indicates if the owner path of the given agent leads to this group's owner.
+    */
+   private boolean isBelowOwner(final AbstractAgent agent){
+	   Agent current = agent;
+	   Agent parent = agent.owner;
+	   while(parent != null && parent != current && parent.hasGroup()){
+		   if(!((DefaultGroup)parent.getGroup()).members.containsKey(current)){
+			   return false;
+		   }
+		   if(parent == groupOwner){
+			   return true;
+		   }
+		   current = parent;
+		   parent = ((AbstractAgent)parent).owner;
+	   }
+	   return false;
+   }
+   
   /**
    * Registers a role for an agent after its initialization
    * @param agent Agent the role to be registered for
@@ -477,29 +387,35 @@ final class DefaultGroup extends AbstractRole implements Group {
    */
   public synchronized void registerRoleForAgent(final Agent agent, Role role){
 	  semaphore.acquire();
-	  boolean roleNotExisting = true;
-	  for(int l = 0; l < getRolesList().size(); l++){
-		  if(roles.get(l).equals(role)){
-			  roleNotExisting = false;
-		  }
-	  }
-	  if(!roleNotExisting){
+	  if(memberIndex.contains(role)){
 		  System.err.println(new StringBuffer(groupName).append(": Role update for already registered role has been attempted."));
+	  } else if(!members.containsKey(agent)){
+		  System.err.println(new StringBuffer(groupName).append(": Role update for non-registered agent has been attempted."));
 	  } else {
-		  boolean valid = false;
-		  for(int u = 0; u < getAgentsList().size(); u++){
-			  if(agents.get(u).equals(agent)){
-				  roles.add(role);
-				  Class[] gs = role.getApplicableIntentTypes();
-			      for (int j = 0; j < gs.length; j++) {
-			        addIntent(gs[j], agent);
-			        addApplicableIntent(gs[j]);
-			      }
-			      valid = true;
-			  }
+		  memberIndex.add(role);
+		  addToSubtree(new Role[]{role});
+		  Class<?>[] gs = role.getApplicableIntentTypes();
+		  for (int j = 0; j < gs.length; j++) {
+			  addApplicableIntent(gs[j]);
 		  }
-		  if(!valid){
-			  System.err.println(new StringBuffer(groupName).append(": Role update for non-registered agent has been attempted."));
+	  }
+	  semaphore.release();
+  }
+  
+  /**
+   * Removes a role disposed by one of the members from this group's indexes.
+   * Roles not registered with this group are ignored.
+   * @param agent Agent the role has been disposed by
+   * @param role disposed role instance
+   */
+  public synchronized void deregisterRoleForAgent(final Agent agent, Role role){
+	  semaphore.acquire();
+	  if(memberIndex.contains(role)){
+		  memberIndex.remove(role);
+		  removeFromSubtree(new Role[]{role});
+		  Class<?>[] gs = role.getApplicableIntentTypes();
+		  for (int j = 0; j < gs.length; j++) {
+			  removeApplicableIntent(gs[j]);
 		  }
 	  }
 	  semaphore.release();
@@ -511,48 +427,58 @@ final class DefaultGroup extends AbstractRole implements Group {
    */
   public synchronized void updateRoleIntentIndex(){
 	  semaphore.acquire();
-	  getRolesList().clear();
-	  getIntentsList().clear();
-	  getIntentAgentMap().clear();
-	  for(int u=0; u<getAgentsList().size(); u++){
-		  final Role[] r = ((AbstractAgent)agents.get(u)).getRoles();
-	      for (int i=0; i<r.length; i++) {
-	    	  roles.add (r[i]);
-	    	  Class[] gs = r[i].getApplicableIntentTypes();
-	    	  for (int j=0; j<gs.length; j++) {
-	    		  addIntent(gs[j], ((AbstractAgent)agents.get(u)));
-	    		  addApplicableIntent(gs[j]);
-	    	  }
-	      }
+	  synchronized(hierarchyLock){
+		  final HashSet<Role> current = new HashSet<Role>();
+		  final List<DefaultGroup> chain = getGroupChain();
+		  for(int u=0; u<getAgentsList().size(); u++){
+			  final Role[] r = ((AbstractAgent)agents.get(u)).getRoles();
+			  for (int i=0; i<r.length; i++) {
+				  current.add(r[i]);
+				  if(memberIndex.contains(r[i])){
+					  memberIndex.reindexIntents(r[i]);
+					  for(int g = 0; g < chain.size(); g++){
+						  chain.get(g).subtreeIndex.reindexIntents(r[i]);
+					  }
+				  } else {
+					  memberIndex.add(r[i]);
+					  for(int g = 0; g < chain.size(); g++){
+						  chain.get(g).subtreeIndex.add(r[i]);
+					  }
+				  }
+			  }
+		  }
+		  //drop roles no longer played by any member
+		  final Role[] indexed = memberIndex.getRoles();
+		  for(int i = 0; i < indexed.length; i++){
+			  if(!current.contains(indexed[i])){
+				  memberIndex.remove(indexed[i]);
+				  for(int g = 0; g < chain.size(); g++){
+					  chain.get(g).subtreeIndex.remove(indexed[i]);
+				  }
+			  }
+		  }
 	  }
+	  addApplicableIntents(getAgentsList());
 	  semaphore.release();
   }
   
   public synchronized void updateRoleIntentAssignments(final AbstractAgent agent, Role r){
 	  semaphore.acquire();
-	  boolean roleNotExisting = true;
-	  for(int l=0; l<getRolesList().size(); l++){
-		  if(roles.get(l).equals(r)){
-			  roleNotExisting = false;
-		  }
-	  }
-	  if(roleNotExisting){
+	  if(!memberIndex.contains(r)){
 		  System.err.println(new StringBuffer(groupName).append(": Role update for not registered role has been attempted."));
+	  } else if(!members.containsKey(agent)){
+		  System.err.println(new StringBuffer(groupName).append(": Role update for non-registered agent has been attempted."));
 	  } else {
-		  boolean valid = false;
-		  for(int u=0; u<getAgentsList().size(); u++){
-			  if(agents.get(u).equals(agent)){
-				  roles.add(r);
-				  Class[] gs = r.getApplicableIntentTypes();
-			      for (int j=0; j<gs.length; j++) {
-			        addIntent(gs[j], agent);
-			        addApplicableIntent(gs[j]);
-			      }
-			      valid = true;
+		  synchronized(hierarchyLock){
+			  memberIndex.reindexIntents(r);
+			  final List<DefaultGroup> chain = getGroupChain();
+			  for(int g = 0; g < chain.size(); g++){
+				  chain.get(g).subtreeIndex.reindexIntents(r);
 			  }
 		  }
-		  if(!valid){
-			  System.err.println(new StringBuffer(groupName).append(": Role update for non-registered agent has been attempted."));
+		  Class<?>[] gs = r.getApplicableIntentTypes();
+		  for (int j=0; j<gs.length; j++) {
+			  addApplicableIntent(gs[j]);
 		  }
 	  }
 	  semaphore.release();
@@ -567,17 +493,19 @@ final class DefaultGroup extends AbstractRole implements Group {
 		  throw new RegisteredOwnerInOwnGroupException(this, agent);
 	  }
 	  semaphore.acquire();
-	  getAgentsList().add(agent);
-	  ((AbstractAgent)agent).owner = (AbstractAgent)this.groupOwner;
-	  final Role[] r = agent.getRoles();
-	  for (int i=0; i<r.length; i++) {
-		  getRolesList().add(r[i]);
-		  Class[] gs = r[i].getApplicableIntentTypes();
-		  for (int j=0; j<gs.length; j++) {
-			  addIntent(gs[j], agent);
-			  addApplicableIntent(gs[j]);
+	  synchronized(hierarchyLock){
+		  getAgentsList().add(agent);
+		  members.put(agent, Boolean.TRUE);
+		  memberSnapshot = null;
+		  ((AbstractAgent)agent).owner = (AbstractAgent)this.groupOwner;
+		  final Role[] r = agent.getRoles();
+		  for (int i=0; i<r.length; i++) {
+			  memberIndex.add(r[i]);
 		  }
+		  //the agent brings along its own sub-hierarchy
+		  addToSubtree(getSubtreeRoles(agent, r));
 	  }
+	  addApplicableIntents(Collections.singletonList(agent));
 	  semaphore.release();
 	  if(MTRuntime.getOutputLevel() > 2){
 		  System.out.println(new StringBuffer(groupName).append(": Agent ")
@@ -591,19 +519,25 @@ final class DefaultGroup extends AbstractRole implements Group {
    */
   protected synchronized void deregister(final Agent agent) {
 	  //System.out.println("Deregistering agent " + agent.getAgentName());
-	  if(getAgentsList().contains(agent)){
+	  if(members.containsKey(agent)){
 		  semaphore.acquire();
 		  final Role[] r = agent.getRoles();
-		  ((AbstractAgent)agent).owner = null;
+		  synchronized(hierarchyLock){
+			  ((AbstractAgent)agent).owner = null;
+			  for (int i=0; i < r.length; i++) {
+				  memberIndex.remove(r[i]);
+			  }
+			  removeFromSubtree(getSubtreeRoles(agent, r));
+			  agents.remove(agent);
+			  members.remove(agent);
+			  memberSnapshot = null;
+		  }
 		  for (int i=0; i < r.length; i++) {
-			  removeRole (r[i]);
-			  Class[] gs = r[i].getApplicableIntentTypes();
+			  Class<?>[] gs = r[i].getApplicableIntentTypes();
 			  for (int j=0; j<gs.length; j++) {
-				  removeIntent(gs[j]);
 				  removeApplicableIntent(gs[j]);
 			  }
 		  }
-		  agents.remove(agent);
 		  semaphore.release();
 		  if(MTRuntime.getOutputLevel() > 2){
 			  System.out.println(new StringBuffer(groupName).append(": Agent ")
@@ -612,6 +546,87 @@ final class DefaultGroup extends AbstractRole implements Group {
 	  }
   }
   
+  /**
+   * Adds the intent types of all roles played by the given agents to this 
+   * group's applicable intents. Called outside the hierarchy lock as it 
+   * synchronizes on the group owner.
+   */
+  private void addApplicableIntents(final List<Agent> agentList){
+	  for(int u=0; u<agentList.size(); u++){
+		  final Role[] r = agentList.get(u).getRoles();
+		  for (int i=0; i<r.length; i++) {
+			  Class<?>[] gs = r[i].getApplicableIntentTypes();
+			  for (int j=0; j<gs.length; j++) {
+				  addApplicableIntent(gs[j]);
+			  }
+		  }
+	  }
+  }
+  
+  /**
+   * Returns the given roles of an agent together with all roles 
+   * played in the agent's own sub-hierarchy.
+   */
+  private static Role[] getSubtreeRoles(final Agent agent, final Role[] agentRoles){
+	  if(!agent.hasGroup()){
+		  return agentRoles;
+	  }
+	  final Role[] below = ((DefaultGroup)agent.getGroup()).subtreeIndex.getRoles();
+	  final Role[] all = new Role[agentRoles.length + below.length];
+	  System.arraycopy(agentRoles, 0, all, 0, agentRoles.length);
+	  System.arraycopy(below, 0, all, agentRoles.length, below.length);
+	  return all;
+  }
+  
+  /**
+   * Returns this group followed by the groups of all agents above the 
+   * group owner, as long as each of them is registered with the next.
+   */
+  private List<DefaultGroup> getGroupChain(){
+	  final List<DefaultGroup> chain = new ArrayList<DefaultGroup>(4);
+	  chain.add(this);
+	  Agent current = groupOwner;
+	  Agent parent = ((AbstractAgent)current).owner;
+	  while(parent != null && parent != current && parent.hasGroup()){
+		  final DefaultGroup parentGroup = (DefaultGroup)parent.getGroup();
+		  if(!parentGroup.members.containsKey(current)){
+			  break;
+		  }
+		  chain.add(parentGroup);
+		  current = parent;
+		  parent = ((AbstractAgent)parent).owner;
+	  }
+	  return chain;
+  }
+  
+  /**
+   * Adds roles to the subtree indexes of this group and all groups above it.
+   */
+  private void addToSubtree(final Role[] subtreeRoles){
+	  synchronized(hierarchyLock){
+		  final List<DefaultGroup> chain = getGroupChain();
+		  for(int g = 0; g < chain.size(); g++){
+			  for(int i = 0; i < subtreeRoles.length; i++){
+				  chain.get(g).subtreeIndex.add(subtreeRoles[i]);
+			  }
+		  }
+	  }
+  }
+  
+  /**
+   * Removes roles from the subtree indexes of this group and all groups above it.
+   */
+  private void removeFromSubtree(final Role[] subtreeRoles){
+	  synchronized(hierarchyLock){
+		  final List<DefaultGroup> chain = getGroupChain();
+		  for(int g = 0; g < chain.size(); g++){
+			  for(int i = 0; i < subtreeRoles.length; i++){
+				  chain.get(g).subtreeIndex.remove(subtreeRoles[i]);
+			  }
+		  }
+	  }
+  }
+  
   /**
    * Registers agent with this group and deregisters it from old group.
    * @param agent - agent to be reregistered.
@@ -633,6 +648,25 @@ final class DefaultGroup extends AbstractRole implements Group {
     return (Agent[])getAgentsList().toArray(new Agent[getAgentsList().size()]);
   }
 
+  /**
+   * Returns the current snapshot of members, which is shared 
+   * between groupcasts until the membership changes.
+   * @return array of member agents (must not be modified)
+   */
+  private Agent[] getMemberSnapshot(){
+	  Agent[] snapshot = memberSnapshot;
+	  if(snapshot == null){
+		  synchronized(this){
+			  snapshot = memberSnapshot;
+			  if(snapshot == null){
+				  snapshot = getAgents();
+				  memberSnapshot = snapshot;
+			  }
+		  }
+	  }
+	  return snapshot;
+  }
+
   /** 
    * Returns all sub-agents in a recursive manner.
    * @return
@@ -659,30 +693,121 @@ final class DefaultGroup extends AbstractRole implements Group {
 	  return list;
   }
   
-  private final void removeRole(final Role role) {
-	  int i;
-	  for(i=0; i < getRolesList().size(); i++){
-		  if(roles.get(i) == role) {//pointer comparison
-			  roles.remove(i);
-			  i--;
+  /**
+   * Index of roles by role type and intent type. Lookups operate lock-free 
+   * on copy-on-write arrays, updates are serialized on the index itself 
+   * (and never hold the lock of another index).
+   */
+  private static final class MemberIndex {
+	  
+	  private final ConcurrentHashMap<Class<?>, Role[]> rolesByType = new ConcurrentHashMap<Class<?>, Role[]>();
+	  private final ConcurrentHashMap<Class<?>, Role[]> rolesByIntent = new ConcurrentHashMap<Class<?>, Role[]>();
+	  /** indexed roles along with the intent types they have been indexed under */
+	  private final LinkedHashMap<Role, Class<?>[]> indexedRoles = new LinkedHashMap<Role, Class<?>[]>();
+	  
+	  synchronized void add(final Role role){
+		  if(indexedRoles.containsKey(role)){
+			  return;
+		  }
+		  final Class<?>[] types = TypeHierarchy.getTypes(role.getClass());
+		  for(int i = 0; i < types.length; i++){
+			  append(rolesByType, types[i], role);
 		  }
+		  final Class<?>[] intentTypes = role.getApplicableIntentTypes();
+		  for(int i = 0; i < intentTypes.length; i++){
+			  append(rolesByIntent, intentTypes[i], role);
+		  }
+		  indexedRoles.put(role, intentTypes);
 	  }
-  }
-  
-  private final void addIntent (final Class intentType, final Agent a) {
-	  getIntentsList().add(intentType);
-	  getIntentAgentMap().put(intentType, a);
-  }
-  
-  private final void removeIntent (final Class intent) {
-	  int i;
-	  for(i=0; i<getIntentsList().size(); i++){
-		  if(intents.get(i) == intent) {//pointer comparison
-			  intents.remove(i);
-			  i--;
+	  
+	  synchronized void remove(final Role role){
+		  final Class<?>[] intentTypes = indexedRoles.remove(role);
+		  if(intentTypes == null){
+			  return;
+		  }
+		  final Class<?>[] types = TypeHierarchy.getTypes(role.getClass());
+		  for(int i = 0; i < types.length; i++){
+			  drop(rolesByType, types[i], role);
+		  }
+		  for(int i = 0; i < intentTypes.length; i++){
+			  drop(rolesByIntent, intentTypes[i], role);
+		  }
+	  }
+	  
+	  /**
+	   * Replaces the intent entries of an indexed role with its current applicable intents.
+	   */
+	  synchronized void reindexIntents(final Role role){
+		  final Class<?>[] previous = indexedRoles.get(role);
+		  if(previous == null){
+			  return;
+		  }
+		  for(int i = 0; i < previous.length; i++){
+			  drop(rolesByIntent, previous[i], role);
+		  }
+		  final Class<?>[] intentTypes = role.getApplicableIntentTypes();
+		  for(int i = 0; i < intentTypes.length; i++){
+			  append(rolesByIntent, intentTypes[i], role);
+		  }
+		  indexedRoles.put(role, intentTypes);
+	  }
+	  
+	  synchronized boolean contains(final Role role){
+		  return indexedRoles.containsKey(role);
+	  }
+	  
+	  synchronized Role[] getRoles(){
+		  return indexedRoles.keySet().toArray(new Role[indexedRoles.size()]);
+	  }
+	  
+	  /** Returns the shared array of roles for a given type (must not be modified). */
+	  Role[] getRolesByType(final Class<?> roleType){
+		  final Role[] found = rolesByType.get(roleType);
+		  return found == null ? NO_ROLES : found;
+	  }
+	  
+	  /** Returns the shared array of roles for a given intent (must not be modified). */
+	  Role[] getRolesByIntent(final Class<?> intentType){
+		  final Role[] found = rolesByIntent.get(intentType);
+		  return found == null ? NO_ROLES : found;
+	  }
+	  
+	  private static void append(final ConcurrentHashMap<Class<?>, Role[]> index, final Class<?> key, final Role role){
+		  final Role[] current = index.get(key);
+		  if(current == null){
+			  index.put(key, new Role[]{role});
+			  return;
+		  }
+		  for(int i = 0; i < current.length; i++){
+			  if(current[i] == role){
+				  return;
+			  }
+		  }
+		  final Role[] extended = new Role[current.length + 1];
+		  System.arraycopy(current, 0, extended, 0, current.length);
+		  extended[current.length] = role;
+		  index.put(key, extended);
+	  }
+	  
+	  private static void drop(final ConcurrentHashMap<Class<?>, Role[]> index, final Class<?> key, final Role role){
+		  final Role[] current = index.get(key);
+		  if(current == null){
+			  return;
+		  }
+		  for(int i = 0; i < current.length; i++){
+			  if(current[i] == role){
+				  if(current.length == 1){
+					  index.remove(key);
+				  } else {
+					  final Role[] reduced = new Role[current.length - 1];
+					  System.arraycopy(current, 0, reduced, 0, i);
+					  System.arraycopy(current, i + 1, reduced, i, current.length - i - 1);
+					  index.put(key, reduced);
+				  }
+				  return;
+			  }
 		  }
 	  }
-	  getIntentAgentMap().remove(intent);
   }
   
   public String toString() {
@@ -695,16 +820,17 @@ final class DefaultGroup extends AbstractRole implements Group {
 		  s.append("State: ").append(RoleStates.getStateDescription(getState()));
 	  }
 	  s.append("\nRoles: ");
-	  for (int i = 0; i < getRolesList().size(); i++) {
-		  s.append (roles.get(i).toString());
-		  if(i < (getRolesList().size() - 1)){
+	  final Role[] roles = memberIndex.getRoles();
+	  for (int i = 0; i < roles.length; i++) {
+		  s.append (roles[i].toString());
+		  if(i < (roles.length - 1)){
 			  s.append(", ");
 		  }
 	  }
 	  s.append("\nAgents: ");
 	  for (int i = 0; i < getAgentsList().size(); i++) {
 		  s.append (agents.get(i).toString()).append(" (").append(((AbstractAgent)agents.get(i)).getAgentName()).append (")");
-		  if(i < (getRolesList().size() - 1)){
+		  if(i < (getAgentsList().size() - 1)){
 			  s.append(", ");
 		  }
 	  }
@@ -719,11 +845,14 @@ final class DefaultGroup extends AbstractRole implements Group {
 	  if(message.getSender().equals("")){
 		  System.out.println(MTConnector.getPlatformPrefix() + "Groupcast not delivered as message not sent by agent.");
 	  } else {
-		  for(Agent agent: getAgentsList()){
-			  message.setRecipient(agent.getAgentName());
-			  final MicroMessage msg = (MicroMessage) message.clone();
-			  MTConnector.send(msg);
+		  //single read-only copy, members only receive an envelope with their own name
+		  final ImmutableMicroMessage base = ImmutableMicroMessage.copyOf(message);
+		  final Agent[] members = getMemberSnapshot();
+		  ArrayList<MicroMessage> batch = new ArrayList<MicroMessage>(members.length);
+		  for(int i = 0; i < members.length; i++){
+			  batch.add(base.withRecipient(members[i].getAgentName()));
 		  }
+		  MTConnector.sendBatch(batch);
 	  }
   }
 
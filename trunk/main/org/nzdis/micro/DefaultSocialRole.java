@@ -39,8 +39,9 @@ import org.nzdis.micro.util.SimpleSemaphore;
 public abstract class DefaultSocialRole extends AbstractRole implements SocialRole{
 
 	@Inspect
-	private ArrayList<MicroMessage> messageList = new ArrayList<MicroMessage>(5); 
+	private final RoleInbox messageQueue = new RoleInbox();
 	
+	/** not used for the message queue anymore, retained for subclasses */
 	protected SimpleSemaphore semaphore = new SimpleSemaphore("Role message queue", false);
 	
 	@Override
@@ -51,23 +52,15 @@ public abstract class DefaultSocialRole extends AbstractRole implements SocialRo
 					.append("otherwise the message is handled via the role's message queue (which results in asynchronous execution)."));
 		}
 		//asynchronous execution
-		semaphore.acquire();
-		messageList.add(message);
-		semaphore.release();
+		messageQueue.add(message);
 	}
 	
 	/**
 	 * Returns first message from message queue.
 	 * @return First message from queue
 	 */
-	protected synchronized MicroMessage getMessage(){
-		MicroMessage msg = null;
-		semaphore.acquire();
-		if(!messageList.isEmpty()){
-			msg = messageList.remove(0);
-		}
-		semaphore.release();
-		return msg;
+	protected MicroMessage getMessage(){
+		return messageQueue.poll();
 	}
 	
 	/**
@@ -75,20 +68,17 @@ public abstract class DefaultSocialRole extends AbstractRole implements SocialRo
 	 * @return true -> queue contains unprocessed messages, false -> no messages
 	 */
 	protected boolean haveUnprocessedMessages(){
-		return !messageList.isEmpty();
+		return !messageQueue.isEmpty();
 	}
 	
 	/**
 	 * Blocks until a message is in the message list.
 	 */
 	protected void awaitMessage(){
-		while(messageList.isEmpty()){
-			try {
-				Thread.sleep(300);
-			} catch (InterruptedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
+		try {
+			messageQueue.await(null, Long.MAX_VALUE, false);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
 	}
 	
@@ -98,31 +88,63 @@ public abstract class DefaultSocialRole extends AbstractRole implements SocialRo
 	 * @param validator MicroMessageValidator specifying the validity.
 	 */
 	protected void awaitMessage(MicroMessageValidator validator){
-		while(!messageList.isEmpty()){
-			semaphore.acquire();
-			for(MicroMessage message: messageList){
-				if(validator.validate(message)){
-					semaphore.release();
-					return;
-				}
-			}
-			semaphore.release();
-			try {
-				Thread.sleep(500);
-			} catch (InterruptedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
+		try {
+			messageQueue.await(validator, Long.MAX_VALUE, false);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Removes and returns the first message that complies with the 
+	 * MicroMessageValidator, waiting for its arrival if necessary.
+	 * @param validator MicroMessageValidator specifying the validity.
+	 * @param timeout Maximal time to wait in ms (0 for no waiting)
+	 * @return message or null if timed out (or interrupted)
+	 */
+	protected MicroMessage receiveMessage(MicroMessageValidator validator, long timeout){
+		try {
+			return messageQueue.await(validator, timeout, true);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
 		}
 	}
 	
+	/**
+	 * Removes and returns the first message of a given conversation and/or 
+	 * with a given performative, waiting for its arrival if necessary. 
+	 * Constant time if the message index is enabled (see enableMessageIndex()).
+	 * @param conversationId Conversation ID (null for any)
+	 * @param performative Performative (null for any)
+	 * @param timeout Maximal time to wait in ms (0 for no waiting)
+	 * @return message or null if timed out (or interrupted)
+	 */
+	protected MicroMessage receiveMessage(String conversationId, String performative, long timeout){
+		try {
+			return messageQueue.await(conversationId, performative, timeout);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+	
+	/**
+	 * Indexes queued messages by conversation ID and performative for 
+	 * selective receive. Should be called before messages arrive 
+	 * (e.g. in initialize()), as earlier messages are not indexed.
+	 */
+	protected void enableMessageIndex(){
+		messageQueue.enableIndex();
+	}
+	
 	/**
 	 * Returns the number of unprocessed messages 
 	 * in message queue.
 	 * @return Number of queued messages
 	 */
 	protected Integer getNumberOfUnprocessedMessages(){
-		return messageList.size();
+		return messageQueue.size();
 	}
 	
 	/**
@@ -133,6 +155,15 @@ public abstract class DefaultSocialRole extends AbstractRole implements SocialRo
 		((AbstractAgent)getAgent()).send(message);
 	}
 	
+	/**
+	 * Sends a batch of messages via default message transport, 
+	 * grouped by recipient (see MTConnector.sendBatch()).
+	 * @param messages Messages to be sent
+	 */
+	public void sendBatch(Collection<MicroMessage> messages){
+		((AbstractAgent)getAgent()).sendBatch(messages);
+	}
+	
 	/**
 	 * Sends intent (automatically encapsulated in message) 
 	 * via default message transport.
@@ -190,6 +221,19 @@ public abstract class DefaultSocialRole extends AbstractRole implements SocialRo
 		return ((AbstractAgent)getAgent()).sendRandomcast(message, numberOfTargets, global, trueIndicatesListofCandidatesFalseIndicatesExcludedAgents, new ArrayList<String>(exclusionList));
 	}
 	
+	/**
+	 * Sends Randomcast to <numberOfTargets> agents which are chosen with probability 
+	 * proportional to their weight (see MTConnector.setAgentWeight()). Only agents 
+	 * on the local platform are considered.
+	 * @param message Message to be sent
+	 * @param numberOfTargets Number of targets to be randomly chosen
+	 * @param exclusionList Agents (agent names) to be excluded from Randomcast. If null, all weighted agents can be selected.
+	 * @return List of agents that have been chosen for message dispatch
+	 */
+	public ArrayList<String> sendWeightedRandomcast(MicroMessage message, int numberOfTargets, Collection<String> exclusionList){
+		return ((AbstractAgent)getAgent()).sendWeightedRandomcast(message, numberOfTargets, exclusionList);
+	}
+	
 	/**
 	 * Sends message to all agents in specified local group. If group is not
 	 * specified, message is sent to all sub-agents of the sending agent.
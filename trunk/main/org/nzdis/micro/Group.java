@@ -45,7 +45,7 @@ public interface Group extends Role {
 	 * @param aRoleType specification of the requested role
 	 * @param includeGroupOwnerInSearch indicates if group owner is to be included in lookup
 	 * @return Array of all valid agent names for a given specification */
-	String[] findAgentNamesByRoleType(final Class roleType, boolean includeGroupOwnerInSearch);
+	String[] findAgentNamesByRoleType(final Class<?> roleType, boolean includeGroupOwnerInSearch);
 	
 	/**
 	 * Lookup method for locating roles. Same as findAgentNamesByRoleType() but does not
@@ -54,7 +54,7 @@ public interface Group extends Role {
 	 * @param includeGroupOwnerInSearch indicates if group owner is to be included in lookup
 	 * @return Array of all valid agent names for a given specification
 	 */
-	String[] findAgentNamesByRoleTypeNonRecursive (final Class roleType, boolean includeGroupOwnerInSearch);
+	String[] findAgentNamesByRoleTypeNonRecursive (final Class<?> roleType, boolean includeGroupOwnerInSearch);
 	
 	/**
 	 * Lookup method for locating agents. This method will prepare a list
@@ -67,7 +67,7 @@ public interface Group extends Role {
 	 * @param includeGroupOwnerInSearch indicates if group owner is to be included in lookup
 	 * @return Array of all valid agents for a given specification 
 	 */
-	Agent[] findAgentsByRoleType(final Class roleType, boolean includeGroupOwnerInSearch);
+	Agent[] findAgentsByRoleType(final Class<?> roleType, boolean includeGroupOwnerInSearch);
 	
 	/**
 	 * Lookup method for locating roles. Same as findAgentsByRoleType() but does not
@@ -76,7 +76,7 @@ public interface Group extends Role {
 	 * @param includeGroupOwnerInSearch indicates if group owner is to be included in lookup
 	 * @return Array of all valid agent names for a given specification
 	 */
-	Agent[] findAgentsByRoleTypeNonRecursive (final Class roleType, boolean includeGroupOwnerInSearch);
+	Agent[] findAgentsByRoleTypeNonRecursive (final Class<?> roleType, boolean includeGroupOwnerInSearch);
 	
 	/**
 	 * Lookup method for locating roles. This method will prepare a list
@@ -88,7 +88,7 @@ public interface Group extends Role {
 	 * @param aRoleType specification of the requested role
 	 * @param includeGroupOwnerInSearch indicates if group owner is to be included in lookup
 	 * @return an array of all valid roles for a given specification */ 
-	Role[] findRolesByType(final Class aRoleType, boolean includeGroupOwnerInSearch);
+	Role[] findRolesByType(final Class<?> aRoleType, boolean includeGroupOwnerInSearch);
   
 	/**
 	 * Lookup method for locating roles. Same as findRolesByType() but does not
@@ -97,7 +97,7 @@ public interface Group extends Role {
 	 * @param includeGroupOwnerInSearch indicates if group owner is to be included in lookup
 	 * @return Array of all valid roles for a given specification
 	 */
-	Role[] findRolesByTypeNonRecursive(final Class aRoleType, boolean includeGroupOwnerInSearch);
+	Role[] findRolesByTypeNonRecursive(final Class<?> aRoleType, boolean includeGroupOwnerInSearch);
 
 	/**
 	 * Lookup method for locating agents. This method will prepare a list
@@ -107,7 +107,7 @@ public interface Group extends Role {
 	 * @param includeGroupOwnerInSearch indicates if group owner is to be included in lookup
 	 * @return Array of all valid agents for a given intent specification 
 	 */ 
-	Agent[] findAgentsByIntent(final Class anIntentType, boolean includeGroupOwnerInSearch);
+	Agent[] findAgentsByIntent(final Class<?> anIntentType, boolean includeGroupOwnerInSearch);
 
 	/**
 	 * Lookup method for locating agents. This method will prepare a list
@@ -117,7 +117,7 @@ public interface Group extends Role {
 	 * @param includeGroupOwnerInSearch indicates if group owner is to be included in lookup
 	 * @return an array of all valid agents for a given intent specification 
 	 */
-	Agent[] findAgentsByIntentNonRecursive(final Class anIntentType, boolean includeGroupOwnerInSearch);
+	Agent[] findAgentsByIntentNonRecursive(final Class<?> anIntentType, boolean includeGroupOwnerInSearch);
   
 	/**
 	 * Lookup method for locating roles. This method will prepare a list
@@ -127,7 +127,7 @@ public interface Group extends Role {
 	 * @param includeGroupOwnerInSearch indicates if group owner is to be included in lookup
 	 * @return Array of all roles that can process a given intent specification 
 	 */
-	Role[] findRolesByIntent(final Class intentType, boolean includeGroupOwnerInSearch);
+	Role[] findRolesByIntent(final Class<?> intentType, boolean includeGroupOwnerInSearch);
   
 	/**
 	 * Lookup method for locating roles. This method will prepare a list	
@@ -137,7 +137,7 @@ public interface Group extends Role {
 	 * @param includeGroupOwnerInSearch indicates if group owner is to be included in lookup
 	 * @return Array of all roles that can process a given intent specification 
 	 */
-	Role[] findRolesByIntentNonRecursive(final Class intentType, boolean includeGroupOwnerInSearch);
+	Role[] findRolesByIntentNonRecursive(final Class<?> intentType, boolean includeGroupOwnerInSearch);
   
 	/**
 	 * Finds agent by name in this group (not across other groups).
@@ -165,6 +165,13 @@ public interface Group extends Role {
 	 * @param role Role to be registered for agent
      */
 	void registerRoleForAgent(final Agent agent, Role role);
+	
+	/**
+	 * Deregisters a role disposed by an agent after its initialization.
+	 * @param agent Agent the role has been disposed by
+	 * @param role Role to be deregistered
+	 */
+	void deregisterRoleForAgent(final Agent agent, Role role);
   
 	/**
 	 * Reindexes all role-intent assignments for agents. This might be necessary
@@ -0,0 +1,783 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro;
+
+import java.io.ObjectStreamException;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.nzdis.micro.messaging.message.CompactFieldMap;
+import org.nzdis.micro.messaging.message.Message;
+
+/**
+ * Immutable MicroMessage with dedicated fields for the header attributes 
+ * (sender, recipient, performative, content, execution environment, intent, 
+ * event, conversation ID and message ID) and a compact open-addressing map 
+ * for all further fields. Instances are created using the Builder 
+ * (see {@link #builder()}) and can be shared between recipients, so local 
+ * delivery does not clone them. 
+ * <br>
+ * The message remains usable as Map (read-only view on all fields). As for 
+ * MicroMessage, fields explicitly set to null are contained (containsKey()). 
+ * Modifying operations throw an UnsupportedOperationException; clone() and 
+ * toMutable() return a modifiable MicroMessage copy instead.
+ */
+public final class ImmutableMicroMessage extends MicroMessage {
+
+	private static final long serialVersionUID = 6207364263911815520L;
+	
+	/* presence bits of header fields (which may be set to null) */
+	private static final int SENDER_BIT = 1;
+	private static final int RECIPIENT_BIT = 1 << 1;
+	private static final int PERFORMATIVE_BIT = 1 << 2;
+	private static final int CONTENT_BIT = 1 << 3;
+	private static final int EXEC_ENV_BIT = 1 << 4;
+	private static final int INTENT_BIT = 1 << 5;
+	private static final int EVENT_BIT = 1 << 6;
+	private static final int CONV_ID_BIT = 1 << 7;
+	private static final int MSG_ID_BIT = 1 << 8;
+
+	private final String sender;
+	private final String recipient;
+	private final String performative;
+	private final String content;
+	private final String executionEnvironment;
+	private final Intent intent;
+	private final Event event;
+	private final String conversationId;
+	private final Integer messageId;
+	/** header fields that have been set (see *_BIT) */
+	private final int headers;
+	/** all non-header fields */
+	private final CompactFieldMap fields;
+	
+	private ImmutableMicroMessage(Builder builder){
+		this.sender = builder.sender;
+		this.recipient = builder.recipient;
+		this.performative = builder.performative;
+		this.content = builder.content;
+		this.executionEnvironment = builder.executionEnvironment;
+		this.intent = builder.intent;
+		this.event = builder.event;
+		this.conversationId = builder.conversationId;
+		this.messageId = builder.messageId;
+		this.headers = builder.headers;
+		this.fields = builder.fieldCount == 0 ? CompactFieldMap.EMPTY : 
+			new CompactFieldMap(builder.fieldKeys, builder.fieldValues, builder.fieldCount);
+	}
+	
+	/**
+	 * Copy constructor replacing sender and recipient, all other fields are shared.
+	 */
+	private ImmutableMicroMessage(ImmutableMicroMessage message, String sender, String recipient){
+		this.sender = sender;
+		this.recipient = recipient;
+		this.performative = message.performative;
+		this.content = message.content;
+		this.executionEnvironment = message.executionEnvironment;
+		this.intent = message.intent;
+		this.event = message.event;
+		this.conversationId = message.conversationId;
+		this.messageId = message.messageId;
+		int present = message.headers;
+		if(sender != message.sender){
+			present |= SENDER_BIT;
+		}
+		if(recipient != message.recipient){
+			present |= RECIPIENT_BIT;
+		}
+		this.headers = present;
+		this.fields = message.fields;
+		this.validation = message.validation;
+		this.strictValidation = message.strictValidation;
+		this.sendUnchanged = message.sendUnchanged;
+		//cached handles remain valid for unchanged addresses
+		if(sender == message.sender){
+			this.senderHandle = message.senderHandle;
+		}
+		if(recipient == message.recipient){
+			this.recipientHandle = message.recipientHandle;
+		}
+	}
+	
+	/**
+	 * Returns a new builder for an immutable message.
+	 * @return builder
+	 */
+	public static Builder builder(){
+		return new Builder();
+	}
+	
+	/**
+	 * Returns a builder initialized with all fields of a given message.
+	 * @param message Message to copy fields from
+	 * @return builder
+	 */
+	public static Builder builder(Map<String, Object> message){
+		Builder builder = new Builder();
+		for(Map.Entry<String, Object> entry: message.entrySet()){
+			builder.set(entry.getKey(), entry.getValue());
+		}
+		return builder;
+	}
+	
+	/**
+	 * Returns an immutable copy of a given message (or the message itself 
+	 * if already immutable).
+	 * @param message Message
+	 * @return immutable message
+	 */
+	public static ImmutableMicroMessage copyOf(Message message){
+		if(message instanceof ImmutableMicroMessage){
+			return (ImmutableMicroMessage) message;
+		}
+		ImmutableMicroMessage copy = builder(message).build();
+		if(message instanceof MicroMessage){
+			copy.validation = ((MicroMessage)message).validation;
+			copy.strictValidation = ((MicroMessage)message).strictValidation;
+			copy.sendUnchanged = ((MicroMessage)message).sendUnchanged;
+		}
+		return copy;
+	}
+	
+	/**
+	 * Builder for ImmutableMicroMessage instances.
+	 */
+	public static final class Builder {
+		
+		private String sender;
+		private String recipient;
+		private String performative;
+		private String content;
+		private String executionEnvironment;
+		private Intent intent;
+		private Event event;
+		private String conversationId;
+		private Integer messageId;
+		private int headers = 0;
+		private String[] fieldKeys = new String[4];
+		private Object[] fieldValues = new Object[4];
+		private int fieldCount = 0;
+		
+		private Builder(){
+		}
+		
+		public Builder sender(String sender){
+			this.sender = sender;
+			headers |= SENDER_BIT;
+			return this;
+		}
+		
+		public Builder recipient(String recipient){
+			this.recipient = recipient;
+			headers |= RECIPIENT_BIT;
+			return this;
+		}
+		
+		public Builder performative(String performative){
+			this.performative = performative;
+			headers |= PERFORMATIVE_BIT;
+			return this;
+		}
+		
+		public Builder content(String content){
+			this.content = content;
+			headers |= CONTENT_BIT;
+			return this;
+		}
+		
+		public Builder executionEnvironment(String executionEnvironment){
+			this.executionEnvironment = executionEnvironment;
+			headers |= EXEC_ENV_BIT;
+			return this;
+		}
+		
+		public Builder intent(Intent intent){
+			this.intent = intent;
+			headers |= INTENT_BIT;
+			return this;
+		}
+		
+		public Builder event(Event event){
+			this.event = event;
+			headers |= EVENT_BIT;
+			return this;
+		}
+		
+		public Builder conversationID(String conversationId){
+			this.conversationId = conversationId;
+			headers |= CONV_ID_BIT;
+			return this;
+		}
+		
+		public Builder messageID(Integer messageId){
+			this.messageId = messageId;
+			headers |= MSG_ID_BIT;
+			return this;
+		}
+		
+		/**
+		 * Sets the priority for mailboxes with priority lanes (see MicroMessage.setPriority()).
+		 * @param priority Priority
+		 * @return builder
+		 */
+		public Builder priority(int priority){
+			return set(MSG_PARAM_PRIORITY, priority);
+		}
+		
+		/**
+		 * Starts a new conversation (new conversation ID and message ID 0).
+		 * @return builder
+		 */
+		public Builder initializeConversation(){
+			this.conversationId = generateConversationId();
+			this.messageId = 0;
+			headers |= CONV_ID_BIT | MSG_ID_BIT;
+			return this;
+		}
+		
+		/**
+		 * Sets a custom field. Integer values are stored as String 
+		 * (as for MicroMessage.setCustomField()).
+		 * @param key Field name
+		 * @param value Field value
+		 * @return builder
+		 */
+		public Builder customField(String key, Object value){
+			if(value != null){
+				value = objectCheck(value);
+			}
+			return set(key, value);
+		}
+		
+		/**
+		 * Sets an arbitrary field, header fields are assigned to the according attribute. 
+		 * Fields set to null are kept (as for MicroMessage).
+		 * @param key Field name
+		 * @param value Field value
+		 * @return builder
+		 */
+		public Builder set(String key, Object value){
+			int bit = headerBit(key);
+			headers |= bit;
+			if(bit == 0){
+				if(fieldCount == fieldKeys.length){
+					String[] newKeys = new String[fieldCount * 2];
+					Object[] newValues = new Object[fieldCount * 2];
+					System.arraycopy(fieldKeys, 0, newKeys, 0, fieldCount);
+					System.arraycopy(fieldValues, 0, newValues, 0, fieldCount);
+					fieldKeys = newKeys;
+					fieldValues = newValues;
+				}
+				fieldKeys[fieldCount] = key;
+				fieldValues[fieldCount] = value;
+				fieldCount++;
+			} else if(key.equals(MSG_PARAM_SENDER)){
+				sender = value == null ? null : value.toString();
+			} else if(key.equals(MSG_PARAM_RECIPIENT)){
+				recipient = value == null ? null : value.toString();
+			} else if(key.equals(MSG_PARAM_PERFORMATIVE)){
+				performative = value == null ? null : value.toString();
+			} else if(key.equals(MSG_PARAM_CONTENT)){
+				content = value == null ? null : value.toString();
+			} else if(key.equals(MSG_PARAM_EXEC_ENV)){
+				executionEnvironment = value == null ? null : value.toString();
+			} else if(key.equals(MSG_PARAM_INTENT)){
+				intent = (Intent) value;
+			} else if(key.equals(MSG_PARAM_EVENT)){
+				event = (Event) value;
+			} else if(key.equals(MSG_PARAM_CONV_ID)){
+				conversationId = value == null ? null : value.toString();
+			} else if(key.equals(MSG_PARAM_MSG_ID)){
+				messageId = value == null ? null : Integer.valueOf(value.toString());
+			}
+			return this;
+		}
+		
+		/**
+		 * Creates the immutable message.
+		 * @return message
+		 */
+		public ImmutableMicroMessage build(){
+			return new ImmutableMicroMessage(this);
+		}
+	}
+	
+	/**
+	 * Returns the presence bit of a header field.
+	 * @param name Field name
+	 * @return bit or 0 if name is no header field
+	 */
+	private static int headerBit(String name){
+		if(!name.startsWith("MSG_")){
+			return 0;
+		}
+		if(name.equals(MSG_PARAM_SENDER)){
+			return SENDER_BIT;
+		} else if(name.equals(MSG_PARAM_RECIPIENT)){
+			return RECIPIENT_BIT;
+		} else if(name.equals(MSG_PARAM_PERFORMATIVE)){
+			return PERFORMATIVE_BIT;
+		} else if(name.equals(MSG_PARAM_CONTENT)){
+			return CONTENT_BIT;
+		} else if(name.equals(MSG_PARAM_EXEC_ENV)){
+			return EXEC_ENV_BIT;
+		} else if(name.equals(MSG_PARAM_INTENT)){
+			return INTENT_BIT;
+		} else if(name.equals(MSG_PARAM_EVENT)){
+			return EVENT_BIT;
+		} else if(name.equals(MSG_PARAM_CONV_ID)){
+			return CONV_ID_BIT;
+		} else if(name.equals(MSG_PARAM_MSG_ID)){
+			return MSG_ID_BIT;
+		}
+		return 0;
+	}
+	
+	/**
+	 * Returns this message if it has the given sender, else a copy with 
+	 * the given sender (sharing all other fields).
+	 */
+	@Override
+	public MicroMessage withSender(String sender){
+		if(sender == null ? this.sender == null : sender.equals(this.sender)){
+			return this;
+		}
+		return new ImmutableMicroMessage(this, sender, recipient);
+	}
+	
+	/**
+	 * Returns this message if it has the given recipient, else a copy with 
+	 * the given recipient (sharing all other fields).
+	 * @param recipient Recipient
+	 * @return message with given recipient
+	 */
+	public ImmutableMicroMessage withRecipient(String recipient){
+		if(recipient == null ? this.recipient == null : recipient.equals(this.recipient)){
+			return this;
+		}
+		return new ImmutableMicroMessage(this, sender, recipient);
+	}
+	
+	/**
+	 * Returns a copy of this message sharing all fields (and cached handles), 
+	 * which can be modified before it is shared.
+	 * @return copy
+	 */
+	ImmutableMicroMessage copyEnvelope(){
+		return new ImmutableMicroMessage(this, sender, recipient);
+	}
+	
+	/**
+	 * Returns a modifiable MicroMessage copy of this message.
+	 */
+	@Override
+	public MicroMessage toMutable(){
+		MicroMessage copy = new MicroMessage(this);
+		copy.validation = validation;
+		copy.strictValidation = strictValidation;
+		copy.sendUnchanged = sendUnchanged;
+		copy.senderHandle = senderHandle;
+		copy.recipientHandle = recipientHandle;
+		return copy;
+	}
+	
+	@Override
+	public boolean isImmutable(){
+		return true;
+	}
+	
+	/**
+	 * Returns a modifiable copy (see toMutable()), as callers of clone() 
+	 * usually modify the copy.
+	 */
+	@Override
+	public Object clone(){
+		return toMutable();
+	}
+	
+	/**
+	 * Serializes immutable messages as modifiable MicroMessage.
+	 */
+	private Object writeReplace() throws ObjectStreamException {
+		return toMutable();
+	}
+	
+	/* header access without synchronization or hashing */
+	
+	@Override
+	public String getSender(){
+		return sender == null ? "" : sender;
+	}
+	
+	@Override
+	public String getRecipient(){
+		return recipient == null ? "" : recipient;
+	}
+	
+	@Override
+	public boolean containsRecipient(){
+		return (headers & RECIPIENT_BIT) != 0;
+	}
+	
+	@Override
+	public String getPerformative(){
+		return performative == null ? "" : performative;
+	}
+	
+	@Override
+	public boolean containsPerformative(){
+		return (headers & PERFORMATIVE_BIT) != 0;
+	}
+	
+	@Override
+	public String getContent(){
+		return content == null ? "" : content;
+	}
+	
+	@Override
+	public String getExecutionEnvironment(){
+		return executionEnvironment;
+	}
+	
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T getIntent(){
+		return (T) intent;
+	}
+	
+	@Override
+	public boolean containsIntent(){
+		return (headers & INTENT_BIT) != 0;
+	}
+	
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T getEvent(){
+		if(event == null){
+			return (T) new NullEvent(SystemOwner.ownName);
+		}
+		return (T) event;
+	}
+	
+	@Override
+	public boolean containsEvent(){
+		return (headers & EVENT_BIT) != 0;
+	}
+	
+	@Override
+	public String getConversationID(){
+		return conversationId;
+	}
+	
+	@Override
+	public boolean containsConversationID(){
+		return (headers & CONV_ID_BIT) != 0;
+	}
+	
+	@Override
+	public Integer getMessageID(){
+		return messageId;
+	}
+	
+	@Override
+	public Object getCustomField(String customField){
+		return get(customField);
+	}
+	
+	/* read-only map view */
+	
+	@Override
+	public Object get(Object key){
+		if(!(key instanceof String)){
+			return null;
+		}
+		String name = (String) key;
+		if(name.startsWith("MSG_")){
+			if(name.equals(MSG_PARAM_SENDER)){
+				return sender;
+			} else if(name.equals(MSG_PARAM_RECIPIENT)){
+				return recipient;
+			} else if(name.equals(MSG_PARAM_PERFORMATIVE)){
+				return performative;
+			} else if(name.equals(MSG_PARAM_CONTENT)){
+				return content;
+			} else if(name.equals(MSG_PARAM_EXEC_ENV)){
+				return executionEnvironment;
+			} else if(name.equals(MSG_PARAM_INTENT)){
+				return intent;
+			} else if(name.equals(MSG_PARAM_EVENT)){
+				return event;
+			} else if(name.equals(MSG_PARAM_CONV_ID)){
+				return conversationId;
+			} else if(name.equals(MSG_PARAM_MSG_ID)){
+				return messageId;
+			}
+		}
+		return fields.get(name);
+	}
+	
+	@Override
+	public boolean containsKey(Object key){
+		if(!(key instanceof String)){
+			return false;
+		}
+		int bit = headerBit((String) key);
+		return bit == 0 ? fields.containsKey((String) key) : (headers & bit) != 0;
+	}
+	
+	@Override
+	public Object getOrDefault(Object key, Object defaultValue){
+		return containsKey(key) ? get(key) : defaultValue;
+	}
+	
+	@Override
+	public boolean containsValue(Object value){
+		for(Map.Entry<String, Object> entry: entries()){
+			if(value == null ? entry.getValue() == null : value.equals(entry.getValue())){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	@Override
+	public int size(){
+		return fields.size() + Integer.bitCount(headers);
+	}
+	
+	@Override
+	public boolean isEmpty(){
+		return size() == 0;
+	}
+	
+	/**
+	 * Collects all fields as entries.
+	 * @return list of entries
+	 */
+	private ArrayList<Map.Entry<String, Object>> entries(){
+		ArrayList<Map.Entry<String, Object>> entries = new ArrayList<Map.Entry<String, Object>>(fields.size() + 9);
+		addHeaderEntry(entries, SENDER_BIT, MSG_PARAM_SENDER, sender);
+		addHeaderEntry(entries, RECIPIENT_BIT, MSG_PARAM_RECIPIENT, recipient);
+		addHeaderEntry(entries, PERFORMATIVE_BIT, MSG_PARAM_PERFORMATIVE, performative);
+		addHeaderEntry(entries, CONTENT_BIT, MSG_PARAM_CONTENT, content);
+		addHeaderEntry(entries, EXEC_ENV_BIT, MSG_PARAM_EXEC_ENV, executionEnvironment);
+		addHeaderEntry(entries, INTENT_BIT, MSG_PARAM_INTENT, intent);
+		addHeaderEntry(entries, EVENT_BIT, MSG_PARAM_EVENT, event);
+		addHeaderEntry(entries, CONV_ID_BIT, MSG_PARAM_CONV_ID, conversationId);
+		addHeaderEntry(entries, MSG_ID_BIT, MSG_PARAM_MSG_ID, messageId);
+		for(int i = 0; i < fields.capacity(); i++){
+			if(fields.keyAt(i) != null){
+				entries.add(new AbstractMap.SimpleImmutableEntry<String, Object>(fields.keyAt(i), fields.valueAt(i)));
+			}
+		}
+		return entries;
+	}
+	
+	private void addHeaderEntry(ArrayList<Map.Entry<String, Object>> entries, int bit, String key, Object value){
+		if((headers & bit) != 0){
+			entries.add(new AbstractMap.SimpleImmutableEntry<String, Object>(key, value));
+		}
+	}
+	
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet(){
+		final ArrayList<Map.Entry<String, Object>> entries = entries();
+		return new AbstractSet<Map.Entry<String, Object>>(){
+
+			@Override
+			public Iterator<Map.Entry<String, Object>> iterator() {
+				return java.util.Collections.unmodifiableList(entries).iterator();
+			}
+
+			@Override
+			public int size() {
+				return entries.size();
+			}
+			
+		};
+	}
+	
+	@Override
+	public Set<String> keySet(){
+		final ArrayList<Map.Entry<String, Object>> entries = entries();
+		return new AbstractSet<String>(){
+
+			@Override
+			public Iterator<String> iterator() {
+				final Iterator<Map.Entry<String, Object>> it = entries.iterator();
+				return new Iterator<String>(){
+
+					@Override
+					public boolean hasNext() {
+						return it.hasNext();
+					}
+
+					@Override
+					public String next() {
+						return it.next().getKey();
+					}
+
+					@Override
+					public void remove() {
+						throw modificationError();
+					}
+					
+				};
+			}
+
+			@Override
+			public int size() {
+				return entries.size();
+			}
+			
+			@Override
+			public boolean contains(Object key) {
+				return containsKey(key);
+			}
+			
+		};
+	}
+	
+	@Override
+	public Collection<Object> values(){
+		final ArrayList<Map.Entry<String, Object>> entries = entries();
+		return new AbstractCollection<Object>(){
+
+			@Override
+			public Iterator<Object> iterator() {
+				final Iterator<Map.Entry<String, Object>> it = entries.iterator();
+				return new Iterator<Object>(){
+
+					@Override
+					public boolean hasNext() {
+						return it.hasNext();
+					}
+
+					@Override
+					public Object next() {
+						return it.next().getValue();
+					}
+
+					@Override
+					public void remove() {
+						throw modificationError();
+					}
+					
+				};
+			}
+
+			@Override
+			public int size() {
+				return entries.size();
+			}
+			
+		};
+	}
+	
+	@Override
+	public void forEach(BiConsumer<? super String, ? super Object> action){
+		for(Map.Entry<String, Object> entry: entries()){
+			action.accept(entry.getKey(), entry.getValue());
+		}
+	}
+	
+	/* modifications are not supported */
+	
+	private static UnsupportedOperationException modificationError(){
+		return new UnsupportedOperationException("ImmutableMicroMessage cannot be modified, use toMutable() to obtain a modifiable copy.");
+	}
+	
+	@Override
+	public Object put(String key, Object value){
+		throw modificationError();
+	}
+	
+	@Override
+	public void putAll(Map<? extends String, ? extends Object> map){
+		throw modificationError();
+	}
+	
+	@Override
+	public Object remove(Object key){
+		throw modificationError();
+	}
+	
+	@Override
+	public boolean remove(Object key, Object value){
+		throw modificationError();
+	}
+	
+	@Override
+	public void clear(){
+		throw modificationError();
+	}
+	
+	@Override
+	public Object putIfAbsent(String key, Object value){
+		throw modificationError();
+	}
+	
+	@Override
+	public boolean replace(String key, Object oldValue, Object newValue){
+		throw modificationError();
+	}
+	
+	@Override
+	public Object replace(String key, Object value){
+		throw modificationError();
+	}
+	
+	@Override
+	public Object computeIfAbsent(String key, Function<? super String, ? extends Object> mappingFunction){
+		throw modificationError();
+	}
+	
+	@Override
+	public Object computeIfPresent(String key, BiFunction<? super String, ? super Object, ? extends Object> remappingFunction){
+		throw modificationError();
+	}
+	
+	@Override
+	public Object compute(String key, BiFunction<? super String, ? super Object, ? extends Object> remappingFunction){
+		throw modificationError();
+	}
+	
+	@Override
+	public Object merge(String key, Object value, BiFunction<? super Object, ? super Object, ? extends Object> remappingFunction){
+		throw modificationError();
+	}
+	
+	@Override
+	public void replaceAll(BiFunction<? super String, ? super Object, ? extends Object> function){
+		throw modificationError();
+	}
+	
+}
@@ -23,14 +23,20 @@ package org.nzdis.micro;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.StringTokenizer;
 import java.util.concurrent.ConcurrentHashMap;
-import org.nzdis.micro.constants.MessagePassingFrameworks;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.nzdis.micro.constants.IntentDispatchStrategies;
 import org.nzdis.micro.events.LocalPlatformShutdownEvent;
 import org.nzdis.micro.events.RemotePlatformLocationEvent;
 import org.nzdis.micro.gip.GenericIntentProcessor;
@@ -39,7 +45,10 @@ import org.nzdis.micro.messaging.MTRuntime;
 import org.nzdis.micro.messaging.MessageCommunicator;
 import org.nzdis.micro.messaging.SocketAddress;
 import org.nzdis.micro.messaging.message.Message;
+import org.nzdis.micro.messaging.processor.AbstractMicroFiber;
+import org.nzdis.micro.util.PartialShuffle;
 import org.nzdis.micro.util.StackTracePrinter;
+import org.nzdis.micro.util.TypeHierarchy;
 
 /**
  * The MTConnector (or MessageTransportConnector) links the agent implementation with the message 
@@ -69,9 +78,10 @@ public class MTConnector extends MTRuntime {
 	 * Registers agent on Message Transport Service.
 	 * @param agentName Agent name to be registered
 	 * @param agent Agent instance associated with the name
+	 * @return local handle of registered agent
 	 */
-	public static void register(String agentName, MessageCommunicator agent){
-		MTRuntime.register(agentName, agent);
+	public static int register(String agentName, MessageCommunicator agent){
+		return MTRuntime.register(agentName, agent);
 	}
 	
 	/**
@@ -83,6 +93,7 @@ public class MTConnector extends MTRuntime {
 		MTRuntime.unregister(agentName);
 		clearApplicableIntents(agentName);
 		clearEventSubscriptions(agentName);
+		clearRoles(agentName);
 		if(platformOutputLevel > 0){
 			System.out.println(new StringBuffer(MTRuntime.getPlatformPrefix()).append(agentName).append(" unregistered successfully."));
 		}
@@ -101,10 +112,12 @@ public class MTConnector extends MTRuntime {
 	 * clearing of all subscriptions (CLEAR_SUBSCRIPTIONS) for the sender (independent from event
 	 * class passed). If those performatives do not match the event is considered to be raised and 
 	 * all subscribed agents are notified.
+	 * Sending does not acquire a global lock; intent and event resolution operate on 
+	 * concurrent copy-on-write routing tables.
 	 * 
 	 * @param message Message to be sent
 	 */
-	public synchronized static void send(MicroMessage message){
+	public static void send(MicroMessage message){
 		//Multi-level check (if agent name is locally available --> send to local agent)
 		
 		boolean error = false;
@@ -122,6 +135,8 @@ public class MTConnector extends MTRuntime {
 		
 		//automatic recipient determination by intent and event (if recipient field is empty)
 		if(!message.containsRecipient()){
+			//recipients are assigned during resolution
+			message = message.toMutable();
 			/* INTENT CHECKS
 			 * check for intent first - if intent exists, no check for event!
 			 */
@@ -129,14 +144,16 @@ public class MTConnector extends MTRuntime {
 				//check on generic intents
 				if(message.containsGenericIntent()){
 					//start generic intent processor if not already running
-					if(!registeredIntents.containsKey(GenericIntentInterface.class)){
-						SystemAgentLoader.newAgent(new GenericIntentProcessor(), GENERIC_INTENT_PROCESSOR_NAME);
+					String processor = getFirstAgentForIntent(GenericIntentInterface.class);
+					if(processor == null){
+						processor = startGenericIntentProcessor();
 					}
-					message.setRecipient(registeredIntents.get(GenericIntentInterface.class).getFirst().toString());
+					message.setRecipient(processor);
 				} else {
 					//else check on conventional intents
-					if(registeredIntents.containsKey(message.getIntent().getClass())){
-						message.setRecipient(registeredIntents.get(message.getIntent().getClass()).getFirst().toString());
+					String intentRecipient = selectAgentForIntent(message.getIntent().getClass(), message);
+					if(intentRecipient != null){
+						message.setRecipient(intentRecipient);
 					} else {
 						/* if is distributed send broadcast to other nodes 
 						 * (if not coming from another node as this would cause indefinite ping pong) */
@@ -175,11 +192,13 @@ public class MTConnector extends MTRuntime {
 				 */
 				if(message.containsEvent()){ 
 					//consider as RAISED event
-					if(eventSubscriptions.containsKey(message.getEvent().getClass()) && !noSending){
-						Iterator<String> it = eventSubscriptions.get(message.getEvent().getClass()).iterator();
-						while(it.hasNext()){
-							message.setRecipient(it.next());
-							definiteSend(message);
+					//snapshot of subscribers to event class and its supertypes, concurrent (un)subscriptions do not affect this delivery
+					String[] subscribers = getEventSubscribers(message.getEvent().getClass());
+					if(subscribers.length > 0 && !noSending){
+						//single read-only copy, subscribers only receive an envelope with their own name
+						ImmutableMicroMessage base = ImmutableMicroMessage.copyOf(message);
+						for(int i = 0; i < subscribers.length; i++){
+							definiteSend(base.withRecipient(subscribers[i]));
 							//System.out.println(MTRuntime.getPlatformPrefix() + "Sent message " + message.toString());
 						}
 					} else {
@@ -207,7 +226,7 @@ public class MTConnector extends MTRuntime {
 		}
 		
 		//if recipient not found locally, try remote before returning error
-		if(!MTRuntime.getRegisteredAgents().containsKey(message.getRecipient()) && !error){
+		if(!error && MTRuntime.resolveRecipient(message) == null){
 			if(MTRuntime.isDistributed){
 				
 				//if found in remote node table --> send there
@@ -263,6 +282,72 @@ public class MTConnector extends MTRuntime {
 		}
 	}
 	
+	/**
+	 * Sends a batch of messages. Messages addressed to local agents are grouped by 
+	 * recipient and each recipient's run is enqueued at once (in batch order) with 
+	 * a single activation of the recipient. Messages to agents known on remote 
+	 * platforms are grouped per platform and handed to the network writer together. 
+	 * All other messages (without recipient, broadcasts, unknown recipients) are 
+	 * sent individually (see send()). Local messages are validated in a single 
+	 * validator call before any of them is enqueued.
+	 * @param messages Messages to be sent
+	 */
+	public static void sendBatch(Collection<MicroMessage> messages){
+		boolean globalValidation = MicroMessage.globalValidation;
+		ArrayList<MicroMessage> toValidate = null;
+		IdentityHashMap<AbstractMicroFiber, ArrayList<MicroMessage>> localRuns = new IdentityHashMap<AbstractMicroFiber, ArrayList<MicroMessage>>();
+		LinkedHashMap<String, ArrayList<MicroMessage>> remoteRuns = null;
+		for(MicroMessage message: messages){
+			if(!message.containsRecipient() || message.getRecipient().equals(broadcastPrimitive) 
+					|| message.messageAlreadyHandledbyLocalNode()){
+				send(message);
+				continue;
+			}
+			AbstractMicroFiber recipient = MTRuntime.resolveRecipient(message);
+			if(recipient != null){
+				if(globalValidation || message.validation){
+					if(toValidate == null){
+						toValidate = new ArrayList<MicroMessage>();
+					}
+					toValidate.add(message);
+				}
+				ArrayList<MicroMessage> run = localRuns.get(recipient);
+				if(run == null){
+					run = new ArrayList<MicroMessage>();
+					localRuns.put(recipient, run);
+				}
+				run.add(message);
+			} else if(MTRuntime.isDistributed && MTRuntime.getRemoteProcessMap().containsKey(message.getRecipient())){
+				if(remoteRuns == null){
+					remoteRuns = new LinkedHashMap<String, ArrayList<MicroMessage>>();
+				}
+				//using first entry in case of multiple agents
+				String targetAddress = MTRuntime.getRemoteProcessMap().get(message.getRecipient()).get(0);
+				ArrayList<MicroMessage> run = remoteRuns.get(targetAddress);
+				if(run == null){
+					run = new ArrayList<MicroMessage>();
+					remoteRuns.put(targetAddress, run);
+				}
+				run.add(message);
+			} else {
+				//error handling and blind sending
+				send(message);
+			}
+		}
+		if(toValidate != null){
+			MTRuntime.getMicroMessageValidator().validate(toValidate);
+		}
+		for(Entry<AbstractMicroFiber, ArrayList<MicroMessage>> run: localRuns.entrySet()){
+			MTRuntime.sendBatch(run.getKey(), run.getValue());
+		}
+		if(remoteRuns != null){
+			for(Entry<String, ArrayList<MicroMessage>> run: remoteRuns.entrySet()){
+				SocketAddress address = SocketAddress.inflate(run.getKey());
+				MTRuntime.sendRemote(address.getHostAddress(), address.getPort(), run.getValue());
+			}
+		}
+	}
+	
 	/**
 	 * Sends a message to a remote platform agent of a platform identified
 	 * via the (runtime) platform ID. Be aware that this ID changes with
@@ -285,6 +370,7 @@ public class MTConnector extends MTRuntime {
 				return;
 			}
 		}
+		message = message.toMutable();
 		message.put(platformIdKeyword, platformID);
 		notifySender(message, MessageFields.ERROR_MESSAGE, 6, true, true);
 	}
@@ -295,6 +381,7 @@ public class MTConnector extends MTRuntime {
 	 * @param message MicroMessage to be sent to platform agent of the according platform
 	 */
 	public static void sendToPlatform(SocketAddress address, MicroMessage message){
+		message = message.toMutable();
 		message.setRecipient(MTRuntime.platformProcess);
 		message.setSender(MTRuntime.platformProcess);
 		//System.out.println(MTRuntime.getPlatformPrefix() + "Will send message to platfrom " + address + ", Message " + message);
@@ -375,6 +462,40 @@ public class MTConnector extends MTRuntime {
 		return sendRandomOrFuzzyCast(message, numberOfTargets, null, global, trueIndicatesListofCandidatesFalseIndicatesExcludedAgents, inOrExclusionList);
 	}
 	
+	/**
+	 * Sends weighted RandomCast to <numberOfTargets> distinct local agents, each chosen with 
+	 * probability proportional to its weight (see setAgentWeight() and setAgentWeightProvider()). 
+	 * Agents with weight 0 and the sender are not chosen. Draws are taken from the sender's 
+	 * random number stream. Should only be called by an agent, not externally.
+	 * Will return an error message to the sender if not sufficient targets are available.
+	 * @param message Message to be sent
+	 * @param numberOfTargets Number of target agents
+	 * @param exclusionList Agents (agent names) to be excluded from selection, ignored if null
+	 * @return List of agents that have been chosen by the system as message recipient (or empty list)
+	 */
+	public static ArrayList<String> sendWeightedRandomcast(MicroMessage message, int numberOfTargets, Collection<String> exclusionList){
+		message = message.toMutable();
+		if(message.getSender().equals("")){
+			System.err.println(getPlatformPrefix() + "Weighted RandomCast needs to be sent via agent.");
+			return new ArrayList<String>();
+		}
+		ArrayList<String> excluded = exclusionList == null ? new ArrayList<String>(1) : new ArrayList<String>(exclusionList);
+		excluded.add(message.getSender());
+		ArrayList<String> recipients = drawWeightedAgents(numberOfTargets, excluded, getRandomNoGenerator(message.getSender()));
+		if(recipients.size() < numberOfTargets){
+			message.setCustomField(RANDOMCAST_ERROR_NUMBER_OF_REQUESTED_TARGETS, numberOfTargets);
+			message.setCustomField(RANDOMCAST_ERROR_NUMBER_OF_AVAILABLE_TARGETS, recipients.size());
+			notifySender(message, MessageFields.ERROR_MESSAGE, 10, true, true);
+			return new ArrayList<String>();
+		}
+		for(int i = 0; i < recipients.size(); i++){
+			final MicroMessage finalMsg = (MicroMessage)message.clone();
+			finalMsg.setRecipient(recipients.get(i));
+			send(finalMsg);
+		}
+		return recipients;
+	}
+	
 	/**
 	 * Sends FuzzyCast to <quota> of registered or specified agents - constrained by further parameters (mostly in/exclusion list). 
 	 * If global is set to true, includes all connected remote nodes. Should only be called by an agent, not externally.
@@ -421,7 +542,8 @@ public class MTConnector extends MTRuntime {
 	 * @param inOrExclusionList ArrayList of agents (agent names) to be excluded from Randomcast. If null, all platform-registered agents can be potentially selected.
 	 * @return List of agents that have been chosen by the system as message recipient (or empty list)
 	 */
-	private synchronized static ArrayList<String> sendRandomOrFuzzyCast(MicroMessage message, Integer numberOfTargets, Float quota, boolean global, boolean trueIndicatesListofCandidatesFalseIndicatesExcludedAgents, ArrayList<String> inOrExclusionList){
+	private static ArrayList<String> sendRandomOrFuzzyCast(MicroMessage message, Integer numberOfTargets, Float quota, boolean global, boolean trueIndicatesListofCandidatesFalseIndicatesExcludedAgents, ArrayList<String> inOrExclusionList){
+		message = message.toMutable();
 		if(message.getSender().equals("")){
 			if(quota != null){
 				System.err.println(getPlatformPrefix() + "FuzzyCast needs to be sent via agent.");
@@ -430,42 +552,8 @@ public class MTConnector extends MTRuntime {
 			}
 		} else {
 			
-			
-			//list of agents on the platform
-			ArrayList<String> list = new ArrayList<String>();
-			//list of delivered random number (no double pick)
-			ArrayList<Integer> deliveredRandoms = new ArrayList<Integer>();
-			//temporary data structure for target agent
-			Integer tempTarget;
-			
-			if(global && isDistributed()){
-				list.addAll(getRemoteProcessMap().keySet());
-			}
-			list.addAll(getRegisteredAgents().keySet());
-	
-			//reduce agents to allowed agents, respectively remove excluded agents from list
-			if(inOrExclusionList != null){
-				if(trueIndicatesListofCandidatesFalseIndicatesExcludedAgents){
-					//only take from this list
-					for(int x=0; x<list.size(); x++){
-						if(!inOrExclusionList.contains(list.get(x))){
-							list.remove(x);
-							x--;
-						}
-						//possibility that there are less agents registered than suggested in inclusive list - ignored at this point
-					}
-				} else {
-					//exclude all agents from that list
-					for(int x=0; x<inOrExclusionList.size(); x++){
-						for(int l=0; l<list.size(); l++){
-							if(inOrExclusionList.get(x).toString().equals(list.get(l).toString())){
-								list.remove(l);
-								l--;
-							}
-						}
-					}
-				}
-			}
+			//agents on the platform, reduced to allowed agents, respectively without excluded agents
+			RandomCandidates candidates = new RandomCandidates(global, inOrExclusionList, trueIndicatesListofCandidatesFalseIndicatesExcludedAgents);
 			
 			//if fuzzycast, calculate number of targets
 			if(quota != null){
@@ -480,63 +568,156 @@ public class MTConnector extends MTRuntime {
 					return new ArrayList<String>();
 				}
 				if(quota == 1.0){
-					numberOfTargets = list.size();
+					numberOfTargets = candidates.available;
 				} else {
-					Float res = list.size()*quota;
+					Float res = candidates.available*quota;
 					numberOfTargets = (int)Math.round(res);
-					/*System.err.println(new StringBuffer(getPlatformPrefix()).append("Calculated ")
-								.append(numberOfTargets).append(" from given quota ").append(quota)
-								.append(" and list of ").append(list.size()));*/
 				}
 			}
 			
 			//if number of available registered agents is too low, report error to sender (and print on console)
-			if(list.isEmpty() || list.size() < numberOfTargets){
-				/*System.err.println(new StringBuffer(getPlatformPrefix())
-					.append("RandomCast: Not sufficient candidates available for message dispatch (Requested: ")
-					.append(numberOfTargets).append(", available: ").append(list.size()).append(")."));*/
-				
+			if(candidates.available == 0 || candidates.available < numberOfTargets){
 				//fuzzy cast response
 				if(quota != null){
 					//no notification necessary, as by ratio and thus correct
 				} else { //randomcast response
 					message.setCustomField(RANDOMCAST_ERROR_NUMBER_OF_REQUESTED_TARGETS, numberOfTargets);
-					message.setCustomField(RANDOMCAST_ERROR_NUMBER_OF_AVAILABLE_TARGETS, list.size());
+					message.setCustomField(RANDOMCAST_ERROR_NUMBER_OF_AVAILABLE_TARGETS, candidates.available);
 					notifySender(message, MessageFields.ERROR_MESSAGE, 10, true, true);
 				}
 				return new ArrayList<String>();
 			}
 			
-			ArrayList<String> recipients = new ArrayList<String>();
-			if(list.size() == numberOfTargets){
-				//if all members from the list are addressed, no need for randomness
-				for(int i=0; i<list.size(); i++){
-					final MicroMessage finalMsg = (MicroMessage)message.clone();
-					finalMsg.setRecipient(list.get(i));
-					recipients.add(finalMsg.getRecipient());
-					send(finalMsg);
+			ArrayList<String> recipients;
+			if(candidates.available == numberOfTargets){
+				//if all candidates are addressed, no need for randomness
+				recipients = candidates.all();
+			} else {
+				//drawn from sender's stream, reproducible independent of other agents
+				recipients = candidates.sample(numberOfTargets, message.getSender(), 
+						new PartialShuffle(candidates.size(), PartialShuffle.source(getRandomNoGenerator(message.getSender()))));
+			}
+			for(int i = 0; i < recipients.size(); i++){
+				final MicroMessage finalMsg = (MicroMessage)message.clone();
+				finalMsg.setRecipient(recipients.get(i));
+				send(finalMsg);
+			}
+			return recipients;
+		}
+		return new ArrayList<String>();
+	}
+	
+	/**
+	 * Candidates for random selection, i.e. registered agents (including remote 
+	 * agents if global) without excluded agents, or the registered agents of a given 
+	 * inclusion list. Registered agents are read from the indexable agent table 
+	 * rather than copied, so that drawing k agents takes O(k) on average (as long 
+	 * as excluded agents do not dominate).
+	 */
+	private static class RandomCandidates {
+		
+		/** explicitly listed candidates, or null if registered agents are candidates */
+		private final String[] listed;
+		/** remote agents (if global selection) */
+		private final String[] remote;
+		/** number of local agents (if listed is null) */
+		private final int local;
+		/** agents not to be selected */
+		private final HashSet<String> excluded;
+		/** number of selectable agents */
+		final int available;
+		
+		RandomCandidates(boolean global, ArrayList<String> inOrExclusionList, boolean inclusion){
+			boolean remoteCandidates = global && isDistributed();
+			if(inOrExclusionList != null && inclusion){
+				//only take registered agents from this list (once)
+				LinkedHashSet<String> registered = new LinkedHashSet<String>();
+				for(int i = 0; i < inOrExclusionList.size(); i++){
+					String agent = inOrExclusionList.get(i);
+					if(isRegistered(agent, remoteCandidates)){
+						registered.add(agent);
+					}
 				}
+				listed = registered.toArray(new String[registered.size()]);
+				remote = new String[0];
+				local = 0;
+				excluded = null;
+				available = listed.length;
 			} else {
-				//starting random number generator - only here it will be necessary
-				startRandomNoGenerator();
-				
-				for(int i=0; i<numberOfTargets; i++){
-					tempTarget = random.nextInt(list.size());
-					while(deliveredRandoms.contains(tempTarget)
-							|| list.get(tempTarget).equals(message.getSender())){
-						tempTarget = random.nextInt(list.size());
+				listed = null;
+				remote = remoteCandidates ? getRemoteProcessMap().keySet().toArray(new String[0]) : new String[0];
+				local = getNumberOfRegisteredAgents();
+				int unavailable = 0;
+				if(inOrExclusionList != null && !inOrExclusionList.isEmpty()){
+					excluded = new HashSet<String>(inOrExclusionList);
+					for(String agent: excluded){
+						if(isRegistered(agent, remoteCandidates)){
+							unavailable++;
+						}
 					}
-					deliveredRandoms.add(tempTarget);
-					//System.out.println(i + "Selected target: " + tempTarget + list.get(tempTarget));
-					final MicroMessage finalMsg = (MicroMessage)message.clone();
-					finalMsg.setRecipient(list.get(tempTarget));
-					recipients.add(finalMsg.getRecipient());
-					send(finalMsg);
+				} else {
+					excluded = null;
 				}
+				available = Math.max(remote.length + local - unavailable, 0);
 			}
-			return recipients;
 		}
-		return new ArrayList<String>();
+		
+		private static boolean isRegistered(String agent, boolean remoteCandidates){
+			return getRegisteredAgents().containsKey(agent) 
+					|| (remoteCandidates && getRemoteProcessMap().containsKey(agent));
+		}
+		
+		int size(){
+			return remote.length + (listed != null ? listed.length : local);
+		}
+		
+		private String get(int index){
+			if(index < remote.length){
+				return remote[index];
+			}
+			index -= remote.length;
+			return listed != null ? listed[index] : getRegisteredAgentName(index);
+		}
+		
+		private boolean isCandidate(String agent){
+			return agent != null && (excluded == null || !excluded.contains(agent));
+		}
+		
+		/**
+		 * Returns all candidates.
+		 * @return candidates
+		 */
+		ArrayList<String> all(){
+			int size = size();
+			ArrayList<String> agents = new ArrayList<String>(size);
+			for(int i = 0; i < size; i++){
+				String agent = get(i);
+				if(isCandidate(agent)){
+					agents.add(agent);
+				}
+			}
+			return agents;
+		}
+		
+		/**
+		 * Draws distinct candidates uniformly at random.
+		 * @param numberOfTargets Number of candidates to be drawn
+		 * @param skippedAgent Agent not to be drawn (e.g. sender), ignored if null
+		 * @param shuffle Shuffle of candidate indices (see size())
+		 * @return drawn candidates (less than requested if insufficient candidates)
+		 */
+		ArrayList<String> sample(int numberOfTargets, String skippedAgent, PartialShuffle shuffle){
+			ArrayList<String> agents = new ArrayList<String>(numberOfTargets);
+			//guards against duplicates while agents are concurrently unregistered
+			HashSet<String> drawn = new HashSet<String>();
+			while(agents.size() < numberOfTargets && shuffle.hasNext()){
+				String agent = get(shuffle.next());
+				if(isCandidate(agent) && !agent.equals(skippedAgent) && drawn.add(agent)){
+					agents.add(agent);
+				}
+			}
+			return agents;
+		}
 	}
 	
 	/**
@@ -644,35 +825,14 @@ public class MTConnector extends MTRuntime {
 		
 		startRandomNoGenerator();
 		
-		//list of agents on the platform
-		ArrayList<String> list = new ArrayList<String>();
-		//list of delivered random number (no double pick)
-		ArrayList<String> deliveredRandoms = new ArrayList<String>();
-		//temporary data structure for target agent
-		String tempTarget;
-		
-		if(global && isDistributed()){
-			list.addAll(getRemoteProcessMap().keySet());
-		}
-		list.addAll(getRegisteredAgents().keySet());
-		
-		//remove excluded agents from list
-		if(exclusionList != null){
-			for(int x = 0; x < exclusionList.size(); x++){
-				for(int l = 0; l < list.size(); l++){
-					if(exclusionList.get(x).toString().equals(list.get(l).toString())){
-						list.remove(l);
-						l--;
-					}
-				}
-			}
-		}
+		//agents on the platform without excluded agents
+		RandomCandidates candidates = new RandomCandidates(global, exclusionList, false);
 		
 		//check if too little candidates after cleanup
-		if(numberOfTargets > list.size()){
+		if(numberOfTargets > candidates.available){
 			if(allowLessTargets){
 				//if less targets permitted, then return entire candidate list immediately - no need for picking
-				return list;
+				return candidates.all();
 			} else {
 				if(showErrorsWhenPickingRandomly){
 					System.err.println(getPlatformPrefix() + "Number of random pick candidates smaller than number of requested random agents (" + numberOfTargets + ").");
@@ -680,26 +840,16 @@ public class MTConnector extends MTRuntime {
 						StackTracePrinter.printStackTrace(2);
 					}
 				}
-				return deliveredRandoms;
+				return new ArrayList<String>();
 			}
 		}
 		
 		//check if number is equal, just return entire list
-		if(numberOfTargets == list.size()){
-			return list;
+		if(numberOfTargets == candidates.available){
+			return candidates.all();
 		}
 		
-		//ensure that list has entries before picking
-		if(list.size() > 0){
-			for(int i = 0; i < numberOfTargets; i++){
-				tempTarget = list.get(random.nextInt(list.size()));
-				while(deliveredRandoms.contains(tempTarget)){
-					tempTarget = list.get(random.nextInt(list.size()));
-				}
-				deliveredRandoms.add(tempTarget);
-			}
-		}
-		return deliveredRandoms;
+		return candidates.sample(numberOfTargets, null, new PartialShuffle(candidates.size(), PartialShuffle.source(random)));
 	}
 	
 	/**
@@ -803,16 +953,12 @@ public class MTConnector extends MTRuntime {
 		
 		//now, pick random agents from list
 
-		//temporary data structure for target agent
-		String tempTarget;
-		
-		//but check that the list is not empty
-		if(!inclusionList.isEmpty()){
-			for(int i = 0; i < numberOfTargets; i++){
-				tempTarget = inclusionList.get(random.nextInt(inclusionList.size()));
-				while(deliveredRandoms.contains(tempTarget)){
-					tempTarget = inclusionList.get(random.nextInt(inclusionList.size()));
-				}
+		//draw distinct positions (duplicate entries in list are not drawn twice)
+		HashSet<String> drawn = new HashSet<String>();
+		PartialShuffle shuffle = new PartialShuffle(inclusionList.size(), PartialShuffle.source(random));
+		while(deliveredRandoms.size() < numberOfTargets && shuffle.hasNext()){
+			String tempTarget = inclusionList.get(shuffle.next());
+			if(drawn.add(tempTarget)){
 				deliveredRandoms.add(tempTarget);
 			}
 		}
@@ -822,7 +968,9 @@ public class MTConnector extends MTRuntime {
 	/**
 	 * Sends role cast (message to all agents with a given role). If global = true, 
 	 * all connected nodes are contacted as well.
-	 * Deliver is based on role class, not role instance, e.g. all TestRole() instances.
+	 * Deliver is based on role class, not role instance, e.g. all agents playing 
+	 * a TestRole or one of its subclasses. Each agent receives the message once, 
+	 * even if playing multiple roles of the given type.
 	 * @param message Message to be sent
 	 * @param role Role type the message to be sent to
 	 * @param global Indicates if roles on other platforms should be notified
@@ -831,14 +979,14 @@ public class MTConnector extends MTRuntime {
 		if(message.getSender().equals("")){
 			System.err.println(getPlatformPrefix() + "RoleCast needs to be sent via agent.");
 		} else {
-			Iterator<Role> it = roleMap.keySet().iterator();
-			Role tempRole;
+			message = message.toMutable();
 			message.put(roleKeyword, role);
-			while(it.hasNext()){
-				tempRole = it.next();
-				if(tempRole.getClass().equals(role.getClass())){
-					message.setRecipient(roleMap.get(tempRole));
-					send(message);
+			ConcurrentHashMap<String, Integer> agents = roleTypeIndex.get(role.getClass());
+			if(agents != null){
+				//single read-only copy, recipients only receive an envelope with their own name
+				ImmutableMicroMessage base = ImmutableMicroMessage.copyOf(message);
+				for(String agent: agents.keySet()){
+					send(base.withRecipient(agent));
 				}
 			}
 			if(global){
@@ -890,6 +1038,7 @@ public class MTConnector extends MTRuntime {
 	 * 		9, execution error for GenericIntent
 	 * 	   10, not enough agents available for RandomCast (either too many excluded or not enough registered)
 	 * 	   11, invalid quota passed for FuzzyCast (values < 0 or > 1)
+	 * 	   12, message rejected as mailbox of recipient is full
 	 * 
 	 * @param message Message of concern for delivery
 	 * @param messageType Either ERROR_MESSAGE or INFORM_MESSAGE constant
@@ -899,6 +1048,7 @@ public class MTConnector extends MTRuntime {
 	 */
 	public static void notifySender(MicroMessage message, String messageType, int type, boolean print, boolean sendLocally) {
 		//create error MicroMessage for sender ...
+		message = message.toMutable();
 		message.setCustomField(MessageFields.ORIG_RECIPIENT, message.getRecipient());
 		message.setCustomField(MessageFields.ORIG_PERFORMATIVE, message.getPerformative());
 		message.setCustomField(MessageFields.ORIG_CONTENT, message.getContent());
@@ -999,6 +1149,13 @@ public class MTConnector extends MTRuntime {
 				errorMessage.append(message.getRecipient());
 				errorMessage.append(".");
 				break;
+			case 12:
+				errorMessage.append("Mailbox of recipient '");
+				errorMessage.append(message.getCustomField(MessageFields.ORIG_RECIPIENT));
+				errorMessage.append("' is full, message sent by ");
+				errorMessage.append(message.getRecipient());
+				errorMessage.append(" has been rejected.");
+				break;
 		}
 		message.setContent(errorMessage.toString());
 		//... and sending it if still registered.
@@ -1020,8 +1177,179 @@ public class MTConnector extends MTRuntime {
 		}
 	}
 	
-	/** map containing intent classes and according subscribed agents */
-	private static ConcurrentHashMap<Class, LinkedList> registeredIntents = new ConcurrentHashMap<Class, LinkedList>();
+	/** 
+	 * map containing intent classes and according subscribed agents 
+	 * (read lock-free on send path, modifications are serialized via intentLock) 
+	 */
+	private static ConcurrentHashMap<Class<?>, CopyOnWriteArrayList<String>> registeredIntents = new ConcurrentHashMap<Class<?>, CopyOnWriteArrayList<String>>();
+	
+	/** lock serializing modifications of registered intents */
+	private static final Object intentLock = new Object();
+	
+	/**
+	 * Returns the first agent registered for a given intent class.
+	 * @param intentClass Intent class to look up
+	 * @return Name of first registered agent or null if none registered
+	 */
+	private static String getFirstAgentForIntent(Class<?> intentClass){
+		CopyOnWriteArrayList<String> list = registeredIntents.get(intentClass);
+		if(list != null){
+			//list may have been emptied concurrently
+			Object[] agents = list.toArray();
+			if(agents.length > 0){
+				return agents[0].toString();
+			}
+		}
+		return null;
+	}
+	
+	/** dispatch strategies for individual intent classes (overriding the platform default) */
+	private static final ConcurrentHashMap<Class<?>, String> intentDispatchStrategies = new ConcurrentHashMap<Class<?>, String>();
+	
+	/** positions of round-robin dispatch per intent class */
+	private static final ConcurrentHashMap<Class<?>, AtomicInteger> intentDispatchPositions = new ConcurrentHashMap<Class<?>, AtomicInteger>();
+	
+	/**
+	 * Sets the strategy for choosing among the agents registered for a given 
+	 * intent class, overriding the platform default (INTENT_DISPATCH_STRATEGY).
+	 * @param intentClass Intent class
+	 * @param strategy Dispatch strategy (see @IntentDispatchStrategies), null resets to platform default
+	 * @return false if strategy is not supported
+	 */
+	public static boolean setIntentDispatchStrategy(Class<?> intentClass, String strategy){
+		if(strategy == null){
+			intentDispatchStrategies.remove(intentClass);
+			return true;
+		}
+		strategy = strategy.trim().toUpperCase();
+		if(!IntentDispatchStrategies.isValid(strategy)){
+			System.err.println(new StringBuffer(MTRuntime.getPlatformPrefix()).append("Intent dispatch strategy ").append(strategy).append(" is not supported."));
+			return false;
+		}
+		intentDispatchStrategies.put(intentClass, strategy);
+		return true;
+	}
+	
+	/**
+	 * Returns the strategy used for dispatching a given intent class.
+	 * @param intentClass Intent class
+	 * @return dispatch strategy (see @IntentDispatchStrategies)
+	 */
+	public static String getIntentDispatchStrategy(Class<?> intentClass){
+		String strategy = intentDispatchStrategies.get(intentClass);
+		return strategy != null ? strategy : MTRuntime.getIntentDispatchStrategy();
+	}
+	
+	/**
+	 * Selects the recipient for an intent among the registered agents 
+	 * according to the dispatch strategy for the intent class.
+	 * @param intentClass Intent class to look up
+	 * @param message Message to be dispatched
+	 * @return Name of selected agent or null if none registered
+	 */
+	private static String selectAgentForIntent(Class<?> intentClass, MicroMessage message){
+		CopyOnWriteArrayList<String> list = registeredIntents.get(intentClass);
+		if(list == null){
+			return null;
+		}
+		//list may have been emptied concurrently
+		Object[] agents = list.toArray();
+		if(agents.length < 2){
+			return agents.length == 0 ? null : agents[0].toString();
+		}
+		String strategy = getIntentDispatchStrategy(intentClass);
+		if(strategy.equals(IntentDispatchStrategies.ROUND_ROBIN)){
+			return agents[nextDispatchPosition(intentClass, agents.length)].toString();
+		}
+		if(strategy.equals(IntentDispatchStrategies.LEAST_LOADED)){
+			int selected = 0;
+			int minDepth = getMailboxDepth(agents[0].toString());
+			for(int i = 1; i < agents.length && minDepth > 0; i++){
+				int depth = getMailboxDepth(agents[i].toString());
+				if(depth < minDepth){
+					minDepth = depth;
+					selected = i;
+				}
+			}
+			return agents[selected].toString();
+		}
+		if(strategy.equals(IntentDispatchStrategies.TWO_CHOICES)){
+			//seeded draws, from the sender's stream where known (as for randomcasts)
+			PartialShuffle.IntSource random = message.getSender() == null ? 
+					PartialShuffle.source(getRandomNoGenerator()) : 
+					PartialShuffle.source(getRandomNoGenerator(message.getSender()));
+			int first = random.nextInt(agents.length);
+			//second choice distinct from first
+			int second = (first + 1 + random.nextInt(agents.length - 1)) % agents.length;
+			return getMailboxDepth(agents[second].toString()) < getMailboxDepth(agents[first].toString()) ? 
+					agents[second].toString() : agents[first].toString();
+		}
+		if(strategy.equals(IntentDispatchStrategies.CONVERSATION_AFFINE)){
+			String key = message.containsConversationID() ? message.getConversationID() : message.getSender();
+			if(key == null){
+				return agents[nextDispatchPosition(intentClass, agents.length)].toString();
+			}
+			//rendezvous hashing: only conversations of departing agents move on registration changes
+			int selected = 0;
+			long maxWeight = Long.MIN_VALUE;
+			for(int i = 0; i < agents.length; i++){
+				long weight = mix(((long)key.hashCode() << 32) ^ (agents[i].hashCode() & 0xffffffffL));
+				if(weight > maxWeight){
+					maxWeight = weight;
+					selected = i;
+				}
+			}
+			return agents[selected].toString();
+		}
+		return agents[0].toString();
+	}
+	
+	private static int nextDispatchPosition(Class<?> intentClass, int numberOfAgents){
+		AtomicInteger position = intentDispatchPositions.get(intentClass);
+		if(position == null){
+			AtomicInteger newPosition = new AtomicInteger();
+			position = intentDispatchPositions.putIfAbsent(intentClass, newPosition);
+			if(position == null){
+				position = newPosition;
+			}
+		}
+		return (position.getAndIncrement() & Integer.MAX_VALUE) % numberOfAgents;
+	}
+	
+	/**
+	 * Returns the number of undelivered messages for a local agent.
+	 * @param agentName Agent name
+	 * @return mailbox depth or Integer.MAX_VALUE if agent is not registered
+	 */
+	private static int getMailboxDepth(String agentName){
+		AbstractMicroFiber fiber = MTRuntime.getRegisteredAgent(agentName);
+		return fiber == null ? Integer.MAX_VALUE : fiber.getMailboxLimit().getSize();
+	}
+	
+	/** 64-bit finalizer of MurmurHash3 */
+	private static long mix(long value){
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb93e87aa34d3L;
+		value ^= value >>> 33;
+		return value;
+	}
+	
+	/**
+	 * Starts the generic intent processor unless started by a concurrent sender.
+	 * @return Name of agent processing generic intents
+	 */
+	private static String startGenericIntentProcessor(){
+		synchronized(intentLock){
+			String processor = getFirstAgentForIntent(GenericIntentInterface.class);
+			if(processor == null){
+				SystemAgentLoader.newAgent(new GenericIntentProcessor(), GENERIC_INTENT_PROCESSOR_NAME);
+				processor = getFirstAgentForIntent(GenericIntentInterface.class);
+			}
+			return processor;
+		}
+	}
 	
 	/**
 	 * Adds an applicable intent for an agent
@@ -1029,15 +1357,14 @@ public class MTConnector extends MTRuntime {
 	 * @param intentClass Intent class to register
 	 * @return Boolean indicating successful registration of intent
 	 */
-	protected static boolean addApplicableIntent(String agentName, Class intentClass){
-		if(registeredIntents.containsKey(intentClass)){
-			LinkedList<String> list = registeredIntents.get(intentClass);
+	protected static boolean addApplicableIntent(String agentName, Class<?> intentClass){
+		synchronized(intentLock){
+			CopyOnWriteArrayList<String> list = registeredIntents.get(intentClass);
+			if(list == null){
+				list = new CopyOnWriteArrayList<String>();
+				registeredIntents.put(intentClass, list);
+			}
 			return list.add(agentName);
-		} else {
-			LinkedList<String> list = new LinkedList<String>();
-			boolean success = list.add(agentName);
-			registeredIntents.put(intentClass, list);
-			return success;
 		}
 	}
 	
@@ -1047,18 +1374,19 @@ public class MTConnector extends MTRuntime {
 	 * @param intentClass Intent class to unregister
 	 * @return Boolean indicating success of removal
 	 */
-	protected static boolean removeApplicableIntent(String agentName, Class intentClass){
-		if(registeredIntents.containsKey(intentClass)){
-			LinkedList<String> list = registeredIntents.get(intentClass);
-			boolean success = list.remove(agentName);
-			if(list.isEmpty()){
-				registeredIntents.remove(intentClass);
+	protected static boolean removeApplicableIntent(String agentName, Class<?> intentClass){
+		synchronized(intentLock){
+			CopyOnWriteArrayList<String> list = registeredIntents.get(intentClass);
+			if(list != null){
+				boolean success = list.remove(agentName);
+				if(list.isEmpty()){
+					registeredIntents.remove(intentClass);
+				}
+				return success; 
 			}
-			return success; 
-		} else {
-			System.err.println(new StringBuffer(MTRuntime.getPlatformPrefix()).append("Removal of applicable intent ").append(intentClass).append(" for agent ").append(agentName).append(" failed."));
-			return false;
 		}
+		System.err.println(new StringBuffer(MTRuntime.getPlatformPrefix()).append("Removal of applicable intent ").append(intentClass).append(" for agent ").append(agentName).append(" failed."));
+		return false;
 	}
 	
 	/**
@@ -1066,16 +1394,17 @@ public class MTConnector extends MTRuntime {
 	 * @param agentName Agent whose intents should be deregistered
 	 */
 	protected static void clearApplicableIntents(String agentName){
-		Iterator<Class> it = registeredIntents.keySet().iterator();
-		while(it.hasNext()){
-			Class itClass = it.next();
-			LinkedList<String> list = registeredIntents.get(itClass);
-			while(list.contains(agentName)){
-				list.remove(agentName);
-			}
-			if(list.isEmpty()){
-				registeredIntents.remove(itClass);
-				it = registeredIntents.keySet().iterator();
+		synchronized(intentLock){
+			Iterator<Class<?>> it = registeredIntents.keySet().iterator();
+			while(it.hasNext()){
+				Class<?> itClass = it.next();
+				CopyOnWriteArrayList<String> list = registeredIntents.get(itClass);
+				while(list.remove(agentName)){
+					//remove all occurrences
+				}
+				if(list.isEmpty()){
+					it.remove();
+				}
 			}
 		}
 	}
@@ -1085,18 +1414,21 @@ public class MTConnector extends MTRuntime {
 	 */
 	public static void printApplicableIntents(){
 		StringBuffer buf = new StringBuffer();
-		Iterator<Class> it = registeredIntents.keySet().iterator();
+		Iterator<Class<?>> it = registeredIntents.keySet().iterator();
 		Iterator<String> innerIt;
 		buf.append(MTRuntime.LINE_DELIMITER).append("Intent List:");
 		if(registeredIntents.isEmpty()){
 			buf.append(" empty");
 		} else {
 			while(it.hasNext()){
-				Class itClass = it.next();
+				Class<?> itClass = it.next();
 				buf.append(MTRuntime.LINE_DELIMITER).append(" Intent: ");
 				buf.append(itClass.getName());
 				buf.append(MTRuntime.LINE_DELIMITER).append("  Registered Agents:");
-				LinkedList list = registeredIntents.get(itClass);
+				CopyOnWriteArrayList<String> list = registeredIntents.get(itClass);
+				if(list == null){
+					continue;
+				}
 				innerIt = list.iterator();
 				while(innerIt.hasNext()){
 					buf.append(MTRuntime.LINE_DELIMITER).append("   - ");
@@ -1108,29 +1440,99 @@ public class MTConnector extends MTRuntime {
 			.append("Applicable intents: ").append(buf.toString()));	
 	}
 	
-	private static HashMap<Class, LinkedList<String>> eventSubscriptions = new HashMap<Class, LinkedList<String>>();
+	/** 
+	 * map containing event classes and subscribed agents 
+	 * (read lock-free on send path, modifications are synchronized) 
+	 */
+	private static ConcurrentHashMap<Class<?>, CopyOnWriteArrayList<String>> eventSubscriptions = new ConcurrentHashMap<Class<?>, CopyOnWriteArrayList<String>>();
+	
+	/**
+	 * Subscribers per raised (concrete) event class, including subscribers to any 
+	 * of its superclasses and interfaces. Entries are built upon first raise and 
+	 * removed when subscriptions to one of the class' supertypes change.
+	 */
+	private static final ConcurrentHashMap<Class<?>, String[]> eventDispatchIndex = new ConcurrentHashMap<Class<?>, String[]>();
+	
+	private static final String[] NO_SUBSCRIBERS = new String[0];
+	
+	/**
+	 * Returns the agents subscribed to a given event class or any of its 
+	 * superclasses and interfaces (each agent only once).
+	 * @param eventClass Class of raised event
+	 * @return subscribers (must not be modified)
+	 */
+	public static String[] getEventSubscribers(Class<?> eventClass){
+		String[] subscribers = eventDispatchIndex.get(eventClass);
+		if(subscribers == null){
+			//built under the subscription lock, so that no concurrent change is missed
+			synchronized(MTConnector.class){
+				subscribers = eventDispatchIndex.get(eventClass);
+				if(subscribers == null){
+					subscribers = collectEventSubscribers(eventClass);
+					eventDispatchIndex.put(eventClass, subscribers);
+				}
+			}
+		}
+		return subscribers;
+	}
+	
+	private static String[] collectEventSubscribers(Class<?> eventClass){
+		if(eventSubscriptions.isEmpty()){
+			return NO_SUBSCRIBERS;
+		}
+		LinkedHashSet<String> subscribers = new LinkedHashSet<String>();
+		for(Entry<Class<?>, CopyOnWriteArrayList<String>> entry: eventSubscriptions.entrySet()){
+			if(entry.getKey().isAssignableFrom(eventClass)){
+				subscribers.addAll(entry.getValue());
+			}
+		}
+		return subscribers.isEmpty() ? NO_SUBSCRIBERS : subscribers.toArray(new String[subscribers.size()]);
+	}
+	
+	/**
+	 * Removes dispatch entries of all event classes affected by a change 
+	 * of subscriptions to a given event type. Must be called while holding 
+	 * the subscription lock.
+	 * @param eventClass Event type whose subscriptions changed
+	 */
+	private static void invalidateEventDispatchIndex(Class<?> eventClass){
+		Iterator<Class<?>> it = eventDispatchIndex.keySet().iterator();
+		while(it.hasNext()){
+			if(eventClass.isAssignableFrom(it.next())){
+				it.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Indicates if agents can subscribe to a given type, i.e. Event 
+	 * and its subclasses (at any depth) as well as interfaces.
+	 * @param eventClass Type to check
+	 * @return true if type can be subscribed to
+	 */
+	private static boolean isSubscribableEventType(Class<?> eventClass){
+		return Event.class.isAssignableFrom(eventClass) || eventClass.isInterface();
+	}
 	
 	/**
-	 * Subscribes an agent to an event (class).
+	 * Subscribes an agent to an event (class). The agent receives events of 
+	 * the given class and all its subclasses (or implementing classes if the 
+	 * given type is an interface).
 	 * @param eventClass Event type to subscribe to 
 	 * @param agent Subscribing agent
 	 * @return Boolean indicating success of subscription
 	 */
-	public synchronized static boolean subscribeToEvent(Class eventClass, String agent){
-		if(eventClass.getSuperclass().equals(Event.class)){
-			if(eventSubscriptions.containsKey(eventClass)){
-				LinkedList<String> list = eventSubscriptions.get(eventClass);
-				if(list.contains(agent)){
-					return true;
-				} else {
-					return list.add(agent);
-				}
-			} else {
-				LinkedList<String> list = new LinkedList<String>();
-				boolean success = list.add(agent);
+	public synchronized static boolean subscribeToEvent(Class<?> eventClass, String agent){
+		if(isSubscribableEventType(eventClass)){
+			CopyOnWriteArrayList<String> list = eventSubscriptions.get(eventClass);
+			if(list == null){
+				list = new CopyOnWriteArrayList<String>();
 				eventSubscriptions.put(eventClass, list);
-				return success;
 			}
+			if(list.addIfAbsent(agent)){
+				invalidateEventDispatchIndex(eventClass);
+			}
+			return true;
 		} else {
 			System.err.println(new StringBuffer(MTRuntime.getPlatformPrefix()).append("Agent ")
 					.append(agent).append(" tried to subscribe to non-Event class ").append(eventClass).toString());
@@ -1144,14 +1546,17 @@ public class MTConnector extends MTRuntime {
 	 * @param agent Unsubscribing agent
 	 * @return Boolean indicating success of unsubscription
 	 */
-	public synchronized static boolean unsubscribeFromEvent(Class eventClass, String agent){
-		if(eventClass.getSuperclass().equals(Event.class)){
-			if(eventSubscriptions.containsKey(eventClass)){
-				LinkedList<String> list = eventSubscriptions.get(eventClass);
+	public synchronized static boolean unsubscribeFromEvent(Class<?> eventClass, String agent){
+		if(isSubscribableEventType(eventClass)){
+			CopyOnWriteArrayList<String> list = eventSubscriptions.get(eventClass);
+			if(list != null){
 				boolean success = list.remove(agent);
 				if(list.isEmpty()){
 					eventSubscriptions.remove(eventClass);
 				}
+				if(success){
+					invalidateEventDispatchIndex(eventClass);
+				}
 				return success; 
 			} else {
 				System.err.println(new StringBuffer(MTRuntime.getPlatformPrefix()).append("Removal of event subscription ").append(eventClass).append(" for agent ").append(agent).append(" failed."));
@@ -1169,24 +1574,14 @@ public class MTConnector extends MTRuntime {
 	 * @param agent Agent whose event subscriptions should be cleared
 	 */
 	public synchronized static void clearEventSubscriptions(String agent){
-		Iterator<Class> it = eventSubscriptions.keySet().iterator();
-		Iterator<String> listIt;
-		Class eventToTest;
+		Iterator<Class<?>> it = eventSubscriptions.keySet().iterator();
 		while(it.hasNext()){
-			eventToTest = it.next();
-			listIt = eventSubscriptions.get(eventToTest).iterator();
-			String candidate;
-			while(listIt.hasNext()){
-				candidate = listIt.next();
-				if(candidate.equals(agent)){
-					eventSubscriptions.get(eventToTest).remove(agent);
-					if(eventSubscriptions.get(eventToTest).size() == 0){
-						eventSubscriptions.remove(eventToTest);
-						it = eventSubscriptions.keySet().iterator();
-						break;
-					} else {
-						listIt = eventSubscriptions.get(eventToTest).iterator();
-					}
+			Class<?> eventClass = it.next();
+			CopyOnWriteArrayList<String> list = eventSubscriptions.get(eventClass);
+			if(list.remove(agent)){
+				invalidateEventDispatchIndex(eventClass);
+				if(list.isEmpty()){
+					it.remove();
 				}
 			}
 		}
@@ -1197,18 +1592,21 @@ public class MTConnector extends MTRuntime {
 	 */
 	public static void printEventSubscriptions(){
 		StringBuffer buf = new StringBuffer();
-		Iterator<Class> it = eventSubscriptions.keySet().iterator();
+		Iterator<Class<?>> it = eventSubscriptions.keySet().iterator();
 		Iterator<String> innerIt;
 		buf.append(MTRuntime.LINE_DELIMITER).append("Event Subscription List:");
 		if(eventSubscriptions.isEmpty()){
 			buf.append(" empty");
 		} else {
 			while(it.hasNext()){
-				Class itClass = it.next();
+				Class<?> itClass = it.next();
 				buf.append(MTRuntime.LINE_DELIMITER).append(" Event: ");
 				buf.append(itClass);
 				buf.append(MTRuntime.LINE_DELIMITER).append("  Subscribing Agents:");
-				LinkedList list = eventSubscriptions.get(itClass);
+				CopyOnWriteArrayList<String> list = eventSubscriptions.get(itClass);
+				if(list == null){
+					continue;
+				}
 				innerIt = list.iterator();
 				while(innerIt.hasNext()){
 					buf.append(MTRuntime.LINE_DELIMITER).append("   - ");
@@ -1220,8 +1618,106 @@ public class MTConnector extends MTRuntime {
 	}
 	
 	
+	/** 
+	 * platform-wide index of agent names to agent instances, covering all living 
+	 * agents (not only the ones registered with message transport); names are only 
+	 * unique among siblings, so each name maps to all agents holding it (arrays 
+	 * are replaced on change, never modified) 
+	 */
+	private static final ConcurrentHashMap<String, AbstractAgent[]> agentNameIndex = new ConcurrentHashMap<String, AbstractAgent[]>();
+	
+	private static final AbstractAgent[] NO_AGENTS = new AbstractAgent[0];
+	
+	/**
+	 * Adds an agent to the platform-wide name index.
+	 * @param agent agent to be indexed
+	 */
+	protected static void indexAgentName(AbstractAgent agent){
+		final String name = agent.getAgentName();
+		while(true){
+			final AbstractAgent[] current = agentNameIndex.get(name);
+			if(current == null){
+				if(agentNameIndex.putIfAbsent(name, new AbstractAgent[]{agent}) == null){
+					return;
+				}
+			} else {
+				for(int i = 0; i < current.length; i++){
+					if(current[i] == agent){
+						return;
+					}
+				}
+				final AbstractAgent[] updated = new AbstractAgent[current.length + 1];
+				System.arraycopy(current, 0, updated, 0, current.length);
+				updated[current.length] = agent;
+				if(agentNameIndex.replace(name, current, updated)){
+					return;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Removes an agent from the platform-wide name index.
+	 * @param agent agent to be removed
+	 */
+	protected static void removeAgentNameFromIndex(AbstractAgent agent){
+		final String name = agent.getAgentName();
+		while(true){
+			final AbstractAgent[] current = agentNameIndex.get(name);
+			if(current == null){
+				return;
+			}
+			int index = -1;
+			for(int i = 0; i < current.length; i++){
+				if(current[i] == agent){
+					index = i;
+					break;
+				}
+			}
+			if(index == -1){
+				return;
+			}
+			if(current.length == 1){
+				if(agentNameIndex.remove(name, current)){
+					return;
+				}
+			} else {
+				final AbstractAgent[] updated = new AbstractAgent[current.length - 1];
+				System.arraycopy(current, 0, updated, 0, index);
+				System.arraycopy(current, index + 1, updated, index, updated.length - index);
+				if(agentNameIndex.replace(name, current, updated)){
+					return;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns all living agents holding the given name, independent of 
+	 * their position in the hierarchy or their message transport registration.
+	 * @param agentName agent name
+	 * @return agent instances in order of indexing (array must not be modified)
+	 */
+	public static AbstractAgent[] getIndexedAgents(String agentName){
+		final AbstractAgent[] agents = agentNameIndex.get(agentName);
+		return agents == null ? NO_AGENTS : agents;
+	}
+	
 	/** Data container handling the association of role with agent name */
-	private static HashMap<Role, String> roleMap = new HashMap<Role, String>();
+	private static ConcurrentHashMap<Role, String> roleMap = new ConcurrentHashMap<Role, String>();
+	
+	/** 
+	 * index of role types (role classes, their superclasses and interfaces) and 
+	 * agents playing them, along with the number of matching roles per agent 
+	 * (read lock-free on rolecast, modifications are serialized via roleLock)
+	 */
+	private static final ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, Integer>> roleTypeIndex = new ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, Integer>>();
+	
+	/** roles registered per agent, used to clear the index upon unregistration */
+	private static final ConcurrentHashMap<String, ArrayList<Role>> rolesByAgent = new ConcurrentHashMap<String, ArrayList<Role>>();
+	
+	/** lock serializing modifications of role registrations */
+	private static final Object roleLock = new Object();
 	
 	/**
 	 * registers role and associates it with existing agent. Attention: Goals are added
@@ -1230,7 +1726,25 @@ public class MTConnector extends MTRuntime {
 	 * @param role role to associate
 	 */
 	protected static void registerRole(String agent, Role role){
-		roleMap.put(role, agent);
+		synchronized(roleLock){
+			roleMap.put(role, agent);
+			ArrayList<Role> roles = rolesByAgent.get(agent);
+			if(roles == null){
+				roles = new ArrayList<Role>();
+				rolesByAgent.put(agent, roles);
+			}
+			roles.add(role);
+			Class<?>[] types = TypeHierarchy.getTypes(role.getClass());
+			for(int i = 0; i < types.length; i++){
+				ConcurrentHashMap<String, Integer> agents = roleTypeIndex.get(types[i]);
+				if(agents == null){
+					agents = new ConcurrentHashMap<String, Integer>();
+					roleTypeIndex.put(types[i], agents);
+				}
+				Integer count = agents.get(agent);
+				agents.put(agent, count == null ? 1 : count + 1);
+			}
+		}
 	}
 	
 	/**
@@ -1239,9 +1753,68 @@ public class MTConnector extends MTRuntime {
 	 * @param role Role instance
 	 */
 	protected static void unregisterRole(String agent, Role role){
-		if(roleMap.containsKey(role) && roleMap.get(role).equals(agent)){
-			roleMap.remove(role);
+		synchronized(roleLock){
+			roleMap.remove(role, agent);
+			ArrayList<Role> roles = rolesByAgent.get(agent);
+			if(roles != null && roles.remove(role)){
+				if(roles.isEmpty()){
+					rolesByAgent.remove(agent);
+				}
+				removeFromRoleTypeIndex(agent, role);
+			}
+		}
+	}
+	
+	/**
+	 * Removes all role registrations of an agent.
+	 * @param agent Agent name
+	 */
+	protected static void clearRoles(String agent){
+		synchronized(roleLock){
+			ArrayList<Role> roles = rolesByAgent.remove(agent);
+			if(roles != null){
+				for(int i = 0; i < roles.size(); i++){
+					roleMap.remove(roles.get(i), agent);
+					removeFromRoleTypeIndex(agent, roles.get(i));
+				}
+			}
+		}
+	}
+	
+	private static void removeFromRoleTypeIndex(String agent, Role role){
+		Class<?>[] types = TypeHierarchy.getTypes(role.getClass());
+		for(int i = 0; i < types.length; i++){
+			ConcurrentHashMap<String, Integer> agents = roleTypeIndex.get(types[i]);
+			if(agents == null){
+				continue;
+			}
+			Integer count = agents.get(agent);
+			if(count == null){
+				continue;
+			}
+			if(count > 1){
+				agents.put(agent, count - 1);
+			} else {
+				agents.remove(agent);
+				if(agents.isEmpty()){
+					roleTypeIndex.remove(types[i]);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns the names of all local agents playing a role of a given type 
+	 * (including subclasses and implementations of it).
+	 * @param roleType Role class or interface
+	 * @return agent names
+	 */
+	public static String[] getAgentsPlayingRole(Class<?> roleType){
+		ConcurrentHashMap<String, Integer> agents = roleTypeIndex.get(roleType);
+		if(agents == null){
+			return new String[0];
 		}
+		return agents.keySet().toArray(new String[0]);
 	}
 	
 	/**
@@ -1304,7 +1877,7 @@ public class MTConnector extends MTRuntime {
 				check = false;
 				System.err.println(new StringBuffer(MTRuntime.getPlatformPrefix()).append("Not all event subscriptions have been unloaded."));
 			}
-			if(getInternalMessagePassingFramework().equals(MessagePassingFrameworks.MICRO_FIBER)){
+			if(usesMicroFiberMailboxes()){
 				if(!allMicroFiberMessagesDelivered()){
 					check = false;
 					System.err.println(new StringBuffer(MTRuntime.getPlatformPrefix()).append("Not all message have been delivered yet."));
@@ -37,6 +37,7 @@ public abstract class MessageFilter extends DefaultSocialRole {
 	
 	private MicroMessage pattern = null;
 	private boolean passToNonMessageFilters = true;
+	private boolean notifyOnMatchFail = true;
 	
 	@Override
 	protected void initialize() {
@@ -49,6 +50,7 @@ public abstract class MessageFilter extends DefaultSocialRole {
 	protected void release(){
 		((AbstractAgent)getAgent()).semaphore.acquire();
 		((AbstractAgent)getAgent()).getMessageFilterRoles().remove(this);
+		((AbstractAgent)getAgent()).invalidateMessageFilterIndex();
 		if(((AbstractAgent)getAgent()).getMessageFilterRoles().isEmpty()){
 			((AbstractAgent)getAgent()).messageFilterRolesRegistered = false;
 		}
@@ -75,11 +77,13 @@ public abstract class MessageFilter extends DefaultSocialRole {
 	}
 
 	/**
-	 * Sets MessageFilter pattern.
+	 * Sets MessageFilter pattern. Patterns are compiled for matching, so
+	 * changes to a pattern need to be applied by setting it again.
 	 * @param message MicroMessage instance serving as pattern
 	 */
 	public void setPattern(MicroMessage message){
 		pattern = message;
+		MessageFilterIndex.invalidate();
 	}
 	
 	/**
@@ -99,6 +103,7 @@ public abstract class MessageFilter extends DefaultSocialRole {
 	 */
 	public void allowProcessingByNonMessageFilters(boolean allow){
 		passToNonMessageFilters = allow;
+		MessageFilterIndex.invalidate();
 	}
 	
 	/**
@@ -109,6 +114,27 @@ public abstract class MessageFilter extends DefaultSocialRole {
 	public boolean processingByNonMessageFiltersAllowed(){
 		return passToNonMessageFilters;
 	}
+	
+	/**
+	 * Defines if onMatchFail() is called for messages not matching the pattern. 
+	 * If set to false the MessageFilter is only addressed with messages that 
+	 * match its pattern, which saves the delivery to filters not interested 
+	 * in failed matches.
+	 * (Default: true)
+	 * @param notify Boolean indicating if failed matches are to be notified
+	 */
+	public void notifyOnMatchFail(boolean notify){
+		notifyOnMatchFail = notify;
+		MessageFilterIndex.invalidate();
+	}
+	
+	/**
+	 * Indicates if onMatchFail() is called for messages not matching the pattern.
+	 * @return
+	 */
+	public boolean notificationOnMatchFailEnabled(){
+		return notifyOnMatchFail;
+	}
 
 	/**
 	 * is called upon pattern match in MessageFilter
@@ -0,0 +1,376 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compiled form of a set of message filters. Filters using the default 
+ * pattern comparison (DefaultMessageFilter) are indexed by the value of 
+ * their most selective pattern field (sender, intent, performative, event, 
+ * else any other non-wildcard field), so a message is only compared against 
+ * the filters whose discriminating value it carries. Filters with custom 
+ * validation or wildcard-only patterns are evaluated for every message. 
+ * Filters overriding handleMessage() are not matched here but receive 
+ * every message via handleMessage(), as without compilation.
+ * <br>
+ * Instances are immutable snapshots and are rebuilt upon changes of the 
+ * filter set, patterns or filter settings (see invalidate()).
+ */
+final class MessageFilterIndex {
+
+	/** header fields preferred for discrimination (in order of preference) */
+	private static final String[] DISCRIMINATING_FIELDS = new String[]{
+		MicroMessage.MSG_PARAM_SENDER, MicroMessage.MSG_PARAM_INTENT, 
+		MicroMessage.MSG_PARAM_PERFORMATIVE, MicroMessage.MSG_PARAM_EVENT};
+	
+	/** revision of filter patterns and settings, compiled indexes of older revisions are rebuilt */
+	private static final AtomicInteger revision = new AtomicInteger();
+	
+	/** indicates per filter class if it relies on the default pattern comparison */
+	private static final ConcurrentHashMap<Class<?>, Boolean> defaultValidation = new ConcurrentHashMap<Class<?>, Boolean>();
+	
+	/** indicates per filter class if it relies on the message handling of MessageFilter */
+	private static final ConcurrentHashMap<Class<?>, Boolean> defaultHandling = new ConcurrentHashMap<Class<?>, Boolean>();
+	
+	private static final int[] NONE = new int[0];
+	
+	/** filter set this index has been compiled from (identity) */
+	private final Object source;
+	private final int compiledRevision;
+	private final MessageFilter[] filters;
+	private final boolean passThrough;
+	/** discriminating fields and the according buckets of filter positions per expected value */
+	private final String[] keys;
+	private final HashMap<Object, int[]>[] buckets;
+	/** positions of filters to be evaluated for every message */
+	private final int[] unconditional;
+	/** positions of filters addressed independent of matches (notified about failed matches or custom handling) */
+	private final int[] alwaysAddressed;
+	/** indicates per position if the filter overrides handleMessage() */
+	private final boolean[] customHandling;
+	/** compiled patterns (null for filters with custom validation) */
+	private final String[][] patternFields;
+	private final Object[][] patternValues;
+	
+	/**
+	 * Compiles the given message filters.
+	 * @param source filter set the index is compiled from (used for identity checks only)
+	 * @param filterRoles message filter roles in order of registration
+	 */
+	MessageFilterIndex(final Object source, final Object[] filterRoles){
+		this.compiledRevision = revision.get();
+		this.source = source;
+		this.filters = new MessageFilter[filterRoles.length];
+		this.patternFields = new String[filterRoles.length][];
+		this.patternValues = new Object[filterRoles.length][];
+		this.customHandling = new boolean[filterRoles.length];
+		boolean allowed = true;
+		final ArrayList<String> keyList = new ArrayList<String>(4);
+		final ArrayList<HashMap<Object, int[]>> bucketList = new ArrayList<HashMap<Object, int[]>>(4);
+		int[] always = new int[filterRoles.length];
+		int alwaysCount = 0;
+		int[] notified = new int[filterRoles.length];
+		int notifiedCount = 0;
+		for(int i = 0; i < filterRoles.length; i++){
+			final MessageFilter filter = (MessageFilter)filterRoles[i];
+			filters[i] = filter;
+			if(allowed){
+				allowed = filter.processingByNonMessageFiltersAllowed();
+			}
+			if(!usesDefaultHandling(filter.getClass())){
+				customHandling[i] = true;
+				notified[notifiedCount++] = i;
+				continue;
+			}
+			if(filter.notificationOnMatchFailEnabled()){
+				notified[notifiedCount++] = i;
+			}
+			final MicroMessage pattern = filter.getPattern();
+			if(pattern == null || !usesDefaultValidation(filter.getClass())){
+				always[alwaysCount++] = i;
+				continue;
+			}
+			final String key = compilePattern(i, pattern);
+			if(key == null){
+				always[alwaysCount++] = i;
+			} else {
+				int k = keyList.indexOf(key);
+				if(k == -1){
+					keyList.add(key);
+					bucketList.add(new HashMap<Object, int[]>());
+					k = keyList.size() - 1;
+				}
+				final Object value = pattern.get(key);
+				final int[] bucket = bucketList.get(k).get(value);
+				bucketList.get(k).put(value, append(bucket, i));
+			}
+		}
+		this.passThrough = allowed;
+		this.keys = keyList.toArray(new String[keyList.size()]);
+		//generic array creation; entries are only added from bucketList
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		final HashMap<Object, int[]>[] compiledBuckets = bucketList.toArray(new HashMap[bucketList.size()]);
+		this.buckets = compiledBuckets;
+		this.unconditional = Arrays.copyOf(always, alwaysCount);
+		this.alwaysAddressed = Arrays.copyOf(notified, notifiedCount);
+	}
+	
+	/**
+	 * Flattens a filter pattern into field and value arrays and 
+	 * returns the most selective non-wildcard field (or null if none).
+	 */
+	private String compilePattern(final int position, final MicroMessage pattern){
+		final String[] fields = new String[pattern.size()];
+		final Object[] values = new Object[pattern.size()];
+		String key = null;
+		int n = 0;
+		final Iterator<String> it = pattern.keySet().iterator();
+		while(it.hasNext()){
+			fields[n] = it.next();
+			values[n] = pattern.get(fields[n]);
+			if(key == null && values[n] != null){
+				key = fields[n];
+			}
+			n++;
+		}
+		for(int i = 0; i < DISCRIMINATING_FIELDS.length; i++){
+			if(pattern.get(DISCRIMINATING_FIELDS[i]) != null){
+				key = DISCRIMINATING_FIELDS[i];
+				break;
+			}
+		}
+		patternFields[position] = fields;
+		patternValues[position] = values;
+		return key;
+	}
+	
+	/**
+	 * Indicates if the given filter class relies on the pattern comparison 
+	 * of DefaultMessageFilter (i.e. does not override validateMessage()).
+	 */
+	private static boolean usesDefaultValidation(final Class<?> filterClass){
+		Boolean result = defaultValidation.get(filterClass);
+		if(result == null){
+			result = Boolean.FALSE;
+			if(DefaultMessageFilter.class.isAssignableFrom(filterClass)){
+				try {
+					result = filterClass.getMethod("validateMessage", MicroMessage.class, MicroMessage.class)
+							.getDeclaringClass().equals(DefaultMessageFilter.class);
+				} catch (NoSuchMethodException e) {
+					result = Boolean.FALSE;
+				}
+			}
+			defaultValidation.put(filterClass, result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Indicates if the given filter class relies on the message handling 
+	 * of MessageFilter (i.e. does not override handleMessage()).
+	 */
+	private static boolean usesDefaultHandling(final Class<?> filterClass){
+		Boolean result = defaultHandling.get(filterClass);
+		if(result == null){
+			try {
+				result = filterClass.getMethod("handleMessage", MicroMessage.class)
+						.getDeclaringClass().equals(MessageFilter.class);
+			} catch (NoSuchMethodException e) {
+				result = Boolean.FALSE;
+			}
+			defaultHandling.put(filterClass, result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Invalidates all compiled indexes, e.g. upon change of filter patterns or settings.
+	 */
+	static void invalidate(){
+		revision.incrementAndGet();
+	}
+	
+	/**
+	 * Indicates if this index still reflects the given filter set.
+	 * @param currentSource filter set the index is expected to be compiled from
+	 * @return true if index can be reused
+	 */
+	boolean isCurrent(final Object currentSource){
+		return source == currentSource && compiledRevision == revision.get();
+	}
+	
+	/**
+	 * Returns the number of compiled filters.
+	 */
+	int size(){
+		return filters.length;
+	}
+	
+	/**
+	 * Returns the filter at the given position.
+	 */
+	MessageFilter getFilter(final int position){
+		return filters[position];
+	}
+	
+	/**
+	 * Indicates if messages may be processed by non-MessageFilter roles, 
+	 * i.e. all compiled filters allow it.
+	 */
+	boolean allowsPassThrough(){
+		return passThrough;
+	}
+	
+	/**
+	 * Returns the positions of all filters matching the given message in 
+	 * order of registration. Only candidate filters are compared.
+	 * @param message message to be checked
+	 * @return sorted array of filter positions
+	 */
+	int[] match(final MicroMessage message){
+		int[] found = NONE;
+		int count = 0;
+		for(int k = 0; k < keys.length; k++){
+			final Object value = message.get(keys[k]);
+			if(value != null){
+				final int[] bucket = buckets[k].get(value);
+				if(bucket != null){
+					for(int i = 0; i < bucket.length; i++){
+						if(matches(bucket[i], message)){
+							found = add(found, count++, bucket[i]);
+						}
+					}
+				}
+			}
+		}
+		for(int i = 0; i < unconditional.length; i++){
+			if(matches(unconditional[i], message)){
+				found = add(found, count++, unconditional[i]);
+			}
+		}
+		if(count < found.length){
+			found = Arrays.copyOf(found, count);
+		}
+		Arrays.sort(found);
+		return found;
+	}
+	
+	/**
+	 * Returns the positions of all filters to be addressed with the given 
+	 * message, i.e. the matching filters, the ones notified on failed matches 
+	 * and the ones with custom message handling.
+	 * @param matched sorted positions of matching filters (see match())
+	 * @return sorted array of filter positions
+	 */
+	int[] addressed(final int[] matched){
+		if(alwaysAddressed.length == 0){
+			return matched;
+		}
+		final int[] merged = new int[matched.length + alwaysAddressed.length];
+		int i = 0, j = 0, n = 0;
+		while(i < matched.length || j < alwaysAddressed.length){
+			if(j == alwaysAddressed.length || (i < matched.length && matched[i] < alwaysAddressed[j])){
+				merged[n++] = matched[i++];
+			} else {
+				if(i < matched.length && matched[i] == alwaysAddressed[j]){
+					i++;
+				}
+				merged[n++] = alwaysAddressed[j++];
+			}
+		}
+		return n == merged.length ? merged : Arrays.copyOf(merged, n);
+	}
+	
+	/**
+	 * Evaluates the given message and calls onMatchSuccess() on all matching 
+	 * filters and onMatchFail() on all others that are notified about failed 
+	 * matches. Filters with custom message handling receive the message 
+	 * encapsulated for filtering via handleMessage() instead (all in order 
+	 * of registration).
+	 * @param message message to be checked
+	 * @param sender name of the agent applying the filters (sender of encapsulating message)
+	 */
+	void apply(final MicroMessage message, final String sender){
+		final int[] matched = match(message);
+		final int[] addressed = addressed(matched);
+		ImmutableMicroMessage envelope = null;
+		int m = 0;
+		for(int i = 0; i < addressed.length; i++){
+			if(customHandling[addressed[i]]){
+				if(envelope == null){
+					envelope = ImmutableMicroMessage.builder().sender(sender)
+							.customField(MicroMessage.MSG_PARAM_MSG_TO_FILTER, message).build();
+				}
+				filters[addressed[i]].handleMessage(envelope);
+			} else if(m < matched.length && matched[m] == addressed[i]){
+				m++;
+				filters[addressed[i]].onMatchSuccess(message);
+			} else {
+				filters[addressed[i]].onMatchFail(message);
+			}
+		}
+	}
+	
+	private boolean matches(final int position, final MicroMessage message){
+		final String[] fields = patternFields[position];
+		if(fields == null){
+			return filters[position].validateMessage(message, filters[position].getPattern());
+		}
+		final Object[] values = patternValues[position];
+		for(int i = 0; i < fields.length; i++){
+			if(!message.containsKey(fields[i])){
+				return false;
+			}
+			//null is wildcard in message filter pattern
+			if(values[i] != null){
+				final Object actual = message.get(fields[i]);
+				if(actual == null || !actual.equals(values[i])){
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	private static int[] append(final int[] array, final int value){
+		if(array == null){
+			return new int[]{value};
+		}
+		final int[] extended = Arrays.copyOf(array, array.length + 1);
+		extended[array.length] = value;
+		return extended;
+	}
+	
+	private static int[] add(int[] array, final int count, final int value){
+		if(count == array.length){
+			array = Arrays.copyOf(array, Math.max(4, count * 2));
+		}
+		array[count] = value;
+		return array;
+	}
+	
+}
@@ -72,6 +72,12 @@ public class MicroMessage extends Message{
 	public static final String MSG_PARAM_INTENT = "MSG_INTENT";
 	public static final String MSG_PARAM_EVENT = "MSG_EVENT";
 	public static final String MSG_PARAM_MSG_TO_FILTER = "MESSAGE_TO_FILTER";
+	public static final String MSG_PARAM_PRIORITY = "MSG_PRIORITY";
+	
+	/** message priorities for mailboxes with priority lanes (see MAILBOX_PRIORITY_LANES) */
+	public static final int PRIORITY_NORMAL = 0;
+	/** assigns message to the highest lane irrespective of the number of lanes */
+	public static final int PRIORITY_HIGHEST = Integer.MAX_VALUE;
 	
 	
 	/** indicates global validation of all messages on platform */
@@ -88,6 +94,13 @@ public class MicroMessage extends Message{
 	 *  seen as a security risk; micro-agents need to be benevolent;-) */
 	public boolean sendUnchanged = false;
 	
+	/** 
+	 * Local handles of sender and recipient (see MTRuntime.register()), -1 if unresolved. 
+	 * Routing caches only, not part of the message content.
+	 */
+	transient int senderHandle = -1;
+	transient int recipientHandle = -1;
+	
 	/**
 	 * Instantiates a MicroMessage with a given intent.
 	 */
@@ -151,6 +164,32 @@ public class MicroMessage extends Message{
 	 */
 	public synchronized void setRecipient(String agent){
 		this.put(MSG_PARAM_RECIPIENT, agent);	
+		recipientHandle = -1;
+	}
+	
+	/**
+	 * Returns the cached local handle of the recipient.
+	 * @return handle or -1 if not resolved
+	 */
+	public int getRecipientHandle(){
+		return recipientHandle;
+	}
+	
+	/**
+	 * Caches the local handle of the recipient. Invalid handles are 
+	 * detected upon delivery and resolved by name.
+	 * @param handle Recipient handle
+	 */
+	public void setRecipientHandle(int handle){
+		recipientHandle = handle;
+	}
+	
+	/**
+	 * Returns the local handle of the sender (if sent by a local agent).
+	 * @return handle or -1 if unknown
+	 */
+	public int getSenderHandle(){
+		return senderHandle;
 	}
 	
 	/**
@@ -310,7 +349,7 @@ public class MicroMessage extends Message{
 		return false;
 	}
 	
-	private Object objectCheck(Object objectToTest){
+	static Object objectCheck(Object objectToTest){
 		if(objectToTest.getClass().equals(Integer.class)){
 			objectToTest = objectToTest.toString();
 		}
@@ -379,6 +418,80 @@ public class MicroMessage extends Message{
 		}
 	}
 	
+	/**
+	 * Sets the priority used by recipient mailboxes with priority lanes 
+	 * (lane = priority, limited to highest lane). Overrides priorities 
+	 * registered for the contained intent or event (see MTConnector.registerMessagePriority()).
+	 * @param priority Priority (PRIORITY_NORMAL, ..., PRIORITY_HIGHEST)
+	 */
+	public void setPriority(int priority){
+		this.put(MSG_PARAM_PRIORITY, priority);
+	}
+	
+	/**
+	 * Returns the priority set on this message.
+	 * @return priority, PRIORITY_NORMAL if not set
+	 */
+	public int getPriority(){
+		Object priority = this.get(MSG_PARAM_PRIORITY);
+		if(priority == null){
+			return PRIORITY_NORMAL;
+		}
+		return priority instanceof Integer ? (Integer)priority : Integer.parseInt(priority.toString().trim());
+	}
+	
+	public boolean containsPriority(){
+		return this.containsKey(MSG_PARAM_PRIORITY);
+	}
+	
+	/**
+	 * Sets the sender and returns this message. Immutable messages return 
+	 * a copy with the given sender instead.
+	 * @param agent Sender
+	 * @return message with given sender
+	 */
+	public MicroMessage withSender(String agent){
+		setSender(agent);
+		return this;
+	}
+	
+	/**
+	 * Sets sender and sender handle (see withSender(String)). Immutable 
+	 * messages are never modified, but return a copy if the handle differs.
+	 * @param agent Sender
+	 * @param handle Local handle of sender
+	 * @return message with given sender
+	 */
+	public final MicroMessage withSender(String agent, int handle){
+		MicroMessage message = withSender(agent);
+		if(message.senderHandle != handle){
+			if(message == this && isImmutable()){
+				//potentially shared instance
+				message = ((ImmutableMicroMessage)this).copyEnvelope();
+			}
+			message.senderHandle = handle;
+		}
+		return message;
+	}
+	
+	/**
+	 * Returns a modifiable version of this message, i.e. this message 
+	 * itself or a copy if immutable (see @ImmutableMicroMessage).
+	 * @return modifiable message
+	 */
+	public MicroMessage toMutable(){
+		return this;
+	}
+	
+	/**
+	 * Indicates if this message is immutable and can thus be shared 
+	 * between recipients without copying (see @ImmutableMicroMessage).
+	 * @return true if immutable
+	 */
+	public boolean isImmutable(){
+		return false;
+	}
+	
 	/**
 	 * Alternative to put().
 	 * 
@@ -411,6 +524,8 @@ public class MicroMessage extends Message{
 			reply.remove(MSG_PARAM_SENDER_NODE_LOG);
 		} else {
 			reply.setRecipient(this.getSender());
+			//local reply can be routed via sender handle
+			reply.recipientHandle = senderHandle;
 		}
 		//Increment message id if conversation id + message id are present
 		if(this.containsKey(MSG_PARAM_CONV_ID) && this.containsKey(MSG_PARAM_MSG_ID)){
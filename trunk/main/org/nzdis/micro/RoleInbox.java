@@ -0,0 +1,420 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.nzdis.micro.msgvalidator.MicroMessageValidator;
+
+/**
+ * Message queue of a DefaultSocialRole. Messages are enqueued lock-free by 
+ * delivering threads and consumed in FIFO order or selectively (by validator 
+ * or by conversation ID and performative). Selective receive by conversation ID 
+ * or performative is O(1) if the optional index is enabled. Waiting consumers 
+ * block on a condition that is only signalled while consumers are waiting.
+ */
+final class RoleInbox {
+
+	/** queued messages in arrival order (may contain entries already taken via index) */
+	private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<Entry>();
+	/** number of messages not taken yet */
+	private final AtomicInteger size = new AtomicInteger(0);
+	/** (approximate) number of entries taken via index that are still queued */
+	private final AtomicInteger stale = new AtomicInteger(0);
+	/** minimum number of stale entries before the queue is compacted */
+	private static final int COMPACTION_THRESHOLD = 64;
+	
+	/** indexes by conversation ID and performative (null if not enabled) */
+	private volatile KeyIndex conversationIndex = null;
+	private volatile KeyIndex performativeIndex = null;
+	
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition messageArrived = lock.newCondition();
+	/** number of waiting consumers (signalling only necessary if > 0) */
+	private final AtomicInteger waiters = new AtomicInteger(0);
+	
+	/**
+	 * Enables indexing by conversation ID and performative. Only 
+	 * messages enqueued after enabling are indexed.
+	 */
+	void enableIndex(){
+		if(conversationIndex == null){
+			performativeIndex = new KeyIndex();
+			conversationIndex = new KeyIndex();
+		}
+	}
+	
+	/**
+	 * Enqueues a message and wakes up waiting consumers.
+	 * @param message Message
+	 */
+	void add(MicroMessage message){
+		Entry entry = new Entry(message);
+		//counted first, as the entry can be taken via index before being queued
+		size.incrementAndGet();
+		KeyIndex conversations = conversationIndex;
+		if(conversations != null){
+			entry.conversationId = message.getConversationID();
+			entry.performative = message.getPerformative();
+			if(entry.conversationId != null){
+				conversations.add(entry.conversationId, entry);
+			}
+			if(entry.performative != null){
+				performativeIndex.add(entry.performative, entry);
+			}
+		}
+		queue.offer(entry);
+		if(waiters.get() > 0){
+			lock.lock();
+			try{
+				messageArrived.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+	
+	/**
+	 * Removes the first message.
+	 * @return message or null if empty
+	 */
+	MicroMessage poll(){
+		Entry entry;
+		while((entry = queue.poll()) != null){
+			if(take(entry)){
+				return entry.message;
+			}
+			stale.decrementAndGet();
+		}
+		return null;
+	}
+	
+	/**
+	 * Removes the first message complying with the given validator.
+	 * @param validator Validator
+	 * @return message or null if none complies
+	 */
+	MicroMessage poll(MicroMessageValidator validator){
+		Entry entry = find(validator);
+		while(entry != null){
+			if(take(entry)){
+				queue.remove(entry);
+				return entry.message;
+			}
+			entry = find(validator);
+		}
+		return null;
+	}
+	
+	/**
+	 * Removes the first message of a given conversation and/or performative. 
+	 * Uses the index if enabled, else scans the queue.
+	 * @param conversationId Conversation ID (null for any)
+	 * @param performative Performative (null for any)
+	 * @return message or null if none matches
+	 */
+	MicroMessage poll(final String conversationId, final String performative){
+		KeyIndex conversations = conversationIndex;
+		if(conversations == null || (conversationId == null && performative == null)){
+			return poll(new MicroMessageValidator(){
+
+				@Override
+				public boolean validate(MicroMessage message) {
+					return (conversationId == null || conversationId.equals(message.getConversationID()))
+							&& (performative == null || performative.equals(message.getPerformative()));
+				}
+				
+			});
+		}
+		Entry entry;
+		if(conversationId != null){
+			entry = conversations.claim(conversationId, performative);
+		} else {
+			entry = performativeIndex.claim(performative, null);
+		}
+		if(entry == null){
+			return null;
+		}
+		size.decrementAndGet();
+		unindex(entry);
+		//entries taken out of order remain queued until they reach the head or the queue is compacted
+		if(stale.incrementAndGet() > Math.max(COMPACTION_THRESHOLD, size.get())){
+			compact();
+		} else {
+			purgeHead();
+		}
+		return entry.message;
+	}
+	
+	/**
+	 * Returns (without removing) the first message complying with the given validator.
+	 * @param validator Validator
+	 * @return message or null if none complies
+	 */
+	MicroMessage peek(MicroMessageValidator validator){
+		Entry entry = find(validator);
+		return entry == null ? null : entry.message;
+	}
+	
+	/**
+	 * Blocks until poll(validator) returns a message or the timeout elapses.
+	 * @param validator Validator (null for any message)
+	 * @param timeout Timeout in ms
+	 * @param remove Indicates if the message is removed (else only awaited)
+	 * @return message or null if timed out
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	MicroMessage await(MicroMessageValidator validator, long timeout, boolean remove) throws InterruptedException {
+		MicroMessage message = attempt(validator, null, null, remove);
+		if(message != null || timeout <= 0){
+			return message;
+		}
+		return block(validator, null, null, remove, timeout);
+	}
+	
+	/**
+	 * Blocks until poll(conversationId, performative) returns a message or the timeout elapses.
+	 * @param conversationId Conversation ID (null for any)
+	 * @param performative Performative (null for any)
+	 * @param timeout Timeout in ms
+	 * @return message or null if timed out
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	MicroMessage await(String conversationId, String performative, long timeout) throws InterruptedException {
+		MicroMessage message = poll(conversationId, performative);
+		if(message != null || timeout <= 0){
+			return message;
+		}
+		return block(null, conversationId, performative, true, timeout);
+	}
+	
+	int size(){
+		return size.get();
+	}
+	
+	boolean isEmpty(){
+		return size.get() == 0;
+	}
+	
+	@Override
+	public String toString(){
+		StringBuffer buffer = new StringBuffer("[");
+		for(Entry entry: queue){
+			if(!entry.taken.get()){
+				if(buffer.length() > 1){
+					buffer.append(", ");
+				}
+				buffer.append(entry.message);
+			}
+		}
+		return buffer.append("]").toString();
+	}
+	
+	private MicroMessage attempt(MicroMessageValidator validator, String conversationId, String performative, boolean remove){
+		if(validator == null){
+			if(conversationId != null || performative != null){
+				return poll(conversationId, performative);
+			}
+			if(remove){
+				return poll();
+			}
+			Entry entry = find(null);
+			return entry == null ? null : entry.message;
+		}
+		return remove ? poll(validator) : peek(validator);
+	}
+	
+	private MicroMessage block(MicroMessageValidator validator, String conversationId, String performative, 
+			boolean remove, long timeout) throws InterruptedException {
+		long remaining = TimeUnit.MILLISECONDS.toNanos(timeout);
+		//register before checking the queue, so producers signal subsequent arrivals
+		waiters.incrementAndGet();
+		lock.lock();
+		try{
+			while(true){
+				MicroMessage message = attempt(validator, conversationId, performative, remove);
+				if(message != null){
+					return message;
+				}
+				if(remaining <= 0){
+					return null;
+				}
+				remaining = messageArrived.awaitNanos(remaining);
+			}
+		} finally {
+			lock.unlock();
+			waiters.decrementAndGet();
+		}
+	}
+	
+	/**
+	 * Returns the first entry (not taken yet) complying with the validator.
+	 */
+	private Entry find(MicroMessageValidator validator){
+		for(Entry entry: queue){
+			if(!entry.taken.get() && (validator == null || validator.validate(entry.message))){
+				return entry;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Takes an entry dequeued (or found) in the queue and removes it from the indexes.
+	 * @return true if this caller has taken the entry
+	 */
+	private boolean take(Entry entry){
+		if(entry.taken.compareAndSet(false, true)){
+			size.decrementAndGet();
+			unindex(entry);
+			return true;
+		}
+		return false;
+	}
+	
+	private void unindex(Entry entry){
+		KeyIndex conversations = conversationIndex;
+		if(conversations != null){
+			if(entry.conversationId != null){
+				conversations.remove(entry.conversationId, entry);
+			}
+			if(entry.performative != null){
+				performativeIndex.remove(entry.performative, entry);
+			}
+		}
+	}
+	
+	/**
+	 * Removes entries taken via index from the head of the queue.
+	 */
+	private void purgeHead(){
+		Entry head;
+		while((head = queue.peek()) != null && head.taken.get()){
+			if(queue.remove(head)){
+				stale.decrementAndGet();
+			}
+		}
+	}
+	
+	/**
+	 * Removes all entries taken via index from the queue. Only triggered once the 
+	 * number of stale entries exceeds the number of queued messages (amortised O(1)).
+	 */
+	private void compact(){
+		stale.set(0);
+		Iterator<Entry> it = queue.iterator();
+		while(it.hasNext()){
+			if(it.next().taken.get()){
+				it.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Queued message with flag indicating that it has been taken by a consumer.
+	 */
+	private static final class Entry {
+		
+		private final MicroMessage message;
+		private final AtomicBoolean taken = new AtomicBoolean(false);
+		private String conversationId = null;
+		private String performative = null;
+		
+		private Entry(MicroMessage message){
+			this.message = message;
+		}
+	}
+	
+	/**
+	 * Entries (not taken yet) by key in arrival order. Empty key lists are removed.
+	 */
+	private static final class KeyIndex {
+		
+		private final ConcurrentHashMap<String, ArrayDeque<Entry>> entries = new ConcurrentHashMap<String, ArrayDeque<Entry>>();
+		
+		private void add(String key, Entry entry){
+			while(true){
+				ArrayDeque<Entry> list = entries.get(key);
+				if(list == null){
+					list = new ArrayDeque<Entry>(2);
+					list.add(entry);
+					if(entries.putIfAbsent(key, list) == null){
+						return;
+					}
+				} else {
+					synchronized(list){
+						//list may have been removed as empty in the meantime
+						if(entries.get(key) == list){
+							list.add(entry);
+							return;
+						}
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Takes the first entry with the given key (and performative if not null).
+		 */
+		private Entry claim(String key, String performative){
+			ArrayDeque<Entry> list = entries.get(key);
+			if(list == null){
+				return null;
+			}
+			synchronized(list){
+				Iterator<Entry> it = list.iterator();
+				while(it.hasNext()){
+					Entry entry = it.next();
+					if(performative == null || performative.equals(entry.performative)){
+						if(entry.taken.compareAndSet(false, true)){
+							it.remove();
+							if(list.isEmpty()){
+								entries.remove(key, list);
+							}
+							return entry;
+						}
+					}
+				}
+			}
+			return null;
+		}
+		
+		private void remove(String key, Entry entry){
+			ArrayDeque<Entry> list = entries.get(key);
+			if(list != null){
+				synchronized(list){
+					list.remove(entry);
+					if(list.isEmpty()){
+						entries.remove(key, list);
+					}
+				}
+			}
+		}
+	}
+	
+}
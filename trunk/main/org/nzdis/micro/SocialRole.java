@@ -20,6 +20,8 @@
  ******************************************************************************/
 package org.nzdis.micro;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Interface for SocialRole. Can be used as a basis for own implementations.
  * A version with additional wrapper for agent functionality is provided in
@@ -37,4 +39,16 @@ public interface SocialRole extends Role {
 	 */
 	public void handleMessage(final MicroMessage message);
 	
+	/**
+	 * Sends a request and returns the future reply, i.e. the first reply 
+	 * in the request's conversation (see AbstractCommunicator.ask()). The reply 
+	 * is not passed to handleMessage().
+	 * @param message Request
+	 * @param timeout Time in ms after which the future is completed with a TimeoutException
+	 * @return future reply
+	 */
+	public default CompletableFuture<MicroMessage> ask(MicroMessage message, long timeout){
+		return ((AbstractAgent)getAgent()).ask(message, timeout);
+	}
+	
 }
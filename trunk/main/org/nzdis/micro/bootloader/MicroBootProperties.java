@@ -20,6 +20,9 @@
  ******************************************************************************/
 package org.nzdis.micro.bootloader;
 
+import org.nzdis.micro.constants.IntentDispatchStrategies;
+import org.nzdis.micro.constants.LaneDrainingPolicies;
+import org.nzdis.micro.constants.MailboxOverflowPolicies;
 import org.nzdis.micro.constants.OperatingSystems;
 import org.nzdis.micro.constants.PlatformConstants;
 import org.nzdis.micro.constants.PlatformOutputLevels;
@@ -94,15 +97,144 @@ public class MicroBootProperties extends PlatformConstants {
 	 * sets various capabilities for MICRO_FIBER message passing framework, 
 	 * namely number of schedulers for message dispatch and number of 
 	 * worker threads for message processing.
-	 * @param numberOfCoreSchedulers Number of schedulers to be used
+	 * @param numberOfCoreSchedulers Number of schedulers to be used (ignored, 
+	 * 		workers schedule themselves via work stealing)
 	 * @param numberOfCoreExecutors Number of executors to be used for message delivery
+	 * @deprecated Use {@link #setMicroFiberExecutorProperties(Integer, Integer)} instead.
 	 */
+	@Deprecated
 	public static void setExecutorProperties(Integer numberOfCoreSchedulers, Integer numberOfCoreExecutors){
 		platformLoadedCheck();
-		bootProperties.put(NUMBER_OF_SCHEDULERS, numberOfCoreSchedulers.toString());
 		bootProperties.put(NUMBER_OF_WORKERS, numberOfCoreExecutors.toString());
 	}
 	
+	/**
+	 * sets capabilities for MICRO_FIBER message passing framework, namely 
+	 * the number of (work-stealing) worker threads for message processing and 
+	 * the maximal number of messages an agent processes per activation.
+	 * @param numberOfCoreExecutors Number of executors to be used for message delivery
+	 * @param batchSize Maximal number of messages processed per activation of an agent
+	 */
+	public static void setMicroFiberExecutorProperties(Integer numberOfCoreExecutors, Integer batchSize){
+		platformLoadedCheck();
+		bootProperties.put(NUMBER_OF_WORKERS, numberOfCoreExecutors.toString());
+		bootProperties.put(MICRO_FIBER_BATCH_SIZE, batchSize.toString());
+	}
+	
+	/**
+	 * Activates worker affinity for the MICRO_FIBER message passing framework. 
+	 * Each agent is processed on a sticky home worker; agents are periodically 
+	 * re-placed such that heavily communicating agents share a worker while 
+	 * load remains balanced. Default: deactivated (round-robin placement).
+	 * @param activate Activates worker affinity
+	 * @param samplingRate Records about every n-th local message for placement decisions
+	 * @param replacementInterval Interval (in ms) at which agents are re-placed
+	 */
+	public static void setWorkerAffinity(boolean activate, Integer samplingRate, Long replacementInterval){
+		platformLoadedCheck();
+		bootProperties.put(WORKER_AFFINITY, String.valueOf(activate));
+		bootProperties.put(AFFINITY_SAMPLING_RATE, samplingRate.toString());
+		bootProperties.put(AFFINITY_REPLACEMENT_INTERVAL, replacementInterval.toString());
+	}
+	
+	/**
+	 * Sets the number of slots of each worker's ring for the RING_BUFFER 
+	 * message passing framework (rounded up to the next power of two). 
+	 * Senders block while the ring of the recipient's worker is full. 
+	 * Default: 8192.
+	 * @param ringSize Number of slots per ring
+	 */
+	public static void setRingBufferSize(Integer ringSize){
+		platformLoadedCheck();
+		bootProperties.put(RING_BUFFER_SIZE, ringSize.toString());
+	}
+	
+	/**
+	 * Sets capabilities for the JETLANG message passing framework. By default 
+	 * agent fibers run on an unbounded thread pool and each message is delivered 
+	 * individually. A bounded executor limits the number of threads to the number 
+	 * of workers (see {@link #setMicroFiberExecutorProperties(Integer, Integer)}), 
+	 * in which case message handlers should not block. A batch interval greater 
+	 * than 0 collects messages for the given time window and delivers them 
+	 * in a single activation of the agent.
+	 * @param boundedExecutor Indicates if a shared bounded executor is used
+	 * @param batchInterval Time window (in ms) for batched delivery (0: immediate delivery)
+	 */
+	public static void setJetlangExecutorProperties(Boolean boundedExecutor, Integer batchInterval){
+		platformLoadedCheck();
+		bootProperties.put(JETLANG_BOUNDED_EXECUTOR, boundedExecutor);
+		bootProperties.put(JETLANG_BATCH_INTERVAL, batchInterval.toString());
+	}
+	
+	/**
+	 * Sets the default capacity and overflow policy for agent mailboxes 
+	 * (for both MICRO_FIBER and JETLANG). Individual agents can override 
+	 * those settings at runtime. Default: unbounded mailboxes.
+	 * @param capacity Maximal number of undelivered messages per agent (0: unbounded)
+	 * @param overflowPolicy Behaviour on full mailbox (see @MailboxOverflowPolicies)
+	 * @param blockTimeout Maximal time (in ms) a sender is blocked (BLOCK policy), 
+	 * 		afterwards the message is rejected
+	 */
+	public static void setMailboxProperties(Integer capacity, String overflowPolicy, Long blockTimeout){
+		platformLoadedCheck();
+		overflowPolicy = overflowPolicy.trim().toUpperCase();
+		if(MailboxOverflowPolicies.isValid(overflowPolicy)){
+			bootProperties.put(MAILBOX_CAPACITY, capacity.toString());
+			bootProperties.put(MAILBOX_OVERFLOW_POLICY, overflowPolicy);
+			bootProperties.put(MAILBOX_BLOCK_TIMEOUT, blockTimeout.toString());
+		} else {
+			System.err.println("Selected mailbox overflow policy " + overflowPolicy + " is not supported.");
+		}
+	}
+	
+	/**
+	 * Configures priority lanes for agent mailboxes (MICRO_FIBER, VIRTUAL_THREAD and JETLANG). 
+	 * Messages are assigned to lanes based on their priority (see MicroMessage.setPriority() 
+	 * and MTConnector.registerMessagePriority()). Default: single lane (FIFO).
+	 * @param lanes Number of priority lanes (1: no prioritization)
+	 * @param drainingPolicy Order in which lanes are drained (see @LaneDrainingPolicies)
+	 */
+	public static void setMailboxPriorityLanes(Integer lanes, String drainingPolicy){
+		platformLoadedCheck();
+		drainingPolicy = drainingPolicy.trim().toUpperCase();
+		if(LaneDrainingPolicies.isValid(drainingPolicy)){
+			bootProperties.put(MAILBOX_PRIORITY_LANES, lanes.toString());
+			bootProperties.put(MAILBOX_LANE_DRAINING, drainingPolicy);
+		} else {
+			System.err.println("Selected lane draining policy " + drainingPolicy + " is not supported.");
+		}
+	}
+	
+	/**
+	 * Sets the default strategy for choosing a recipient among the agents 
+	 * registered for an intent. Strategies for individual intent classes can be 
+	 * set using MTConnector.setIntentDispatchStrategy(). Default: FIRST.
+	 * @param strategy Dispatch strategy (see @IntentDispatchStrategies)
+	 */
+	public static void setIntentDispatchStrategy(String strategy){
+		platformLoadedCheck();
+		strategy = strategy.trim().toUpperCase();
+		if(IntentDispatchStrategies.isValid(strategy)){
+			bootProperties.put(INTENT_DISPATCH_STRATEGY, strategy);
+		} else {
+			System.err.println("Selected intent dispatch strategy " + strategy + " is not supported.");
+		}
+	}
+	
+	/**
+	 * Configures diagnostics for semaphores used by agents, roles and groups. 
+	 * Default: wait reports after 1000 ms, no hold time measurement, no stack sampling.
+	 * @param waitThreshold Time (in ms) after which waiting threads print their and the owner's stack (0: deactivated)
+	 * @param holdThreshold Time (in ms) after which threads holding a semaphore print their stack on release (0: deactivated)
+	 * @param stackSamplingRate Records the acquiring stack for every n-th acquisition (0: deactivated)
+	 */
+	public static void setSemaphoreDiagnostics(Long waitThreshold, Long holdThreshold, Integer stackSamplingRate){
+		platformLoadedCheck();
+		bootProperties.put(SEMAPHORE_WAIT_THRESHOLD, waitThreshold.toString());
+		bootProperties.put(SEMAPHORE_HOLD_THRESHOLD, holdThreshold.toString());
+		bootProperties.put(SEMAPHORE_STACK_SAMPLING_RATE, stackSamplingRate.toString());
+	}
+	
 	/**
 	 * Activates network support for platform. All network-related functionality
 	 * depends on this setting (network transport, network discovery, heartbeat).
@@ -223,9 +355,13 @@ public class MicroBootProperties extends PlatformConstants {
 	}
 	
 	/**
-	 * Sets the internal message transport system (JETLANG or MICRO_FIBER)
+	 * Sets the internal message transport system (JETLANG, MICRO_FIBER, VIRTUAL_THREAD or RING_BUFFER)
 	 * (see @MessagePassingFrameworks). Defaults to JETLANG. 
 	 * Note: Use MICRO_FIBER for large number of agents for better scalability (e.g. 100+ agents).
+	 * Use VIRTUAL_THREAD for large numbers of agents that block during message handling 
+	 * (requires Java 21+, else falls back to a bounded pool of carrier threads).
+	 * Use RING_BUFFER for low-latency local delivery at high message rates 
+	 * (message handlers should not block).
 	 * @param framework Framework to use for message transport
 	 */
 	public static void setInternalMessageTransport(String framework){
@@ -0,0 +1,50 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.constants;
+
+/**
+ * IntentDispatchStrategies specifies how a recipient is chosen among 
+ * the agents registered for an intent (see INTENT_DISPATCH_STRATEGY).
+ * 
+ */
+public abstract class IntentDispatchStrategies {
+
+	/** always dispatches to the first registered agent */
+	public static final String FIRST = "FIRST";
+	/** rotates among registered agents */
+	public static final String ROUND_ROBIN = "ROUND_ROBIN";
+	/** dispatches to the agent with the fewest undelivered messages */
+	public static final String LEAST_LOADED = "LEAST_LOADED";
+	/** compares the mailbox depth of two randomly chosen agents */
+	public static final String TWO_CHOICES = "TWO_CHOICES";
+	/** dispatches messages of one conversation (or sender) to the same agent */
+	public static final String CONVERSATION_AFFINE = "CONVERSATION_AFFINE";
+	
+	/**
+	 * Indicates if a given strategy is supported.
+	 * @param strategy Strategy name
+	 * @return true if strategy is known
+	 */
+	public static boolean isValid(String strategy){
+		return FIRST.equals(strategy) || ROUND_ROBIN.equals(strategy) || LEAST_LOADED.equals(strategy) 
+			|| TWO_CHOICES.equals(strategy) || CONVERSATION_AFFINE.equals(strategy);
+	}
+}
@@ -0,0 +1,43 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.constants;
+
+/**
+ * LaneDrainingPolicies specifies the order in which messages are taken 
+ * from the priority lanes of agent mailboxes (see MAILBOX_PRIORITY_LANES).
+ * 
+ */
+public abstract class LaneDrainingPolicies {
+	
+	/** always delivers from the highest non-empty lane (lower lanes may starve) */
+	public static final String STRICT = "STRICT";
+	/** serves lanes round-robin, each lane receiving twice the share of the next lower one */
+	public static final String WEIGHTED = "WEIGHTED";
+	
+	/**
+	 * Indicates if a given policy is supported.
+	 * @param policy Policy name
+	 * @return true if policy is known
+	 */
+	public static boolean isValid(String policy){
+		return STRICT.equals(policy) || WEIGHTED.equals(policy);
+	}
+}
@@ -0,0 +1,52 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.constants;
+
+/**
+ * MailboxOverflowPolicies specifies the behaviour of bounded agent mailboxes 
+ * once their capacity is reached.
+ * 
+ */
+public abstract class MailboxOverflowPolicies {
+	
+	/** 
+	 * blocks the sender until capacity is available or the block timeout elapsed (then rejects); 
+	 * senders that would block the thread draining the mailbox (e.g. agents sending to themselves 
+	 * or to agents processed by the same single worker) are rejected immediately 
+	 */
+	public static final String BLOCK = "BLOCK";
+	/** silently drops the message to be delivered */
+	public static final String DROP_NEWEST = "DROP_NEWEST";
+	/** drops the oldest undelivered message in favour of the new one */
+	public static final String DROP_OLDEST = "DROP_OLDEST";
+	/** rejects the message and notifies the sender with an error message */
+	public static final String REJECT = "REJECT";
+	
+	/**
+	 * Indicates if a given policy is supported.
+	 * @param policy Policy name
+	 * @return true if policy is known
+	 */
+	public static boolean isValid(String policy){
+		return BLOCK.equals(policy) || DROP_NEWEST.equals(policy) 
+				|| DROP_OLDEST.equals(policy) || REJECT.equals(policy);
+	}
+}
@@ -31,4 +31,8 @@ public abstract class MessagePassingFrameworks {
 	
 	public static final String MICRO_FIBER = "MICRO_FIBER";
 	public static final String JETLANG = "JETLANG";
+	/** MicroFiber mailboxes drained by virtual threads (carrier thread pool on JVMs without virtual threads) */
+	public static final String VIRTUAL_THREAD = "VIRTUAL_THREAD";
+	/** Pre-allocated ring buffers, one per worker thread, agents are served by a fixed worker */
+	public static final String RING_BUFFER = "RING_BUFFER";
 }
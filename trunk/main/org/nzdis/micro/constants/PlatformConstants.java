@@ -51,12 +51,61 @@ public abstract class PlatformConstants {
 	/** Activation of network support */
 	public static final String DISTRIBUTED_MODE = "DISTRIBUTED_MODE";
 	
-	/** Number of core schedulers for (internal) message passing when not using JETLANG */
+	/** Number of core schedulers for (internal) message passing when not using JETLANG 
+	 * (obsolete, MICRO_FIBER workers schedule themselves via work stealing) */
 	public static final String NUMBER_OF_SCHEDULERS = "NUMBER_OF_SCHEDULERS";
 	
 	/** Number of core executors for (internal) message passing when not using JETLANG */ 
 	public static final String NUMBER_OF_WORKERS = "NUMBER_OF_WORKERS";
 	
+	/** Maximal number of messages processed per MicroFiber activation (MICRO_FIBER only) */
+	public static final String MICRO_FIBER_BATCH_SIZE = "MICRO_FIBER_BATCH_SIZE";
+	
+	/** Assigns agents to sticky home workers re-placed based on communication patterns (MICRO_FIBER only) */
+	public static final String WORKER_AFFINITY = "WORKER_AFFINITY";
+	
+	/** Records about every n-th local message for agent placement (WORKER_AFFINITY only) */
+	public static final String AFFINITY_SAMPLING_RATE = "AFFINITY_SAMPLING_RATE";
+	
+	/** Interval (in ms) at which agents are re-placed on workers (WORKER_AFFINITY only) */
+	public static final String AFFINITY_REPLACEMENT_INTERVAL = "AFFINITY_REPLACEMENT_INTERVAL";
+	
+	/** Number of slots of each worker's ring (RING_BUFFER only, rounded up to a power of two) */
+	public static final String RING_BUFFER_SIZE = "RING_BUFFER_SIZE";
+	
+	/** Runs Jetlang fibers on a shared executor bounded to NUMBER_OF_WORKERS threads (JETLANG only) */
+	public static final String JETLANG_BOUNDED_EXECUTOR = "JETLANG_BOUNDED_EXECUTOR";
+	
+	/** Time window (in ms) for batched delivery of messages, 0 for immediate delivery (JETLANG only) */
+	public static final String JETLANG_BATCH_INTERVAL = "JETLANG_BATCH_INTERVAL";
+	
+	/** Default capacity of agent mailboxes (0: unbounded) */
+	public static final String MAILBOX_CAPACITY = "MAILBOX_CAPACITY";
+	
+	/** Default overflow policy for bounded agent mailboxes (see @MailboxOverflowPolicies) */
+	public static final String MAILBOX_OVERFLOW_POLICY = "MAILBOX_OVERFLOW_POLICY";
+	
+	/** Default time (in ms) senders are blocked on full mailboxes (BLOCK policy) */
+	public static final String MAILBOX_BLOCK_TIMEOUT = "MAILBOX_BLOCK_TIMEOUT";
+	
+	/** Number of priority lanes per agent mailbox (1: no prioritization) */
+	public static final String MAILBOX_PRIORITY_LANES = "MAILBOX_PRIORITY_LANES";
+	
+	/** Draining policy for mailboxes with priority lanes (see @LaneDrainingPolicies) */
+	public static final String MAILBOX_LANE_DRAINING = "MAILBOX_LANE_DRAINING";
+	
+	/** Default strategy for choosing among agents registered for an intent (see @IntentDispatchStrategies) */
+	public static final String INTENT_DISPATCH_STRATEGY = "INTENT_DISPATCH_STRATEGY";
+	
+	/** Time (in ms) after which threads waiting for a semaphore print diagnostics (0: deactivated) */
+	public static final String SEMAPHORE_WAIT_THRESHOLD = "SEMAPHORE_WAIT_THRESHOLD";
+	
+	/** Time (in ms) after which threads holding a semaphore print diagnostics on release (0: deactivated) */
+	public static final String SEMAPHORE_HOLD_THRESHOLD = "SEMAPHORE_HOLD_THRESHOLD";
+	
+	/** Records the acquiring stack for every n-th semaphore acquisition (0: deactivated) */
+	public static final String SEMAPHORE_STACK_SAMPLING_RATE = "SEMAPHORE_STACK_SAMPLING_RATE";
+	
 	/** Selection of Netty-based serialization (see @SerializationType) */
 	public static final String NETWORK_SERIALIZATION = "NETWORK_SERIALIZATION";
 	
@@ -21,14 +21,20 @@
 package org.nzdis.micro.messaging;
 
 import java.util.ArrayList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.jetlang.channels.BatchSubscriber;
 import org.jetlang.core.Callback;
 import org.jetlang.fibers.Fiber;
-import org.jetlang.fibers.PoolFiberFactory;
 import org.nzdis.micro.Event;
 import org.nzdis.micro.Intent;
 import org.nzdis.micro.MTConnector;
@@ -39,6 +45,9 @@ import org.nzdis.micro.constants.AgentStates;
 import org.nzdis.micro.constants.MessagePassingFrameworks;
 import org.nzdis.micro.inspector.annotations.Inspect;
 import org.nzdis.micro.messaging.message.Message;
+import org.nzdis.micro.messaging.processor.AbstractMicroFiber;
+import org.nzdis.micro.messaging.processor.InFlightMessageCounter;
+import org.nzdis.micro.messaging.processor.MailboxLimit;
 
 
 /**
@@ -58,6 +67,10 @@ public abstract class AbstractCommunicator extends AgentStates implements Messag
 	protected boolean agentNameInitialized = false;
 	/** indicates whether Message Transport is registered for the according agent */
 	protected boolean MTRegistered = false;
+	/** local handle assigned upon registration with the Message Transport (-1 if unregistered) */
+	protected int agentHandle = -1;
+	/** pending ask() requests awaiting a reply, keyed by conversation ID (lazily created) */
+	private volatile ConcurrentHashMap<String, PendingReply> pendingReplies = null;
 	/** indicates if collectAndPrint is activated (which can be deactivated for performance/memory reasons */
 	protected boolean collectAndPrint = false;
 	/** Current state of the agent. */
@@ -76,26 +89,26 @@ public abstract class AbstractCommunicator extends AgentStates implements Messag
 	 */
 	protected void registerMT(){
 		if(!MTRegistered){
-			MTConnector.register(agentName, this);
+			agentHandle = MTConnector.register(agentName, this);
 			MTRegistered = true;
 			//only start Jetlang fibers if Jetlang is used
 			if(MTConnector.getInternalMessagePassingFramework().equals(MessagePassingFrameworks.JETLANG)){
-				if(service == null){
-					service = Executors.newCachedThreadPool();
-				}
-				if(fact == null){
-					fact = new PoolFiberFactory(service);
-				}
 				if(fiber == null){
-					fiber = fact.create();
+					fiber = MTRuntime.createJetlangFiber();
 				}
+				//messages on agent channel are subject to the agent's mailbox limit
+				final AbstractMicroFiber mailbox = MTConnector.getRegisteredAgent(agentName);
+				jetlangMailbox = mailbox;
 				if(inBox == null){
 					inBox = new Callback<MicroMessage>(){
 	
 						@Override
 						public void onMessage(MicroMessage message) {
 							if(state == ACTIVE || state == DYING){
-								if(!message.getSender().equals(agentName)){
+								if(!message.getSender().equals(agentName) && !completePendingReply(message)){
+									//senders on this fiber must not block on the agent's own mailbox
+									AbstractMicroFiber processed = jetlangMailbox;
+									processed.setProcessingThread(Thread.currentThread());
 									try{
 										receive(message);
 									} catch(Exception e){
@@ -104,6 +117,8 @@ public abstract class AbstractCommunicator extends AgentStates implements Messag
 										.append("Please check the application code.").append(MTRuntime.LINE_DELIMITER)
 										.append(message).toString());
 										e.printStackTrace();
+									} finally {
+										processed.setProcessingThread(null);
 									}
 								}
 							} else {
@@ -114,8 +129,86 @@ public abstract class AbstractCommunicator extends AgentStates implements Messag
 					};
 				}
 				
-				MTConnector.getAgentChannel(agentName).subscribe(fiber, inBox);
-				MTConnector.getCommonChannel().subscribe(fiber, inBox);
+				final MailboxLimit mailboxLimit = mailbox.getMailboxLimit();
+				int batchInterval = MTRuntime.getJetlangBatchInterval();
+				if(MTRuntime.usesPriorityLanes()){
+					//messages are held in the priority lanes of the agent's MicroFiber; each published 
+					//message triggers the delivery of the next message according to lane priority
+					final Callback<MicroMessage> laneDelivery = new Callback<MicroMessage>(){
+
+						@Override
+						public void onMessage(MicroMessage trigger) {
+							MicroMessage message = (MicroMessage) mailbox.pollMessage();
+							if(message != null){
+								try{
+									inBox.onMessage(message);
+								} finally {
+									InFlightMessageCounter.messageProcessed();
+								}
+							}
+						}
+						
+					};
+					if(batchInterval > 0){
+						MTConnector.getAgentChannel(agentName).subscribe(new BatchSubscriber<MicroMessage>(fiber, new Callback<List<MicroMessage>>(){
+
+							@Override
+							public void onMessage(List<MicroMessage> triggers) {
+								for(int i = 0; i < triggers.size(); i++){
+									laneDelivery.onMessage(triggers.get(i));
+								}
+							}
+							
+						}, batchInterval, TimeUnit.MILLISECONDS));
+					} else {
+						MTConnector.getAgentChannel(agentName).subscribe(fiber, laneDelivery);
+					}
+					MTConnector.getCommonChannel().subscribe(fiber, inBox);
+				} else if(batchInterval > 0){
+					//deliver all messages collected within the time window in one activation
+					MTConnector.getAgentChannel(agentName).subscribe(new BatchSubscriber<MicroMessage>(fiber, new Callback<List<MicroMessage>>(){
+
+						@Override
+						public void onMessage(List<MicroMessage> messages) {
+							for(int i = 0; i < messages.size(); i++){
+								try{
+									if(mailboxLimit.consume()){
+										inBox.onMessage(messages.get(i));
+									}
+								} finally {
+									InFlightMessageCounter.messageProcessed();
+								}
+							}
+						}
+						
+					}, batchInterval, TimeUnit.MILLISECONDS));
+					MTConnector.getCommonChannel().subscribe(new BatchSubscriber<MicroMessage>(fiber, new Callback<List<MicroMessage>>(){
+
+						@Override
+						public void onMessage(List<MicroMessage> messages) {
+							for(int i = 0; i < messages.size(); i++){
+								inBox.onMessage(messages.get(i));
+							}
+						}
+						
+					}, batchInterval, TimeUnit.MILLISECONDS));
+				} else {
+					MTConnector.getAgentChannel(agentName).subscribe(fiber, new Callback<MicroMessage>(){
+	
+						@Override
+						public void onMessage(MicroMessage message) {
+							try{
+								if(mailboxLimit.consume()){
+									inBox.onMessage(message);
+								}
+							} finally {
+								InFlightMessageCounter.messageProcessed();
+							}
+						}
+						
+					});
+					MTConnector.getCommonChannel().subscribe(fiber, inBox);
+				}
 				fiber.start();
 			}
 		} else {
@@ -127,8 +220,31 @@ public abstract class AbstractCommunicator extends AgentStates implements Messag
 		if(MTRegistered){
 			MTConnector.unregister(agentName);
 			MTRegistered = false;
+			agentHandle = -1;
+			//replies can no longer be received
+			ConcurrentHashMap<String, PendingReply> pending = pendingReplies;
+			if(pending != null){
+				for(PendingReply request: pending.values()){
+					request.future.cancel(false);
+				}
+			}
 			if(fiber != null){
-				fiber.dispose();
+				final Fiber disposedFiber = fiber;
+				final AbstractMicroFiber mailbox = jetlangMailbox;
+				fiber = null;
+				//runs after the messages already queued on the fiber; messages still pending 
+				//afterwards (e.g. in batches) are dropped by dispose() and thus no longer in flight
+				disposedFiber.execute(new Runnable(){
+
+					@Override
+					public void run() {
+						if(mailbox != null){
+							InFlightMessageCounter.messagesDiscarded(mailbox.getMailboxLimit().discardPending());
+						}
+						disposedFiber.dispose();
+					}
+					
+				});
 			}
 		} else {
 			printError(new StringBuffer("Tried to unregister from message transport although not registered!").toString());
@@ -142,11 +258,21 @@ public abstract class AbstractCommunicator extends AgentStates implements Messag
 	public String getAgentName() {
 		return agentName;
 	}
+	
+	/**
+	 * Returns the agent's local handle, which is used for routing 
+	 * of messages on the local platform.
+	 * @return handle or -1 if not registered
+	 */
+	public int getAgentHandle() {
+		return agentHandle;
+	}
 
 	/** Jetlang fiber for receiving messages */
 	private Fiber fiber = null;
-	static volatile ExecutorService service = null;
-    PoolFiberFactory fact = null;
+	
+	/** MicroFiber holding the mailbox limit (and priority lanes) of the Jetlang fiber */
+	private volatile AbstractMicroFiber jetlangMailbox = null;
 
 	
 	/**
@@ -164,7 +290,9 @@ public abstract class AbstractCommunicator extends AgentStates implements Messag
 			 * Disadvantage: potential in-memory manipulation during sending
 			 */
 			//receive(new MicroMessage(message));
-			receive((MicroMessage) message);
+			if(!completePendingReply((MicroMessage) message)){
+				receive((MicroMessage) message);
+			}
 		} else {
 			print(new StringBuffer("Sent message to ").append(agentName).append(" which is in state ").append(getStateDescription(state)));
 		}
@@ -172,6 +300,157 @@ public abstract class AbstractCommunicator extends AgentStates implements Messag
 	
 	public abstract void receive(MicroMessage message);
 	
+	/**
+	 * Completes the pending ask() request the given message replies to (if any). 
+	 * Only replies are consumed, i.e. messages of another agent carrying the request's 
+	 * conversation ID and its incremented message ID (see MicroMessage.createReply()); 
+	 * other messages of the conversation are delivered as usual.
+	 * @param message Received message
+	 * @return true if message has been consumed as reply
+	 */
+	private boolean completePendingReply(MicroMessage message){
+		ConcurrentHashMap<String, PendingReply> pending = pendingReplies;
+		if(pending != null && !pending.isEmpty()){
+			String conversationId = message.getConversationID();
+			if(conversationId != null){
+				PendingReply request = pending.get(conversationId);
+				if(request != null && !agentName.equals(message.getSender()) 
+						&& Integer.valueOf(request.replyMessageId).equals(message.getMessageID())
+						&& pending.remove(conversationId, request)){
+					return request.future.complete(message);
+				}
+			}
+		}
+		return false;
+	}
+	
+	/** ask() request awaiting its reply */
+	private static final class PendingReply {
+		
+		final CompletableFuture<MicroMessage> future = new CompletableFuture<MicroMessage>();
+		/** message ID expected for the reply */
+		final int replyMessageId;
+		
+		PendingReply(int requestMessageId){
+			this.replyMessageId = requestMessageId + 1;
+		}
+	}
+	
+	/**
+	 * Sends a request and returns a future that is completed with the first reply, 
+	 * i.e. a message carrying the request's conversation ID and incremented message ID 
+	 * (as created by MicroMessage.createReply()). Replies are passed to the future directly 
+	 * upon delivery (i.e. bypass message filters and roles). Dependent actions registered 
+	 * via non-async methods are thus executed on the delivering thread and should not block.
+	 * A conversation is initialized if the message does not carry a conversation ID 
+	 * (or message ID).
+	 * @param message Request
+	 * @param timeout Time in ms after which the future is completed with a TimeoutException
+	 * @return future reply
+	 */
+	public CompletableFuture<MicroMessage> ask(MicroMessage message, long timeout){
+		if(message.getConversationID() == null){
+			message = message.toMutable();
+			message.initializeConversation();
+		} else if(message.getMessageID() == null){
+			message = message.toMutable();
+			message.setMessageID(0);
+		}
+		final String conversationId = message.getConversationID();
+		final PendingReply request = new PendingReply(message.getMessageID());
+		final CompletableFuture<MicroMessage> future = request.future;
+		ConcurrentHashMap<String, PendingReply> pending = pendingReplies;
+		if(pending == null){
+			synchronized(this){
+				pending = pendingReplies;
+				if(pending == null){
+					pending = new ConcurrentHashMap<String, PendingReply>();
+					pendingReplies = pending;
+				}
+			}
+		}
+		final ConcurrentHashMap<String, PendingReply> requests = pending;
+		if(requests.putIfAbsent(conversationId, request) != null){
+			future.completeExceptionally(new IllegalStateException(new StringBuffer("Agent ").append(agentName)
+					.append(" already awaits a reply in conversation ").append(conversationId).toString()));
+			return future;
+		}
+		final ScheduledFuture<?> timeoutTask = MTRuntime.getSharedTimer().schedule(new Runnable(){
+
+			@Override
+			public void run() {
+				future.completeExceptionally(new TimeoutException(new StringBuffer("No reply in conversation ")
+						.append(conversationId).append(" within ").append(timeout).append(" ms.").toString()));
+			}
+			
+		}, timeout, TimeUnit.MILLISECONDS);
+		//release request upon reply, timeout or cancellation
+		future.whenComplete(new BiConsumer<MicroMessage, Throwable>(){
+
+			@Override
+			public void accept(MicroMessage reply, Throwable failure) {
+				requests.remove(conversationId, request);
+				timeoutTask.cancel(false);
+			}
+			
+		});
+		send(message);
+		return future;
+	}
+	
+	/**
+	 * Limits the number of undelivered messages for this agent. Overrides the 
+	 * platform default (MAILBOX_CAPACITY). Uses the platform default block timeout.
+	 * @param capacity Maximal number of undelivered messages (0: unbounded)
+	 * @param overflowPolicy Behaviour on full mailbox (see @MailboxOverflowPolicies)
+	 */
+	public void setMailboxLimit(int capacity, String overflowPolicy){
+		setMailboxLimit(capacity, overflowPolicy, MTRuntime.getMailboxBlockTimeout());
+	}
+	
+	/**
+	 * Limits the number of undelivered messages for this agent. Overrides the 
+	 * platform default (MAILBOX_CAPACITY).
+	 * @param capacity Maximal number of undelivered messages (0: unbounded)
+	 * @param overflowPolicy Behaviour on full mailbox (see @MailboxOverflowPolicies)
+	 * @param blockTimeout Maximal time (in ms) a sender is blocked (BLOCK policy)
+	 */
+	public void setMailboxLimit(int capacity, String overflowPolicy, long blockTimeout){
+		MailboxLimit limit = getMailboxLimit();
+		if(limit != null){
+			limit.configure(capacity, overflowPolicy, blockTimeout);
+		}
+	}
+	
+	/**
+	 * Returns the number of messages to this agent that have been dropped 
+	 * as of a full mailbox.
+	 * @return number of dropped messages
+	 */
+	public long getDroppedMessageCount(){
+		MailboxLimit limit = getMailboxLimit();
+		return limit == null ? 0 : limit.getDroppedMessages();
+	}
+	
+	/**
+	 * Returns the number of messages to this agent that have been rejected 
+	 * as of a full mailbox.
+	 * @return number of rejected messages
+	 */
+	public long getRejectedMessageCount(){
+		MailboxLimit limit = getMailboxLimit();
+		return limit == null ? 0 : limit.getRejectedMessages();
+	}
+	
+	private MailboxLimit getMailboxLimit(){
+		AbstractMicroFiber microFiber = MTConnector.getRegisteredAgent(agentName);
+		if(microFiber == null){
+			printError("Mailbox limits are only available for agents registered with message transport.");
+			return null;
+		}
+		return microFiber.getMailboxLimit();
+	}
+	
 	/**
 	 * Creates message with supplied intent and sends it
 	 * off.
@@ -206,7 +485,7 @@ public abstract class AbstractCommunicator extends AgentStates implements Messag
 	 */
 	public void send(MicroMessage message){
 		if(!message.sendUnchanged){
-			message.setSender(agentName);
+			message = message.withSender(agentName, agentHandle);
 		}
 		if(MTRegistered && (state == ACTIVE || state == DYING)){
 			MTConnector.send(message);
@@ -215,6 +494,23 @@ public abstract class AbstractCommunicator extends AgentStates implements Messag
 		}
 	}
 	
+	/**
+	 * Sends a batch of messages via default message transport 
+	 * (see MTConnector.sendBatch()). 
+	 * @param messages Messages to be sent
+	 */
+	public void sendBatch(Collection<MicroMessage> messages){
+		if(MTRegistered && (state == ACTIVE || state == DYING)){
+			ArrayList<MicroMessage> batch = new ArrayList<MicroMessage>(messages.size());
+			for(MicroMessage message: messages){
+				batch.add(message.sendUnchanged ? message : message.withSender(agentName, agentHandle));
+			}
+			MTConnector.sendBatch(batch);
+		} else {
+			checkOnRegistrationAndStateErrors();
+		}
+	}
+	
 	/**
 	 * Sends broadcast via default message transport. Broadcast is
 	 * restricted to local platform.
@@ -222,7 +518,7 @@ public abstract class AbstractCommunicator extends AgentStates implements Messag
 	 */
 	public void sendBroadcast(MicroMessage message){
 		if(!message.sendUnchanged){
-			message.setSender(agentName);
+			message = message.withSender(agentName, agentHandle);
 		}
 		if(MTRegistered && (state == ACTIVE || state == DYING)){
 			MTConnector.sendLocalBroadcast(message);
@@ -238,7 +534,7 @@ public abstract class AbstractCommunicator extends AgentStates implements Messag
 	 */
 	public void sendGlobalBroadcast(MicroMessage message){
 		if(!message.sendUnchanged){
-			message.setSender(agentName);
+			message = message.withSender(agentName, agentHandle);
 		}
 		if(MTRegistered && (state == ACTIVE || state == DYING)){
 			MTConnector.sendGlobalBroadcast(message);
@@ -259,7 +555,7 @@ public abstract class AbstractCommunicator extends AgentStates implements Messag
 	 */
 	public ArrayList<String> sendRandomcast(MicroMessage message, int numberOfTargets, boolean global, boolean trueIndicatesListofCandidatesFalseIndicatesExcludedAgents, ArrayList<String> inOrExclusionList){
 		if(!message.sendUnchanged){
-			message.setSender(agentName);
+			message = message.withSender(agentName, agentHandle);
 		}
 		if(MTRegistered && (state == ACTIVE || state == DYING)){
 			return MTConnector.sendRandomcast(message, numberOfTargets, global, trueIndicatesListofCandidatesFalseIndicatesExcludedAgents, inOrExclusionList);
@@ -269,6 +565,26 @@ public abstract class AbstractCommunicator extends AgentStates implements Messag
 		return null;
 	}
 	
+	/**
+	 * Sends Randomcast to <numberOfTargets> agents which are chosen with probability 
+	 * proportional to their weight (see MTConnector.setAgentWeight()).
+	 * @param message
+	 * @param numberOfTargets
+	 * @param exclusionList Agents (agent names) to be excluded from Randomcast (may be null)
+	 * @return list of agents that have been chosen for message dispatch
+	 */
+	public ArrayList<String> sendWeightedRandomcast(MicroMessage message, int numberOfTargets, Collection<String> exclusionList){
+		if(!message.sendUnchanged){
+			message = message.withSender(agentName, agentHandle);
+		}
+		if(MTRegistered && (state == ACTIVE || state == DYING)){
+			return MTConnector.sendWeightedRandomcast(message, numberOfTargets, exclusionList);
+		} else {
+			checkOnRegistrationAndStateErrors();	
+		}
+		return null;
+	}
+	
 	/**
 	 * Sends Fuzzycast to the specified <quota> of agents which are chosen randomly.
 	 * If global is set to true, random choice includes all connected remote nodes.
@@ -281,7 +597,7 @@ public abstract class AbstractCommunicator extends AgentStates implements Messag
 	 */
 	public ArrayList<String> sendFuzzycast(MicroMessage message, Float quota, boolean global, boolean trueIndicatesListofCandidatesFalseIndicatesExcludedAgents, ArrayList<String> inOrExclusionList){
 		if(!message.sendUnchanged){
-			message.setSender(agentName);
+			message = message.withSender(agentName, agentHandle);
 		}
 		if(MTRegistered && (state == ACTIVE || state == DYING)){
 			return MTConnector.sendFuzzycast(message, quota, global, trueIndicatesListofCandidatesFalseIndicatesExcludedAgents, inOrExclusionList);
@@ -303,7 +619,7 @@ public abstract class AbstractCommunicator extends AgentStates implements Messag
 	 */
 	public ArrayList<String> sendFuzzycast(MicroMessage message, Double quota, boolean global, boolean trueIndicatesListofCandidatesFalseIndicatesExcludedAgents, ArrayList<String> inOrExclusionList){
 		if(!message.sendUnchanged){
-			message.setSender(agentName);
+			message = message.withSender(agentName, agentHandle);
 		}
 		if(MTRegistered && (state == ACTIVE || state == DYING)){
 			return MTConnector.sendFuzzycast(message, quota, global, trueIndicatesListofCandidatesFalseIndicatesExcludedAgents, inOrExclusionList);
@@ -323,7 +639,7 @@ public abstract class AbstractCommunicator extends AgentStates implements Messag
 	 */
 	public void sendRolecast(MicroMessage message, Role role, boolean global){
 		if(!message.sendUnchanged){
-			message.setSender(agentName);
+			message = message.withSender(agentName, agentHandle);
 		}
 		if(MTRegistered && (state == ACTIVE || state == DYING)){
 			MTConnector.sendRolecast(message, role, global);
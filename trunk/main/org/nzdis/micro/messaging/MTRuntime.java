@@ -21,17 +21,39 @@
 package org.nzdis.micro.messaging;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import org.jetlang.channels.MemoryChannel;
+import org.jetlang.fibers.Fiber;
+import org.jetlang.fibers.PoolFiberFactory;
 import org.nzdis.micro.AbstractAgent;
+import org.nzdis.micro.AgentWeightProvider;
+import org.nzdis.micro.ImmutableMicroMessage;
 import org.nzdis.micro.MTConnector;
+import org.nzdis.micro.MessageFields;
 import org.nzdis.micro.MicroMessage;
 import org.nzdis.micro.bootloader.MicroBootProperties;
 import org.nzdis.micro.bootloader.MicroPropertiesMap;
 import org.nzdis.micro.bootloader.Version;
 import org.nzdis.micro.constants.AgentConsoleOutputLevels;
 import org.nzdis.micro.constants.DiscoveryModes;
+import org.nzdis.micro.constants.IntentDispatchStrategies;
+import org.nzdis.micro.constants.LaneDrainingPolicies;
+import org.nzdis.micro.constants.MailboxOverflowPolicies;
 import org.nzdis.micro.constants.MessagePassingFrameworks;
 import org.nzdis.micro.constants.PlatformOutputLevels;
 import org.nzdis.micro.constants.PlatformConstants;
@@ -43,12 +65,21 @@ import org.nzdis.micro.messaging.network.NetworkConnectorInterface;
 import org.nzdis.micro.messaging.network.discovery.DiscoveryService;
 import org.nzdis.micro.messaging.network.netty.NettyNetworkConnector;
 import org.nzdis.micro.messaging.processor.AbstractMicroFiber;
+import org.nzdis.micro.messaging.processor.CommunicationAffinity;
+import org.nzdis.micro.messaging.processor.InFlightMessageCounter;
+import org.nzdis.micro.messaging.processor.MailboxLanes;
+import org.nzdis.micro.messaging.processor.MailboxLimit;
+import org.nzdis.micro.messaging.processor.MessagePriorities;
 import org.nzdis.micro.messaging.processor.Worker;
 import org.nzdis.micro.messaging.processor.MicroFiber;
-import org.nzdis.micro.messaging.processor.Scheduler;
+import org.nzdis.micro.messaging.processor.RingBufferDispatcher;
+import org.nzdis.micro.messaging.processor.VirtualThreadDispatcher;
 import org.nzdis.micro.msgvalidator.DefaultMicroMessageValidator;
 import org.nzdis.micro.msgvalidator.MicroMessageValidator;
 import org.nzdis.micro.random.MersenneTwister;
+import org.nzdis.micro.random.MersenneTwisterFast;
+import org.nzdis.micro.util.FenwickTree;
+import org.nzdis.micro.util.SimpleSemaphore;
 
 /**
  * MTRuntime is the core Runtime facility on the Message Transport Layer
@@ -98,9 +129,51 @@ public class MTRuntime extends PlatformConstants {
 	 */
 	private static boolean switchOffDiscoveryOnceConnected = false;
 
-	private static int numberOfSchedulers = 1;
-
 	private static int numberOfWorkers = 0;
+	
+	/** maximal number of messages a MicroFiber processes per activation */
+	private static int microFiberBatchSize = 32;
+	/** number of slots of each worker's ring (RING_BUFFER only, rounded up to power of two) */
+	private static int ringBufferSize = 8192;
+	/** indicates if agents have sticky home workers re-placed based on communication (MICRO_FIBER only) */
+	private static boolean workerAffinity = false;
+	/** records about every n-th local message for placement decisions (worker affinity only) */
+	private static int affinitySamplingRate = 64;
+	/** interval (in ms) at which agents are re-placed (worker affinity only) */
+	private static long affinityReplacementInterval = 1000;
+	/** maximal number of communication samples kept between two re-placements */
+	private static final int AFFINITY_SAMPLE_CAPACITY = 4096;
+	/** indicates if Jetlang fibers run on a shared executor bounded to numberOfWorkers threads */
+	private static boolean jetlangBoundedExecutor = false;
+	/** time window (in ms) for batched delivery of Jetlang messages (0: immediate delivery of each message) */
+	private static int jetlangBatchInterval = 0;
+	
+	/** default capacity of agent mailboxes (<= 0: unbounded) */
+	private static int mailboxCapacity = 0;
+	
+	/** default overflow policy for bounded agent mailboxes */
+	private static String mailboxOverflowPolicy = MailboxOverflowPolicies.BLOCK;
+	
+	/** default time (in ms) a sender is blocked on a full mailbox (BLOCK policy) */
+	private static long mailboxBlockTimeout = 1000;
+	
+	/** number of priority lanes per agent mailbox (1: plain FIFO mailbox) */
+	private static int mailboxPriorityLanes = 1;
+	
+	/** draining policy for mailboxes with priority lanes */
+	private static String mailboxLaneDraining = LaneDrainingPolicies.STRICT;
+	
+	/** default strategy for dispatching intents among registered agents */
+	private static String intentDispatchStrategy = IntentDispatchStrategies.FIRST;
+	
+	/** time (in ms) after which threads waiting for a semaphore report (0: no reports) */
+	private static long semaphoreWaitThreshold = 1000;
+	
+	/** time (in ms) after which threads holding a semaphore report on release (0: not measured) */
+	private static long semaphoreHoldThreshold = 0;
+	
+	/** records the acquiring stack for every n-th semaphore acquisition (0: no recording) */
+	private static int semaphoreStackSamplingRate = 0;
 
 	private static int numberOfCPUCores = 0;
 
@@ -109,25 +182,86 @@ public class MTRuntime extends PlatformConstants {
 	private static ConcurrentHashMap<String, MemoryChannel<MicroMessage>> registeredJetlangChannelsMap = new ConcurrentHashMap<String, MemoryChannel<MicroMessage>>();
 	private static final MemoryChannel<MicroMessage> broadCastChannel = new MemoryChannel<MicroMessage>();
 	
+	/** 
+	 * Routing tables indexed by dense agent handles (assigned upon registration), 
+	 * grown on demand. Name-based lookups resolve to handles that are cached in messages.
+	 */
+	private static volatile AtomicReferenceArray<AbstractMicroFiber> microFibersByHandle = new AtomicReferenceArray<AbstractMicroFiber>(64);
+	private static volatile AtomicReferenceArray<MemoryChannel<MicroMessage>> jetlangChannelsByHandle = new AtomicReferenceArray<MemoryChannel<MicroMessage>>(64);
+	/** handles released by unregistered agents, reused to keep the tables dense */
+	private static int[] freeHandles = new int[16];
+	private static int freeHandleCount = 0;
+	/** next handle to be assigned if no released handle is available */
+	private static int nextHandle = 0;
+	
+	/** 
+	 * names of registered agents without gaps (the last entry fills the gap of an 
+	 * unregistered agent), allowing random selection without copying the directory 
+	 */
+	private static volatile AtomicReferenceArray<String> agentNamesByIndex = new AtomicReferenceArray<String>(64);
+	private static volatile int numberOfAgentNames = 0;
+	/** positions of agent names in agentNamesByIndex (accessed while holding the lock of agentWeights) */
+	private static final HashMap<String, Integer> agentNamePositions = new HashMap<String, Integer>();
+	
+	/** 
+	 * selection weights of agents for weighted randomcasts, indexed like agentNamesByIndex 
+	 * (the tree also guards consistent moves of names and weights)
+	 */
+	private static final FenwickTree agentWeights = new FenwickTree(64);
+	/** provider of initial weights for registering agents (null: weight 0) */
+	private static volatile AgentWeightProvider agentWeightProvider = null;
+	
+	/** 
+	 * Copy-on-write snapshot of registered agents used for broadcast fan-out. 
+	 * Invalidated upon registration changes and lazily rebuilt by the next broadcast.
+	 */
+	private static volatile FanOutSnapshot fanOutSnapshot = null;
+	
 	/**
 	 * Array holding all initialized worker threads
 	 */
-	private static Worker[] workers = null;
-
+	private static volatile Worker[] workers = null;
+	
 	/**
-	 * Array holding all initialized schedulers
+	 * Dispatcher for VIRTUAL_THREAD message passing
 	 */
-	private static Scheduler[] schedulers = null;
+	private static volatile VirtualThreadDispatcher virtualThreadDispatcher = null;
+	
+	/**
+	 * Dispatcher for RING_BUFFER message passing
+	 */
+	private static volatile RingBufferDispatcher ringBufferDispatcher = null;
 
 	/**
-	 * Index for iterating over worker threads for fair selection
+	 * Unbounded executor shared by all Jetlang fibers (kept across platform restarts)
+	 */
+	private static ExecutorService jetlangCachedExecutor = null;
+	
+	/**
+	 * Bounded executor shared by all Jetlang fibers (if configured)
+	 */
+	private static ExecutorService jetlangBoundedExecutorService = null;
+	
+	/**
+	 * Factory for Jetlang fibers of all agents
 	 */
-	private static int workerIndex = 0;
+	private static PoolFiberFactory jetlangFiberFactory = null;
 	
 	/**
-	 * Index for iterating over scheduler threads for fair selection
+	 * Timer shared for timeouts (e.g. of pending ask() requests)
 	 */
-	private static int schedulerIndex = 0;
+	private static ScheduledThreadPoolExecutor sharedTimer = null;
+
+	/**
+	 * Index for iterating over worker threads for fair selection
+	 */
+	private static final AtomicInteger workerIndex = new AtomicInteger(0);
+	
+	/** communication sampler for worker affinity (null if deactivated or workers not started) */
+	private static volatile CommunicationAffinity communicationAffinity = null;
+	
+	/** periodic re-placement of agents (worker affinity only) */
+	private static ScheduledFuture<?> affinityReplacementTask = null;
 
 	private static String serialization = SerializationTypes.XML;
 	
@@ -139,7 +273,7 @@ public class MTRuntime extends PlatformConstants {
 	
 	private static boolean platformInitialized = false;
 	
-	private static boolean microFiberWorkersStarted = false;
+	private static volatile boolean microFiberWorkersStarted = false;
 	
 	/** specifies if local messages are passed in a synchronous (i.e. blocking) manner */
 	private static boolean synchronousOperationMode = false;
@@ -286,6 +420,11 @@ public class MTRuntime extends PlatformConstants {
 	private static long seed = System.currentTimeMillis();
 	protected static volatile MersenneTwister random = null;
 	
+	/** random number streams of registered names not held by a living agent, derived from seed and name */
+	private static final ConcurrentHashMap<String, MersenneTwisterFast> agentRandomStreams = new ConcurrentHashMap<String, MersenneTwisterFast>();
+	/** incremented upon every seed change, streams held by agents are re-derived upon next access */
+	private static final AtomicInteger seedRevision = new AtomicInteger();
+	
 	/** platform ID for unification */
 	protected static String platformID = null;
 
@@ -348,13 +487,11 @@ public class MTRuntime extends PlatformConstants {
 					startMicroFiberWorkers();
 				}
 			}
-			
-			// start of core schedulers
-			schedulers = new Scheduler[numberOfSchedulers];
-			for (int i = 0; i < schedulers.length; i++) {
-				schedulers[i] = new Scheduler();
-				schedulers[i].setName("MicroFiber_Scheduler_" + i);
-				schedulers[i].start();
+			if(internalMessageFramework.equals(MessagePassingFrameworks.VIRTUAL_THREAD)){
+				virtualThreadDispatcher = new VirtualThreadDispatcher(numberOfWorkers, microFiberBatchSize);
+			}
+			if(internalMessageFramework.equals(MessagePassingFrameworks.RING_BUFFER)){
+				ringBufferDispatcher = new RingBufferDispatcher(numberOfWorkers, ringBufferSize, microFiberBatchSize);
 			}
 			
 			startNetwork();
@@ -413,11 +550,45 @@ public class MTRuntime extends PlatformConstants {
 			platformHeader.append(LINE_DELIMITER).append("INTERNAL_MESSAGING_FRAMEWORK: ") 
 				.append(MTRuntime.internalMessageFramework)
 				.append(LINE_DELIMITER).append("CLOJURE_ENABLED: ").append(MTRuntime.ClojureActivated)
-				.append(LINE_DELIMITER).append("NUMBER_OF_CORE_SCHEDULERS: ").append(numberOfSchedulers)
-				.append(LINE_DELIMITER).append("NUMBER_OF_CORE_EXECUTERS: ").append(numberOfWorkers);
+				.append(LINE_DELIMITER).append("NUMBER_OF_CORE_EXECUTERS: ").append(virtualThreadDispatcher != null && virtualThreadDispatcher.usesVirtualThreads() ? 
+						"virtual threads" : String.valueOf(numberOfWorkers))
+				.append(LINE_DELIMITER).append("MICRO_FIBER_BATCH_SIZE: ").append(microFiberBatchSize);
+			if(internalMessageFramework.equals(MessagePassingFrameworks.MICRO_FIBER)){
+				platformHeader.append(LINE_DELIMITER).append("WORKER_AFFINITY: ").append(workerAffinity);
+				if(workerAffinity){
+					platformHeader.append(LINE_DELIMITER).append("AFFINITY_SAMPLING_RATE: ").append(affinitySamplingRate)
+						.append(LINE_DELIMITER).append("AFFINITY_REPLACEMENT_INTERVAL: ").append(affinityReplacementInterval);
+				}
+			}
+			if(ringBufferDispatcher != null){
+				platformHeader.append(LINE_DELIMITER).append("RING_BUFFER_SIZE: ").append(ringBufferDispatcher.getRingSize());
+			}
+			if(internalMessageFramework.equals(MessagePassingFrameworks.JETLANG)){
+				platformHeader.append(LINE_DELIMITER).append("JETLANG_BOUNDED_EXECUTOR: ").append(jetlangBoundedExecutor)
+					.append(LINE_DELIMITER).append("JETLANG_BATCH_INTERVAL: ").append(jetlangBatchInterval);
+			}
+			platformHeader.append(LINE_DELIMITER).append("MAILBOX_CAPACITY: ").append(mailboxCapacity > 0 ? String.valueOf(mailboxCapacity) : "unbounded");
+			if(mailboxCapacity > 0){
+				platformHeader.append(LINE_DELIMITER).append("MAILBOX_OVERFLOW_POLICY: ").append(mailboxOverflowPolicy);
+				if(mailboxOverflowPolicy.equals(MailboxOverflowPolicies.BLOCK)){
+					platformHeader.append(LINE_DELIMITER).append("MAILBOX_BLOCK_TIMEOUT: ").append(mailboxBlockTimeout);
+				}
+			}
+			if(usesPriorityLanes()){
+				platformHeader.append(LINE_DELIMITER).append("MAILBOX_PRIORITY_LANES: ").append(mailboxPriorityLanes)
+					.append(LINE_DELIMITER).append("MAILBOX_LANE_DRAINING: ").append(mailboxLaneDraining);
+			}
 		} else {
 			platformHeader.append(LINE_DELIMITER).append("SYNCHRONOUS_MESSAGE_PASSING: true");
 		}
+		platformHeader.append(LINE_DELIMITER).append("INTENT_DISPATCH_STRATEGY: ").append(intentDispatchStrategy);
+		platformHeader.append(LINE_DELIMITER).append("SEMAPHORE_WAIT_THRESHOLD: ").append(semaphoreWaitThreshold > 0 ? String.valueOf(semaphoreWaitThreshold) : "deactivated");
+		if(semaphoreHoldThreshold > 0){
+			platformHeader.append(LINE_DELIMITER).append("SEMAPHORE_HOLD_THRESHOLD: ").append(semaphoreHoldThreshold);
+		}
+		if(semaphoreStackSamplingRate > 0){
+			platformHeader.append(LINE_DELIMITER).append("SEMAPHORE_STACK_SAMPLING_RATE: ").append(semaphoreStackSamplingRate);
+		}
 		if(validator != null){
 			platformHeader.append(LINE_DELIMITER).append("MICROMESSAGE_VALIDATOR: ").append(validator.getClass().getCanonicalName());
 		}
@@ -439,13 +610,26 @@ public class MTRuntime extends PlatformConstants {
 					for (int i = 0; i < workers.length; i++) {
 						workers[i].stopWorker();
 					}
+					//allow restart of workers on reinitialization
+					microFiberWorkersStarted = false;
 				}
+				if(affinityReplacementTask != null){
+					affinityReplacementTask.cancel(false);
+					affinityReplacementTask = null;
+				}
+				communicationAffinity = null;
 			}
-			
-			// stop the schedulers
-			for (int i = 0; i < schedulers.length; i++) {
-				schedulers[i].stopScheduler();
+			if(virtualThreadDispatcher != null){
+				virtualThreadDispatcher.shutdown();
+				virtualThreadDispatcher = null;
+			}
+			if(ringBufferDispatcher != null){
+				ringBufferDispatcher.shutdown();
+				ringBufferDispatcher = null;
 			}
+			shutdownJetlangExecutor();
+			//undelivered messages of stopped workers are discarded
+			InFlightMessageCounter.reset();
 			System.out.println(getPlatformPrefix() + "Platform threads shut down.");
 			
 			shutdownNetwork();
@@ -682,27 +866,109 @@ public class MTRuntime extends PlatformConstants {
 		}
 		
 		
-		//default: 1 scheduler
-		if (properties.containsKey(NUMBER_OF_SCHEDULERS)){
-			numberOfSchedulers = Integer.parseInt(properties
-					.getProperty(NUMBER_OF_SCHEDULERS));
+		//scheduler threads have been replaced by work-stealing workers
+		if (properties.containsKey(NUMBER_OF_SCHEDULERS) && platformOutputLevel > 1){
+			System.out.println(new StringBuffer(getPlatformPrefix()).append("Parameter ").append(NUMBER_OF_SCHEDULERS)
+					.append(" is obsolete and will be ignored."));
+		}
+		
+		//default: 32 messages per activation
+		if (properties.containsKey(MICRO_FIBER_BATCH_SIZE)){
+			microFiberBatchSize = Integer.parseInt(properties
+					.getProperty(MICRO_FIBER_BATCH_SIZE));
 
-			if (numberOfSchedulers <= 0){
-				numberOfSchedulers = 1;
+			if (microFiberBatchSize <= 0){
+				microFiberBatchSize = 32;
 				System.out
-						.println("The value of parameter NUMBER_OF_CORE_SCHEDULERS in properties file must be greater than 0" + LINE_DELIMITER
-								+ "setting it to default value 1");
+						.println("The value of parameter MICRO_FIBER_BATCH_SIZE in properties file must be greater than 0" + LINE_DELIMITER
+								+ "setting it to default value 32");
 			}
 		} else {
-			if(internalMessageFramework.equals(MessagePassingFrameworks.MICRO_FIBER)){
+			if(usesMicroFiberMailboxes()){
 				if(propertiesNotFound){
 					messageStart.append(separator);
 				}
 				propertiesNotFound = true;
-				messageStart.append(NUMBER_OF_SCHEDULERS);
+				messageStart.append(MICRO_FIBER_BATCH_SIZE);
 			}
 		}
 			
+		//default: 8192 slots per ring
+		if (properties.containsKey(RING_BUFFER_SIZE)){
+			ringBufferSize = Integer.parseInt(properties.get(RING_BUFFER_SIZE).toString().trim());
+
+			if (ringBufferSize <= 0){
+				ringBufferSize = 8192;
+				System.out
+						.println("The value of parameter RING_BUFFER_SIZE in properties file must be greater than 0" + LINE_DELIMITER
+								+ "setting it to default value 8192");
+			}
+		} else {
+			if(internalMessageFramework.equals(MessagePassingFrameworks.RING_BUFFER)){
+				if(propertiesNotFound){
+					messageStart.append(separator);
+				}
+				propertiesNotFound = true;
+				messageStart.append(RING_BUFFER_SIZE);
+			}
+		}
+		
+		//default: round-robin placement of agent activations, affinity settings are optional
+		if (properties.containsKey(WORKER_AFFINITY)){
+			workerAffinity = properties.getBoolean(WORKER_AFFINITY);
+		}
+		if (properties.containsKey(AFFINITY_SAMPLING_RATE)){
+			affinitySamplingRate = Integer.parseInt(properties.get(AFFINITY_SAMPLING_RATE).toString().trim());
+			if (affinitySamplingRate <= 0){
+				affinitySamplingRate = 64;
+				System.out
+						.println("The value of parameter AFFINITY_SAMPLING_RATE in properties file must be greater than 0" + LINE_DELIMITER
+								+ "setting it to default value 64");
+			}
+		}
+		if (properties.containsKey(AFFINITY_REPLACEMENT_INTERVAL)){
+			affinityReplacementInterval = Long.parseLong(properties.get(AFFINITY_REPLACEMENT_INTERVAL).toString().trim());
+			if (affinityReplacementInterval <= 0){
+				affinityReplacementInterval = 1000;
+				System.out
+						.println("The value of parameter AFFINITY_REPLACEMENT_INTERVAL in properties file must be greater than 0" + LINE_DELIMITER
+								+ "setting it to default value 1000");
+			}
+		}
+		
+		//default: unbounded executor
+		if (properties.containsKey(JETLANG_BOUNDED_EXECUTOR)){
+			jetlangBoundedExecutor = properties.getBoolean(JETLANG_BOUNDED_EXECUTOR);
+		} else {
+			if(internalMessageFramework.equals(MessagePassingFrameworks.JETLANG)){
+				if(propertiesNotFound){
+					messageStart.append(separator);
+				}
+				propertiesNotFound = true;
+				messageStart.append(JETLANG_BOUNDED_EXECUTOR);
+			}
+		}
+		
+		//default: immediate delivery
+		if (properties.containsKey(JETLANG_BATCH_INTERVAL)){
+			jetlangBatchInterval = Integer.parseInt(properties.get(JETLANG_BATCH_INTERVAL).toString().trim());
+
+			if (jetlangBatchInterval < 0){
+				jetlangBatchInterval = 0;
+				System.out
+						.println("The value of parameter JETLANG_BATCH_INTERVAL in properties file must not be negative" + LINE_DELIMITER
+								+ "setting it to default value 0");
+			}
+		} else {
+			if(internalMessageFramework.equals(MessagePassingFrameworks.JETLANG)){
+				if(propertiesNotFound){
+					messageStart.append(separator);
+				}
+				propertiesNotFound = true;
+				messageStart.append(JETLANG_BATCH_INTERVAL);
+			}
+		}
+		
 		//default: number of cpu cores
 		if (properties.containsKey(NUMBER_OF_WORKERS)) {
 			numberOfWorkers = Integer.parseInt(properties
@@ -716,7 +982,7 @@ public class MTRuntime extends PlatformConstants {
 
 			}
 		} else {
-			if(internalMessageFramework.equals(MessagePassingFrameworks.MICRO_FIBER)){
+			if(usesMicroFiberMailboxes()){
 				if(propertiesNotFound){
 					messageStart.append(separator);
 				}
@@ -724,6 +990,90 @@ public class MTRuntime extends PlatformConstants {
 				messageStart.append(NUMBER_OF_WORKERS);
 			}
 		}
+		
+		//default: unbounded mailboxes
+		if (properties.containsKey(MAILBOX_CAPACITY)){
+			mailboxCapacity = Integer.parseInt(properties.get(MAILBOX_CAPACITY).toString().trim());
+		} else {
+			if(propertiesNotFound){
+				messageStart.append(separator);
+			}
+			propertiesNotFound = true;
+			messageStart.append(MAILBOX_CAPACITY);
+		}
+		
+		if (properties.containsKey(MAILBOX_OVERFLOW_POLICY)){
+			String policy = properties.get(MAILBOX_OVERFLOW_POLICY).toString().trim().toUpperCase();
+			if(MailboxOverflowPolicies.isValid(policy)){
+				mailboxOverflowPolicy = policy;
+			} else {
+				System.out
+						.println("The value of parameter MAILBOX_OVERFLOW_POLICY in properties file is not supported (" + policy + ")" + LINE_DELIMITER
+								+ "setting it to default value " + MailboxOverflowPolicies.BLOCK);
+				mailboxOverflowPolicy = MailboxOverflowPolicies.BLOCK;
+			}
+		} else {
+			if(mailboxCapacity > 0){
+				if(propertiesNotFound){
+					messageStart.append(separator);
+				}
+				propertiesNotFound = true;
+				messageStart.append(MAILBOX_OVERFLOW_POLICY);
+			}
+		}
+		
+		if (properties.containsKey(MAILBOX_BLOCK_TIMEOUT)){
+			mailboxBlockTimeout = Long.parseLong(properties.get(MAILBOX_BLOCK_TIMEOUT).toString().trim());
+		} else {
+			if(mailboxCapacity > 0 && mailboxOverflowPolicy.equals(MailboxOverflowPolicies.BLOCK)){
+				if(propertiesNotFound){
+					messageStart.append(separator);
+				}
+				propertiesNotFound = true;
+				messageStart.append(MAILBOX_BLOCK_TIMEOUT);
+			}
+		}
+		
+		//priority lanes are optional
+		if (properties.containsKey(MAILBOX_PRIORITY_LANES)){
+			mailboxPriorityLanes = Math.max(Integer.parseInt(properties.get(MAILBOX_PRIORITY_LANES).toString().trim()), 1);
+		}
+		if (properties.containsKey(MAILBOX_LANE_DRAINING)){
+			String policy = properties.get(MAILBOX_LANE_DRAINING).toString().trim().toUpperCase();
+			if(LaneDrainingPolicies.isValid(policy)){
+				mailboxLaneDraining = policy;
+			} else {
+				System.out
+						.println("The value of parameter MAILBOX_LANE_DRAINING in properties file is not supported (" + policy + ")" + LINE_DELIMITER
+								+ "setting it to default value " + LaneDrainingPolicies.STRICT);
+				mailboxLaneDraining = LaneDrainingPolicies.STRICT;
+			}
+		}
+		
+		//intent dispatch strategy is optional
+		if (properties.containsKey(INTENT_DISPATCH_STRATEGY)){
+			String strategy = properties.get(INTENT_DISPATCH_STRATEGY).toString().trim().toUpperCase();
+			if(IntentDispatchStrategies.isValid(strategy)){
+				intentDispatchStrategy = strategy;
+			} else {
+				System.out
+						.println("The value of parameter INTENT_DISPATCH_STRATEGY in properties file is not supported (" + strategy + ")" + LINE_DELIMITER
+								+ "setting it to default value " + IntentDispatchStrategies.FIRST);
+				intentDispatchStrategy = IntentDispatchStrategies.FIRST;
+			}
+		}
+		
+		//semaphore diagnostics are optional
+		if (properties.containsKey(SEMAPHORE_WAIT_THRESHOLD)){
+			semaphoreWaitThreshold = Long.parseLong(properties.get(SEMAPHORE_WAIT_THRESHOLD).toString().trim());
+		}
+		if (properties.containsKey(SEMAPHORE_HOLD_THRESHOLD)){
+			semaphoreHoldThreshold = Long.parseLong(properties.get(SEMAPHORE_HOLD_THRESHOLD).toString().trim());
+		}
+		if (properties.containsKey(SEMAPHORE_STACK_SAMPLING_RATE)){
+			semaphoreStackSamplingRate = Integer.parseInt(properties.get(SEMAPHORE_STACK_SAMPLING_RATE).toString().trim());
+		}
+		SimpleSemaphore.setDiagnostics(semaphoreWaitThreshold, semaphoreHoldThreshold, semaphoreStackSamplingRate);
 			
 		if(properties.containsKey(MICROMESSAGE_VALIDATOR)){
 			try {
@@ -909,17 +1259,166 @@ public class MTRuntime extends PlatformConstants {
 		
 	}
 
+	/**
+	 * Creates a Jetlang fiber for an agent. All fibers share one fiber factory 
+	 * and executor, which is either an unbounded cached thread pool or 
+	 * (if JETLANG_BOUNDED_EXECUTOR is activated) a pool of numberOfWorkers threads. 
+	 * Note: Message handlers should not block if the bounded executor is used.
+	 * @return new (not yet started) fiber
+	 */
+	public synchronized static Fiber createJetlangFiber(){
+		if(jetlangFiberFactory == null){
+			ExecutorService executor;
+			if(jetlangBoundedExecutor){
+				final AtomicInteger threadIndex = new AtomicInteger(0);
+				jetlangBoundedExecutorService = Executors.newFixedThreadPool(Math.max(numberOfWorkers, 1), new ThreadFactory(){
+
+					@Override
+					public Thread newThread(Runnable runnable) {
+						return new JetlangWorker(runnable, "Jetlang_Worker_" + threadIndex.getAndIncrement());
+					}
+					
+				});
+				executor = jetlangBoundedExecutorService;
+			} else {
+				if(jetlangCachedExecutor == null){
+					jetlangCachedExecutor = Executors.newCachedThreadPool();
+				}
+				executor = jetlangCachedExecutor;
+			}
+			jetlangFiberFactory = new PoolFiberFactory(executor);
+		}
+		return jetlangFiberFactory.create();
+	}
+	
+	/**
+	 * Thread of the bounded Jetlang executor.
+	 */
+	private static class JetlangWorker extends Thread{
+		
+		JetlangWorker(Runnable runnable, String name){
+			super(runnable, name);
+		}
+	}
+	
+	/**
+	 * Returns the time window (in ms) for batched delivery of Jetlang messages.
+	 * @return batch interval in ms, 0 indicates immediate delivery of each message
+	 */
+	public static int getJetlangBatchInterval(){
+		return jetlangBatchInterval;
+	}
+	
+	/**
+	 * Returns the default strategy for dispatching intents among registered agents.
+	 * @return dispatch strategy (see @IntentDispatchStrategies)
+	 */
+	public static String getIntentDispatchStrategy(){
+		return intentDispatchStrategy;
+	}
+	
+	/**
+	 * Indicates if agent mailboxes have priority lanes (MICRO_FIBER, VIRTUAL_THREAD 
+	 * and JETLANG; messages dispatched via RING_BUFFER remain in FIFO order).
+	 * @return true if more than one lane is configured
+	 */
+	public static boolean usesPriorityLanes(){
+		return mailboxPriorityLanes > 1;
+	}
+	
+	/**
+	 * Registers a mailbox priority for messages containing an intent or event 
+	 * of the given class. Only relevant if priority lanes are configured 
+	 * (see MAILBOX_PRIORITY_LANES). Priorities set on individual messages 
+	 * (see MicroMessage.setPriority()) take precedence.
+	 * @param intentOrEventClass Intent or event class
+	 * @param priority Priority (lane), MicroMessage.PRIORITY_HIGHEST for highest lane
+	 */
+	public static void registerMessagePriority(Class<?> intentOrEventClass, int priority){
+		MessagePriorities.register(intentOrEventClass, priority);
+	}
+	
+	/**
+	 * Removes a mailbox priority registered for an intent or event class.
+	 * @param intentOrEventClass Intent or event class
+	 */
+	public static void deregisterMessagePriority(Class<?> intentOrEventClass){
+		MessagePriorities.deregister(intentOrEventClass);
+	}
+	
+	/**
+	 * Returns the timer shared for timeouts (e.g. of pending ask() requests). 
+	 * It runs on a single daemon thread, so scheduled tasks should be short.
+	 * @return shared timer
+	 */
+	public synchronized static ScheduledExecutorService getSharedTimer(){
+		if(sharedTimer == null){
+			sharedTimer = new ScheduledThreadPoolExecutor(1, new ThreadFactory(){
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "Micro_Timer");
+					thread.setDaemon(true);
+					return thread;
+				}
+				
+			});
+			//cancelled timeouts (i.e. answered requests) are removed immediately
+			sharedTimer.setRemoveOnCancelPolicy(true);
+		}
+		return sharedTimer;
+	}
+	
+	/**
+	 * Releases the shared Jetlang fiber factory (and the bounded executor if used).
+	 */
+	private synchronized static void shutdownJetlangExecutor(){
+		if(jetlangFiberFactory != null){
+			jetlangFiberFactory.dispose();
+			jetlangFiberFactory = null;
+		}
+		if(jetlangBoundedExecutorService != null){
+			jetlangBoundedExecutorService.shutdown();
+			jetlangBoundedExecutorService = null;
+		}
+	}
+	
 	/**
 	 * Starts the MICRO_FIBER worker threads.
 	 */
-	private static void startMicroFiberWorkers(){
+	private synchronized static void startMicroFiberWorkers(){
 		if(!microFiberWorkersStarted){
 			// Start the Core Executers for MICRO_FIBER framework
-			workers = new Worker[numberOfWorkers];
-			for (int i = 0; i < workers.length; i++) {
-				workers[i] = new Worker();
-				workers[i].setName("MicroFiber_Worker_" + i);
-				workers[i].start();
+			Worker[] newWorkers = new Worker[numberOfWorkers];
+			for (int i = 0; i < newWorkers.length; i++) {
+				newWorkers[i] = new Worker(microFiberBatchSize);
+				newWorkers[i].setName("MicroFiber_Worker_" + i);
+			}
+			for (int i = 0; i < newWorkers.length; i++) {
+				newWorkers[i].setPeers(newWorkers, i);
+				if(workerAffinity){
+					//only backlogged workers are relieved, single activations stay on their home worker
+					newWorkers[i].setStealThreshold(2);
+				}
+				newWorkers[i].start();
+			}
+			workers = newWorkers;
+			if(workerAffinity){
+				final CommunicationAffinity affinity = new CommunicationAffinity(affinitySamplingRate, AFFINITY_SAMPLE_CAPACITY);
+				final int numberOfHomeWorkers = newWorkers.length;
+				communicationAffinity = affinity;
+				affinityReplacementTask = getSharedTimer().scheduleWithFixedDelay(new Runnable(){
+
+					@Override
+					public void run() {
+						int moved = affinity.rebalance(microFibersByHandle, numberOfHomeWorkers);
+						if(moved > 0 && platformOutputLevel > 1){
+							System.out.println(new StringBuffer(getPlatformPrefix()).append("Worker affinity: moved ")
+									.append(moved).append(" agent(s) to other workers."));
+						}
+					}
+					
+				}, affinityReplacementInterval, affinityReplacementInterval, TimeUnit.MILLISECONDS);
 			}
 			microFiberWorkersStarted = true;
 			//System.out.println(getPlatformPrefix() + "MICRO_FIBER worker threads started.");
@@ -934,27 +1433,60 @@ public class MTRuntime extends PlatformConstants {
 	 */
 	public static Worker getNextWorker(){
 		if(!microFiberWorkersStarted){
-			startMicroFiberWorkers();
+			//lazy start, concurrent senders may race for it
+			synchronized(MTRuntime.class){
+				if(!microFiberWorkersStarted){
+					startMicroFiberWorkers();
+				}
+			}
 		}
-		Worker executer = workers[workerIndex % numberOfWorkers];
-		workerIndex++;
-		if(workerIndex == numberOfWorkers){
-			workerIndex = 0;
+		Worker[] currentWorkers = workers;
+		return currentWorkers[(workerIndex.getAndIncrement() & Integer.MAX_VALUE) % currentWorkers.length];
+	}
+	
+	/**
+	 * Returns the home worker of a MicroFiber (worker affinity only). MicroFibers 
+	 * are assigned round-robin upon first activation and re-placed by the 
+	 * CommunicationAffinity later on.
+	 * @param microFiber MicroFiber
+	 * @return home worker
+	 */
+	private static Worker getHomeWorker(AbstractMicroFiber microFiber){
+		int index = microFiber.getDispatchIndex();
+		Worker[] currentWorkers = workers;
+		if(!microFiberWorkersStarted || currentWorkers == null || index < 0 || index >= currentWorkers.length){
+			Worker worker = getNextWorker();
+			microFiber.setDispatchIndex(worker.getIndex());
+			return worker;
 		}
-		return executer;
+		return currentWorkers[index];
 	}
-
+	
 	/**
-	 * Returns the next available scheduler.
-	 * @return the next scheduler reference (fair selection)
+	 * Schedules a MicroFiber for execution unless already scheduled. With worker 
+	 * affinity MicroFibers are queued on their home worker. Otherwise MicroFibers 
+	 * scheduled from a worker thread (i.e. messages sent during message processing) 
+	 * are queued on this worker, else the next worker is selected round-robin.
+	 * Idle workers steal scheduled MicroFibers from busy ones.
+	 * @param microFiber MicroFiber to be scheduled
 	 */
-	public static Scheduler getNextScheduler(){
-		Scheduler scheduler = schedulers[schedulerIndex % numberOfSchedulers];
-		schedulerIndex++;
-		if(schedulerIndex == numberOfSchedulers){
-			schedulerIndex = 0;
+	private static void schedule(AbstractMicroFiber microFiber){
+		if(microFiber.trySchedule()){
+			VirtualThreadDispatcher dispatcher = virtualThreadDispatcher;
+			if(dispatcher != null){
+				dispatcher.dispatch(microFiber);
+				return;
+			}
+			if(workerAffinity){
+				getHomeWorker(microFiber).setProcess(microFiber);
+				return;
+			}
+			Worker worker = Worker.currentWorker();
+			if(worker == null || !worker.isAlive()){
+				worker = getNextWorker();
+			}
+			worker.setProcess(microFiber);
 		}
-		return scheduler;
 	}
 	
 	public static void send(MicroMessage message){
@@ -965,18 +1497,64 @@ public class MTRuntime extends PlatformConstants {
 			if(internalMessageFramework.equals(MessagePassingFrameworks.JETLANG)){
 				sendViaJetlang(message);
 			}
-			if(internalMessageFramework.equals(MessagePassingFrameworks.MICRO_FIBER)){
+			if(usesMicroFiberMailboxes()){
 				sendViaMicroFiber(message);
 			}
 		}
 	}
 	
 	private static void sendViaMicroFiber(MicroMessage message){
-		MicroMessage msg = (MicroMessage)message.clone();
-		if(msg.getRecipient().equals(broadcastPrimitive)){
-			sendMicroFiberBroadcast(msg);
+		if(message.getRecipient().equals(broadcastPrimitive)){
+			//fan-out shares a single read-only copy
+			sendMicroFiberBroadcast(message);
 		} else {
-			sendLocal(msg.getRecipient(), msg);
+			//immutable messages are shared, others copied to decouple sender and recipient
+			MicroMessage msg = message.isImmutable() ? message : (MicroMessage)message.clone();
+			deliverLocal(msg.getRecipient(), resolveRecipient(msg), msg);
+		}
+	}
+	
+	/**
+	 * Delivers a run of messages to a single local recipient in the given order. 
+	 * For MICRO_FIBER and VIRTUAL_THREAD all messages are enqueued before the 
+	 * recipient is scheduled once; other frameworks deliver each message as by send().
+	 * @param agent MicroFiber of recipient (resolved from the messages' recipient)
+	 * @param messages Messages addressed to this recipient (no broadcasts)
+	 */
+	public static void sendBatch(AbstractMicroFiber agent, List<MicroMessage> messages){
+		String agentName = agent.getAgentName();
+		if(!synchronousOperationMode && internalMessageFramework.equals(MessagePassingFrameworks.JETLANG)){
+			for(int i = 0; i < messages.size(); i++){
+				publishViaJetlang(agentName, agent, messages.get(i));
+			}
+			return;
+		}
+		boolean enqueued = false;
+		for(int i = 0; i < messages.size(); i++){
+			MicroMessage message = messages.get(i);
+			//immutable messages are shared, others copied to decouple sender and recipient
+			MicroMessage msg = message.isImmutable() ? message : (MicroMessage)message.clone();
+			if(synchronousOperationMode || ringBufferDispatcher != null){
+				deliverLocal(agentName, agent, msg);
+				continue;
+			}
+			switch(agent.putMessage(msg, senderMayBlock(agent))){
+				case MailboxLimit.REJECT:
+					rejectMessage(msg);
+					break;
+				case MailboxLimit.ACCEPT:
+				case MailboxLimit.EVICT_OLDEST:
+					enqueued = true;
+					CommunicationAffinity affinity = communicationAffinity;
+					if(affinity != null){
+						affinity.sample(msg.getSenderHandle(), agent.getHandle());
+					}
+					break;
+			}
+		}
+		if(enqueued){
+			//single activation for the whole run
+			schedule(agent);
 		}
 	}
 	
@@ -985,38 +1563,138 @@ public class MTRuntime extends PlatformConstants {
 			sendJetlangBroadcast(msg);
 		} else {
 			//System.out.println(getPlatformPrefix() + "Sent via Jetlang");
-			registeredJetlangChannelsMap.get(msg.getRecipient()).publish(msg);
+			publishViaJetlang(msg.getRecipient(), resolveRecipient(msg), msg);
 		}
 	}
 	
+	/**
+	 * Publishes a message on the Jetlang channel of an already resolved agent.
+	 * @param agentName Name of the target agent
+	 * @param agent MicroFiber of target agent (null if not registered)
+	 * @param msg Message to be published
+	 */
+	private static void publishViaJetlang(String agentName, AbstractMicroFiber agent, MicroMessage msg){
+		MemoryChannel<MicroMessage> channel = agent == null ? null : jetlangChannelsByHandle.get(agent.getHandle());
+		if(channel == null || agent == null){
+			//recipient may have been unregistered concurrently
+			System.out.println(new StringBuilder(getPlatformPrefix()).append("Message sent to an unregistered Process: ")
+					.append(agentName));
+		} else if(usesPriorityLanes()){
+			//messages are queued in the priority lanes, the published message only 
+			//triggers the agent's Jetlang callback to take the next message from the lanes
+			switch(agent.putMessage(msg, senderMayBlock(agent))){
+				case MailboxLimit.ACCEPT:
+				case MailboxLimit.EVICT_OLDEST:
+					channel.publish(msg);
+					break;
+				case MailboxLimit.REJECT:
+					rejectMessage(msg);
+					break;
+			}
+		} else {
+			//the agent's Jetlang callback releases the mailbox capacity and in-flight count upon dequeuing
+			switch(agent.getMailboxLimit().admit(senderMayBlock(agent))){
+				case MailboxLimit.ACCEPT:
+					InFlightMessageCounter.messageEnqueued();
+					channel.publish(msg);
+					break;
+				case MailboxLimit.EVICT_OLDEST:
+					if(agent.getMailboxLimit().markForEviction()){
+						InFlightMessageCounter.messageEnqueued();
+						channel.publish(msg);
+					}
+					break;
+				case MailboxLimit.REJECT:
+					rejectMessage(msg);
+					break;
+			}
+		}
+	}
 	
-	public synchronized static void sendLocalBroadcast(MicroMessage message){
-		message.setRecipient(broadcastPrimitive);
-		if(internalMessageFramework.equals(MessagePassingFrameworks.MICRO_FIBER)){
-			sendMicroFiberBroadcast(message);
+	
+	public static void sendLocalBroadcast(MicroMessage message){
+		//single read-only copy shared by all recipients
+		ImmutableMicroMessage base = ImmutableMicroMessage.copyOf(message).withRecipient(broadcastPrimitive);
+		if(usesMicroFiberMailboxes()){
+			sendMicroFiberBroadcast(base);
 		}
 		if(internalMessageFramework.equals(MessagePassingFrameworks.JETLANG)){
-			sendJetlangBroadcast(message);
+			sendJetlangBroadcast(base);
 		}
 	}
 	
-	private synchronized static void sendMicroFiberBroadcast(MicroMessage message){
-		Iterator<String> it = registeredMicroFibersMap.keySet().iterator();
-		String sender = message.getSender();
-		String tempTarget;
-		MicroMessage newMessage = null;
-		while(it.hasNext()){
-			tempTarget = it.next();
-			if(!tempTarget.equals(sender)){
-				newMessage = (MicroMessage) message.clone();
-				newMessage.setRecipient(tempTarget);
-				sendLocal(tempTarget, newMessage);
+	/**
+	 * Delivers a broadcast to all registered agents but the sender. The payload is copied 
+	 * at most once; each recipient receives a lightweight envelope that only carries its 
+	 * own recipient field and shares all other fields with the base message.
+	 * @param message Broadcast message
+	 */
+	private static void sendMicroFiberBroadcast(MicroMessage message){
+		ImmutableMicroMessage base = ImmutableMicroMessage.copyOf(message);
+		String sender = base.getSender();
+		FanOutSnapshot snapshot = getFanOutSnapshot();
+		for(int i = 0; i < snapshot.names.length; i++){
+			if(!snapshot.names[i].equals(sender)){
+				deliverLocal(snapshot.names[i], snapshot.fibers[i], base.withRecipient(snapshot.names[i]));
 			}
 		}
 	}
 	
+	/**
+	 * Returns the current snapshot of registered agents for fan-out, 
+	 * rebuilding it if the registry has changed since it has been taken.
+	 * @return snapshot of registered agents
+	 */
+	private static FanOutSnapshot getFanOutSnapshot(){
+		FanOutSnapshot snapshot = fanOutSnapshot;
+		if(snapshot == null){
+			//rebuild under registry lock, so no concurrent (de)registration is missed
+			synchronized(MTRuntime.class){
+				snapshot = fanOutSnapshot;
+				if(snapshot == null){
+					snapshot = new FanOutSnapshot(registeredMicroFibersMap);
+					fanOutSnapshot = snapshot;
+				}
+			}
+		}
+		return snapshot;
+	}
+	
+	/**
+	 * Immutable array-based copy of the agent registry.
+	 */
+	private static final class FanOutSnapshot {
+		
+		private final String[] names;
+		private final AbstractMicroFiber[] fibers;
+		
+		private FanOutSnapshot(Map<String, AbstractMicroFiber> registry){
+			names = new String[registry.size()];
+			fibers = new AbstractMicroFiber[names.length];
+			int i = 0;
+			for(Map.Entry<String, AbstractMicroFiber> entry: registry.entrySet()){
+				names[i] = entry.getKey();
+				fibers[i] = entry.getValue();
+				i++;
+			}
+		}
+	}
+	
+	/**
+	 * Publishes a broadcast on the channels of all registered agents but the sender 
+	 * (as for MicroFiber broadcasts), so that each delivery is subject to mailbox 
+	 * limits and in-flight accounting.
+	 * @param message Broadcast message
+	 */
 	private static void sendJetlangBroadcast(MicroMessage message) {
-		broadCastChannel.publish(message);
+		ImmutableMicroMessage base = ImmutableMicroMessage.copyOf(message);
+		String sender = base.getSender();
+		FanOutSnapshot snapshot = getFanOutSnapshot();
+		for(int i = 0; i < snapshot.names.length; i++){
+			if(!snapshot.names[i].equals(sender)){
+				publishViaJetlang(snapshot.names[i], snapshot.fibers[i], base.withRecipient(snapshot.names[i]));
+			}
+		}
 	}
 	
 	/**
@@ -1027,6 +1705,7 @@ public class MTRuntime extends PlatformConstants {
 	 */
 	protected static void sendRemotecast(MicroMessage message, String keyPrimitive){
 		//network broadcast
+		message = message.toMutable();
 		message.setRecipient(keyPrimitive);
 		Iterator<String> it = propagatedNodes.keySet().iterator();
 		while(it.hasNext()){
@@ -1050,14 +1729,13 @@ public class MTRuntime extends PlatformConstants {
 	}
 	
 	/**
-	 * Sends a message to a registered agent.
-	 * @param agentName Name of the target agent.
-	 * @param message Message sent to target (format map of key-value pairs)
+	 * Delivers a message to an already resolved agent. Does not acquire any global lock; 
+	 * the routing tables are concurrent and mailboxes are thread-safe.
+	 * @param agentName Name of the target agent
+	 * @param agent MicroFiber of target agent (null if not registered)
+	 * @param message Message to be delivered
 	 */
-	private synchronized static void sendLocal(String agentName, Message message){
-
-		//pick target agent
-		AbstractMicroFiber agent = getRegisteredAgent(agentName);
+	private static void deliverLocal(String agentName, AbstractMicroFiber agent, Message message){
 		if (agent == null) {
 			System.out.println(new StringBuilder(getPlatformPrefix()).append("Message sent to an unregistered Process: ")
 					.append(agentName));
@@ -1065,27 +1743,163 @@ public class MTRuntime extends PlatformConstants {
 		} else {
 			//deliver it synchronously
 			if(synchronousOperationMode){
-				agent.service(message);
+				InFlightMessageCounter.messageEnqueued();
+				try{
+					agent.service(message);
+				} finally {
+					InFlightMessageCounter.messageProcessed();
+				}
+			} else if(ringBufferDispatcher != null){
+				//publish into ring of agent's worker, which releases the mailbox capacity and in-flight count upon delivery
+				switch(agent.getMailboxLimit().admit(senderMayBlock(agent))){
+					case MailboxLimit.ACCEPT:
+						InFlightMessageCounter.messageEnqueued();
+						ringBufferDispatcher.dispatch(agent, message);
+						break;
+					case MailboxLimit.EVICT_OLDEST:
+						if(agent.getMailboxLimit().markForEviction()){
+							InFlightMessageCounter.messageEnqueued();
+							ringBufferDispatcher.dispatch(agent, message);
+						}
+						break;
+					case MailboxLimit.REJECT:
+						if(message instanceof MicroMessage){
+							rejectMessage((MicroMessage)message);
+						}
+						break;
+				}
 			} else {
 				//deliver it asynchronously
-				agent.putMessage(message);
-				//schedule processing of message delivery
-				Scheduler.setAgent(agent);
+				switch(agent.putMessage(message, senderMayBlock(agent))){
+					case MailboxLimit.ACCEPT:
+					case MailboxLimit.EVICT_OLDEST:
+						CommunicationAffinity affinity = communicationAffinity;
+						if(affinity != null && message instanceof MicroMessage){
+							affinity.sample(((MicroMessage)message).getSenderHandle(), agent.getHandle());
+						}
+						//schedule processing of message delivery
+						schedule(agent);
+						break;
+					case MailboxLimit.REJECT:
+						if(message instanceof MicroMessage){
+							rejectMessage((MicroMessage)message);
+						}
+						break;
+				}
 			}
 		}
 	}
 	
+	/**
+	 * Notifies the sender of a message that has been rejected as of a full mailbox.
+	 * @param message Rejected message
+	 */
+	private static void rejectMessage(MicroMessage message){
+		MTConnector.notifySender((MicroMessage)message.clone(), MessageFields.ERROR_MESSAGE, 12, platformOutputLevel > 1, true);
+	}
+	
+	/**
+	 * Indicates if the sender of a message may be blocked on the full mailbox of 
+	 * the given recipient (BLOCK policy). This is not the case if the sender runs 
+	 * on the thread that would need to drain the recipient's mailbox, i.e. if it 
+	 * sends while processing a message of the recipient, to an agent of the same RING_BUFFER worker, or to 
+	 * any agent while being processed by the only MICRO_FIBER worker (or on the 
+	 * home worker of the recipient with worker affinity) or the only thread of the 
+	 * bounded Jetlang executor. Such senders are rejected immediately.
+	 * @param agent Recipient
+	 * @return true if sender may wait for mailbox capacity
+	 */
+	private static boolean senderMayBlock(AbstractMicroFiber agent){
+		if(!agent.getMailboxLimit().blocksSenders()){
+			return true;
+		}
+		if(agent.isProcessedByCurrentThread()){
+			return false;
+		}
+		RingBufferDispatcher ringDispatcher = ringBufferDispatcher;
+		if(ringDispatcher != null){
+			return !ringDispatcher.isHomeWorker(agent);
+		}
+		Worker worker = Worker.currentWorker();
+		if(worker != null){
+			Worker[] currentWorkers = workers;
+			if(currentWorkers == null || currentWorkers.length <= 1){
+				return false;
+			}
+			return !(workerAffinity && getHomeWorker(agent) == worker);
+		}
+		return !(Thread.currentThread() instanceof JetlangWorker && numberOfWorkers <= 1);
+	}
+	
+	/**
+	 * Creates the mailbox limit for a new agent based on the platform defaults.
+	 * @return mailbox limit
+	 */
+	private static MailboxLimit createDefaultMailboxLimit(){
+		return new MailboxLimit(mailboxCapacity, mailboxOverflowPolicy, mailboxBlockTimeout);
+	}
+	
+	/**
+	 * Returns the default time (in ms) senders are blocked on full mailboxes 
+	 * (for overflow policy BLOCK).
+	 * @return block timeout in ms
+	 */
+	public static long getMailboxBlockTimeout(){
+		return mailboxBlockTimeout;
+	}
+	
+	/**
+	 * Indicates if the configured message passing framework delivers via 
+	 * MicroFiber mailboxes (MICRO_FIBER and VIRTUAL_THREAD) or the rings 
+	 * of the RING_BUFFER workers.
+	 * @return true if MicroFiber mailboxes (or rings) are used
+	 */
+	public static boolean usesMicroFiberMailboxes(){
+		return internalMessageFramework.equals(MessagePassingFrameworks.MICRO_FIBER)
+				|| internalMessageFramework.equals(MessagePassingFrameworks.VIRTUAL_THREAD)
+				|| internalMessageFramework.equals(MessagePassingFrameworks.RING_BUFFER);
+	}
+	
+	/**
+	 * Blocks until all locally sent messages have been processed by their recipients 
+	 * (including messages sent while processing), i.e. until the platform is quiescent. 
+	 * Works for all internal message passing frameworks and the synchronous mode.
+	 * @param timeout Maximal time to wait in ms
+	 * @return true if quiescent, false if timed out (or interrupted)
+	 */
+	public static boolean awaitQuiescence(long timeout){
+		try {
+			return InFlightMessageCounter.awaitQuiescence(timeout);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+	
+	/**
+	 * Returns the number of locally sent messages whose processing by 
+	 * the recipients has not completed yet.
+	 * @return number of in-flight messages
+	 */
+	public static long getInFlightMessages(){
+		return InFlightMessageCounter.getInFlightMessages();
+	}
+	
 	/**
 	 * Indicates if all messages to agents have been delivered 
-	 * (if MICRO_FIBER message passing is configured, else returns null)
+	 * (if MICRO_FIBER, VIRTUAL_THREAD or RING_BUFFER message passing is configured, else returns null)
 	 * @return boolean indicating that message queues for all agents are empty
 	 */
 	public static Boolean allMicroFiberMessagesDelivered(){
-		if(!internalMessageFramework.equals(MessagePassingFrameworks.MICRO_FIBER)){
+		if(!usesMicroFiberMailboxes()){
 			System.err.println(new StringBuffer(getPlatformPrefix())
-				.append(" Check empty message queues only works if using MICRO_FIBER message passing.").append(LINE_DELIMITER).append("Call to method ignored."));
+				.append(" Check empty message queues only works if using MICRO_FIBER, VIRTUAL_THREAD or RING_BUFFER message passing.").append(LINE_DELIMITER).append("Call to method ignored."));
 			return null;
 		} else {
+			RingBufferDispatcher dispatcher = ringBufferDispatcher;
+			if(dispatcher != null && !dispatcher.isEmpty()){
+				return false;
+			}
 			for(AbstractMicroFiber fiber: registeredMicroFibersMap.values()){
 				if(!fiber.hasEmptyMessageQueue()){
 					return false;
@@ -1104,6 +1918,9 @@ public class MTRuntime extends PlatformConstants {
 	public static synchronized void sendRemote(String nodeName, String processName, int port, Message rawMessage) {
 		if(isDistributed) {
 			
+			if(rawMessage instanceof MicroMessage){
+				rawMessage = ((MicroMessage)rawMessage).toMutable();
+			}
 			// mark this message as sent by local host (to avoid processing of 'loop' messages)
 			rawMessage.addLocalNodeToSenderLog();
 			// serialize remote agent name
@@ -1120,6 +1937,74 @@ public class MTRuntime extends PlatformConstants {
 		}
 	}
 	
+	/**
+	 * Sends messages to agents on the same remote node. The messages are 
+	 * handed to the network writer together.
+	 * @param nodeName - remote node or ip address
+	 * @param port - port of remote node
+	 * @param messages - messages (recipient is target agent on remote node)
+	 */
+	public static synchronized void sendRemote(String nodeName, int port, List<MicroMessage> messages) {
+		if(isDistributed) {
+			ArrayList<Message> rawMessages = new ArrayList<Message>(messages.size());
+			for(int i = 0; i < messages.size(); i++){
+				MicroMessage rawMessage = messages.get(i).toMutable();
+				// mark this message as sent by local host (to avoid processing of 'loop' messages)
+				rawMessage.addLocalNodeToSenderLog();
+				// serialize remote agent name
+				rawMessage.put(processSerializationKeyword, rawMessage.getRecipient());
+				// set local incoming port (in case of return)
+				rawMessage.put(MicroMessage.MSG_PARAM_SENDER_PORT, networkConnector.getPort());
+				rawMessages.add(rawMessage);
+			}
+			if(debug){
+				System.out.println(getPlatformPrefix() + "Sending " + rawMessages.size() + " messages to " + nodeName + ":" + port);
+			}
+			networkConnector.sendMessages(rawMessages, nodeName, port);
+		} else {
+			System.out.println(new StringBuilder(getPlatformPrefix()).append("Platform is not initalized for DISTRIBUTED_MODE."));
+		}
+	}
+	
+	/**
+	 * Resolves the MicroFiber of a message's local recipient. Uses the recipient handle 
+	 * cached in the message if it is still valid, else resolves the recipient name 
+	 * and caches its handle in the message (unless the message is immutable and 
+	 * thus potentially shared).
+	 * @param message Message
+	 * @return MicroFiber of recipient or null if not registered locally
+	 */
+	public static AbstractMicroFiber resolveRecipient(MicroMessage message){
+		String recipient = message.getRecipient();
+		AbstractMicroFiber agent = getRegisteredAgent(message.getRecipientHandle(), recipient);
+		if(agent == null){
+			agent = registeredMicroFibersMap.get(recipient);
+			if(agent != null && !message.isImmutable()){
+				message.setRecipientHandle(agent.getHandle());
+			}
+		}
+		return agent;
+	}
+	
+	/**
+	 * Returns the MicroFiber registered under a given handle if it 
+	 * (still) belongs to the given agent.
+	 * @param handle Agent handle
+	 * @param agentName Agent name
+	 * @return MicroFiber or null if handle is invalid
+	 */
+	public static AbstractMicroFiber getRegisteredAgent(int handle, String agentName) {
+		AtomicReferenceArray<AbstractMicroFiber> table = microFibersByHandle;
+		if(handle >= 0 && handle < table.length()){
+			AbstractMicroFiber agent = table.get(handle);
+			//handles are reused, so check name
+			if(agent != null && agent.getAgentName().equals(agentName)){
+				return agent;
+			}
+		}
+		return null;
+	}
+	
 	/**
 	 * Get the Process from registeredProcessMap if registered.
 	 * 
@@ -1134,17 +2019,38 @@ public class MTRuntime extends PlatformConstants {
 	}
 
 	
-	public static void register(String agentName, MessageCommunicator agent)
+	/**
+	 * Registers an agent with the message transport. Registration is serialized,
+	 * whereas sending only reads the concurrent registry maps.
+	 * @param agentName Name of agent
+	 * @param agent Agent instance
+	 * @return dense local handle assigned to the agent
+	 * @throws RuntimeException if agent name is already registered or reserved
+	 */
+	public synchronized static int register(String agentName, MessageCommunicator agent)
 		throws RuntimeException {
 		//lazy initialization
 		if(!platformInitialized){
 			initializePlatform();
 		}
 		if (registeredMicroFibersMap.get(agentName) == null && !reservedWords.contains(agentName)) {
-			registeredMicroFibersMap.put(agentName, new MicroFiber(agent));
+			int handle = allocateHandle();
+			//channel first, as concurrent senders check the fiber map to determine registration
 			if(internalMessageFramework.equals(MessagePassingFrameworks.JETLANG)){
-				registeredJetlangChannelsMap.put(agentName, new MemoryChannel<MicroMessage>());
-			}
+				MemoryChannel<MicroMessage> channel = new MemoryChannel<MicroMessage>();
+				jetlangChannelsByHandle.set(handle, channel);
+				registeredJetlangChannelsMap.put(agentName, channel);
+			}
+			MicroFiber microFiber = new MicroFiber(agent, createDefaultMailboxLimit(), 
+					new MailboxLanes(mailboxPriorityLanes, mailboxLaneDraining));
+			microFiber.assignHandle(handle, agentName);
+			if(ringBufferDispatcher != null){
+				ringBufferDispatcher.assign(microFiber);
+			}
+			microFibersByHandle.set(handle, microFiber);
+			registeredMicroFibersMap.put(agentName, microFiber);
+			addAgentName(agentName);
+			fanOutSnapshot = null;
 			if(isPropagating && isDistributed){
 				Iterator<String> it = propagatedNodes.keySet().iterator();
 				while(it.hasNext()){
@@ -1158,15 +2064,206 @@ public class MTRuntime extends PlatformConstants {
 					activateSelectivePrintingForAgent(agentName, false);
 				}
 			}
+			return handle;
 		} else {
 			throw new RuntimeException("Agent "+ agentName +" already exists or agent name is reserved word.");
 		}
 	}
+	
+	/**
+	 * Allocates a handle for a new agent, preferably one released by 
+	 * an unregistered agent. Grows the routing tables if necessary. 
+	 * Called while holding the registry lock.
+	 * @return handle
+	 */
+	private static int allocateHandle(){
+		if(freeHandleCount > 0){
+			return freeHandles[--freeHandleCount];
+		}
+		int handle = nextHandle++;
+		if(handle == microFibersByHandle.length()){
+			int length = handle * 2;
+			AtomicReferenceArray<AbstractMicroFiber> fibers = new AtomicReferenceArray<AbstractMicroFiber>(length);
+			AtomicReferenceArray<MemoryChannel<MicroMessage>> channels = new AtomicReferenceArray<MemoryChannel<MicroMessage>>(length);
+			for(int i = 0; i < handle; i++){
+				fibers.set(i, microFibersByHandle.get(i));
+				channels.set(i, jetlangChannelsByHandle.get(i));
+			}
+			microFibersByHandle = fibers;
+			jetlangChannelsByHandle = channels;
+		}
+		return handle;
+	}
+	
+	/**
+	 * Releases the handle of an unregistered agent for reuse. 
+	 * Called while holding the registry lock.
+	 * @param handle Handle
+	 */
+	private static void releaseHandle(int handle){
+		microFibersByHandle.set(handle, null);
+		jetlangChannelsByHandle.set(handle, null);
+		if(freeHandleCount == freeHandles.length){
+			freeHandles = Arrays.copyOf(freeHandles, freeHandleCount * 2);
+		}
+		freeHandles[freeHandleCount++] = handle;
+	}
 
+	/**
+	 * Appends an agent name to the indexable name table. 
+	 * Called while holding the registry lock.
+	 * @param agentName Agent name
+	 */
+	private static void addAgentName(String agentName){
+		AgentWeightProvider provider = agentWeightProvider;
+		double weight = provider != null ? provider.getWeight(agentName) : 0;
+		synchronized(agentWeights){
+			int index = numberOfAgentNames;
+			if(index == agentNamesByIndex.length()){
+				AtomicReferenceArray<String> names = new AtomicReferenceArray<String>(index * 2);
+				for(int i = 0; i < index; i++){
+					names.set(i, agentNamesByIndex.get(i));
+				}
+				agentNamesByIndex = names;
+			}
+			agentNamesByIndex.set(index, agentName);
+			agentNamePositions.put(agentName, index);
+			agentWeights.set(index, weight);
+			numberOfAgentNames = index + 1;
+		}
+	}
+	
+	/**
+	 * Removes an agent name from the indexable name table by moving the 
+	 * last entry into its position. Called while holding the registry lock.
+	 * @param agentName Agent name
+	 */
+	private static void removeAgentName(String agentName){
+		synchronized(agentWeights){
+			Integer index = agentNamePositions.remove(agentName);
+			if(index == null){
+				return;
+			}
+			int last = numberOfAgentNames - 1;
+			if(index != last){
+				String moved = agentNamesByIndex.get(last);
+				agentNamesByIndex.set(index, moved);
+				agentNamePositions.put(moved, index);
+			}
+			agentWeights.set(index, agentWeights.get(last));
+			agentWeights.set(last, 0);
+			agentNamesByIndex.set(last, null);
+			numberOfAgentNames = last;
+		}
+	}
+	
+	/**
+	 * Sets the provider of initial selection weights for agents registered 
+	 * from now on (see AgentWeightProvider).
+	 * @param provider Weight provider (null: new agents have weight 0)
+	 */
+	public static void setAgentWeightProvider(AgentWeightProvider provider){
+		agentWeightProvider = provider;
+	}
+	
+	/**
+	 * Sets the selection weight of a registered agent for weighted randomcasts.
+	 * @param agentName Agent name
+	 * @param weight Weight (0: agent is not selected)
+	 * @return false if agent is not registered
+	 */
+	public static boolean setAgentWeight(String agentName, double weight){
+		synchronized(agentWeights){
+			Integer index = agentNamePositions.get(agentName);
+			if(index == null){
+				return false;
+			}
+			agentWeights.set(index, weight);
+			return true;
+		}
+	}
+	
+	/**
+	 * Returns the selection weight of a registered agent.
+	 * @param agentName Agent name
+	 * @return weight (0 if not registered)
+	 */
+	public static double getAgentWeight(String agentName){
+		synchronized(agentWeights){
+			Integer index = agentNamePositions.get(agentName);
+			return index == null ? 0 : agentWeights.get(index);
+		}
+	}
+	
+	/**
+	 * Draws distinct registered agents with probability proportional to their 
+	 * weight (without replacement), each draw taking O(log n).
+	 * @param numberOfTargets Number of agents to be drawn
+	 * @param excludedAgents Agents not to be drawn (may be null)
+	 * @param random Random number generator
+	 * @return drawn agents, less than requested if insufficient agents with positive weight
+	 */
+	public static ArrayList<String> drawWeightedAgents(int numberOfTargets, Collection<String> excludedAgents, MersenneTwisterFast random){
+		ArrayList<String> drawn = new ArrayList<String>(numberOfTargets);
+		synchronized(agentWeights){
+			//excluded and drawn agents are removed temporarily
+			ArrayList<Integer> positions = new ArrayList<Integer>();
+			ArrayList<Double> weights = new ArrayList<Double>();
+			if(excludedAgents != null){
+				for(String agent: excludedAgents){
+					Integer position = agentNamePositions.get(agent);
+					if(position != null && agentWeights.get(position) > 0){
+						positions.add(position);
+						weights.add(agentWeights.get(position));
+						agentWeights.set(position, 0);
+					}
+				}
+			}
+			//stops once no positive weight is left (rather than relying on the rounded total)
+			while(drawn.size() < numberOfTargets && agentWeights.getNumberOfPositiveWeights() > 0){
+				int position = agentWeights.find(random.nextDouble() * agentWeights.getTotal());
+				drawn.add(agentNamesByIndex.get(position));
+				positions.add(position);
+				weights.add(agentWeights.get(position));
+				agentWeights.set(position, 0);
+			}
+			for(int i = positions.size() - 1; i >= 0; i--){
+				agentWeights.set(positions.get(i), weights.get(i));
+			}
+		}
+		return drawn;
+	}
+	
+	/**
+	 * Returns the number of locally registered agents, i.e. the range of 
+	 * valid indices for getRegisteredAgentName().
+	 * @return number of registered agents
+	 */
+	public static int getNumberOfRegisteredAgents(){
+		return numberOfAgentNames;
+	}
+	
+	/**
+	 * Returns the name of the registered agent at a given index (0 to 
+	 * getNumberOfRegisteredAgents() - 1). Indices change upon unregistration 
+	 * of agents, which is why the name may be null or, exceptionally, 
+	 * returned for two indices while agents are concurrently unregistered.
+	 * @param index Index
+	 * @return agent name or null if no agent is registered at this index
+	 */
+	public static String getRegisteredAgentName(int index){
+		AtomicReferenceArray<String> names = agentNamesByIndex;
+		return index >= 0 && index < names.length() ? names.get(index) : null;
+	}
+	
 	public synchronized static void unregister(String agentName){
 		if (registeredMicroFibersMap.containsKey(agentName)){
-			registeredMicroFibersMap.remove(agentName);
+			AbstractMicroFiber microFiber = registeredMicroFibersMap.remove(agentName);
 			registeredJetlangChannelsMap.remove(agentName);
+			releaseHandle(microFiber.getHandle());
+			removeAgentName(agentName);
+			agentRandomStreams.remove(agentName);
+			fanOutSnapshot = null;
 			if(isPropagating && isDistributed){
 				Iterator<String> it = propagatedNodes.keySet().iterator();
 				while(it.hasNext()){
@@ -1684,6 +2781,11 @@ public class MTRuntime extends PlatformConstants {
 				.append("Reinitializing running random number generator with updated seed."));
 			random.setSeed(seed);
 		}
+		//existing agent streams restart from their newly derived state
+		seedRevision.incrementAndGet();
+		for(Map.Entry<String, MersenneTwisterFast> stream: agentRandomStreams.entrySet()){
+			stream.getValue().setSeed(deriveStreamSeed(seed, stream.getKey()));
+		}
 	}
 	
 	/**
@@ -1707,6 +2809,90 @@ public class MTRuntime extends PlatformConstants {
 		return random;
 	}
 	
+	/**
+	 * Returns the random number stream of a given agent. Streams are derived 
+	 * from the platform seed (RANDOM_NUMBER_GENERATOR_SEED) and the agent name, 
+	 * so that an agent draws the same sequence in each run with the same seed, 
+	 * independent of other agents' draws and thread interleaving. 
+	 * The stream is not synchronized and is to be used by the agent's own roles only. 
+	 * Living agents hold their stream themselves (independent of message transport 
+	 * registration, see AbstractAgent.getRandomNoGenerator()); streams of other 
+	 * registered names are kept here. Any other names (e.g. senders of external 
+	 * messages) receive a new stream seeded from the platform generator.
+	 * @param agentName Agent name
+	 * @return random number generator for this agent
+	 */
+	public static MersenneTwisterFast getRandomNoGenerator(String agentName){
+		final AbstractAgent[] living = MTConnector.getIndexedAgents(agentName);
+		if(living.length > 0){
+			return living[0].getRandomNoGenerator();
+		}
+		MersenneTwisterFast stream = agentRandomStreams.get(agentName);
+		if(stream == null){
+			if(!registeredMicroFibersMap.containsKey(agentName)){
+				startRandomNoGenerator();
+				return new MersenneTwisterFast(random.nextLong());
+			}
+			stream = new MersenneTwisterFast(deriveStreamSeed(seed, agentName));
+			MersenneTwisterFast existing = agentRandomStreams.putIfAbsent(agentName, stream);
+			if(existing != null){
+				stream = existing;
+			} else if(!registeredMicroFibersMap.containsKey(agentName)){
+				//agent unregistered concurrently
+				agentRandomStreams.remove(agentName, stream);
+			}
+		}
+		return stream;
+	}
+	
+	/**
+	 * Returns a new random number stream for the given agent name, derived from 
+	 * the current platform seed. To be re-derived once the seed revision changes.
+	 * @param agentName Agent name
+	 * @return random number generator for this agent
+	 */
+	public static MersenneTwisterFast createRandomNoGenerator(String agentName){
+		return new MersenneTwisterFast(deriveStreamSeed(seed, agentName));
+	}
+	
+	/**
+	 * Returns the revision of the platform seed, incremented upon every call of 
+	 * setRandomNumberGeneratorSeed().
+	 * @return seed revision
+	 */
+	public static int getRandomNumberGeneratorSeedRevision(){
+		return seedRevision.get();
+	}
+	
+	/**
+	 * Derives the seed of an agent's random number stream by mixing platform 
+	 * seed and a 64-bit hash of the agent name (SplitMix64), which serves as 
+	 * initialization array for the Mersenne Twister.
+	 * @param seed Platform seed
+	 * @param agentName Agent name
+	 * @return initialization array
+	 */
+	private static int[] deriveStreamSeed(long seed, String agentName){
+		//FNV-1a hash of name
+		long nameHash = 0xcbf29ce484222325L;
+		for(int i = 0; i < agentName.length(); i++){
+			nameHash ^= agentName.charAt(i);
+			nameHash *= 0x100000001b3L;
+		}
+		long state = seed ^ nameHash;
+		int[] init = new int[8];
+		for(int i = 0; i < init.length; i += 2){
+			state += 0x9e3779b97f4a7c15L;
+			long value = state;
+			value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+			value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+			value ^= value >>> 31;
+			init[i] = (int)value;
+			init[i + 1] = (int)(value >>> 32);
+		}
+		return init;
+	}
+	
 	/**
 	 * Returns a unique runtime ID for the platform. Unique for every instance
 	 * and changing upon every platform (re)initialization.
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.messaging.message;
+
+import java.io.Serializable;
+
+/**
+ * Small immutable map from field names to values based on open addressing 
+ * (linear probing) over two parallel arrays. It is used as payload store of 
+ * immutable messages and avoids the per-entry node objects of a HashMap. 
+ * The table is filled at most to half its capacity.
+ *
+ */
+public final class CompactFieldMap implements Serializable {
+
+	private static final long serialVersionUID = 4021536409744358871L;
+
+	/** map without entries */
+	public static final CompactFieldMap EMPTY = new CompactFieldMap(new String[0], new Object[0], 0);
+	
+	private final String[] keys;
+	private final Object[] values;
+	private final int size;
+	
+	/**
+	 * Creates the map from the given entries. Entries with null key are ignored 
+	 * (null values are kept), for duplicate keys the later entry is used.
+	 * @param entryKeys Keys
+	 * @param entryValues Values (same order as keys)
+	 * @param count Number of entries to be considered
+	 */
+	public CompactFieldMap(String[] entryKeys, Object[] entryValues, int count){
+		int capacity = 2;
+		while(capacity < count * 2){
+			capacity <<= 1;
+		}
+		keys = new String[capacity];
+		values = new Object[capacity];
+		int entries = 0;
+		for(int i = 0; i < count; i++){
+			if(entryKeys[i] == null){
+				continue;
+			}
+			int slot = slot(entryKeys[i]);
+			if(keys[slot] == null){
+				keys[slot] = entryKeys[i];
+				entries++;
+			}
+			values[slot] = entryValues[i];
+		}
+		size = entries;
+	}
+	
+	/**
+	 * Returns the slot holding the given key or the empty slot it would be put in.
+	 * @param key Key
+	 * @return slot index
+	 */
+	private int slot(String key){
+		int mask = keys.length - 1;
+		int hash = key.hashCode();
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while(keys[slot] != null && !keys[slot].equals(key)){
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+	
+	/**
+	 * Returns the value for a given key.
+	 * @param key Key
+	 * @return value or null if not contained
+	 */
+	public Object get(String key){
+		if(size == 0 || key == null){
+			return null;
+		}
+		return values[slot(key)];
+	}
+	
+	/**
+	 * Indicates if the map contains a given key.
+	 * @param key Key
+	 * @return true if contained
+	 */
+	public boolean containsKey(String key){
+		if(size == 0 || key == null){
+			return false;
+		}
+		return keys[slot(key)] != null;
+	}
+	
+	/**
+	 * Returns the number of entries.
+	 * @return number of entries
+	 */
+	public int size(){
+		return size;
+	}
+	
+	/**
+	 * Returns the number of slots (for iteration via keyAt() and valueAt()).
+	 * @return number of slots
+	 */
+	public int capacity(){
+		return keys.length;
+	}
+	
+	/**
+	 * Returns the key in a given slot.
+	 * @param slot Slot index
+	 * @return key or null if slot is empty
+	 */
+	public String keyAt(int slot){
+		return keys[slot];
+	}
+	
+	/**
+	 * Returns the value in a given slot.
+	 * @param slot Slot index
+	 * @return value or null if slot is empty
+	 */
+	public Object valueAt(int slot){
+		return values[slot];
+	}
+	
+}
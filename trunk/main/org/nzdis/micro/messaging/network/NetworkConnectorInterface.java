@@ -20,6 +20,8 @@
  ******************************************************************************/
 package org.nzdis.micro.messaging.network;
 
+import java.util.List;
+
 import org.nzdis.micro.messaging.message.Message;
 
 /**
@@ -38,6 +40,19 @@ public interface NetworkConnectorInterface {
 	
 	public void sendMessage(Message message, String host, int port);
 	
+	/**
+	 * Sends several messages to the same remote node in the given order. 
+	 * Sends each message individually unless overridden by the connector.
+	 * @param messages Messages
+	 * @param host Remote node
+	 * @param port Port of remote node
+	 */
+	public default void sendMessages(List<? extends Message> messages, String host, int port){
+		for(int i = 0; i < messages.size(); i++){
+			sendMessage(messages.get(i), host, port);
+		}
+	}
+	
 	/**
 	 * Indicates a prefix to augment eventual debug output with 
 	 * meaningful source reference.
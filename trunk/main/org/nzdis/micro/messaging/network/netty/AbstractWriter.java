@@ -23,6 +23,7 @@ package org.nzdis.micro.messaging.network.netty;
 import java.net.InetSocketAddress;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -193,6 +194,25 @@ public abstract class AbstractWriter extends Thread {
 		}
 	}
 
+	/**
+	 * Queues several messages for the same target node at once.
+	 * @param messages Messages
+	 * @param host Target node
+	 * @param port Target port
+	 */
+	public void sendMessages(List<? extends Message> messages, String host, Integer port){
+		for(int i = 0; i < messages.size(); i++){
+			messages.get(i).put(NettyNetworkConnector.TARGET_NODE_KEYWORD, host);
+			messages.get(i).put(NettyNetworkConnector.TARGET_PORT_KEYWORD, port);
+		}
+		if(running){
+			messageQueue.addAll(messages);
+		} else {
+			System.err.println(NettyNetworkConnector.getInstance().getPrefix() + "Network connector rejected " + messages.size() 
+					+ " outgoing messages as it is shutting down.");
+		}
+	}
+
 	private synchronized void processMessageQueue() {
 		
 		Message message = null;
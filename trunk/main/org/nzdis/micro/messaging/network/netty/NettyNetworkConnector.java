@@ -20,6 +20,8 @@
  ******************************************************************************/
 package org.nzdis.micro.messaging.network.netty;
 
+import java.util.List;
+
 import org.nzdis.micro.MTConnector;
 import org.nzdis.micro.MicroMessage;
 import org.nzdis.micro.constants.SerializationTypes;
@@ -99,6 +101,17 @@ public class NettyNetworkConnector extends AbstractNetworkReader implements Netw
 		}
 	}
 	
+	@Override
+	public void sendMessages(List<? extends Message> messages, String host, int port){
+		if(!networkStarted){
+			startNetwork();
+		}
+		
+		if(writer != null && writer.isAlive() && !networkShuttingDown){
+			writer.sendMessages(messages, host, port);
+		}
+	}
+	
 	@Override
 	public synchronized void startNetwork(){
 		if(!networkStarted && !networkShuttingDown){
@@ -20,8 +20,8 @@
  ******************************************************************************/
 package org.nzdis.micro.messaging.processor;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.nzdis.micro.constants.LaneDrainingPolicies;
 import org.nzdis.micro.messaging.MessageCommunicator;
 import org.nzdis.micro.messaging.message.Message;
 
@@ -29,16 +29,105 @@ import org.nzdis.micro.messaging.message.Message;
 public abstract class AbstractMicroFiber{
 	
 	protected MessageCommunicator agent;
-	private BlockingQueue<Message> messageQueue = new LinkedBlockingQueue<Message>();
+	/** message queue, optionally with priority lanes */
+	private final MailboxLanes messageQueue;
+	/** capacity limit and overflow handling for message queue */
+	private final MailboxLimit mailboxLimit;
+	/** indicates if MicroFiber is scheduled for (or in) execution by a worker */
+	private final AtomicBoolean scheduled = new AtomicBoolean(false);
+	/** index of the worker serving this MicroFiber (RING_BUFFER and MICRO_FIBER with worker affinity, -1 if unassigned) */
+	private volatile int dispatchIndex = -1;
+	/** dense local handle assigned upon registration (-1 if unregistered) */
+	private volatile int handle = -1;
+	/** name the MicroFiber is registered with */
+	private volatile String agentName = null;
+	/** thread currently processing messages of this MicroFiber (null if none) */
+	private volatile Thread processingThread = null;
 	
-	public AbstractMicroFiber(MessageCommunicator agent){
+	public AbstractMicroFiber(MessageCommunicator agent, MailboxLimit mailboxLimit){
+		this(agent, mailboxLimit, new MailboxLanes(1, LaneDrainingPolicies.STRICT));
+	}
+	
+	public AbstractMicroFiber(MessageCommunicator agent, MailboxLimit mailboxLimit, MailboxLanes messageQueue){
 		this.agent = agent;
+		this.mailboxLimit = mailboxLimit;
+		this.messageQueue = messageQueue;
 	}
 	
 	public MessageCommunicator getAgent(){
 		return agent;
 	}
 	
+	/**
+	 * Returns the mailbox limit of this MicroFiber. For JETLANG it limits 
+	 * the messages published on the agent channel.
+	 * @return mailbox limit
+	 */
+	public MailboxLimit getMailboxLimit(){
+		return mailboxLimit;
+	}
+	
+	/**
+	 * Returns the index of the worker this MicroFiber is assigned to 
+	 * (RING_BUFFER and MICRO_FIBER with worker affinity).
+	 * @return worker index or -1 if unassigned
+	 */
+	public int getDispatchIndex(){
+		return dispatchIndex;
+	}
+	
+	/**
+	 * Assigns this MicroFiber to a worker (RING_BUFFER and MICRO_FIBER with worker affinity).
+	 * @param dispatchIndex Worker index
+	 */
+	public void setDispatchIndex(int dispatchIndex){
+		this.dispatchIndex = dispatchIndex;
+	}
+	
+	/**
+	 * Returns the local handle of this MicroFiber (see MTRuntime.register()).
+	 * @return handle or -1 if not registered
+	 */
+	public int getHandle(){
+		return handle;
+	}
+	
+	/**
+	 * Returns the name this MicroFiber is registered with.
+	 * @return agent name
+	 */
+	public String getAgentName(){
+		return agentName;
+	}
+	
+	/**
+	 * Assigns the local handle and name upon registration.
+	 * @param handle Handle
+	 * @param agentName Agent name
+	 */
+	public void assignHandle(int handle, String agentName){
+		this.agentName = agentName;
+		this.handle = handle;
+	}
+	
+	/**
+	 * Marks the given thread as processing messages of this MicroFiber 
+	 * (null once processing has ended).
+	 * @param thread Processing thread
+	 */
+	public void setProcessingThread(Thread thread){
+		this.processingThread = thread;
+	}
+	
+	/**
+	 * Indicates if messages of this MicroFiber are currently processed by 
+	 * the calling thread (e.g. for an agent sending to itself).
+	 * @return true if called while processing a message of this MicroFiber
+	 */
+	public boolean isProcessedByCurrentThread(){
+		return processingThread == Thread.currentThread();
+	}
+	
 	/**
 	 * The service(rawMessage) method is to be overridden by inheriting class.
 	 * @param rawMessage
@@ -51,13 +140,39 @@ public abstract class AbstractMicroFiber{
 	 */
 	public Message getMessage(){
 		try {
-			return messageQueue.take();
+			Message message = messageQueue.take();
+			mailboxLimit.consume();
+			//handed over to caller, thus no longer accounted as in flight
+			InFlightMessageCounter.messageProcessed();
+			return message;
 		} catch (InterruptedException e){
 			e.printStackTrace();
 			return null;
 		}
 	}
 
+	/**
+	 * Retrieves the next message from the message queue without waiting. 
+	 * The caller is responsible for the in-flight accounting (see 
+	 * InFlightMessageCounter.messageProcessed()) once the message is processed.
+	 * @return next message according to the lane draining policy, or null if queue is empty
+	 */
+	public Message pollMessage(){
+		Message message = messageQueue.poll();
+		if(message != null){
+			mailboxLimit.consume();
+		}
+		return message;
+	}
+	
+	/**
+	 * Returns the number of priority lanes of the message queue.
+	 * @return number of lanes (1 for plain FIFO queue)
+	 */
+	public int getNumberOfLanes(){
+		return messageQueue.getNumberOfLanes();
+	}
+
 	/**
 	 * Checks on message availability in the message queue.
 	 * @return top message from message queue (but does not remove it)
@@ -67,17 +182,88 @@ public abstract class AbstractMicroFiber{
 	}
 
 	/**
-	 * Assigns the message to the message queue.
+	 * Assigns the message to the message queue if admitted by the mailbox limit.
+	 * @param message Message
+	 * @return admission decision (see @MailboxLimit), message is enqueued for ACCEPT and EVICT_OLDEST
+	 */
+	public int putMessage(Message message){
+		return putMessage(message, true);
+	}
+	
+	/**
+	 * Assigns the message to the message queue if admitted by the mailbox limit.
 	 * @param message Message
+	 * @param senderMayBlock Indicates if the sender may wait for capacity (BLOCK policy)
+	 * @return admission decision (see @MailboxLimit), message is enqueued for ACCEPT and EVICT_OLDEST
 	 */
-	public void putMessage(Message message){
+	public int putMessage(Message message, boolean senderMayBlock){
+		if (message == null){
+			return MailboxLimit.DROP;
+		}
+		int admission = mailboxLimit.admit(senderMayBlock);
+		int priority = messageQueue.getNumberOfLanes() > 1 ? MessagePriorities.getPriority(message) : 0;
+		switch(admission){
+			case MailboxLimit.ACCEPT:
+				InFlightMessageCounter.messageEnqueued();
+				messageQueue.offer(message, priority);
+				break;
+			case MailboxLimit.EVICT_OLDEST:
+				//evicted message (oldest of lowest priority) is replaced in the in-flight count
+				if(messageQueue.pollLowest() != null){
+					mailboxLimit.messageDropped();
+				} else {
+					//queue drained concurrently, nothing to evict
+					mailboxLimit.forceAdmission();
+					InFlightMessageCounter.messageEnqueued();
+				}
+				messageQueue.offer(message, priority);
+				break;
+		}
+		return admission;
+	}
+	
+	/**
+	 * Marks the MicroFiber as scheduled for execution. Only the caller 
+	 * succeeding with this operation must hand the MicroFiber to a worker, 
+	 * which ensures that at most one worker processes it at any time.
+	 * @return true if MicroFiber was not scheduled before
+	 */
+	public boolean trySchedule(){
+		return scheduled.compareAndSet(false, true);
+	}
+	
+	/**
+	 * Processes up to batchSize messages from the message queue (in the order 
+	 * given by the lane draining policy). Must only 
+	 * be called by the worker the MicroFiber has been scheduled on.
+	 * @param batchSize Maximal number of messages to be processed
+	 * @return true if further messages are pending and the MicroFiber has been 
+	 * rescheduled (i.e. the caller needs to queue it again). If message 
+	 * processing throws, the MicroFiber is unscheduled before the throwable 
+	 * is propagated, so that it can be scheduled again.
+	 */
+	public boolean drain(int batchSize){
+		Message message;
+		processingThread = Thread.currentThread();
 		try{
-			if (message != null){
-				messageQueue.put(message);
+			for(int i = 0; i < batchSize; i++){
+				message = messageQueue.poll();
+				if(message == null){
+					break;
+				}
+				mailboxLimit.consume();
+				try{
+					service(message);
+				} finally {
+					InFlightMessageCounter.messageProcessed();
+				}
 			}
-		} catch (InterruptedException e){
-			e.printStackTrace();
+		} finally {
+			processingThread = null;
+			scheduled.set(false);
 		}
+		//messages put after last poll but before reset of flag would otherwise not be scheduled
+		return !messageQueue.isEmpty() && trySchedule();
 	}
 	
 	/**
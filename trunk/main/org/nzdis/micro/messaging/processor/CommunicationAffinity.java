@@ -0,0 +1,241 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.messaging.processor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Communication-aware placement of MicroFibers on workers (MICRO_FIBER only). 
+ * Sender/recipient pairs of a random sample of locally delivered messages 
+ * are recorded, and rebalance() periodically re-places agents on home workers 
+ * (see AbstractMicroFiber.getDispatchIndex()) such that heavily communicating 
+ * agents are co-located, while no worker receives more than its share of the 
+ * sampled load (plus slack). Clusters already residing on a worker are kept 
+ * there if capacity allows, in order to avoid needless migration.
+ */
+public class CommunicationAffinity {
+
+	/** tolerated load of a worker beyond the average load (fraction) */
+	private static final double LOAD_SLACK = 0.25;
+	/** marks empty sample slots */
+	private static final long EMPTY = -1L;
+	
+	/** sampled pairs (sender handle in upper, recipient handle in lower 32 bits) */
+	private final AtomicLongArray samples;
+	private final AtomicInteger cursor = new AtomicInteger(0);
+	private final int sampleMask;
+	private final int samplingMask;
+	
+	/**
+	 * Instantiates the sampler.
+	 * @param samplingRate Records about every n-th message (rounded up to a power of two)
+	 * @param sampleCapacity Maximal number of samples kept between two rebalancings 
+	 * 		(rounded up to a power of two, older samples are overwritten)
+	 */
+	public CommunicationAffinity(int samplingRate, int sampleCapacity){
+		this.samplingMask = powerOfTwo(samplingRate) - 1;
+		int capacity = powerOfTwo(sampleCapacity);
+		this.sampleMask = capacity - 1;
+		this.samples = new AtomicLongArray(capacity);
+		for(int i = 0; i < capacity; i++){
+			samples.set(i, EMPTY);
+		}
+	}
+	
+	private static int powerOfTwo(int value){
+		int result = 1;
+		while(result < value && result < (1 << 30)){
+			result <<= 1;
+		}
+		return result;
+	}
+	
+	/**
+	 * Records a message delivery with probability 1/samplingRate.
+	 * @param senderHandle Handle of local sender (-1 if unknown)
+	 * @param recipientHandle Handle of recipient
+	 */
+	public void sample(int senderHandle, int recipientHandle){
+		if((ThreadLocalRandom.current().nextInt() & samplingMask) == 0){
+			samples.set(cursor.getAndIncrement() & sampleMask, 
+					((long)senderHandle << 32) | (recipientHandle & 0xFFFFFFFFL));
+		}
+	}
+	
+	/**
+	 * Re-places sampled agents on workers based on the samples recorded since 
+	 * the last invocation and clears the samples. Agents without samples keep 
+	 * their home worker.
+	 * @param fibersByHandle MicroFibers indexed by handle
+	 * @param numberOfWorkers Number of workers
+	 * @return number of agents that have been moved to another worker
+	 */
+	public int rebalance(AtomicReferenceArray<AbstractMicroFiber> fibersByHandle, int numberOfWorkers){
+		//dense indices for sampled agents
+		HashMap<Integer, Integer> indices = new HashMap<Integer, Integer>();
+		ArrayList<Integer> handles = new ArrayList<Integer>();
+		ArrayList<int[]> loads = new ArrayList<int[]>();
+		//undirected edges (lower index in upper 32 bits) with message counts
+		HashMap<Long, int[]> edges = new HashMap<Long, int[]>();
+		long totalLoad = 0;
+		for(int i = 0; i <= sampleMask; i++){
+			long sample = samples.getAndSet(i, EMPTY);
+			if(sample == EMPTY){
+				continue;
+			}
+			int sender = (int)(sample >>> 32);
+			int recipient = (int)sample;
+			if(recipient < 0){
+				continue;
+			}
+			int r = index(recipient, indices, handles, loads);
+			loads.get(r)[0]++;
+			totalLoad++;
+			if(sender >= 0 && sender != recipient){
+				int s = index(sender, indices, handles, loads);
+				long key = s < r ? ((long)s << 32) | r : ((long)r << 32) | s;
+				int[] weight = edges.get(key);
+				if(weight == null){
+					edges.put(key, new int[]{1});
+				} else {
+					weight[0]++;
+				}
+			}
+		}
+		if(totalLoad == 0 || numberOfWorkers < 1){
+			return 0;
+		}
+		long capacity = (long)Math.ceil(totalLoad * (1 + LOAD_SLACK) / numberOfWorkers);
+		
+		//merge clusters along heaviest edges as long as they fit on a worker
+		int agents = handles.size();
+		int[] parent = new int[agents];
+		final long[] clusterLoad = new long[agents];
+		for(int i = 0; i < agents; i++){
+			parent[i] = i;
+			clusterLoad[i] = loads.get(i)[0];
+		}
+		ArrayList<Map.Entry<Long, int[]>> sortedEdges = new ArrayList<Map.Entry<Long, int[]>>(edges.entrySet());
+		Collections.sort(sortedEdges, new Comparator<Map.Entry<Long, int[]>>(){
+
+			@Override
+			public int compare(Map.Entry<Long, int[]> a, Map.Entry<Long, int[]> b) {
+				return Integer.compare(b.getValue()[0], a.getValue()[0]);
+			}
+			
+		});
+		for(Map.Entry<Long, int[]> edge: sortedEdges){
+			int a = find(parent, (int)(edge.getKey() >>> 32));
+			int b = find(parent, (int)(long)edge.getKey());
+			if(a != b && clusterLoad[a] + clusterLoad[b] <= capacity){
+				parent[b] = a;
+				clusterLoad[a] += clusterLoad[b];
+			}
+		}
+		
+		//collect members per cluster
+		HashMap<Integer, ArrayList<Integer>> members = new HashMap<Integer, ArrayList<Integer>>();
+		for(int i = 0; i < agents; i++){
+			int root = find(parent, i);
+			ArrayList<Integer> cluster = members.get(root);
+			if(cluster == null){
+				cluster = new ArrayList<Integer>();
+				members.put(root, cluster);
+			}
+			cluster.add(i);
+		}
+		ArrayList<Integer> roots = new ArrayList<Integer>(members.keySet());
+		Collections.sort(roots, new Comparator<Integer>(){
+
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Long.compare(clusterLoad[b], clusterLoad[a]);
+			}
+			
+		});
+		
+		//place largest clusters first, preferring the worker most of the cluster resides on
+		long[] workerLoad = new long[numberOfWorkers];
+		long[] residentLoad = new long[numberOfWorkers];
+		int moved = 0;
+		for(Integer root: roots){
+			ArrayList<Integer> cluster = members.get(root);
+			Arrays.fill(residentLoad, 0);
+			for(Integer member: cluster){
+				AbstractMicroFiber fiber = fibersByHandle.get(handles.get(member));
+				if(fiber != null && fiber.getDispatchIndex() >= 0 && fiber.getDispatchIndex() < numberOfWorkers){
+					residentLoad[fiber.getDispatchIndex()] += loads.get(member)[0];
+				}
+			}
+			int target = 0;
+			for(int w = 1; w < numberOfWorkers; w++){
+				if(residentLoad[w] > residentLoad[target]){
+					target = w;
+				}
+			}
+			if(residentLoad[target] == 0 || workerLoad[target] + clusterLoad[root] > capacity){
+				for(int w = 0; w < numberOfWorkers; w++){
+					if(workerLoad[w] < workerLoad[target]){
+						target = w;
+					}
+				}
+			}
+			workerLoad[target] += clusterLoad[root];
+			for(Integer member: cluster){
+				AbstractMicroFiber fiber = fibersByHandle.get(handles.get(member));
+				if(fiber != null && fiber.getDispatchIndex() != target){
+					fiber.setDispatchIndex(target);
+					moved++;
+				}
+			}
+		}
+		return moved;
+	}
+	
+	private static int index(int handle, HashMap<Integer, Integer> indices, ArrayList<Integer> handles, ArrayList<int[]> loads){
+		Integer index = indices.get(handle);
+		if(index == null){
+			index = handles.size();
+			indices.put(handle, index);
+			handles.add(handle);
+			loads.add(new int[1]);
+		}
+		return index;
+	}
+	
+	private static int find(int[] parent, int i){
+		while(parent[i] != i){
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+	
+}
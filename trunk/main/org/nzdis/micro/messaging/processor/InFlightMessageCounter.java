@@ -0,0 +1,124 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.messaging.processor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Platform-wide accounting of in-flight messages, i.e. messages that have been 
+ * enqueued for local delivery but whose handler has not completed yet. 
+ * Counted for all local message passing frameworks and the synchronous mode, 
+ * allowing to wait for quiescence of the platform (see awaitQuiescence()).
+ */
+public final class InFlightMessageCounter {
+
+	/** number of enqueued but not yet processed messages */
+	private static final AtomicLong inFlight = new AtomicLong(0);
+	/** number of threads awaiting quiescence (notification only necessary if > 0) */
+	private static final AtomicInteger waiters = new AtomicInteger(0);
+	private static final Object quiescenceLock = new Object();
+	
+	private InFlightMessageCounter(){
+	}
+	
+	/**
+	 * Registers a message that is about to be enqueued for delivery. 
+	 * Must be called before the message is visible to the recipient.
+	 */
+	public static void messageEnqueued(){
+		inFlight.incrementAndGet();
+	}
+	
+	/**
+	 * Registers the completion of a message's handler (or its discarding).
+	 */
+	public static void messageProcessed(){
+		if(inFlight.decrementAndGet() == 0 && waiters.get() > 0){
+			synchronized(quiescenceLock){
+				quiescenceLock.notifyAll();
+			}
+		}
+	}
+	
+	/**
+	 * Registers a number of messages that have been discarded without processing 
+	 * (e.g. pending messages of a disposed Jetlang fiber).
+	 * @param count Number of discarded messages
+	 */
+	public static void messagesDiscarded(int count){
+		if(count > 0 && inFlight.addAndGet(-count) == 0 && waiters.get() > 0){
+			synchronized(quiescenceLock){
+				quiescenceLock.notifyAll();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of in-flight messages.
+	 * @return number of enqueued messages whose handlers have not completed yet
+	 */
+	public static long getInFlightMessages(){
+		return inFlight.get();
+	}
+	
+	/**
+	 * Blocks until no message is in flight or the timeout elapses.
+	 * @param timeout Maximal time to wait in ms
+	 * @return true if platform is quiescent, false if timed out
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public static boolean awaitQuiescence(long timeout) throws InterruptedException {
+		if(inFlight.get() == 0){
+			return true;
+		}
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		//register before checking the counter, so the final decrement notifies
+		waiters.incrementAndGet();
+		try{
+			synchronized(quiescenceLock){
+				while(inFlight.get() != 0){
+					long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+					if(remaining <= 0){
+						return false;
+					}
+					quiescenceLock.wait(remaining);
+				}
+				return true;
+			}
+		} finally {
+			waiters.decrementAndGet();
+		}
+	}
+	
+	/**
+	 * Resets the counter (upon platform shutdown, as messages 
+	 * of stopped workers are not processed anymore).
+	 */
+	public static void reset(){
+		inFlight.set(0);
+		synchronized(quiescenceLock){
+			quiescenceLock.notifyAll();
+		}
+	}
+	
+}
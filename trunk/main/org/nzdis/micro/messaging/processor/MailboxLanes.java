@@ -0,0 +1,233 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.messaging.processor;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.nzdis.micro.constants.LaneDrainingPolicies;
+import org.nzdis.micro.messaging.message.Message;
+
+/**
+ * Message queue of a MicroFiber consisting of one or more priority lanes. 
+ * Lane 0 holds messages of normal priority, higher lanes hold messages of 
+ * increasing priority (see MessagePriorities). Messages within a lane are 
+ * delivered in FIFO order; lanes are drained according to the draining policy 
+ * (see @LaneDrainingPolicies). With a single lane it is a plain FIFO queue. 
+ * <br>
+ * Any number of threads may enqueue messages, while messages must only be 
+ * dequeued by one consumer at a time (the thread serving the agent).
+ */
+public class MailboxLanes {
+
+	private final ConcurrentLinkedQueue<Message>[] lanes;
+	private final boolean weighted;
+	/** number of messages in all lanes (incremented after enqueuing) */
+	private final AtomicInteger size = new AtomicInteger(0);
+	
+	/** blocking consumers only (see take()) */
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private volatile int waiters = 0;
+	
+	/** weighted draining state, only accessed by the consumer */
+	private final int[] weights;
+	private int currentLane;
+	private int credit;
+	
+	/**
+	 * Instantiates mailbox lanes.
+	 * @param numberOfLanes Number of priority lanes (at least 1)
+	 * @param drainingPolicy Draining policy (see @LaneDrainingPolicies)
+	 */
+	@SuppressWarnings("unchecked")
+	public MailboxLanes(int numberOfLanes, String drainingPolicy){
+		numberOfLanes = Math.max(numberOfLanes, 1);
+		this.lanes = (ConcurrentLinkedQueue<Message>[]) new ConcurrentLinkedQueue<?>[numberOfLanes];
+		for(int i = 0; i < numberOfLanes; i++){
+			lanes[i] = new ConcurrentLinkedQueue<Message>();
+		}
+		this.weighted = numberOfLanes > 1 && LaneDrainingPolicies.WEIGHTED.equals(drainingPolicy);
+		this.weights = new int[numberOfLanes];
+		for(int i = 0; i < numberOfLanes; i++){
+			weights[i] = 1 << Math.min(i, 30);
+		}
+		this.currentLane = numberOfLanes - 1;
+		this.credit = weights[currentLane];
+	}
+	
+	/**
+	 * Returns the number of priority lanes.
+	 * @return number of lanes
+	 */
+	public int getNumberOfLanes(){
+		return lanes.length;
+	}
+	
+	/**
+	 * Enqueues a message in the lane corresponding to its priority. 
+	 * Priorities beyond the highest lane are assigned to the highest lane.
+	 * @param message Message
+	 * @param priority Message priority (0: normal priority)
+	 */
+	public void offer(Message message, int priority){
+		int lane = priority <= 0 ? 0 : Math.min(priority, lanes.length - 1);
+		lanes[lane].offer(message);
+		size.incrementAndGet();
+		if(waiters > 0){
+			lock.lock();
+			try{
+				notEmpty.signal();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+	
+	/**
+	 * Dequeues the next message according to the draining policy.
+	 * @return message or null if all lanes are empty
+	 */
+	public Message poll(){
+		if(size.get() == 0){
+			return null;
+		}
+		Message message;
+		if(lanes.length == 1){
+			message = lanes[0].poll();
+		} else if(weighted){
+			message = pollWeighted();
+		} else {
+			message = pollStrict();
+		}
+		if(message != null){
+			size.decrementAndGet();
+		}
+		return message;
+	}
+	
+	private Message pollStrict(){
+		Message message;
+		for(int i = lanes.length - 1; i >= 0; i--){
+			message = lanes[i].poll();
+			if(message != null){
+				return message;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Serves lanes from highest to lowest, each up to its weight, 
+	 * skipping empty lanes.
+	 */
+	private Message pollWeighted(){
+		Message message;
+		for(int i = 0; i <= lanes.length; i++){
+			if(credit > 0){
+				message = lanes[currentLane].poll();
+				if(message != null){
+					credit--;
+					return message;
+				}
+			}
+			currentLane = (currentLane == 0 ? lanes.length : currentLane) - 1;
+			credit = weights[currentLane];
+		}
+		return null;
+	}
+	
+	/**
+	 * Dequeues the oldest message of the lowest non-empty lane (e.g. for eviction). 
+	 * May be called by any thread.
+	 * @return message or null if all lanes are empty
+	 */
+	public Message pollLowest(){
+		Message message;
+		for(int i = 0; i < lanes.length; i++){
+			message = lanes[i].poll();
+			if(message != null){
+				size.decrementAndGet();
+				return message;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Dequeues the next message, waiting if all lanes are empty.
+	 * @return message
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public Message take() throws InterruptedException {
+		Message message = poll();
+		if(message != null){
+			return message;
+		}
+		lock.lockInterruptibly();
+		try{
+			waiters++;
+			try{
+				while((message = poll()) == null){
+					notEmpty.await();
+				}
+			} finally {
+				waiters--;
+			}
+		} finally {
+			lock.unlock();
+		}
+		return message;
+	}
+	
+	/**
+	 * Returns the oldest message of the highest non-empty lane without removing it.
+	 * @return message or null if all lanes are empty
+	 */
+	public Message peek(){
+		Message message;
+		for(int i = lanes.length - 1; i >= 0; i--){
+			message = lanes[i].peek();
+			if(message != null){
+				return message;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Indicates if all lanes are empty.
+	 * @return true if no message is enqueued
+	 */
+	public boolean isEmpty(){
+		return size.get() == 0;
+	}
+	
+	/**
+	 * Returns the number of enqueued messages across all lanes.
+	 * @return number of messages
+	 */
+	public int size(){
+		return size.get();
+	}
+	
+}
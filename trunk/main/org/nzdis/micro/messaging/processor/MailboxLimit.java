@@ -0,0 +1,290 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.messaging.processor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.nzdis.micro.constants.MailboxOverflowPolicies;
+
+/**
+ * MailboxLimit tracks the number of undelivered messages of an agent mailbox 
+ * and decides on admission of further messages based on the configured capacity 
+ * and overflow policy (see @MailboxOverflowPolicies). It is independent from the 
+ * actual queue implementation and thus used for both MICRO_FIBER and JETLANG.
+ * A capacity of 0 or less indicates an unbounded mailbox.
+ * 
+ */
+public class MailboxLimit {
+
+	/** message can be enqueued (and has been accounted for) */
+	public static final int ACCEPT = 0;
+	/** message can be enqueued once the oldest message has been evicted */
+	public static final int EVICT_OLDEST = 1;
+	/** message is to be dropped silently */
+	public static final int DROP = 2;
+	/** message is to be rejected (sender notification) */
+	public static final int REJECT = 3;
+	
+	private volatile int capacity;
+	private volatile String policy;
+	private volatile long blockTimeout;
+	
+	/** number of undelivered messages */
+	private final AtomicInteger size = new AtomicInteger(0);
+	/** number of enqueued messages marked for eviction upon dequeuing */
+	private final AtomicInteger pendingEvictions = new AtomicInteger(0);
+	/** number of senders blocked on a full mailbox */
+	private final AtomicInteger blockedSenders = new AtomicInteger(0);
+	private final Object notFull = new Object();
+	
+	private final AtomicLong droppedMessages = new AtomicLong(0);
+	private final AtomicLong rejectedMessages = new AtomicLong(0);
+	
+	/**
+	 * Instantiates a mailbox limit.
+	 * @param capacity Maximal number of undelivered messages (<= 0: unbounded)
+	 * @param policy Overflow policy (see @MailboxOverflowPolicies)
+	 * @param blockTimeout Maximal time (in ms) senders are blocked for BLOCK policy
+	 */
+	public MailboxLimit(int capacity, String policy, long blockTimeout){
+		configure(capacity, policy, blockTimeout);
+	}
+	
+	/**
+	 * Changes the limit at runtime. Messages already enqueued are not affected.
+	 * @param capacity Maximal number of undelivered messages (<= 0: unbounded)
+	 * @param policy Overflow policy (see @MailboxOverflowPolicies)
+	 * @param blockTimeout Maximal time (in ms) senders are blocked for BLOCK policy
+	 */
+	public void configure(int capacity, String policy, long blockTimeout){
+		if(!MailboxOverflowPolicies.isValid(policy)){
+			throw new RuntimeException("Unknown mailbox overflow policy " + policy);
+		}
+		this.policy = policy;
+		this.blockTimeout = blockTimeout;
+		this.capacity = capacity;
+		//wake up blocked senders in case of increased capacity
+		if(blockedSenders.get() > 0){
+			synchronized(notFull){
+				notFull.notifyAll();
+			}
+		}
+	}
+	
+	/**
+	 * Decides on admission of a new message. ACCEPT implies that the message 
+	 * is accounted for, EVICT_OLDEST requires the caller to either evict the 
+	 * oldest message (and call messageDropped()) or to call markForEviction(). 
+	 * DROP and REJECT are already counted.
+	 * @return Admission decision (ACCEPT, EVICT_OLDEST, DROP, REJECT)
+	 */
+	public int admit(){
+		return admit(true);
+	}
+	
+	/**
+	 * Decides on admission of a new message (see admit()). Senders that must not 
+	 * wait for capacity (e.g. as they run on the thread that drains this mailbox) 
+	 * are rejected immediately under the BLOCK policy instead of being blocked 
+	 * until the timeout elapses.
+	 * @param senderMayBlock Indicates if the calling sender may be blocked (BLOCK policy)
+	 * @return Admission decision (ACCEPT, EVICT_OLDEST, DROP, REJECT)
+	 */
+	public int admit(boolean senderMayBlock){
+		int cap = capacity;
+		if(cap <= 0){
+			size.incrementAndGet();
+			return ACCEPT;
+		}
+		if(tryAcquire(cap)){
+			return ACCEPT;
+		}
+		String currentPolicy = policy;
+		if(currentPolicy.equals(MailboxOverflowPolicies.DROP_OLDEST)){
+			return EVICT_OLDEST;
+		}
+		if(currentPolicy.equals(MailboxOverflowPolicies.DROP_NEWEST)){
+			droppedMessages.incrementAndGet();
+			return DROP;
+		}
+		if(currentPolicy.equals(MailboxOverflowPolicies.BLOCK) && senderMayBlock && awaitCapacity()){
+			return ACCEPT;
+		}
+		rejectedMessages.incrementAndGet();
+		return REJECT;
+	}
+	
+	private boolean tryAcquire(int cap){
+		int current = size.get();
+		while(current < cap){
+			if(size.compareAndSet(current, current + 1)){
+				return true;
+			}
+			current = size.get();
+		}
+		return false;
+	}
+	
+	private boolean awaitCapacity(){
+		long deadline = System.currentTimeMillis() + blockTimeout;
+		blockedSenders.incrementAndGet();
+		try{
+			synchronized(notFull){
+				while(true){
+					int cap = capacity;
+					if(cap <= 0){
+						size.incrementAndGet();
+						return true;
+					}
+					if(tryAcquire(cap)){
+						return true;
+					}
+					long remaining = deadline - System.currentTimeMillis();
+					if(remaining <= 0){
+						return false;
+					}
+					notFull.wait(remaining);
+				}
+			}
+		} catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			blockedSenders.decrementAndGet();
+		}
+	}
+	
+	/**
+	 * Used if the oldest message cannot be evicted directly from the queue 
+	 * (e.g. JETLANG). The new message is accounted for and the oldest pending 
+	 * message will be skipped upon dequeuing. The number of pending evictions 
+	 * is bounded by the capacity.
+	 * @return true if new message can be enqueued, false if it needs to be dropped instead 
+	 */
+	public boolean markForEviction(){
+		int current = pendingEvictions.get();
+		while(current < capacity){
+			if(pendingEvictions.compareAndSet(current, current + 1)){
+				size.incrementAndGet();
+				return true;
+			}
+			current = pendingEvictions.get();
+		}
+		droppedMessages.incrementAndGet();
+		return false;
+	}
+	
+	/**
+	 * Accounts for a message that has been enqueued without admission 
+	 * (e.g. if eviction of oldest message failed as queue was drained concurrently).
+	 */
+	public void forceAdmission(){
+		size.incrementAndGet();
+	}
+	
+	/**
+	 * Counts a dropped message.
+	 */
+	public void messageDropped(){
+		droppedMessages.incrementAndGet();
+	}
+	
+	/**
+	 * Is to be called when a message is dequeued for processing.
+	 * @return false if the message has been marked for eviction and is not to be processed 
+	 */
+	public boolean consume(){
+		size.decrementAndGet();
+		if(blockedSenders.get() > 0){
+			synchronized(notFull){
+				notFull.notifyAll();
+			}
+		}
+		int evictions = pendingEvictions.get();
+		while(evictions > 0){
+			if(pendingEvictions.compareAndSet(evictions, evictions - 1)){
+				droppedMessages.incrementAndGet();
+				return false;
+			}
+			evictions = pendingEvictions.get();
+		}
+		return true;
+	}
+	
+	/**
+	 * Releases all undelivered messages (and pending evictions) if the mailbox 
+	 * is discarded.
+	 * @return number of undelivered messages
+	 */
+	public int discardPending(){
+		pendingEvictions.set(0);
+		return Math.max(size.getAndSet(0), 0);
+	}
+	
+	/**
+	 * Returns the number of undelivered messages.
+	 * @return number of undelivered messages
+	 */
+	public int getSize(){
+		return size.get();
+	}
+	
+	/**
+	 * Indicates if senders are blocked once the mailbox is full (BLOCK policy).
+	 * @return true if bounded mailbox with BLOCK policy
+	 */
+	public boolean blocksSenders(){
+		return capacity > 0 && MailboxOverflowPolicies.BLOCK.equals(policy);
+	}
+	
+	/**
+	 * Returns the mailbox capacity.
+	 * @return capacity (<= 0: unbounded)
+	 */
+	public int getCapacity(){
+		return capacity;
+	}
+	
+	/**
+	 * Returns the overflow policy.
+	 * @return overflow policy
+	 */
+	public String getPolicy(){
+		return policy;
+	}
+	
+	/**
+	 * Returns the number of messages dropped (DROP_NEWEST, DROP_OLDEST).
+	 * @return number of dropped messages
+	 */
+	public long getDroppedMessages(){
+		return droppedMessages.get();
+	}
+	
+	/**
+	 * Returns the number of messages rejected (REJECT or BLOCK timeout).
+	 * @return number of rejected messages
+	 */
+	public long getRejectedMessages(){
+		return rejectedMessages.get();
+	}
+	
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.messaging.processor;
+
+import java.util.concurrent.ConcurrentHashMap;
+import org.nzdis.micro.MicroMessage;
+import org.nzdis.micro.events.AgentDyingEvent;
+import org.nzdis.micro.messaging.message.Message;
+
+/**
+ * Determines the priority of messages for agent mailboxes with priority lanes 
+ * (see @MailboxLanes). The priority is either set explicitly on the message 
+ * (see MicroMessage.setPriority()) or registered for the class of the 
+ * contained intent or event. Messages without priority have normal priority (0). 
+ * AgentDyingEvents are registered with the highest priority by default.
+ */
+public final class MessagePriorities {
+
+	/** priorities registered for intent and event classes */
+	private static final ConcurrentHashMap<Class<?>, Integer> classPriorities = new ConcurrentHashMap<Class<?>, Integer>();
+	
+	static {
+		classPriorities.put(AgentDyingEvent.class, MicroMessage.PRIORITY_HIGHEST);
+	}
+	
+	private MessagePriorities(){
+	}
+	
+	/**
+	 * Registers a priority for messages containing an intent or event 
+	 * of the given class (exact class match).
+	 * @param intentOrEventClass Intent or event class
+	 * @param priority Priority (0: normal priority, see MicroMessage.PRIORITY_HIGHEST)
+	 */
+	public static void register(Class<?> intentOrEventClass, int priority){
+		classPriorities.put(intentOrEventClass, priority);
+	}
+	
+	/**
+	 * Removes the priority registered for a given intent or event class.
+	 * @param intentOrEventClass Intent or event class
+	 */
+	public static void deregister(Class<?> intentOrEventClass){
+		classPriorities.remove(intentOrEventClass);
+	}
+	
+	/**
+	 * Returns the priority of a message. A priority set on the message 
+	 * takes precedence over priorities registered for its intent or event.
+	 * @param message Message
+	 * @return priority (0: normal priority)
+	 */
+	public static int getPriority(Message message){
+		if(!(message instanceof MicroMessage)){
+			return MicroMessage.PRIORITY_NORMAL;
+		}
+		MicroMessage microMessage = (MicroMessage)message;
+		if(microMessage.containsPriority()){
+			return microMessage.getPriority();
+		}
+		Integer priority;
+		Object content = microMessage.get(MicroMessage.MSG_PARAM_INTENT);
+		if(content != null){
+			priority = classPriorities.get(content.getClass());
+			if(priority != null){
+				return priority;
+			}
+		}
+		content = microMessage.get(MicroMessage.MSG_PARAM_EVENT);
+		if(content != null){
+			priority = classPriorities.get(content.getClass());
+			if(priority != null){
+				return priority;
+			}
+		}
+		return MicroMessage.PRIORITY_NORMAL;
+	}
+	
+}
@@ -30,19 +30,19 @@ import org.nzdis.micro.messaging.message.Message;
  */
 public class MicroFiber extends AbstractMicroFiber
 {
-	public MicroFiber(MessageCommunicator agent) {
-		super(agent);
+	public MicroFiber(MessageCommunicator agent, MailboxLimit mailboxLimit) {
+		super(agent, mailboxLimit);
 	}
-
-	private int accessCount = 0;
 	
-	public synchronized void service(Message message){
-		if(accessCount >= 2){
-			System.err.println(new StringBuffer("MicroFiber Message Passing: Discovered error when processing message ")
-				.append(message.toString())
-				.append("\nIt is likely that processing of a previous message failed! Access counter: ").append(accessCount));
-		}
-		accessCount++;
+	public MicroFiber(MessageCommunicator agent, MailboxLimit mailboxLimit, MailboxLanes messageQueue) {
+		super(agent, mailboxLimit, messageQueue);
+	}
+
+	/**
+	 * Delivers message to agent. Exclusive execution on worker threads is 
+	 * ensured by the scheduled flag (see AbstractMicroFiber.trySchedule()).
+	 */
+	public void service(Message message){
 		try{
 			agent.serveMessage(message);
 		} catch(Exception e){
@@ -50,6 +50,5 @@ public class MicroFiber extends AbstractMicroFiber
 				.append(((AbstractCommunicator)agent).getAgentName()).append("!\nPlease check the application code."));
 			e.printStackTrace();
 		}
-		accessCount--;
 	}
 }
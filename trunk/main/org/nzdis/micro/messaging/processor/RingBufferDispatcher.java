@@ -0,0 +1,123 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.messaging.processor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.nzdis.micro.messaging.MTRuntime;
+import org.nzdis.micro.messaging.message.Message;
+
+/**
+ * Dispatcher for the RING_BUFFER message passing framework. It holds one 
+ * RingBufferWorker (with its own pre-allocated ring) per configured worker. 
+ * Agents are assigned a home worker round-robin upon registration, all 
+ * messages to an agent are published into this worker's ring. Thus each 
+ * agent is only served by a single thread and messages from one sender 
+ * are delivered in order.
+ * 
+ */
+public class RingBufferDispatcher {
+
+	private final RingBufferWorker[] workers;
+	private final AtomicInteger assignmentIndex = new AtomicInteger(0);
+	
+	/**
+	 * Instantiates and starts the ring buffer workers.
+	 * @param numberOfWorkers Number of worker threads (each with own ring)
+	 * @param ringSize Number of slots per ring (rounded up to power of two)
+	 * @param batchSize Maximal number of messages taken from a ring at once
+	 */
+	public RingBufferDispatcher(int numberOfWorkers, int ringSize, int batchSize){
+		workers = new RingBufferWorker[Math.max(numberOfWorkers, 1)];
+		for(int i = 0; i < workers.length; i++){
+			workers[i] = new RingBufferWorker(ringSize, batchSize);
+			workers[i].setName("RingBuffer_Worker_" + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+	
+	/**
+	 * Assigns a home worker to a newly registered MicroFiber.
+	 * @param microFiber MicroFiber
+	 */
+	public void assign(AbstractMicroFiber microFiber){
+		microFiber.setDispatchIndex((assignmentIndex.getAndIncrement() & Integer.MAX_VALUE) % workers.length);
+	}
+	
+	/**
+	 * Publishes a message into the ring of the recipient's home worker. 
+	 * The recipient's mailbox limit needs to have admitted the message before.
+	 * @param microFiber Recipient
+	 * @param message Message
+	 */
+	public void dispatch(AbstractMicroFiber microFiber, Message message){
+		int index = microFiber.getDispatchIndex();
+		if(index < 0 || index >= workers.length){
+			//registered before dispatcher has been started
+			assign(microFiber);
+			index = microFiber.getDispatchIndex();
+		}
+		if(!workers[index].publish(microFiber, message)){
+			System.err.println(MTRuntime.getPlatformPrefix() + "Message dispatch rejected as RING_BUFFER dispatcher has been shut down.");
+		}
+	}
+	
+	/**
+	 * Indicates if the current thread is the home worker of the given MicroFiber.
+	 * @param microFiber MicroFiber
+	 * @return true if messages to the MicroFiber are delivered by the current thread
+	 */
+	public boolean isHomeWorker(AbstractMicroFiber microFiber){
+		int index = microFiber.getDispatchIndex();
+		return index >= 0 && index < workers.length && workers[index] == Thread.currentThread();
+	}
+	
+	/**
+	 * Returns the number of slots per ring.
+	 * @return ring capacity
+	 */
+	public int getRingSize(){
+		return workers[0].getCapacity();
+	}
+	
+	/**
+	 * Indicates if all published messages have been delivered.
+	 * @return true if all rings are empty
+	 */
+	public boolean isEmpty(){
+		for(int i = 0; i < workers.length; i++){
+			if(!workers[i].isEmpty()){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Stops the ring buffer workers.
+	 */
+	public void shutdown(){
+		for(int i = 0; i < workers.length; i++){
+			workers[i].stopWorker();
+		}
+	}
+	
+}
@@ -0,0 +1,312 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.messaging.processor;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.nzdis.micro.messaging.MTRuntime;
+import org.nzdis.micro.messaging.message.Message;
+
+/**
+ * Dispatch thread for the RING_BUFFER message passing framework. Each worker 
+ * owns a pre-allocated ring of power-of-two size into which any number of 
+ * producers publish (recipient, message) pairs. Slots are claimed by CAS on a 
+ * claim sequence and marked as published by writing the slot's round number 
+ * (Disruptor-style), so no locks or per-message allocations are involved. 
+ * The worker is the only consumer and delivers messages in batches.
+ * <br>
+ * If a worker publishes into a full ring (i.e. an agent sends during message 
+ * processing), be it its own or the one of another worker, the message is put 
+ * on the overflow queue of the ring's worker instead of waiting, as the target 
+ * worker may in turn wait for the publishing one. Overflow messages are 
+ * delivered once the ring has been drained, which maintains FIFO order per sender. 
+ * Other producers wait for a free slot.
+ * 
+ */
+public class RingBufferWorker extends Thread {
+
+	/** number of empty polls before the worker yields */
+	private static final int SPIN_TRIES = 100;
+	/** number of empty polls before the worker parks */
+	private static final int YIELD_TRIES = 200;
+	/** maximal park time (in ns) of an idle worker, backstop for missed wakeups */
+	private static final long IDLE_PARK_NANOS = 1000000L;
+	/** park time (in ns) of producers waiting for a free slot */
+	private static final long PRODUCER_PARK_NANOS = 1000L;
+	
+	volatile boolean running = true;
+	
+	private final int capacity;
+	private final int mask;
+	private final int indexShift;
+	private final AbstractMicroFiber[] recipients;
+	private final Message[] messages;
+	/** round number (sequence / capacity) of the message published in a slot */
+	private final AtomicIntegerArray published;
+	/** next sequence to be claimed by producers */
+	private final AtomicLong claimSequence = new AtomicLong(0);
+	/** next sequence to be consumed, all slots for lower sequences are free */
+	private volatile long consumedSequence = 0;
+	/** indicates that the worker is about to park and needs to be woken up */
+	private volatile boolean sleeping = false;
+	/** (recipient, message) pairs published by workers while the ring was full */
+	private final ConcurrentLinkedQueue<Object[]> overflow = new ConcurrentLinkedQueue<Object[]>();
+	/** number of messages on overflow queue */
+	private final AtomicInteger overflowSize = new AtomicInteger(0);
+	
+	/** maximal number of messages taken from the ring at once */
+	private final int batchSize;
+	private final AbstractMicroFiber[] batchRecipients;
+	private final Message[] batchMessages;
+	
+	/**
+	 * Instantiates a ring buffer worker.
+	 * @param ringSize Number of slots (rounded up to the next power of two)
+	 * @param batchSize Maximal number of messages taken from the ring at once
+	 */
+	public RingBufferWorker(int ringSize, int batchSize){
+		this.capacity = toPowerOfTwo(ringSize);
+		this.mask = capacity - 1;
+		this.indexShift = Integer.numberOfTrailingZeros(capacity);
+		this.recipients = new AbstractMicroFiber[capacity];
+		this.messages = new Message[capacity];
+		this.published = new AtomicIntegerArray(capacity);
+		for(int i = 0; i < capacity; i++){
+			published.set(i, -1);
+		}
+		this.batchSize = batchSize < 1 ? 1 : Math.min(batchSize, capacity);
+		this.batchRecipients = new AbstractMicroFiber[this.batchSize];
+		this.batchMessages = new Message[this.batchSize];
+	}
+	
+	/**
+	 * Returns the smallest power of two greater or equal to the given size.
+	 * @param size Requested size
+	 * @return power of two
+	 */
+	public static int toPowerOfTwo(int size){
+		if(size <= 1){
+			return 1;
+		}
+		if(size > (1 << 30)){
+			return 1 << 30;
+		}
+		return Integer.highestOneBit(size - 1) << 1;
+	}
+	
+	/**
+	 * Returns the number of slots of the ring.
+	 * @return ring capacity
+	 */
+	public int getCapacity(){
+		return capacity;
+	}
+	
+	/**
+	 * Publishes a message for delivery to the given MicroFiber. Blocks while 
+	 * the ring is full (unless called by a ring buffer worker).
+	 * @param microFiber Recipient
+	 * @param message Message
+	 * @return false if the worker has been stopped and the message was not published
+	 */
+	public boolean publish(AbstractMicroFiber microFiber, Message message){
+		if(Thread.currentThread() instanceof RingBufferWorker){
+			if(!running){
+				return false;
+			}
+			//preserve order of messages already on overflow queue
+			if(!overflow.isEmpty() || !tryPublish(microFiber, message)){
+				//counted first, so that isEmpty() does not miss the message
+				overflowSize.incrementAndGet();
+				overflow.offer(new Object[]{microFiber, message});
+				if(sleeping){
+					LockSupport.unpark(this);
+				}
+			}
+			return true;
+		}
+		int tries = 0;
+		while(!tryPublish(microFiber, message)){
+			if(!running){
+				return false;
+			}
+			if(sleeping){
+				LockSupport.unpark(this);
+			}
+			if(++tries < SPIN_TRIES){
+				Thread.yield();
+			} else {
+				LockSupport.parkNanos(PRODUCER_PARK_NANOS);
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Claims a slot, writes the message into it and publishes it.
+	 * @param microFiber Recipient
+	 * @param message Message
+	 * @return false if the ring is full
+	 */
+	private boolean tryPublish(AbstractMicroFiber microFiber, Message message){
+		long sequence;
+		do {
+			sequence = claimSequence.get();
+			if(sequence - consumedSequence >= capacity){
+				return false;
+			}
+		} while(!claimSequence.compareAndSet(sequence, sequence + 1));
+		int index = (int)sequence & mask;
+		recipients[index] = microFiber;
+		messages[index] = message;
+		published.set(index, (int)(sequence >>> indexShift));
+		if(sleeping){
+			LockSupport.unpark(this);
+		}
+		return true;
+	}
+	
+	public void run(){
+		int idle = 0;
+		while(running){
+			int processed = drainRing();
+			if(processed == 0){
+				processed = drainOverflow();
+			}
+			if(processed > 0){
+				idle = 0;
+			} else {
+				idle++;
+				if(idle < SPIN_TRIES){
+					//spin
+				} else if(idle < YIELD_TRIES){
+					Thread.yield();
+				} else {
+					sleeping = true;
+					//recheck after announcing sleep as producers only unpark sleeping workers
+					if(!hasPublishedMessage() && overflow.isEmpty() && running){
+						LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+					}
+					sleeping = false;
+				}
+			}
+		}
+		if(!isEmpty()){
+			System.err.println(MTRuntime.getPlatformPrefix() + "Ring buffer worker shut down although ring buffer not empty.");
+		}
+	}
+	
+	/**
+	 * Indicates if the next slot to be consumed has been published.
+	 * @return true if a message is available
+	 */
+	private boolean hasPublishedMessage(){
+		long sequence = consumedSequence;
+		return published.get((int)sequence & mask) == (int)(sequence >>> indexShift);
+	}
+	
+	/**
+	 * Takes up to batchSize published messages from the ring, frees their slots 
+	 * and delivers them.
+	 * @return number of delivered messages
+	 */
+	private int drainRing(){
+		long sequence = consumedSequence;
+		int count = 0;
+		while(count < batchSize){
+			int index = (int)sequence & mask;
+			if(published.get(index) != (int)(sequence >>> indexShift)){
+				break;
+			}
+			batchRecipients[count] = recipients[index];
+			batchMessages[count] = messages[index];
+			recipients[index] = null;
+			messages[index] = null;
+			sequence++;
+			count++;
+		}
+		if(count > 0){
+			//release slots before delivery so producers can proceed
+			consumedSequence = sequence;
+			for(int i = 0; i < count; i++){
+				deliver(batchRecipients[i], batchMessages[i]);
+				batchRecipients[i] = null;
+				batchMessages[i] = null;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Delivers up to batchSize messages from the overflow queue, as long as 
+	 * no slot of the ring is claimed (to keep FIFO order of own messages).
+	 * @return number of delivered messages
+	 */
+	private int drainOverflow(){
+		int count = 0;
+		while(count < batchSize && claimSequence.get() == consumedSequence){
+			Object[] entry = overflow.poll();
+			if(entry == null){
+				break;
+			}
+			overflowSize.decrementAndGet();
+			deliver((AbstractMicroFiber) entry[0], (Message) entry[1]);
+			count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * Delivers message to recipient unless it has been marked for eviction.
+	 * @param microFiber Recipient
+	 * @param message Message
+	 */
+	private void deliver(AbstractMicroFiber microFiber, Message message){
+		try{
+			if(microFiber.getMailboxLimit().consume()){
+				microFiber.service(message);
+			}
+		} finally {
+			InFlightMessageCounter.messageProcessed();
+		}
+	}
+	
+	/**
+	 * Indicates if all published messages have been delivered. Only reliable 
+	 * if called from a different thread while no messages are sent.
+	 * @return true if ring and overflow queue are empty
+	 */
+	public boolean isEmpty(){
+		return claimSequence.get() == consumedSequence && overflowSize.get() == 0;
+	}
+	
+	/**
+	 * Stops running worker.
+	 */
+	public void stopWorker(){
+		running = false;
+		LockSupport.unpark(this);
+	}
+	
+}
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.messaging.processor;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.nzdis.micro.messaging.MTRuntime;
+
+/**
+ * Dispatcher for the VIRTUAL_THREAD message passing framework. Each activation 
+ * of a MicroFiber (i.e. draining of up to batchSize messages from its mailbox) 
+ * is executed on its own virtual thread, which allows message handlers to block 
+ * without occupying platform threads. Virtual threads are resolved via reflection 
+ * (Java 21+); on older JVMs a bounded ThreadPoolExecutor is used as carrier instead. 
+ * As handlers may block, it holds CARRIER_THREADS_PER_WORKER threads per configured 
+ * worker, which are released when idle.
+ * 
+ */
+public class VirtualThreadDispatcher {
+
+	/** number of fallback carrier threads per worker (to tolerate blocking handlers) */
+	private static final int CARRIER_THREADS_PER_WORKER = 32;
+	
+	private final ExecutorService executor;
+	private final boolean virtualThreads;
+	private final int batchSize;
+	
+	/**
+	 * Instantiates the dispatcher.
+	 * @param numberOfWorkers Number of workers determining the number of carrier threads 
+	 * 		if virtual threads are not available
+	 * @param batchSize Maximal number of messages processed per MicroFiber activation
+	 */
+	public VirtualThreadDispatcher(int numberOfWorkers, int batchSize){
+		this.batchSize = batchSize < 1 ? 1 : batchSize;
+		ExecutorService virtualExecutor = createVirtualThreadExecutor();
+		if(virtualExecutor != null){
+			executor = virtualExecutor;
+			virtualThreads = true;
+		} else {
+			final AtomicInteger threadIndex = new AtomicInteger(0);
+			int carriers = Math.max(numberOfWorkers, 1) * CARRIER_THREADS_PER_WORKER;
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(carriers, carriers, 60, TimeUnit.SECONDS, 
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory(){
+
+						@Override
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable, "VirtualThread_Carrier_" + threadIndex.getAndIncrement());
+							thread.setDaemon(true);
+							return thread;
+						}
+				
+			});
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+			virtualThreads = false;
+		}
+	}
+	
+	/**
+	 * Creates an executor starting a virtual thread per task (if supported by JVM).
+	 * @return executor or null if virtual threads are not available
+	 */
+	private static ExecutorService createVirtualThreadExecutor(){
+		try {
+			Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (NoSuchMethodException e) {
+			return null;
+		} catch (Exception e) {
+			//e.g. preview features not enabled
+			return null;
+		}
+	}
+	
+	/**
+	 * Indicates if virtual threads are used (or the fallback carrier threads).
+	 * @return true if virtual threads are used
+	 */
+	public boolean usesVirtualThreads(){
+		return virtualThreads;
+	}
+	
+	/**
+	 * Dispatches a scheduled MicroFiber for execution. The caller needs to 
+	 * have scheduled it successfully (see AbstractMicroFiber.trySchedule()).
+	 * @param microFiber MicroFiber to be activated
+	 */
+	public void dispatch(final AbstractMicroFiber microFiber){
+		try{
+			executor.execute(new Runnable(){
+
+				@Override
+				public void run() {
+					boolean pending;
+					try{
+						pending = microFiber.drain(batchSize);
+					} catch(Throwable t){
+						//MicroFiber has been unscheduled by drain()
+						System.err.println(new StringBuffer(MTRuntime.getPlatformPrefix()).append("VirtualThreadDispatcher: Error during message processing: ").append(t));
+						t.printStackTrace();
+						pending = !microFiber.hasEmptyMessageQueue() && microFiber.trySchedule();
+					}
+					if(pending){
+						dispatch(microFiber);
+					}
+				}
+				
+			});
+		} catch(RejectedExecutionException e){
+			System.err.println(MTRuntime.getPlatformPrefix() + "Message dispatch rejected as VIRTUAL_THREAD dispatcher has been shut down.");
+		}
+	}
+	
+	/**
+	 * Shuts down the dispatcher. Activations already dispatched are completed.
+	 */
+	public void shutdown(){
+		executor.shutdown();
+	}
+	
+}
@@ -20,23 +20,88 @@
  ******************************************************************************/
 package org.nzdis.micro.messaging.processor;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
 import org.nzdis.micro.messaging.MTRuntime;
 
 /**
- * Worker thread representation
+ * Worker thread representation. Each worker holds its own deque of scheduled 
+ * MicroFibers which it processes in FIFO order. Idle workers steal scheduled 
+ * MicroFibers from the tail of other workers' deques. On each activation a 
+ * MicroFiber drains up to a configured number of messages from its mailbox.
  */
 public class Worker extends Thread{
 	
-	boolean running = true;
-	private BlockingQueue<AbstractMicroFiber> entityQueue = new LinkedBlockingQueue<AbstractMicroFiber>();
+	/** initial interval (in ms) after which an idle worker retries stealing */
+	private static final long MIN_STEAL_INTERVAL = 1;
+	/** maximal interval (in ms) an idle worker backs off to before retrying stealing */
+	private static final long MAX_STEAL_INTERVAL = 64;
+	
+	volatile boolean running = true;
+	private final LinkedBlockingDeque<AbstractMicroFiber> entityQueue = new LinkedBlockingDeque<AbstractMicroFiber>();
+	/** all workers of the platform (including this one) to steal from */
+	private Worker[] peers = new Worker[0];
+	/** index of this worker in peers */
+	private int index = 0;
+	/** maximal number of messages processed per MicroFiber activation */
+	private final int batchSize;
+	/** minimal number of queued MicroFibers of another worker to steal from it */
+	private volatile int stealThreshold = 1;
+	/** current idle wait interval, doubled on each idle round and reset once work is found */
+	private long stealInterval = MIN_STEAL_INTERVAL;
+	
+	/**
+	 * Instantiates a worker.
+	 * @param batchSize Maximal number of messages processed per MicroFiber activation
+	 */
+	public Worker(int batchSize){
+		this.batchSize = batchSize < 1 ? 1 : batchSize;
+	}
+	
+	/**
+	 * Sets the workers this worker can steal work from.
+	 * @param peers All workers (including this one)
+	 * @param index Index of this worker in peers
+	 */
+	public void setPeers(Worker[] peers, int index){
+		this.peers = peers;
+		this.index = index;
+	}
+	
+	/**
+	 * Returns the index of this worker in the platform's workers.
+	 * @return index
+	 */
+	public int getIndex(){
+		return index;
+	}
+	
+	/**
+	 * Restricts stealing to workers with at least the given number of queued 
+	 * MicroFibers (e.g. to preserve placement by CommunicationAffinity).
+	 * @param stealThreshold Minimal queue length of victims (default: 1)
+	 */
+	public void setStealThreshold(int stealThreshold){
+		this.stealThreshold = stealThreshold < 1 ? 1 : stealThreshold;
+	}
 	
 	public void run(){
 		while (running){
 			AbstractMicroFiber entity = getEntity();
 			if(entity != null){
-				entity.service(entity.getMessage());
+				boolean pending;
+				try{
+					pending = entity.drain(batchSize);
+				} catch(Throwable t){
+					//keep worker alive; MicroFiber has been unscheduled by drain()
+					System.err.println(new StringBuffer(MTRuntime.getPlatformPrefix()).append("Worker: Error during message processing: ").append(t));
+					t.printStackTrace();
+					pending = !entity.hasEmptyMessageQueue() && entity.trySchedule();
+				}
+				if(pending){
+					//further messages pending - requeue at tail to give other MicroFibers a chance
+					entityQueue.offerLast(entity);
+				}
 			}
 		}
 	}
@@ -55,28 +120,67 @@ public class Worker extends Thread{
 	 *            process is the smallest part of any execution.
 	 */
 	public void setProcess(AbstractMicroFiber process){
-		try {
-			entityQueue.put(process);
-		} catch (InterruptedException e){
-			e.printStackTrace();
-		}
+		entityQueue.offerLast(process);
 	}
 
 	/**
-	 * Get an entity from the worker's queue.
-	 * @return entity.
+	 * Get an entity from the worker's queue. If the own queue is empty, 
+	 * an entity is stolen from another worker. Idle workers wait for work 
+	 * on their own queue with an exponentially growing interval before retrying 
+	 * to steal.
+	 * @return entity or null if none available within steal interval or worker interrupted.
 	 */
 	public AbstractMicroFiber getEntity(){
-		try{
-			return entityQueue.take();
-		} catch (InterruptedException e){
-			if(entityQueue.isEmpty()){
-				return null;
-			} else {
-				System.err.println(MTRuntime.getPlatformPrefix() + "Worker thread shutdown although message queue not empty.");
+		AbstractMicroFiber entity = entityQueue.pollFirst();
+		if(entity == null){
+			entity = steal();
+		}
+		if(entity == null){
+			try{
+				entity = entityQueue.pollFirst(stealInterval, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e){
+				if(!entityQueue.isEmpty()){
+					System.err.println(MTRuntime.getPlatformPrefix() + "Worker thread shutdown although message queue not empty.");
+				}
 				return null;
 			}
-			//e.printStackTrace();
 		}
+		if(entity == null){
+			stealInterval = Math.min(stealInterval * 2, MAX_STEAL_INTERVAL);
+		} else {
+			stealInterval = MIN_STEAL_INTERVAL;
+		}
+		return entity;
+	}
+	
+	/**
+	 * Steals an entity from the tail of another worker's queue.
+	 * @return stolen entity or null if all other queues are empty
+	 */
+	private AbstractMicroFiber steal(){
+		int threshold = stealThreshold;
+		for(int i = 1; i < peers.length; i++){
+			Worker victim = peers[(index + i) % peers.length];
+			if(threshold > 1 && victim.entityQueue.size() < threshold){
+				continue;
+			}
+			AbstractMicroFiber entity = victim.entityQueue.pollLast();
+			if(entity != null){
+				return entity;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the worker executing the current thread.
+	 * @return worker or null if called from a non-worker thread
+	 */
+	public static Worker currentWorker(){
+		Thread thread = Thread.currentThread();
+		if(thread instanceof Worker){
+			return (Worker)thread;
+		}
+		return null;
 	}
 }
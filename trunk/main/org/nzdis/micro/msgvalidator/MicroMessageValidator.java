@@ -20,6 +20,7 @@
  ******************************************************************************/
 package org.nzdis.micro.msgvalidator;
 
+import java.util.Collection;
 import org.nzdis.micro.MicroMessage;
 
 /**
@@ -44,4 +45,20 @@ public interface MicroMessageValidator {
 	 */
 	public boolean validate(MicroMessage message); 
 	
+	/**
+	 * Validates a batch of sent messages in one pass. Validators can override 
+	 * this to share work across the batch; the default validates each message.
+	 * @param messages - Messages to be validated
+	 * @return validation result (true --> all messages valid)
+	 */
+	public default boolean validate(Collection<MicroMessage> messages){
+		boolean valid = true;
+		for(MicroMessage message: messages){
+			if(!validate(message)){
+				valid = false;
+			}
+		}
+		return valid;
+	}
+	
 }
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.util;
+
+import java.util.Arrays;
+
+/**
+ * FenwickTree (binary indexed tree) maintains non-negative weights for 
+ * positions 0 to n - 1 and supports weight updates, prefix sums and 
+ * weight-proportional selection of positions in O(log n). Grows on demand. 
+ * Not synchronized.
+ * 
+ */
+public class FenwickTree {
+
+	/** partial sums (1-based as usual for Fenwick trees) */
+	private double[] tree;
+	/** individual weights */
+	private double[] weights;
+	private double total = 0;
+	/** partial counts of positions with positive weight (exact, unlike the weight sums) */
+	private int[] counts;
+	private int positives = 0;
+	
+	/**
+	 * Creates a tree with given initial capacity.
+	 * @param capacity Initial number of positions
+	 */
+	public FenwickTree(int capacity){
+		capacity = Math.max(capacity, 1);
+		tree = new double[capacity + 1];
+		weights = new double[capacity];
+		counts = new int[capacity + 1];
+	}
+	
+	/**
+	 * Sets the weight of a position.
+	 * @param position Position
+	 * @param weight Weight (negative weights are treated as zero)
+	 */
+	public void set(int position, double weight){
+		if(weight < 0 || Double.isNaN(weight)){
+			weight = 0;
+		}
+		if(position >= weights.length){
+			if(weight == 0){
+				return;
+			}
+			grow(position + 1);
+		}
+		double delta = weight - weights[position];
+		if(delta == 0){
+			return;
+		}
+		int countDelta = (weight > 0 ? 1 : 0) - (weights[position] > 0 ? 1 : 0);
+		weights[position] = weight;
+		total += delta;
+		for(int i = position + 1; i < tree.length; i += i & -i){
+			tree[i] += delta;
+		}
+		if(countDelta != 0){
+			positives += countDelta;
+			for(int i = position + 1; i < counts.length; i += i & -i){
+				counts[i] += countDelta;
+			}
+		}
+		if(positives == 0 && total != 0){
+			//drop accumulated rounding errors once tree is empty
+			rebuild();
+		}
+	}
+	
+	/**
+	 * Returns the weight of a position.
+	 * @param position Position
+	 * @return weight (0 for unknown positions)
+	 */
+	public double get(int position){
+		return position >= 0 && position < weights.length ? weights[position] : 0;
+	}
+	
+	/**
+	 * Returns the sum of all weights.
+	 * @return total weight
+	 */
+	public double getTotal(){
+		return total;
+	}
+	
+	/**
+	 * Returns the number of positions with positive weight.
+	 * @return number of positions with positive weight
+	 */
+	public int getNumberOfPositiveWeights(){
+		return positives;
+	}
+	
+	/**
+	 * Returns the position whose cumulative weight range contains the 
+	 * given value, i.e. the smallest position p with sum(0..p) > value. 
+	 * Drawing value uniformly from [0, getTotal()) selects positions 
+	 * proportional to their weight. Only positions with positive weight 
+	 * are returned, even if rounding errors of the partial sums point 
+	 * to a zero-weight position.
+	 * @param value Value in [0, getTotal())
+	 * @return position, or -1 if no position has positive weight
+	 */
+	public int find(double value){
+		if(positives == 0){
+			return -1;
+		}
+		int position = 0;
+		int step = Integer.highestOneBit(tree.length - 1);
+		for(; step > 0; step >>= 1){
+			int next = position + step;
+			if(next < tree.length && tree[next] <= value){
+				position = next;
+				value -= tree[next];
+			}
+		}
+		if(position < weights.length && weights[position] > 0){
+			return position;
+		}
+		//rounding may point to a zero-weight position: next positive position, else last one
+		int preceding = countPositive(position);
+		return selectPositive(preceding < positives ? preceding : positives - 1);
+	}
+	
+	/**
+	 * Returns the number of positions with positive weight before a given position in O(log n).
+	 */
+	private int countPositive(int position){
+		int count = 0;
+		for(int i = Math.min(position, weights.length); i > 0; i -= i & -i){
+			count += counts[i];
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns the position of the k-th (0-based) position with positive weight in O(log n).
+	 */
+	private int selectPositive(int k){
+		int position = 0;
+		for(int step = Integer.highestOneBit(counts.length - 1); step > 0; step >>= 1){
+			int next = position + step;
+			if(next < counts.length && counts[next] <= k){
+				position = next;
+				k -= counts[next];
+			}
+		}
+		return position;
+	}
+	
+	private void grow(int minimumCapacity){
+		int capacity = weights.length;
+		while(capacity < minimumCapacity){
+			capacity *= 2;
+		}
+		double[] newWeights = new double[capacity];
+		System.arraycopy(weights, 0, newWeights, 0, weights.length);
+		weights = newWeights;
+		tree = new double[capacity + 1];
+		counts = new int[capacity + 1];
+		rebuild();
+	}
+	
+	/**
+	 * Recomputes partial sums and counts from individual weights in O(n).
+	 */
+	private void rebuild(){
+		Arrays.fill(tree, 0);
+		Arrays.fill(counts, 0);
+		total = 0;
+		positives = 0;
+		for(int i = 0; i < weights.length; i++){
+			total += weights[i];
+			int index = i + 1;
+			tree[index] += weights[i];
+			if(weights[i] > 0){
+				positives++;
+				counts[index]++;
+			}
+			int parent = index + (index & -index);
+			if(parent < tree.length){
+				tree[parent] += tree[index];
+				counts[parent] += counts[index];
+			}
+		}
+	}
+}
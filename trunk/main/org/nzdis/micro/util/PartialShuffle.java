@@ -0,0 +1,125 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.util;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.nzdis.micro.random.MersenneTwisterFast;
+
+/**
+ * PartialShuffle draws distinct indices from the range 0 to size - 1 in random 
+ * order by lazily performing a Fisher-Yates shuffle. Only swapped positions are 
+ * stored, so drawing k indices takes O(k) time and space, independent of size.
+ * 
+ */
+public class PartialShuffle {
+
+	private final int size;
+	private final IntSource random;
+	private int drawn = 0;
+	/** values of positions that differ from the identity permutation */
+	private final HashMap<Integer, Integer> swapped = new HashMap<Integer, Integer>();
+	
+	/**
+	 * Creates a shuffle of the indices 0 to size - 1.
+	 * @param size Number of indices
+	 * @param random Random numbers used for drawing (see source())
+	 */
+	public PartialShuffle(int size, IntSource random){
+		this.size = size;
+		this.random = random;
+	}
+	
+	/**
+	 * Source of uniformly distributed random integers.
+	 */
+	public interface IntSource {
+		
+		/**
+		 * Returns a random integer between 0 (inclusive) and bound (exclusive).
+		 * @param bound Upper bound (positive)
+		 * @return random integer
+		 */
+		public int nextInt(int bound);
+	}
+	
+	/**
+	 * Returns an IntSource drawing from a given random number generator.
+	 * @param random Random number generator
+	 * @return IntSource
+	 */
+	public static IntSource source(final Random random){
+		return new IntSource(){
+
+			@Override
+			public int nextInt(int bound) {
+				return random.nextInt(bound);
+			}
+			
+		};
+	}
+	
+	/**
+	 * Returns an IntSource drawing from a given random number generator (e.g. agent stream).
+	 * @param random Random number generator
+	 * @return IntSource
+	 */
+	public static IntSource source(final MersenneTwisterFast random){
+		return new IntSource(){
+
+			@Override
+			public int nextInt(int bound) {
+				return random.nextInt(bound);
+			}
+			
+		};
+	}
+	
+	/**
+	 * Indicates if undrawn indices remain.
+	 * @return true if next() can be called
+	 */
+	public boolean hasNext(){
+		return drawn < size;
+	}
+	
+	/**
+	 * Draws the next index, uniformly chosen among the indices not drawn so far.
+	 * @return index
+	 */
+	public int next(){
+		int position = drawn + random.nextInt(size - drawn);
+		int index = valueAt(position);
+		//move value of first undrawn position into drawn position
+		if(position != drawn){
+			swapped.put(position, valueAt(drawn));
+		}
+		swapped.remove(drawn);
+		drawn++;
+		return index;
+	}
+	
+	private int valueAt(int position){
+		Integer value = swapped.get(position);
+		return value == null ? position : value;
+	}
+}
@@ -20,12 +20,33 @@
  ******************************************************************************/
 package org.nzdis.micro.util;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Mutual exclusion lock (based on ReentrantLock) with optional diagnostics. 
+ * Waiting threads are parked instead of polling. Diagnostics are only 
+ * produced if enabled (see setDiagnostics()): Threads waiting longer than 
+ * the wait threshold report the lock owner's stack, releases after holding 
+ * longer than the hold threshold report the holder's stack, and the stack 
+ * of every n-th acquisition is recorded for wait reports.
+ */
 public class SimpleSemaphore {
 
+	/** time (in ms) after which waiting threads report (0: no reports) */
+	private static volatile long waitThreshold = 1000;
+	/** time (in ms) after which releasing threads report the hold time (0: hold time not measured) */
+	private static volatile long holdThreshold = 0;
+	/** records acquiring stack for every n-th acquisition (0: no recording) */
+	private static volatile int stackSamplingRate = 0;
+	
 	private String name = "";
-	private volatile boolean semaphoreAcquired = false;
-	private StackTraceElement[] acquiringStack = null;
+	private final OwnerTrackingLock lock = new OwnerTrackingLock();
 	private boolean printOutput = true;
+	/** diagnostic state, only accessed while holding the lock */
+	private long acquisitionTime = 0;
+	private int acquisitions = 0;
+	private StackTraceElement[] acquiringStack = null;
 	
 	public SimpleSemaphore(){
 	}
@@ -88,6 +109,21 @@ public class SimpleSemaphore {
 		this(instantiatedClass.getSimpleName(), printWaitOutput);
 	}
 	
+	/**
+	 * Configures diagnostics for all semaphores.
+	 * @param waitThresholdMs Time (in ms) after which waiting threads report waiting 
+	 * 		along with the owner's stack (0: no reports)
+	 * @param holdThresholdMs Time (in ms) after which releasing threads report 
+	 * 		holding the semaphore (0: hold time not measured)
+	 * @param sampledAcquisitions Records the acquiring stack for every n-th 
+	 * 		acquisition to be included in wait reports (0: no recording)
+	 */
+	public static void setDiagnostics(long waitThresholdMs, long holdThresholdMs, int sampledAcquisitions){
+		waitThreshold = Math.max(waitThresholdMs, 0);
+		holdThreshold = Math.max(holdThresholdMs, 0);
+		stackSamplingRate = Math.max(sampledAcquisitions, 0);
+	}
+	
 	/**
 	 * Sets the semaphore's name.
 	 * @param name
@@ -104,75 +140,109 @@ public class SimpleSemaphore {
 		return this.name;
 	}
 	
-	private int iteration = 0;
-	
 	/**
 	 * Acquires semaphore or waits if semaphore is already acquired 
-	 * by another thread.
+	 * by another thread. The semaphore is reentrant.
 	 */
-	public synchronized void acquire(){
-		while(semaphoreAcquired){
-			try {
-				if(printOutput){
-					StringBuffer buf = new StringBuffer(Thread.currentThread().getName())
-						.append(" (ID: ").append(Thread.currentThread().getId()).append(")")
-						.append(": Awaiting semaphore");
-					if(!name.equals("")){
-						System.out.println(buf.append(" ").append(this.name));
-					} else {
-						System.out.println(buf.append("."));
-					}
-					iteration++;
-					if(iteration >= 5){
-						StackTraceElement[] elements = Thread.currentThread().getStackTrace();
-						StringBuffer output = new StringBuffer("Semaphore ");
-						if(!name.equals("")){
-							output.append(this.name);
-						}
-						output.append(" Current StackTrace:");
-						for(int i=0; i<elements.length; i++){
-							output.append("\n").append(elements[i]);
-						}
-						if(acquiringStack != null){
-							output.append("\n==========================");
-							output.append("\nStackTrace when semaphore had been acquired ");
-							output.append("(ID: ").append(Thread.currentThread().getId());
-							output.append("): ");
-							for(int i=0; i<acquiringStack.length; i++){
-								output.append("\n").append(acquiringStack[i]);
-							}
+	public void acquire(){
+		if(!lock.tryLock()){
+			long threshold = waitThreshold;
+			if(printOutput && threshold > 0){
+				boolean interrupted = false;
+				long start = System.currentTimeMillis();
+				while(true){
+					try {
+						if(lock.tryLock(threshold, TimeUnit.MILLISECONDS)){
+							break;
 						}
-						System.err.println(output);
-						iteration = 0;
+						reportWait(System.currentTimeMillis() - start);
+					} catch (InterruptedException e) {
+						//acquisition is not interruptible
+						interrupted = true;
 					}
 				}
-				Thread.sleep(5);
-			} catch (InterruptedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				if(interrupted){
+					Thread.currentThread().interrupt();
+				}
+			} else {
+				lock.lock();
+			}
+		}
+		if(lock.getHoldCount() == 1){
+			if(holdThreshold > 0){
+				acquisitionTime = System.currentTimeMillis();
+			}
+			int samplingRate = stackSamplingRate;
+			if(samplingRate > 0 && ++acquisitions % samplingRate == 0){
+				acquiringStack = Thread.currentThread().getStackTrace();
 			}
 		}
-		semaphoreAcquired = true;
-		acquiringStack = Thread.currentThread().getStackTrace();
 	}
 	
 	/**
 	 * Releases a previously acquired semaphore.
 	 */
 	public void release(){
-		if(semaphoreAcquired){
-			iteration = 0;
-			semaphoreAcquired = false;
-			acquiringStack = null;
+		if(lock.isHeldByCurrentThread()){
+			if(lock.getHoldCount() == 1){
+				if(holdThreshold > 0 && acquisitionTime > 0){
+					long held = System.currentTimeMillis() - acquisitionTime;
+					if(held > holdThreshold){
+						System.err.println(appendStack(new StringBuffer(Thread.currentThread().getName())
+								.append(": Held semaphore ").append(name).append(" for ").append(held)
+								.append(" ms. Current StackTrace:"), Thread.currentThread().getStackTrace()));
+					}
+					acquisitionTime = 0;
+				}
+				acquiringStack = null;
+			}
+			lock.unlock();
 		} else {
 			StringBuffer output = new StringBuffer("Semaphore ");
 			if(!name.equals("")){
 				output.append(this.name);
 			}
-			System.err.println(output.append(" can only be released if previously acquired."));
+			System.err.println(output.append(" can only be released if previously acquired (by the releasing thread)."));
 		}
 	}
 	
+	/**
+	 * Prints information on the waiting thread and the current owner.
+	 * @param waited Time waited so far in ms
+	 */
+	private void reportWait(long waited){
+		StringBuffer output = new StringBuffer(Thread.currentThread().getName())
+			.append(" (ID: ").append(Thread.currentThread().getId()).append(")")
+			.append(": Awaiting semaphore");
+		if(!name.equals("")){
+			output.append(" ").append(this.name);
+		}
+		output.append(" for ").append(waited).append(" ms. Current StackTrace:");
+		appendStack(output, Thread.currentThread().getStackTrace());
+		Thread owner = lock.getOwner();
+		if(owner != null){
+			output.append("\n==========================");
+			output.append("\nStackTrace of owner ").append(owner.getName())
+				.append(" (ID: ").append(owner.getId()).append("):");
+			appendStack(output, owner.getStackTrace());
+		}
+		//racy read, only for diagnostics
+		StackTraceElement[] sampledStack = acquiringStack;
+		if(sampledStack != null){
+			output.append("\n==========================");
+			output.append("\nStackTrace when semaphore had been acquired:");
+			appendStack(output, sampledStack);
+		}
+		System.err.println(output);
+	}
+	
+	private static StringBuffer appendStack(StringBuffer output, StackTraceElement[] elements){
+		for(int i=0; i<elements.length; i++){
+			output.append("\n").append(elements[i]);
+		}
+		return output;
+	}
+	
 	/**
 	 * Allows to de/activate printing of semaphore wait output.
 	 * @param print
@@ -186,13 +256,26 @@ public class SimpleSemaphore {
 	 * @return
 	 */
 	public boolean isFree(){
-		return !semaphoreAcquired;
+		return !lock.isLocked();
 	}
 
 	@Override
 	public String toString() {
 		return "SimpleSemaphore [name=" + name + ", semaphoreAcquired="
-				+ semaphoreAcquired + ", printOutput=" + printOutput + "]";
+				+ lock.isLocked() + ", printOutput=" + printOutput + "]";
+	}
+	
+	/**
+	 * Exposes the owner of the lock for diagnostics.
+	 */
+	private static final class OwnerTrackingLock extends ReentrantLock {
+		
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected Thread getOwner(){
+			return super.getOwner();
+		}
 	}
 	
 }
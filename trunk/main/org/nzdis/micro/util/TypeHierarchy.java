@@ -0,0 +1,70 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.util;
+
+import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TypeHierarchy resolves the types instances of a class are assignable to, 
+ * i.e. the class itself, its superclasses (including Object) and all 
+ * implemented interfaces. Results are cached per class.
+ * 
+ */
+public final class TypeHierarchy {
+
+	private static final ConcurrentHashMap<Class<?>, Class<?>[]> hierarchies = new ConcurrentHashMap<Class<?>, Class<?>[]>();
+	
+	private TypeHierarchy(){
+	}
+	
+	/**
+	 * Returns the class, its superclasses and all implemented interfaces 
+	 * (each type once, starting with the class itself).
+	 * @param type Class to resolve
+	 * @return types (shared array, must not be modified)
+	 */
+	public static Class<?>[] getTypes(Class<?> type){
+		Class<?>[] types = hierarchies.get(type);
+		if(types == null){
+			LinkedHashSet<Class<?>> hierarchy = new LinkedHashSet<Class<?>>();
+			for(Class<?> current = type; current != null; current = current.getSuperclass()){
+				hierarchy.add(current);
+				addInterfaces(current, hierarchy);
+			}
+			types = hierarchy.toArray(new Class<?>[hierarchy.size()]);
+			Class<?>[] existing = hierarchies.putIfAbsent(type, types);
+			if(existing != null){
+				types = existing;
+			}
+		}
+		return types;
+	}
+	
+	private static void addInterfaces(Class<?> type, LinkedHashSet<Class<?>> hierarchy){
+		Class<?>[] interfaces = type.getInterfaces();
+		for(int i = 0; i < interfaces.length; i++){
+			if(hierarchy.add(interfaces[i])){
+				addInterfaces(interfaces[i], hierarchy);
+			}
+		}
+	}
+}
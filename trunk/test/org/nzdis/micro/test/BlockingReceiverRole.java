@@ -0,0 +1,102 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.nzdis.micro.DefaultSocialRole;
+import org.nzdis.micro.MessageFields;
+import org.nzdis.micro.MicroMessage;
+
+/**
+ * Role that (optionally) blocks on the first received message until released. 
+ * Counts received messages and platform error notifications and records 
+ * the sequence numbers of received messages (if any).
+ */
+public class BlockingReceiverRole extends DefaultSocialRole {
+
+	private final boolean block;
+	private final CountDownLatch release = new CountDownLatch(1);
+	private volatile boolean blocked = false;
+	private volatile int received = 0;
+	private volatile int errors = 0;
+	private final List<Integer> sequences = Collections.synchronizedList(new ArrayList<Integer>());
+	
+	public BlockingReceiverRole(boolean block){
+		this.block = block;
+	}
+	
+	@Override
+	protected void initialize() {
+	}
+
+	@Override
+	public void handleMessage(MicroMessage message) {
+		if(message.getPerformative().equals(MessageFields.ERROR_MESSAGE)){
+			errors++;
+			return;
+		}
+		if(block){
+			blocked = true;
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+			blocked = false;
+		}
+		if(message.containsKey(SequenceRecorderRole.SEQUENCE_FIELD)){
+			sequences.add(Integer.parseInt(message.getCustomField(SequenceRecorderRole.SEQUENCE_FIELD).toString()));
+		}
+		received++;
+	}
+	
+	public void unblock(){
+		release.countDown();
+	}
+	
+	public boolean isBlocked(){
+		return blocked;
+	}
+	
+	public int getReceived(){
+		return received;
+	}
+	
+	public int getErrors(){
+		return errors;
+	}
+	
+	public List<Integer> getSequences(){
+		synchronized(sequences){
+			return new ArrayList<Integer>(sequences);
+		}
+	}
+
+	@Override
+	protected void release() {
+		release.countDown();
+	}
+
+}
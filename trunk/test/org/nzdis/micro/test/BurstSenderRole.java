@@ -0,0 +1,108 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.nzdis.micro.DefaultSocialRole;
+import org.nzdis.micro.MessageFields;
+import org.nzdis.micro.MicroMessage;
+
+/**
+ * Sends a burst of messages to a target agent (possibly itself) while processing 
+ * a trigger message and records the duration of the burst. Counts received 
+ * messages and platform error notifications. Bursts of several senders can be 
+ * synchronized with a shared start signal.
+ */
+public class BurstSenderRole extends DefaultSocialRole {
+
+	public static final String BURST_FIELD = "BURST";
+	
+	private final String target;
+	private final int burstSize;
+	private final CountDownLatch startSignal;
+	private volatile long burstDuration = -1;
+	private volatile int received = 0;
+	private volatile int errors = 0;
+	
+	public BurstSenderRole(String target, int burstSize){
+		this(target, burstSize, null);
+	}
+	
+	public BurstSenderRole(String target, int burstSize, CountDownLatch startSignal){
+		this.target = target;
+		this.burstSize = burstSize;
+		this.startSignal = startSignal;
+	}
+	
+	@Override
+	protected void initialize() {
+	}
+
+	@Override
+	public void handleMessage(MicroMessage message) {
+		if(message.getPerformative().equals(MessageFields.ERROR_MESSAGE)){
+			errors++;
+			return;
+		}
+		if(message.containsKey(BURST_FIELD)){
+			if(startSignal != null){
+				startSignal.countDown();
+				try {
+					startSignal.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			}
+			long start = System.currentTimeMillis();
+			for(int i = 0; i < burstSize; i++){
+				MicroMessage burst = new MicroMessage();
+				burst.setRecipient(target);
+				send(burst);
+			}
+			burstDuration = System.currentTimeMillis() - start;
+			return;
+		}
+		received++;
+	}
+	
+	/**
+	 * Returns the time it took to send the burst.
+	 * @return duration in ms or -1 if no burst has been sent yet
+	 */
+	public long getBurstDuration(){
+		return burstDuration;
+	}
+	
+	public int getReceived(){
+		return received;
+	}
+	
+	public int getErrors(){
+		return errors;
+	}
+
+	@Override
+	protected void release() {
+	}
+
+}
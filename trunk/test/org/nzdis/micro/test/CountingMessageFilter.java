@@ -0,0 +1,61 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.nzdis.micro.DefaultMessageFilter;
+import org.nzdis.micro.MicroMessage;
+
+public class CountingMessageFilter extends DefaultMessageFilter {
+
+	public final AtomicInteger successes = new AtomicInteger();
+	public final AtomicInteger failures = new AtomicInteger();
+	private final boolean notifyFailures;
+	
+	public CountingMessageFilter(MicroMessage pattern, boolean notifyFailures) {
+		super(pattern);
+		this.notifyFailures = notifyFailures;
+	}
+
+	@Override
+	public void onMatchSuccess(MicroMessage message) {
+		successes.incrementAndGet();
+	}
+
+	@Override
+	public void onMatchFail(MicroMessage message) {
+		failures.incrementAndGet();
+	}
+
+	@Override
+	public void handleDirectMessage(MicroMessage message) {
+	}
+
+	@Override
+	protected void initializeMessageFilter() {
+		notifyOnMatchFail(notifyFailures);
+	}
+
+	@Override
+	protected void releaseMessageFilter() {
+	}
+
+}
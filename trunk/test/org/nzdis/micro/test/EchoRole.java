@@ -0,0 +1,44 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.test;
+
+import org.nzdis.micro.DefaultSocialRole;
+import org.nzdis.micro.MicroMessage;
+
+/**
+ * Replies to each received message with a copy of it.
+ */
+public class EchoRole extends DefaultSocialRole {
+
+	@Override
+	protected void initialize() {
+	}
+
+	@Override
+	public void handleMessage(MicroMessage message) {
+		send(message.createReply());
+	}
+
+	@Override
+	protected void release() {
+	}
+
+}
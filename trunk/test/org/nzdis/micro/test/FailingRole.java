@@ -0,0 +1,56 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.test;
+
+import org.nzdis.micro.DefaultSocialRole;
+import org.nzdis.micro.MicroMessage;
+
+/**
+ * Throws an Error for messages carrying the failure field and counts 
+ * all other received messages.
+ */
+public class FailingRole extends DefaultSocialRole {
+
+	public static final String FAIL_FIELD = "FAIL";
+	
+	private volatile int received = 0;
+	
+	@Override
+	protected void initialize() {
+	}
+
+	@Override
+	public void handleMessage(MicroMessage message) {
+		if(message.containsKey(FAIL_FIELD)){
+			throw new AssertionError("Failure requested by " + message.getSender());
+		}
+		received++;
+	}
+	
+	public int getReceived(){
+		return received;
+	}
+
+	@Override
+	protected void release() {
+	}
+
+}
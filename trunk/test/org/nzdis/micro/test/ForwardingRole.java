@@ -0,0 +1,54 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.test;
+
+import org.nzdis.micro.DefaultSocialRole;
+import org.nzdis.micro.MicroMessage;
+
+/**
+ * Forwards the sequence number of each received message to a target agent 
+ * (used to test delivery order of messages sent during message processing).
+ */
+public class ForwardingRole extends DefaultSocialRole {
+
+	private final String target;
+	
+	public ForwardingRole(String target){
+		this.target = target;
+	}
+	
+	@Override
+	protected void initialize() {
+	}
+
+	@Override
+	public void handleMessage(MicroMessage message) {
+		MicroMessage forward = new MicroMessage();
+		forward.setRecipient(target);
+		forward.setCustomField(SequenceRecorderRole.SEQUENCE_FIELD, message.getCustomField(SequenceRecorderRole.SEQUENCE_FIELD));
+		send(forward);
+	}
+
+	@Override
+	protected void release() {
+	}
+
+}
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.test;
+
+import java.util.HashSet;
+
+import org.nzdis.micro.DefaultSocialRole;
+import org.nzdis.micro.MicroMessage;
+
+/**
+ * Role registered for AdderIntent that counts received intents 
+ * and records the conversations they belong to.
+ */
+public class IntentWorkerRole extends DefaultSocialRole {
+
+	private volatile int received = 0;
+	private final HashSet<String> conversations = new HashSet<String>();
+	
+	@Override
+	protected void initialize() {
+		addApplicableIntent(AdderIntent.class);
+	}
+
+	@Override
+	public void handleMessage(MicroMessage message) {
+		if(message.containsConversationID()){
+			synchronized(conversations){
+				conversations.add(message.getConversationID());
+			}
+		}
+		received++;
+	}
+	
+	public int getReceived(){
+		return received;
+	}
+	
+	public void resetReceived(){
+		received = 0;
+	}
+	
+	public HashSet<String> getConversations(){
+		synchronized(conversations){
+			return new HashSet<String>(conversations);
+		}
+	}
+
+	@Override
+	protected void release() {
+	}
+
+}
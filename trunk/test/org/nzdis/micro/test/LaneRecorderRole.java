@@ -0,0 +1,82 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.nzdis.micro.DefaultSocialRole;
+import org.nzdis.micro.MicroMessage;
+
+/**
+ * Role that blocks on the first received message until released and 
+ * records the sequence numbers of all further messages in order of reception.
+ */
+public class LaneRecorderRole extends DefaultSocialRole {
+
+	public static final String SEQUENCE_FIELD = "SEQUENCE";
+	
+	private final CountDownLatch release = new CountDownLatch(1);
+	private volatile boolean blocked = false;
+	private volatile boolean first = true;
+	private final ArrayList<Integer> sequence = new ArrayList<Integer>();
+	
+	@Override
+	protected void initialize() {
+	}
+
+	@Override
+	public void handleMessage(MicroMessage message) {
+		if(first){
+			first = false;
+			blocked = true;
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+		synchronized(sequence){
+			sequence.add(Integer.parseInt(message.getCustomField(SEQUENCE_FIELD).toString()));
+		}
+	}
+	
+	public void unblock(){
+		release.countDown();
+	}
+	
+	public boolean isBlocked(){
+		return blocked;
+	}
+	
+	public ArrayList<Integer> getSequence(){
+		synchronized(sequence){
+			return new ArrayList<Integer>(sequence);
+		}
+	}
+
+	@Override
+	protected void release() {
+		release.countDown();
+	}
+
+}
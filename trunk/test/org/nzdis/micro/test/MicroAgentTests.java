@@ -22,30 +22,58 @@ package org.nzdis.micro.test;
 
 import static org.junit.Assert.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.nzdis.micro.AbstractAgent;
 import org.nzdis.micro.Agent;
 import org.nzdis.micro.AgentController;
+import org.nzdis.micro.AgentWeightProvider;
 import org.nzdis.micro.AnonymousAgent;
 import org.nzdis.micro.ClojureConnector;
+import org.nzdis.micro.DefaultPassiveRole;
+import org.nzdis.micro.ImmutableMicroMessage;
 import org.nzdis.micro.MTConnector;
 import org.nzdis.micro.MicroMessage;
 import org.nzdis.micro.PlatformController;
 import org.nzdis.micro.Role;
+import org.nzdis.micro.SocialRole;
 import org.nzdis.micro.SystemAgentLoader;
 import org.nzdis.micro.SystemOwner;
 import org.nzdis.micro.bootloader.MicroBootProperties;
+import org.nzdis.micro.constants.IntentDispatchStrategies;
+import org.nzdis.micro.constants.LaneDrainingPolicies;
+import org.nzdis.micro.constants.MailboxOverflowPolicies;
 import org.nzdis.micro.constants.MessagePassingFrameworks;
 import org.nzdis.micro.exceptions.InvalidDisposalOfRoleOnLivingAgent;
 import org.nzdis.micro.exceptions.RegisteredOwnerInOwnGroupException;
 import org.nzdis.micro.exceptions.RoleNotInitializedException;
+import org.nzdis.micro.messaging.processor.AbstractMicroFiber;
+import org.nzdis.micro.messaging.processor.CommunicationAffinity;
+import org.nzdis.micro.messaging.processor.MailboxLimit;
+import org.nzdis.micro.messaging.processor.MessagePriorities;
+import org.nzdis.micro.messaging.processor.MicroFiber;
+import org.nzdis.micro.msgvalidator.MicroMessageValidator;
+import org.nzdis.micro.random.MersenneTwisterFast;
 import org.nzdis.micro.test.gip.GenericIntentClientRole;
+import org.nzdis.micro.util.SimpleSemaphore;
 
 
 public class MicroAgentTests {
 
+	/** message transport configured before any test (platform default if null) */
+	private static final Object initialTransport = MicroBootProperties.bootProperties.get(MicroBootProperties.INTERNAL_MESSAGE_TRANSPORT);
+	
 	@Before
 	public void runBeforeEveryTest(){
 		MicroBootProperties.activateNetworkSupport(false);
@@ -64,6 +92,8 @@ public class MicroAgentTests {
 		PlatformController.shutdownPlatform();
 		MTConnector.printApplicableIntents();
 		MTConnector.printEventSubscriptions();
+		//tests selecting a transport must not affect subsequent tests
+		MicroBootProperties.setInternalMessageTransport(initialTransport == null ? MessagePassingFrameworks.JETLANG : initialTransport.toString());
 		assertTrue(MTConnector.shutdownCheck());
 	}
 
@@ -74,6 +104,26 @@ public class MicroAgentTests {
 		assertTrue(MTConnector.getInternalMessagePassingFramework().equals("MICRO_FIBER"));
 	}
 	
+	@Test(timeout = 8000)
+	public void virtualThreadSocialReactiveAdder(){
+		System.out.println("TEST ===== mixed social/reactive addition test using VIRTUAL_THREAD message passing");
+		MicroBootProperties.setInternalMessageTransport(MessagePassingFrameworks.VIRTUAL_THREAD);
+		PlatformController.startPlatform();
+		assertTrue(MTConnector.getInternalMessagePassingFramework().equals("VIRTUAL_THREAD"));
+		
+		CalcClient client = new CalcClient();
+		SystemAgentLoader.newAgent(client);
+		SystemAgentLoader.newAgent(new StorageCalcRole(), "CalcProvider");
+		SystemAgentLoader.newAgent(new ReactiveCalcRole(), "Calculator");
+		CalcIntent sg = new CalcIntent();
+		sg.storeLeftData(38502);
+		sg.storeRightData(24200);
+		sg.setOperation("ADD");
+		client.start(sg);
+		while(!client.resultsReceived()){};
+		assertTrue(Integer.parseInt(client.getResults().toString()) == 62702);
+	}
+	
 	@Test
 	public void platformStartAndShutdownJetlang(){
 		MicroBootProperties.setInternalMessageTransport(MessagePassingFrameworks.JETLANG);
@@ -247,9 +297,9 @@ public class MicroAgentTests {
 		//check on number of subagents (should be two)
 		assertTrue("Checking for two sub-agents", ag[0].getGroup().getAgents().length == 2);
 		
-		//search on highest level should reveal three agents
+		//search on highest level should reveal all four agents
 		ag = SystemAgentLoader.findAgentsByIntent(AdderIntent.class);
-		assertTrue(ag.length == 3);
+		assertTrue(ag.length == 4);
 	}
 
 	@Test(timeout = 1000)
@@ -343,8 +393,7 @@ public class MicroAgentTests {
 		//MTLoader.printEventSubscriptions();
 		
 		source.raiseEvent1();
-		long start = System.currentTimeMillis();
-		while(System.currentTimeMillis()-start < 200){};
+		assertTrue(MTConnector.awaitQuiescence(2000));
 		assertTrue(client1.eventCalled1());
 		assertTrue(client2.eventCalled1());
 		assertTrue(client3.eventCalled1());
@@ -368,8 +417,7 @@ public class MicroAgentTests {
 		//MTLoader.printEventSubscriptions();
 		
 		source.raiseEvent2();
-		start = System.currentTimeMillis();
-		while(System.currentTimeMillis()-start < 200){};
+		assertTrue(MTConnector.awaitQuiescence(2000));
 		assertEquals(3, source.getCounter2());
 		assertTrue(client1.eventCalled2());
 		assertFalse(client2.eventCalled2());
@@ -383,8 +431,7 @@ public class MicroAgentTests {
 		assertFalse(client5.eventCalled1());
 		
 		source.raiseEvent1();
-		start = System.currentTimeMillis();
-		while(System.currentTimeMillis()-start < 200){};
+		assertTrue(MTConnector.awaitQuiescence(2000));
 		assertTrue(client1.eventCalled1());
 		assertTrue(client2.eventCalled1());
 		assertFalse(client3.eventCalled1());
@@ -406,8 +453,7 @@ public class MicroAgentTests {
 		//MTLoader.printEventSubscriptions();
 		
 		source.raiseEvent2();
-		start = System.currentTimeMillis();
-		while(System.currentTimeMillis()-start < 200){};
+		assertTrue(MTConnector.awaitQuiescence(2000));
 		assertEquals(2, source.getCounter2());
 		assertTrue(client1.eventCalled2());
 		assertFalse(client2.eventCalled2());
@@ -421,6 +467,55 @@ public class MicroAgentTests {
 		assertFalse(client5.eventCalled1());
 	}
 	
+	@Test
+	public void eventSubscriptionTypeHierarchy(){
+		System.out.println("TEST ===== Event dispatch along event type hierarchy");
+		
+		SocialEventClient parentClient = new SocialEventClient();
+		SystemAgentLoader.newAgent(parentClient, "HierarchyParentClient");
+		SocialEventClient subClient = new SocialEventClient();
+		SystemAgentLoader.newAgent(subClient, "HierarchySubClient");
+		SocialEventSource source = new SocialEventSource();
+		SystemAgentLoader.newAgent(source, "HierarchySource");
+		
+		//both subscribed to TestEvent1 upon initialization
+		subClient.unsubscribe1();
+		subClient.subscribeSub1();
+		
+		//subtype event reaches subscribers of supertype and subtype
+		source.raiseSubEvent1();
+		assertTrue(MTConnector.awaitQuiescence(2000));
+		assertTrue(parentClient.eventCalled1());
+		assertTrue(subClient.eventCalled1());
+		assertEquals(2, source.getCounter1());
+		
+		//supertype event does not reach subscribers of subtype only
+		parentClient.resetCalls();
+		subClient.resetCalls();
+		source.raiseEvent1();
+		assertTrue(MTConnector.awaitQuiescence(2000));
+		assertTrue(parentClient.eventCalled1());
+		assertFalse(subClient.eventCalled1());
+		
+		//subscription to both types yields single delivery
+		parentClient.resetCalls();
+		parentClient.subscribeSub1();
+		source.raiseSubEvent1();
+		assertTrue(MTConnector.awaitQuiescence(2000));
+		assertEquals(2, source.getCounter1());
+		
+		//unsubscribing from supertype invalidates cached dispatch
+		subClient.resetCalls();
+		parentClient.unsubscribeSub1();
+		parentClient.unsubscribe1();
+		source.raiseSubEvent1();
+		assertTrue(MTConnector.awaitQuiescence(2000));
+		assertTrue(subClient.eventCalled1());
+		assertEquals(1, source.getCounter1());
+		
+		subClient.unsubscribeSub1();
+	}
+	
 	@Test
 	public void testRoleRetrieval(){
 		System.out.println("TEST ===== Initialization of multiple roles in agent");
@@ -525,8 +620,7 @@ public class MicroAgentTests {
 		
 		client.initRoleCast();
 		
-		long start = System.currentTimeMillis();
-		while(System.currentTimeMillis()-start < 200){};
+		assertTrue(MTConnector.awaitQuiescence(2000));
 		
 		assertTrue(client.test1.equals(role1.result));
 		assertTrue(client.test1.equals(role2.result));
@@ -535,6 +629,48 @@ public class MicroAgentTests {
 		assertFalse(client.test1.equals(roleb.result));	
 	}
 
+	@Test
+	public void roleCastReachesRoleSubtypes(){
+		System.out.println("TEST ===== Role cast along role type hierarchy");
+		
+		RoleTestAgent role = new RoleTestAgent();
+		RoleTestSubAgent subRole = new RoleTestSubAgent();
+		RoleTest2Agent otherRole = new RoleTest2Agent();
+		RoleTestClient client = new RoleTestClient();
+		SystemAgentLoader.newAgent(role, "RoleCastParent");
+		SystemAgentLoader.newAgent(subRole, "RoleCastSub");
+		SystemAgentLoader.newAgent(otherRole, "RoleCastOther");
+		SystemAgentLoader.newAgent(client);
+		Agent subAgent = subRole.getAgent();
+		//agent with two roles of the same type is addressed once
+		RoleTestSubAgent secondSubRole = new RoleTestSubAgent();
+		subAgent.addRole(secondSubRole);
+		
+		assertEquals(2, MTConnector.getAgentsPlayingRole(RoleTestAgent.class).length);
+		assertEquals(1, MTConnector.getAgentsPlayingRole(RoleTestSubAgent.class).length);
+		assertTrue(MTConnector.getAgentsPlayingRole(Role.class).length >= 4);
+		
+		client.initRoleCast();
+		assertTrue(MTConnector.awaitQuiescence(2000));
+		assertEquals(client.test1, role.result);
+		assertEquals(client.test1, subRole.result);
+		assertEquals(client.test1, secondSubRole.result);
+		assertEquals("", otherRole.result);
+		
+		//disposed roles are removed from index
+		subAgent.addRole(new RoleTest2Agent());
+		subAgent.disposeRole(subRole);
+		assertEquals(2, MTConnector.getAgentsPlayingRole(RoleTestAgent.class).length);
+		subAgent.disposeRole(secondSubRole);
+		assertEquals(1, MTConnector.getAgentsPlayingRole(RoleTestAgent.class).length);
+		assertEquals(0, MTConnector.getAgentsPlayingRole(RoleTestSubAgent.class).length);
+		assertEquals(2, MTConnector.getAgentsPlayingRole(RoleTest2Agent.class).length);
+		
+		//dead agents are removed from index
+		subAgent.die();
+		assertEquals(1, MTConnector.getAgentsPlayingRole(RoleTest2Agent.class).length);
+	}
+
 	@Test
 	public void randomCastTest(){
 		System.out.println("TEST ===== random cast mechanism");
@@ -555,8 +691,7 @@ public class MicroAgentTests {
 		
 		client.initRandomCast();
 		
-		long start = System.currentTimeMillis();
-		while(System.currentTimeMillis()-start < 200){};
+		assertTrue(MTConnector.awaitQuiescence(2000));
 		
 		int count = 0;
 		if(client.test2.equals(role1.result)){
@@ -578,6 +713,358 @@ public class MicroAgentTests {
 		assertTrue(count == 4);
 	}
 	
+	@Test
+	public void randomAgentSamplingIsDistinctAndReproducible(){
+		System.out.println("TEST ===== Random selection of agents");
+		
+		ArrayList<String> excluded = new ArrayList<String>();
+		for(int i = 0; i < 50; i++){
+			SystemAgentLoader.newAgent(new RoleTest2Agent(), "SampledAgent" + i);
+			if(i % 5 == 0){
+				excluded.add("SampledAgent" + i);
+			}
+		}
+		//unregistered agents do not reduce the number of candidates
+		excluded.add("UnknownAgent");
+		int registered = MTConnector.getNumberOfRegisteredAgents();
+		assertEquals(MTConnector.getRegisteredAgents().size(), registered);
+		
+		List<String> sample = MTConnector.getRandomAgents(20, excluded);
+		assertEquals(20, sample.size());
+		assertEquals(20, new HashSet<String>(sample).size());
+		for(String agent: sample){
+			assertFalse(excluded.contains(agent));
+			assertTrue(MTConnector.getRegisteredAgents().containsKey(agent));
+		}
+		assertEquals(registered - 10, MTConnector.getRandomOrLessAgents(registered, excluded).size());
+		assertEquals(0, MTConnector.getRandomAgents(registered - 9, excluded).size());
+		
+		//same seed yields same selection
+		long seed = MTConnector.getRandomNumberGeneratorSeed();
+		try{
+			MTConnector.setRandomNumberGeneratorSeed(42);
+			List<String> first = MTConnector.getRandomAgents(10, excluded);
+			MTConnector.setRandomNumberGeneratorSeed(42);
+			assertEquals(first, MTConnector.getRandomAgents(10, excluded));
+		} finally {
+			MTConnector.setRandomNumberGeneratorSeed(seed);
+		}
+	}
+	
+	@Test
+	public void agentRandomStreamsAreReproducible(){
+		System.out.println("TEST ===== Per-agent random number streams");
+		
+		SystemAgentLoader.newAgent(new RoleTest2Agent(), "StreamAgentA");
+		SystemAgentLoader.newAgent(new RoleTest2Agent(), "StreamAgentB");
+		long seed = MTConnector.getRandomNumberGeneratorSeed();
+		try{
+			MTConnector.setRandomNumberGeneratorSeed(7);
+			int[] first = new int[10];
+			int[] other = new int[10];
+			for(int i = 0; i < first.length; i++){
+				first[i] = MTConnector.getRandomNoGenerator("StreamAgentA").nextInt();
+				other[i] = MTConnector.getRandomNoGenerator("StreamAgentB").nextInt();
+			}
+			assertFalse(Arrays.equals(first, other));
+			
+			//draws of other agents do not affect an agent's sequence
+			MTConnector.setRandomNumberGeneratorSeed(7);
+			int[] second = new int[10];
+			for(int i = 0; i < second.length; i++){
+				MTConnector.getRandomNoGenerator("StreamAgentB").nextInt();
+				MTConnector.getRandomNoGenerator().nextInt();
+				second[i] = MTConnector.getRandomNoGenerator("StreamAgentA").nextInt();
+			}
+			assertTrue(Arrays.equals(first, second));
+			
+			//agents not registered with message transport keep a reproducible stream as well
+			SystemAgentLoader.newAgent(new ReactiveCalcRole(), "PassiveStreamAgent");
+			Agent passive = SystemAgentLoader.findAgent("PassiveStreamAgent");
+			assertTrue(MTConnector.getRegisteredAgent("PassiveStreamAgent") == null);
+			MTConnector.setRandomNumberGeneratorSeed(7);
+			int[] passiveFirst = new int[10];
+			for(int i = 0; i < passiveFirst.length; i++){
+				passiveFirst[i] = MTConnector.getRandomNoGenerator("PassiveStreamAgent").nextInt();
+			}
+			assertTrue(MTConnector.getRandomNoGenerator("PassiveStreamAgent") == ((AbstractAgent)passive).getRandomNoGenerator());
+			MTConnector.setRandomNumberGeneratorSeed(7);
+			int[] passiveSecond = new int[10];
+			for(int i = 0; i < passiveSecond.length; i++){
+				MTConnector.getRandomNoGenerator().nextInt();
+				passiveSecond[i] = ((AbstractAgent)passive).getRandomNoGenerator().nextInt();
+			}
+			assertTrue(Arrays.equals(passiveFirst, passiveSecond));
+			passive.die();
+			
+			//randomcast picks depend on sender's stream only
+			ArrayList<String> candidates = new ArrayList<String>();
+			for(int i = 0; i < 20; i++){
+				SystemAgentLoader.newAgent(new RoleTest2Agent(), "StreamCandidate" + i);
+				candidates.add("StreamCandidate" + i);
+			}
+			RoleTestClient client = new RoleTestClient();
+			SystemAgentLoader.newAgent(client, "StreamClient");
+			MTConnector.setRandomNumberGeneratorSeed(7);
+			ArrayList<String> picks = client.sendRandomcast(new MicroMessage(), 5, false, true, candidates);
+			MTConnector.setRandomNumberGeneratorSeed(7);
+			MTConnector.getRandomNoGenerator("StreamAgentA").nextInt();
+			assertEquals(picks, client.sendRandomcast(new MicroMessage(), 5, false, true, candidates));
+			assertTrue(MTConnector.awaitQuiescence(2000));
+		} finally {
+			MTConnector.setRandomNumberGeneratorSeed(seed);
+		}
+	}
+	
+	@Test
+	public void weightedRandomCastFollowsWeights(){
+		System.out.println("TEST ===== Weighted random cast");
+		
+		MTConnector.setAgentWeightProvider(new AgentWeightProvider(){
+			@Override
+			public double getWeight(String agentName) {
+				return agentName.startsWith("Weighted") ? 1 : 0;
+			}
+		});
+		try{
+			RoleTest2Agent[] roles = new RoleTest2Agent[4];
+			for(int i = 0; i < roles.length; i++){
+				roles[i] = new RoleTest2Agent();
+				SystemAgentLoader.newAgent(roles[i], "Weighted" + i);
+			}
+			RoleTestClient client = new RoleTestClient();
+			SystemAgentLoader.newAgent(client, "WeightCastClient");
+			assertTrue(MTConnector.getAgentWeight("Weighted0") == 1.0);
+			assertTrue(MTConnector.getAgentWeight("WeightCastClient") == 0.0);
+			
+			MTConnector.setAgentWeight("Weighted0", 0);
+			MTConnector.setAgentWeight("Weighted2", 3);
+			//removal of an agent keeps weights of others
+			roles[1].getAgent().die();
+			assertTrue(MTConnector.getAgentWeight("Weighted3") == 1.0);
+			assertTrue(MTConnector.getAgentWeight("Weighted2") == 3.0);
+			assertFalse(MTConnector.setAgentWeight("Weighted1", 1));
+			
+			//selection frequencies follow weights (3:1)
+			MersenneTwisterFast random = new MersenneTwisterFast(1);
+			int selected2 = 0;
+			for(int i = 0; i < 10000; i++){
+				if(MTConnector.drawWeightedAgents(1, null, random).get(0).equals("Weighted2")){
+					selected2++;
+				}
+			}
+			assertTrue(selected2 > 7200 && selected2 < 7800);
+			
+			//distinct picks, exclusions and insufficient candidates
+			List<String> picks = client.sendWeightedRandomcast(new MicroMessage(), 2, null);
+			assertEquals(new HashSet<String>(Arrays.asList("Weighted2", "Weighted3")), new HashSet<String>(picks));
+			assertEquals(Arrays.asList("Weighted3"), client.sendWeightedRandomcast(new MicroMessage(), 1, Arrays.asList("Weighted2")));
+			assertTrue(client.sendWeightedRandomcast(new MicroMessage(), 3, null).isEmpty());
+			assertTrue(MTConnector.getAgentWeight("Weighted2") == 3.0);
+			assertTrue(MTConnector.awaitQuiescence(2000));
+			
+			//rounding residue of large weights neither yields zero-weight nor repeated picks
+			MTConnector.setAgentWeight("Weighted2", 1e15);
+			MTConnector.setAgentWeight("Weighted3", 1e-3);
+			for(int i = 0; i < 1000; i++){
+				List<String> drawn = MTConnector.drawWeightedAgents(5, null, random);
+				assertEquals(new HashSet<String>(Arrays.asList("Weighted2", "Weighted3")), new HashSet<String>(drawn));
+				assertEquals(2, drawn.size());
+			}
+		} finally {
+			MTConnector.setAgentWeightProvider(null);
+		}
+	}
+	
+	@Test(timeout = 2000)
+	public void groupIndexTracksHierarchyChanges(){
+		System.out.println("TEST ===== Incremental role and intent index along the group hierarchy");
+		
+		assertTrue(SystemOwner.getInstance().getGroup().getAgents().length == 0);
+		SystemAgentLoader.newAgent(new ReactiveCalcRole(), "IndexTop");
+		Agent top = SystemAgentLoader.findAgent("IndexTop");
+		top.getGroup().getAgentLoader().newAgent(new ReactiveCalcRole2(), "IndexMid");
+		Agent mid = SystemAgentLoader.findAgent("IndexMid");
+		ReactiveCalcRole2 leafRole = new ReactiveCalcRole2();
+		mid.getGroup().getAgentLoader().newAgent(leafRole, "IndexLeaf");
+		Agent leaf = SystemAgentLoader.findAgent("IndexLeaf");
+		
+		//lookups by supertype cover the whole sub-hierarchy
+		assertTrue(top.getGroup().findRolesByType(DefaultPassiveRole.class, false).length == 2);
+		assertTrue(top.getGroup().findRolesByTypeNonRecursive(DefaultPassiveRole.class, false).length == 1);
+		assertTrue(top.getGroup().findRolesByIntent(AdderIntent.class, false).length == 2);
+		assertTrue(SystemAgentLoader.findRoles(DefaultPassiveRole.class).length == 3);
+		
+		//role added at runtime is propagated up to the top-level group
+		ReactiveCalcRole added = new ReactiveCalcRole();
+		leaf.addRole(added);
+		assertTrue(top.getGroup().findRolesByType(ReactiveCalcRole.class, false).length == 1);
+		assertTrue(SystemAgentLoader.findRoles(ReactiveCalcRole.class).length == 2);
+		assertTrue(top.getGroup().findAgentsByIntent(SubstractionIntent.class, false)[0].equals(leaf));
+		
+		//disposed role is removed from all levels
+		leaf.disposeRole(added);
+		assertTrue(top.getGroup().findRolesByType(ReactiveCalcRole.class, false).length == 0);
+		assertTrue(SystemAgentLoader.findRoles(ReactiveCalcRole.class).length == 1);
+		
+		//intent changes are reflected in the intent index
+		leafRole.removeApplicableIntent(AdderIntent.class);
+		assertTrue(top.getGroup().findRolesByIntent(AdderIntent.class, false).length == 1);
+		assertTrue(mid.getGroup().findAgentsByIntentNonRecursive(AdderIntent.class, false).length == 0);
+		
+		//death of the intermediate agent moves the leaf up without losing its roles
+		mid.killSubHierarchyUponDeath(false);
+		mid.die();
+		assertTrue(top.getGroup().getAgents().length == 1);
+		Role[] moved = top.getGroup().findRolesByTypeNonRecursive(ReactiveCalcRole2.class, false);
+		assertTrue(moved.length == 1 && moved[0] == leafRole);
+		assertTrue(SystemAgentLoader.findAgentNamesByRole(ReactiveCalcRole2.class).length == 1);
+		
+		top.die();
+		assertTrue(SystemAgentLoader.findRoles(DefaultPassiveRole.class).length == 0);
+	}
+	
+	@Test(timeout = 10000)
+	public void groupIndexConsistentUnderConcurrentChanges() throws InterruptedException{
+		System.out.println("TEST ===== Subtree index under concurrent changes in sibling sub-groups");
+		
+		assertTrue(SystemOwner.getInstance().getGroup().getAgents().length == 0);
+		SystemAgentLoader.newAgent(new ReactiveCalcRole(), "ConcurrentTop");
+		final Agent top = SystemAgentLoader.findAgent("ConcurrentTop");
+		final Agent[] subs = new Agent[2];
+		for(int i = 0; i < subs.length; i++){
+			top.getGroup().getAgentLoader().newAgent(new ReactiveCalcRole(), "ConcurrentSub" + i);
+			subs[i] = SystemAgentLoader.findAgent("ConcurrentSub" + i);
+		}
+		final int perSub = 50;
+		Thread[] workers = new Thread[subs.length];
+		for(int i = 0; i < workers.length; i++){
+			final Agent sub = subs[i];
+			workers[i] = new Thread(new Runnable(){
+				public void run(){
+					for(int j = 0; j < perSub; j++){
+						sub.getGroup().getAgentLoader().newAgent(new ReactiveCalcRole2(), 
+								sub.getAgentName() + "Leaf" + j);
+					}
+				}
+			});
+			workers[i].start();
+		}
+		for(int i = 0; i < workers.length; i++){
+			workers[i].join();
+		}
+		
+		//every leaf is visible from the top and the root, regardless of interleaving
+		assertEquals(subs.length * perSub, top.getGroup().findRolesByType(ReactiveCalcRole2.class, false).length);
+		assertEquals(subs.length * perSub, SystemAgentLoader.findRoles(ReactiveCalcRole2.class).length);
+		
+		top.die();
+		assertTrue(SystemAgentLoader.findRoles(DefaultPassiveRole.class).length == 0);
+	}
+	
+	@Test(timeout = 2000)
+	public void agentNameLookupCoversWholeHierarchy(){
+		System.out.println("TEST ===== Name resolution of agents at any depth of the hierarchy");
+		
+		assertTrue(SystemOwner.getInstance().getGroup().getAgents().length == 0);
+		SystemAgentLoader.newAgent(new ReactiveCalcRole(), "NameTop");
+		Agent top = SystemAgentLoader.findAgent("NameTop");
+		top.getGroup().getAgentLoader().newAgent(new ReactiveCalcRole2(), "NameFirstSub");
+		top.getGroup().getAgentLoader().newAgent(new ReactiveCalcRole2(), "NameSecondSub");
+		Agent second = SystemAgentLoader.findAgent("NameSecondSub");
+		second.getGroup().getAgentLoader().newAgent(new ReactiveCalcRole2(), "NameLeaf");
+		
+		//leaf lives below the second sub-group and is not registered with message transport
+		Agent leaf = SystemAgentLoader.findAgent("NameLeaf");
+		assertTrue(leaf != null && leaf.getAgentName().equals("NameLeaf"));
+		assertTrue(top.getGroup().findAgentByName("NameLeaf") == leaf);
+		assertTrue(second.getGroup().findAgentByName("NameLeaf") == leaf);
+		//lookups are restricted to the group's sub-hierarchy
+		assertTrue(SystemAgentLoader.findAgent("NameFirstSub").getGroup().findAgentByName("NameLeaf") == null);
+		assertTrue(leaf.getGroup().findAgentByName("NameTop") == null);
+		
+		//same name in another sub-hierarchy is resolved per subtree
+		Agent first = SystemAgentLoader.findAgent("NameFirstSub");
+		first.getGroup().getAgentLoader().newAgent(new ReactiveCalcRole2(), "NameLeaf");
+		Agent otherLeaf = first.getGroup().findAgentByName("NameLeaf");
+		assertTrue(otherLeaf != null && otherLeaf != leaf);
+		assertTrue(second.getGroup().findAgentByName("NameLeaf") == leaf);
+		
+		leaf.die();
+		assertTrue(second.getGroup().findAgentByName("NameLeaf") == null);
+		assertTrue(SystemAgentLoader.findAgent("NameLeaf") == otherLeaf);
+		otherLeaf.die();
+		assertTrue(SystemAgentLoader.findAgent("NameLeaf") == null);
+		top.die();
+		assertTrue(SystemAgentLoader.findAgent("NameSecondSub") == null);
+	}
+	
+	@Test(timeout = 4000)
+	public void compiledMessageFiltersAddressCandidatesOnly(){
+		System.out.println("TEST ===== compiled message filters only address candidate matches");
+		
+		RoleTestAgent target = new RoleTestAgent();
+		SystemAgentLoader.newAgent(target, "FilteredAgent");
+		MicroMessage alpha = new MicroMessage();
+		alpha.setPerformative("ALPHA");
+		MicroMessage beta = new MicroMessage();
+		beta.setPerformative("BETA");
+		MicroMessage wildcard = new MicroMessage();
+		wildcard.set(RoleTestAgent.resName, null);
+		CountingMessageFilter alphaFilter = new CountingMessageFilter(alpha, false);
+		CountingMessageFilter betaFilter = new CountingMessageFilter(beta, false);
+		CountingMessageFilter betaNotifiedFilter = new CountingMessageFilter(beta, true);
+		CountingMessageFilter wildcardFilter = new CountingMessageFilter(wildcard, false);
+		target.getAgent().addMessageFilter(alphaFilter, "AlphaFilter");
+		target.getAgent().addMessageFilter(betaFilter, "BetaFilter");
+		target.getAgent().addMessageFilter(betaNotifiedFilter, "BetaNotifiedFilter");
+		target.getAgent().addMessageFilter(wildcardFilter, "WildcardFilter");
+		//filters overriding handleMessage() still receive every message
+		final AtomicInteger handled = new AtomicInteger();
+		CountingMessageFilter handlingFilter = new CountingMessageFilter(beta, false){
+			@Override
+			public void handleMessage(MicroMessage message) {
+				handled.incrementAndGet();
+				super.handleMessage(message);
+			}
+		};
+		target.getAgent().addMessageFilter(handlingFilter, "HandlingFilter");
+		
+		MessageFilterTestClient client = new MessageFilterTestClient();
+		SystemAgentLoader.newAgent(client, "FilterClient");
+		MicroMessage message = new MicroMessage("ALPHA");
+		message.setRecipient("FilteredAgent");
+		message.set(RoleTestAgent.resName, "Filtered");
+		client.send(message);
+		
+		while(alphaFilter.successes.get() == 0 || wildcardFilter.successes.get() == 0 
+				|| betaNotifiedFilter.failures.get() == 0 || !target.result.equals("Filtered")){
+			Thread.yield();
+		}
+		assertTrue(MTConnector.awaitQuiescence(2000));
+		assertEquals(1, alphaFilter.successes.get());
+		assertEquals(1, wildcardFilter.successes.get());
+		//non-matching filter not interested in failed matches is not addressed at all
+		assertEquals(0, betaFilter.successes.get() + betaFilter.failures.get());
+		assertEquals(0, betaNotifiedFilter.successes.get());
+		assertEquals(1, betaNotifiedFilter.failures.get());
+		assertEquals(1, handled.get());
+		assertEquals(1, handlingFilter.failures.get());
+		
+		//changed pattern is picked up by the compiled index
+		MicroMessage alphaPattern = new MicroMessage();
+		alphaPattern.setPerformative("ALPHA");
+		betaFilter.setPattern(alphaPattern);
+		client.send(message);
+		while(betaFilter.successes.get() == 0){
+			Thread.yield();
+		}
+		assertTrue(MTConnector.awaitQuiescence(2000));
+		assertEquals(2, alphaFilter.successes.get());
+		assertEquals(0, betaFilter.failures.get());
+		assertEquals(2, handled.get());
+	}
+	
 	@Test
 	public void fuzzyCastTest(){
 		System.out.println("TEST ===== fuzzy cast mechanism");
@@ -603,8 +1090,7 @@ public class MicroAgentTests {
 		
 		client.initFuzzyCast(0.4f, excludedAgents);
 		
-		long start = System.currentTimeMillis();
-		while(System.currentTimeMillis()-start < 200){};
+		assertTrue(MTConnector.awaitQuiescence(2000));
 		
 		int count = 0;
 		if(client.test2.equals(role1.result)){
@@ -652,8 +1138,7 @@ public class MicroAgentTests {
 		
 		client.initGroupCast();
 		
-		long start = System.currentTimeMillis();
-		while(System.currentTimeMillis()-start < 200){};
+		assertTrue(MTConnector.awaitQuiescence(2000));
 		
 		//System.out.println("YXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXX" + client.test1);
 		//System.out.println(role1.result);
@@ -1029,6 +1514,1080 @@ public class MicroAgentTests {
 		assertTrue(client.inputAndResultResult == 21);
 	}
 	
+	@Test(timeout = 20000)
+	public void microFiberWorkStealingOrderedDelivery() throws InterruptedException{
+		System.out.println("TEST ===== ordered MICRO_FIBER delivery with work-stealing workers and batch draining");
+		MicroBootProperties.setInternalMessageTransport(MessagePassingFrameworks.MICRO_FIBER);
+		MicroBootProperties.setMicroFiberExecutorProperties(4, 8);
+		PlatformController.startPlatform();
+		
+		final int receivers = 4;
+		final int senders = 4;
+		final int messages = 2000;
+		final SequenceRecorderRole[] recorders = new SequenceRecorderRole[receivers];
+		for(int i = 0; i < receivers; i++){
+			recorders[i] = new SequenceRecorderRole();
+			SystemAgentLoader.newAgent(recorders[i], "SequenceRecorder" + i);
+		}
+		Thread[] threads = new Thread[senders];
+		for(int s = 0; s < senders; s++){
+			final String senderName = "SequenceSender" + s;
+			threads[s] = new Thread(new Runnable(){
+
+				@Override
+				public void run() {
+					for(int i = 0; i < messages; i++){
+						for(int r = 0; r < receivers; r++){
+							MicroMessage message = new MicroMessage();
+							message.setSender(senderName);
+							message.setRecipient("SequenceRecorder" + r);
+							message.setCustomField(SequenceRecorderRole.SEQUENCE_FIELD, i);
+							MTConnector.send(message);
+						}
+					}
+				}
+				
+			});
+			threads[s].start();
+		}
+		for(int s = 0; s < senders; s++){
+			threads[s].join();
+		}
+		for(int i = 0; i < receivers; i++){
+			while(recorders[i].getReceived() < senders * messages){
+				Thread.sleep(10);
+			}
+			assertTrue(recorders[i].receivedInOrder());
+		}
+		assertTrue(MTConnector.allMicroFiberMessagesDelivered());
+	}
+	
+	@Test(timeout = 10000)
+	public void ringBufferOrderedDelivery() throws InterruptedException{
+		System.out.println("TEST ===== ordered RING_BUFFER delivery with full rings and forwarding agents");
+		MicroBootProperties.setInternalMessageTransport(MessagePassingFrameworks.RING_BUFFER);
+		MicroBootProperties.setMicroFiberExecutorProperties(2, 8);
+		//small rings to force waiting senders and overflow of messages sent by agents
+		MicroBootProperties.setRingBufferSize(16);
+		PlatformController.startPlatform();
+		assertTrue(MTConnector.getInternalMessagePassingFramework().equals("RING_BUFFER"));
+		
+		final int senders = 3;
+		final int messages = 3000;
+		final SequenceRecorderRole recorder = new SequenceRecorderRole();
+		SystemAgentLoader.newAgent(recorder, "RingRecorder");
+		for(int s = 0; s < senders; s++){
+			SystemAgentLoader.newAgent(new ForwardingRole("RingRecorder"), "RingForwarder" + s);
+		}
+		Thread[] threads = new Thread[senders];
+		for(int s = 0; s < senders; s++){
+			final String senderName = "RingSender" + s;
+			final String forwarderName = "RingForwarder" + s;
+			threads[s] = new Thread(new Runnable(){
+
+				@Override
+				public void run() {
+					for(int i = 0; i < messages; i++){
+						MicroMessage message = new MicroMessage();
+						message.setSender(senderName);
+						message.setRecipient("RingRecorder");
+						message.setCustomField(SequenceRecorderRole.SEQUENCE_FIELD, i);
+						MTConnector.send(message);
+						message = new MicroMessage();
+						message.setSender(senderName);
+						message.setRecipient(forwarderName);
+						message.setCustomField(SequenceRecorderRole.SEQUENCE_FIELD, i);
+						MTConnector.send(message);
+					}
+				}
+				
+			});
+			threads[s].start();
+		}
+		for(int s = 0; s < senders; s++){
+			threads[s].join();
+		}
+		while(recorder.getReceived() < 2 * senders * messages){
+			Thread.sleep(10);
+		}
+		assertTrue(recorder.receivedInOrder());
+		assertTrue(MTConnector.allMicroFiberMessagesDelivered());
+		MicroBootProperties.setRingBufferSize(8192);
+	}
+	
+	@Test(timeout = 20000)
+	public void ringBufferWorkersFloodingEachOther() throws InterruptedException{
+		System.out.println("TEST ===== RING_BUFFER agents on different workers flooding each other's full rings");
+		MicroBootProperties.setInternalMessageTransport(MessagePassingFrameworks.RING_BUFFER);
+		MicroBootProperties.setMicroFiberExecutorProperties(2, 8);
+		MicroBootProperties.setRingBufferSize(16);
+		PlatformController.startPlatform();
+		
+		final int messages = 500;
+		CountDownLatch startSignal = new CountDownLatch(2);
+		BurstSenderRole floodA = new BurstSenderRole("FloodB", messages, startSignal);
+		BurstSenderRole floodB = new BurstSenderRole("FloodA", messages, startSignal);
+		SystemAgentLoader.newAgent(floodA, "FloodA");
+		SystemAgentLoader.newAgent(floodB, "FloodB");
+		//agents are assigned to workers round-robin
+		assertFalse(MTConnector.getRegisteredAgent("FloodA").getDispatchIndex() == MTConnector.getRegisteredAgent("FloodB").getDispatchIndex());
+		
+		for(String name: new String[]{"FloodA", "FloodB"}){
+			MicroMessage trigger = new MicroMessage();
+			trigger.setSender("FloodTrigger");
+			trigger.setRecipient(name);
+			trigger.setCustomField(BurstSenderRole.BURST_FIELD, true);
+			MTConnector.send(trigger);
+		}
+		//both workers publish into each other's full ring at the same time
+		assertTrue(MTConnector.awaitQuiescence(10000));
+		assertEquals(messages, floodA.getReceived());
+		assertEquals(messages, floodB.getReceived());
+		assertTrue(MTConnector.allMicroFiberMessagesDelivered());
+		MicroBootProperties.setRingBufferSize(8192);
+	}
+	
+	@Test(timeout = 10000)
+	public void jetlangBoundedExecutorBatchedDelivery() throws InterruptedException{
+		System.out.println("TEST ===== ordered JETLANG delivery with bounded shared executor and batched delivery");
+		MicroBootProperties.setInternalMessageTransport(MessagePassingFrameworks.JETLANG);
+		MicroBootProperties.setMicroFiberExecutorProperties(2, 8);
+		MicroBootProperties.setJetlangExecutorProperties(true, 2);
+		PlatformController.startPlatform();
+		
+		final int receivers = 20;
+		final int messages = 500;
+		SequenceRecorderRole[] recorders = new SequenceRecorderRole[receivers];
+		for(int i = 0; i < receivers; i++){
+			recorders[i] = new SequenceRecorderRole();
+			SystemAgentLoader.newAgent(recorders[i], "BatchRecorder" + i);
+		}
+		for(int i = 0; i < messages; i++){
+			for(int r = 0; r < receivers; r++){
+				MicroMessage message = new MicroMessage();
+				message.setSender("BatchSender");
+				message.setRecipient("BatchRecorder" + r);
+				message.setCustomField(SequenceRecorderRole.SEQUENCE_FIELD, i);
+				MTConnector.send(message);
+			}
+		}
+		for(int i = 0; i < receivers; i++){
+			while(recorders[i].getReceived() < messages){
+				Thread.sleep(10);
+			}
+			assertTrue(recorders[i].receivedInOrder());
+		}
+		//all agents are served by the bounded executor
+		int jetlangThreads = 0;
+		for(Thread thread: Thread.getAllStackTraces().keySet()){
+			if(thread.getName().startsWith("Jetlang_Worker_")){
+				jetlangThreads++;
+			}
+		}
+		assertTrue(jetlangThreads <= 2);
+		MicroBootProperties.setJetlangExecutorProperties(false, 0);
+	}
+	
+	@Test(timeout = 8000)
+	public void immutableMessageSharedOnLocalDelivery() throws InterruptedException{
+		System.out.println("TEST ===== immutable message with map view shared on local MICRO_FIBER delivery");
+		MicroBootProperties.setInternalMessageTransport(MessagePassingFrameworks.MICRO_FIBER);
+		PlatformController.startPlatform();
+		
+		ImmutableMicroMessage message = ImmutableMicroMessage.builder()
+				.sender("ImmutableSender").recipient("ImmutableReceiver")
+				.performative(MicroMessage.INFORM).customField("COUNT", 42)
+				.customField("TEXT", "immutable").build();
+		//map view
+		assertTrue(message.get(MicroMessage.MSG_PARAM_RECIPIENT).equals("ImmutableReceiver"));
+		assertTrue(message.containsKey(MicroMessage.MSG_PARAM_PERFORMATIVE));
+		assertTrue(message.getCustomField("COUNT").equals("42"));
+		assertTrue(message.size() == 5);
+		assertTrue(message.keySet().contains("TEXT"));
+		try{
+			message.setPerformative(MicroMessage.REQUEST);
+			fail("Immutable message has been modified.");
+		} catch(UnsupportedOperationException e){
+			//expected
+		}
+		//copies are modifiable and equal
+		MicroMessage copy = (MicroMessage) message.clone();
+		assertFalse(copy.isImmutable());
+		assertTrue(copy.equals(message) && message.equals(copy));
+		copy.setPerformative(MicroMessage.REQUEST);
+		assertTrue(message.getPerformative().equals(MicroMessage.INFORM));
+		assertTrue(ImmutableMicroMessage.copyOf(copy).getPerformative().equals(MicroMessage.REQUEST));
+		
+		MessageCaptureRole receiver = new MessageCaptureRole();
+		SystemAgentLoader.newAgent(receiver, "ImmutableReceiver");
+		MTConnector.send(message);
+		while(receiver.getLastMessage() == null){
+			Thread.sleep(10);
+		}
+		//delivered without copying
+		assertTrue(receiver.getLastMessage() == message);
+		//handles are never cached in the shared instance
+		assertEquals(-1, message.getRecipientHandle());
+		MicroMessage envelope = message.withSender("ImmutableSender", 3);
+		assertTrue(envelope != message && envelope.getSenderHandle() == 3);
+		assertEquals(-1, message.getSenderHandle());
+	}
+	
+	@Test
+	public void immutableMessageKeepsNullValuedFields(){
+		System.out.println("TEST ===== immutable message keeps fields set to null like MicroMessage");
+		MicroMessage mutable = new MicroMessage();
+		mutable.setSender("NullSender");
+		mutable.put(MicroMessage.MSG_PARAM_CONV_ID, null);
+		mutable.put("NULL_FIELD", null);
+		ImmutableMicroMessage copy = ImmutableMicroMessage.copyOf(mutable);
+		assertTrue(copy.containsKey("NULL_FIELD"));
+		assertTrue(copy.containsConversationID());
+		assertFalse(copy.containsKey(MicroMessage.MSG_PARAM_RECIPIENT));
+		assertEquals(mutable.size(), copy.size());
+		assertEquals(mutable.keySet(), copy.keySet());
+		assertTrue(copy.containsValue(null));
+		assertEquals("default", copy.getOrDefault("OTHER_FIELD", "default"));
+		assertEquals(null, copy.getOrDefault("NULL_FIELD", "default"));
+		assertTrue(copy.equals(mutable) && mutable.equals(copy));
+		//round trip and envelopes keep the fields
+		assertTrue(copy.toMutable().containsKey("NULL_FIELD"));
+		assertTrue(copy.withRecipient("NullRecipient").containsKey(MicroMessage.MSG_PARAM_CONV_ID));
+		//builder
+		ImmutableMicroMessage built = ImmutableMicroMessage.builder().set("NULL_FIELD", null).recipient(null).build();
+		assertTrue(built.containsKey("NULL_FIELD"));
+		assertTrue(built.containsRecipient());
+		assertEquals(2, built.size());
+	}
+	
+	@Test(timeout = 8000)
+	public void fanOutSharesReadOnlyMessage() throws InterruptedException{
+		System.out.println("TEST ===== broadcast and groupcast fan-out share a single read-only message");
+		MicroBootProperties.setInternalMessageTransport(MessagePassingFrameworks.MICRO_FIBER);
+		PlatformController.startPlatform();
+		
+		MessageCaptureRole sender = new MessageCaptureRole();
+		SystemAgentLoader.newAgent(sender, "FanOutSender");
+		MessageCaptureRole[] receivers = new MessageCaptureRole[3];
+		for(int i = 0; i < receivers.length; i++){
+			receivers[i] = new MessageCaptureRole();
+			SystemAgentLoader.newAgent(receivers[i], "FanOutReceiver" + i);
+		}
+		
+		Object payload = new ArrayList<String>();
+		MicroMessage broadcast = new MicroMessage();
+		broadcast.setPerformative(MicroMessage.INFORM);
+		broadcast.setCustomField("PAYLOAD", payload);
+		sender.sendBroadcast(broadcast);
+		for(int i = 0; i < receivers.length; i++){
+			while(receivers[i].getLastMessage() == null){
+				Thread.sleep(10);
+			}
+			MicroMessage received = receivers[i].getLastMessage();
+			//read-only envelope carrying own recipient, payload not copied
+			assertTrue(received.isImmutable());
+			assertTrue(received.getRecipient().equals("FanOutReceiver" + i));
+			assertTrue(received.getSender().equals("FanOutSender"));
+			assertTrue(received.getCustomField("PAYLOAD") == payload);
+		}
+		//sender does not receive own broadcast
+		assertTrue(sender.getLastMessage() == null);
+		
+		MicroMessage groupcast = new MicroMessage();
+		groupcast.setPerformative(MicroMessage.REQUEST);
+		groupcast.setCustomField("PAYLOAD", payload);
+		sender.sendGroupcast(groupcast, receivers[0].getAgent().getOwnerGroup());
+		for(int i = 0; i < receivers.length; i++){
+			while(!receivers[i].getLastMessage().getPerformative().equals(MicroMessage.REQUEST)){
+				Thread.sleep(10);
+			}
+			MicroMessage received = receivers[i].getLastMessage();
+			assertTrue(received.isImmutable());
+			assertTrue(received.getRecipient().equals("FanOutReceiver" + i));
+			assertTrue(received.getCustomField("PAYLOAD") == payload);
+		}
+		
+		//event subscribers receive own envelopes rather than one message re-addressed in turn
+		for(int i = 0; i < receivers.length; i++){
+			receivers[i].subscribe(TestEvent2.class);
+		}
+		MicroMessage event = new MicroMessage();
+		event.setEvent(new TestEvent2("FanOutSender"));
+		event.setCustomField("PAYLOAD", payload);
+		sender.send(event);
+		assertTrue(MTConnector.awaitQuiescence(2000));
+		for(int i = 0; i < receivers.length; i++){
+			MicroMessage received = receivers[i].getLastMessage();
+			assertTrue(received.getEvent() instanceof TestEvent2);
+			assertTrue(received.isImmutable());
+			assertTrue(received.getRecipient().equals("FanOutReceiver" + i));
+			assertTrue(received.getCustomField("PAYLOAD") == payload);
+			receivers[i].unsubscribe(TestEvent2.class);
+		}
+	}
+	
+	@Test(timeout = 8000)
+	public void agentHandlesRouteRepeatedSends() throws InterruptedException{
+		System.out.println("TEST ===== dense agent handles cached in messages and reused after agent death");
+		MicroBootProperties.setInternalMessageTransport(MessagePassingFrameworks.MICRO_FIBER);
+		PlatformController.startPlatform();
+		
+		MessageCaptureRole sender = new MessageCaptureRole();
+		SystemAgentLoader.newAgent(sender, "HandleSender");
+		MessageCaptureRole receiver = new MessageCaptureRole();
+		SystemAgentLoader.newAgent(receiver, "HandleReceiver");
+		int senderHandle = ((AbstractAgent)sender.getAgent()).getAgentHandle();
+		int receiverHandle = ((AbstractAgent)receiver.getAgent()).getAgentHandle();
+		assertTrue(senderHandle >= 0 && receiverHandle >= 0 && senderHandle != receiverHandle);
+		
+		MicroMessage message = new MicroMessage(MicroMessage.REQUEST);
+		message.setRecipient("HandleReceiver");
+		sender.send(message);
+		//resolved handle is cached for repeated sends
+		assertTrue(message.getRecipientHandle() == receiverHandle);
+		while(receiver.getLastMessage() == null){
+			Thread.sleep(10);
+		}
+		assertTrue(receiver.getLastMessage().getSenderHandle() == senderHandle);
+		//local replies are routed via the sender handle
+		MicroMessage reply = receiver.getLastMessage().createReply();
+		assertTrue(reply.getRecipientHandle() == senderHandle);
+		receiver.send(reply);
+		while(sender.getLastMessage() == null){
+			Thread.sleep(10);
+		}
+		
+		//handle of dead agent is reused, stale cached handles are resolved by name
+		receiver.getAgent().die();
+		MessageCaptureRole successor = new MessageCaptureRole();
+		SystemAgentLoader.newAgent(successor, "HandleSuccessor");
+		assertTrue(((AbstractAgent)successor.getAgent()).getAgentHandle() == receiverHandle);
+		MicroMessage stale = new MicroMessage(MicroMessage.INFORM);
+		stale.setRecipient("HandleSender");
+		stale.setRecipientHandle(receiverHandle);
+		successor.send(stale);
+		while(!sender.getLastMessage().getPerformative().equals(MicroMessage.INFORM)){
+			Thread.sleep(10);
+		}
+		assertTrue(stale.getRecipientHandle() == senderHandle);
+		assertTrue(successor.getLastMessage() == null);
+	}
+	
+	@Test(timeout = 20000)
+	public void awaitQuiescenceAfterForwardingChains() throws InterruptedException{
+		System.out.println("TEST ===== awaitQuiescence for messages sent during message processing (JETLANG, RING_BUFFER, MICRO_FIBER)");
+		final String[] frameworks = {MessagePassingFrameworks.JETLANG, MessagePassingFrameworks.RING_BUFFER, MessagePassingFrameworks.MICRO_FIBER};
+		final int chainLength = 4;
+		final int messages = 500;
+		for(String framework: frameworks){
+			MicroBootProperties.setInternalMessageTransport(framework);
+			PlatformController.startPlatform();
+			
+			SequenceRecorderRole recorder = new SequenceRecorderRole();
+			SystemAgentLoader.newAgent(recorder, "QuiescenceRecorder");
+			SystemAgentLoader.newAgent(new ForwardingRole("QuiescenceRecorder"), "QuiescenceForwarder0");
+			for(int i = 1; i < chainLength; i++){
+				SystemAgentLoader.newAgent(new ForwardingRole("QuiescenceForwarder" + (i - 1)), "QuiescenceForwarder" + i);
+			}
+			for(int i = 0; i < messages; i++){
+				MicroMessage message = new MicroMessage();
+				message.setSender("QuiescenceSender");
+				message.setRecipient("QuiescenceForwarder" + (chainLength - 1));
+				message.setCustomField(SequenceRecorderRole.SEQUENCE_FIELD, i);
+				MTConnector.send(message);
+			}
+			//returns once the last forwarded message has been processed
+			assertTrue(MTConnector.awaitQuiescence(5000));
+			assertEquals(0, MTConnector.getInFlightMessages());
+			assertEquals(messages, recorder.getReceived());
+			PlatformController.shutdownPlatform();
+		}
+	}
+	
+	@Test(timeout = 10000)
+	public void inFlightCountReleasedWhenJetlangAgentDies() throws InterruptedException{
+		System.out.println("TEST ===== messages queued for a dying JETLANG agent do not stay in flight");
+		MicroBootProperties.setInternalMessageTransport(MessagePassingFrameworks.JETLANG);
+		PlatformController.startPlatform();
+		
+		//dies while processing the first message
+		final BlockingReceiverRole receiver = new BlockingReceiverRole(true){
+			
+			@Override
+			public void handleMessage(MicroMessage message) {
+				super.handleMessage(message);
+				getAgent().die();
+			}
+			
+		};
+		BlockingReceiverRole sender = new BlockingReceiverRole(false);
+		SystemAgentLoader.newAgent(receiver, "DyingReceiver");
+		SystemAgentLoader.newAgent(sender, "DyingSender");
+		MicroMessage message = new MicroMessage();
+		message.setRecipient("DyingReceiver");
+		sender.send(message);
+		long deadline = System.currentTimeMillis() + 5000;
+		while(!receiver.isBlocked() && System.currentTimeMillis() < deadline){
+			Thread.sleep(10);
+		}
+		assertTrue(receiver.isBlocked());
+		for(int i = 0; i < 4; i++){
+			message = new MicroMessage();
+			message.setRecipient("DyingReceiver");
+			sender.send(message);
+		}
+		//disposes the fiber while four messages are still queued
+		receiver.unblock();
+		assertTrue(MTConnector.awaitQuiescence(5000));
+		assertEquals(0, MTConnector.getInFlightMessages());
+	}
+	
+	@Test(timeout = 10000)
+	public void fiberSurvivesErrorInMessageHandler() throws InterruptedException{
+		System.out.println("TEST ===== Error thrown by message handler neither stalls MicroFiber nor kills worker (MICRO_FIBER, VIRTUAL_THREAD)");
+		final String[] frameworks = {MessagePassingFrameworks.MICRO_FIBER, MessagePassingFrameworks.VIRTUAL_THREAD};
+		final int messages = 20;
+		for(String framework: frameworks){
+			MicroBootProperties.setInternalMessageTransport(framework);
+			MicroBootProperties.setMicroFiberExecutorProperties(2, 4);
+			PlatformController.startPlatform();
+			
+			FailingRole failing = new FailingRole();
+			SystemAgentLoader.newAgent(failing, "FailingReceiver");
+			for(int i = 0; i < messages; i++){
+				MicroMessage message = new MicroMessage();
+				message.setSender("FailingSender");
+				message.setRecipient("FailingReceiver");
+				if(i % 5 == 0){
+					message.setCustomField(FailingRole.FAIL_FIELD, true);
+				}
+				MTConnector.send(message);
+			}
+			assertTrue(MTConnector.awaitQuiescence(5000));
+			assertEquals(messages - messages / 5, failing.getReceived());
+			PlatformController.shutdownPlatform();
+		}
+	}
+	
+	@Test(timeout = 10000)
+	public void askCompletesWithReply() throws Exception{
+		System.out.println("TEST ===== ask() completed by reply in same conversation or by timeout (MICRO_FIBER, JETLANG)");
+		final String[] frameworks = {MessagePassingFrameworks.JETLANG, MessagePassingFrameworks.MICRO_FIBER};
+		for(String framework: frameworks){
+			MicroBootProperties.setInternalMessageTransport(framework);
+			PlatformController.startPlatform();
+			
+			MessageCaptureRole asker = new MessageCaptureRole();
+			SystemAgentLoader.newAgent(asker, "Asker");
+			SystemAgentLoader.newAgent(new EchoRole(), "EchoResponder");
+			SystemAgentLoader.newAgent(new MessageCaptureRole(), "SilentResponder");
+			
+			MicroMessage request = new MicroMessage(MicroMessage.REQUEST);
+			request.setRecipient("EchoResponder");
+			request.setContent("ping");
+			CompletableFuture<MicroMessage> future = asker.ask(request, 5000);
+			MicroMessage reply = future.get(5, TimeUnit.SECONDS);
+			assertTrue(reply.getConversationID().equals(request.getConversationID()));
+			assertTrue(reply.getContent().equals("ping"));
+			assertTrue(reply.getSender().equals("EchoResponder"));
+			//reply bypasses the role
+			assertTrue(asker.getLastMessage() == null);
+			
+			MicroMessage unanswered = new MicroMessage(MicroMessage.REQUEST);
+			unanswered.setRecipient("SilentResponder");
+			try{
+				asker.ask(unanswered, 100).get(5, TimeUnit.SECONDS);
+				fail("Request has not timed out.");
+			} catch(ExecutionException e){
+				assertTrue(e.getCause() instanceof TimeoutException);
+			}
+			
+			//other messages of the conversation are delivered as usual, only the reply completes the request
+			MessageCaptureRole bystander = new MessageCaptureRole();
+			SystemAgentLoader.newAgent(bystander, "Bystander");
+			MicroMessage pending = new MicroMessage(MicroMessage.REQUEST);
+			pending.setRecipient("SilentResponder");
+			CompletableFuture<MicroMessage> pendingFuture = ((SocialRole)asker).ask(pending, 5000);
+			MicroMessage sameConversation = new MicroMessage(MicroMessage.INFORM);
+			sameConversation.setRecipient("Asker");
+			sameConversation.setConversationID(pending.getConversationID());
+			sameConversation.setMessageID(pending.getMessageID());
+			bystander.send(sameConversation);
+			assertTrue(MTConnector.awaitQuiescence(2000));
+			assertTrue(asker.getLastMessage() != null);
+			assertFalse(pendingFuture.isDone());
+			MicroMessage pendingReply = pending.createReply();
+			pendingReply.setRecipient("Asker");
+			bystander.send(pendingReply);
+			assertTrue(pendingFuture.get(5, TimeUnit.SECONDS).getSender().equals("Bystander"));
+			PlatformController.shutdownPlatform();
+		}
+	}
+	
+	@Test(timeout = 8000)
+	public void selectiveReceiveFromRoleInbox() throws InterruptedException{
+		System.out.println("TEST ===== indexed selective receive from role inbox with blocking wait");
+		MicroBootProperties.setInternalMessageTransport(MessagePassingFrameworks.MICRO_FIBER);
+		PlatformController.startPlatform();
+		
+		final SelectiveReceiverRole receiver = new SelectiveReceiverRole();
+		SystemAgentLoader.newAgent(receiver, "SelectiveReceiver");
+		MessageCaptureRole sender = new MessageCaptureRole();
+		SystemAgentLoader.newAgent(sender, "SelectiveSender");
+		for(int i = 0; i < 3; i++){
+			MicroMessage message = new MicroMessage(MicroMessage.INFORM);
+			message.setRecipient("SelectiveReceiver");
+			message.setConversationID("Conversation" + i);
+			sender.send(message);
+		}
+		assertTrue(MTConnector.awaitQuiescence(2000));
+		assertEquals(3, receiver.getQueued());
+		
+		//out of order by conversation
+		assertTrue(receiver.receive("Conversation1", null, 0).getConversationID().equals("Conversation1"));
+		assertTrue(receiver.receive("Conversation1", null, 0) == null);
+		assertTrue(receiver.receive("Conversation2", MicroMessage.REQUEST, 0) == null);
+		assertEquals(2, receiver.getQueued());
+		
+		//blocking receive is woken by matching message only
+		final MicroMessage[] received = new MicroMessage[1];
+		Thread waiter = new Thread(new Runnable(){
+
+			@Override
+			public void run() {
+				received[0] = receiver.receive("Late", MicroMessage.REQUEST, 5000);
+			}
+			
+		});
+		waiter.start();
+		MicroMessage inform = new MicroMessage(MicroMessage.INFORM);
+		inform.setRecipient("SelectiveReceiver");
+		inform.setConversationID("Late");
+		sender.send(inform);
+		MicroMessage request = new MicroMessage(MicroMessage.REQUEST);
+		request.setRecipient("SelectiveReceiver");
+		request.setConversationID("Late");
+		sender.send(request);
+		waiter.join();
+		assertTrue(received[0].getPerformative().equals(MicroMessage.REQUEST));
+		
+		//remaining messages in arrival order
+		assertTrue(receiver.next().getConversationID().equals("Conversation0"));
+		assertTrue(receiver.receive(new MicroMessageValidator(){
+
+			@Override
+			public boolean validate(MicroMessage message) {
+				return message.getConversationID().equals("Late");
+			}
+			
+		}, 1000).getPerformative().equals(MicroMessage.INFORM));
+		assertTrue(receiver.next().getConversationID().equals("Conversation2"));
+		assertTrue(receiver.next() == null);
+		assertEquals(0, receiver.getQueued());
+		
+		//indexed receive behind an unconsumed head message (compacts the queue)
+		MicroMessage pinned = new MicroMessage(MicroMessage.INFORM);
+		pinned.setRecipient("SelectiveReceiver");
+		pinned.setConversationID("Pinned");
+		sender.send(pinned);
+		for(int i = 0; i < 200; i++){
+			MicroMessage message = new MicroMessage(MicroMessage.INFORM);
+			message.setRecipient("SelectiveReceiver");
+			message.setConversationID("Bulk" + i);
+			sender.send(message);
+		}
+		assertTrue(MTConnector.awaitQuiescence(2000));
+		for(int i = 199; i >= 0; i--){
+			assertTrue(receiver.receive("Bulk" + i, null, 0).getConversationID().equals("Bulk" + i));
+		}
+		assertEquals(1, receiver.getQueued());
+		assertTrue(receiver.next().getConversationID().equals("Pinned"));
+		assertTrue(receiver.next() == null);
+	}
+	
+	@Test(timeout = 10000)
+	public void boundedMailboxOverflowPolicies() throws InterruptedException{
+		System.out.println("TEST ===== bounded mailbox with DROP_NEWEST and REJECT overflow policies");
+		//second worker processes error notifications while the receiver blocks the first one
+		MicroBootProperties.setInternalMessageTransport(MessagePassingFrameworks.MICRO_FIBER);
+		MicroBootProperties.setMicroFiberExecutorProperties(2, 8);
+		PlatformController.startPlatform();
+		
+		BlockingReceiverRole receiver = new BlockingReceiverRole(true);
+		BlockingReceiverRole sender = new BlockingReceiverRole(false);
+		SystemAgentLoader.newAgent(receiver, "BoundedReceiver");
+		SystemAgentLoader.newAgent(sender, "BoundedSender");
+		receiver.getAgent().setMailboxLimit(5, MailboxOverflowPolicies.DROP_NEWEST);
+		
+		MicroMessage message = new MicroMessage();
+		message.setRecipient("BoundedReceiver");
+		sender.send(message);
+		long deadline = System.currentTimeMillis() + 5000;
+		while(!receiver.isBlocked() && System.currentTimeMillis() < deadline){
+			Thread.sleep(10);
+		}
+		assertTrue(receiver.isBlocked());
+		for(int i = 0; i < 10; i++){
+			message = new MicroMessage();
+			message.setRecipient("BoundedReceiver");
+			sender.send(message);
+		}
+		assertEquals(5, receiver.getAgent().getDroppedMessageCount());
+		
+		receiver.getAgent().setMailboxLimit(5, MailboxOverflowPolicies.REJECT);
+		for(int i = 0; i < 3; i++){
+			message = new MicroMessage();
+			message.setRecipient("BoundedReceiver");
+			sender.send(message);
+		}
+		assertEquals(3, receiver.getAgent().getRejectedMessageCount());
+		deadline = System.currentTimeMillis() + 5000;
+		while(sender.getErrors() < 3 && System.currentTimeMillis() < deadline){
+			Thread.sleep(10);
+		}
+		assertEquals(3, sender.getErrors());
+		
+		receiver.unblock();
+		assertTrue(MTConnector.awaitQuiescence(5000));
+		assertEquals(6, receiver.getReceived());
+	}
+	
+	@Test(timeout = 20000)
+	public void boundedMailboxBlockAndDropOldestPolicies() throws InterruptedException{
+		System.out.println("TEST ===== bounded mailbox with DROP_OLDEST and BLOCK overflow policies");
+		MicroBootProperties.setInternalMessageTransport(MessagePassingFrameworks.MICRO_FIBER);
+		MicroBootProperties.setMicroFiberExecutorProperties(2, 8);
+		PlatformController.startPlatform();
+		
+		//DROP_OLDEST keeps the most recent messages
+		BlockingReceiverRole receiver = new BlockingReceiverRole(true);
+		SystemAgentLoader.newAgent(receiver, "DropOldestReceiver");
+		receiver.getAgent().setMailboxLimit(5, MailboxOverflowPolicies.DROP_OLDEST);
+		MicroMessage message = new MicroMessage();
+		message.setSender("DropOldestSender");
+		message.setRecipient("DropOldestReceiver");
+		MTConnector.send(message);
+		long deadline = System.currentTimeMillis() + 5000;
+		while(!receiver.isBlocked() && System.currentTimeMillis() < deadline){
+			Thread.sleep(10);
+		}
+		assertTrue(receiver.isBlocked());
+		for(int i = 0; i < 10; i++){
+			message = new MicroMessage();
+			message.setSender("DropOldestSender");
+			message.setRecipient("DropOldestReceiver");
+			message.setCustomField(SequenceRecorderRole.SEQUENCE_FIELD, i);
+			MTConnector.send(message);
+		}
+		assertEquals(5, receiver.getAgent().getDroppedMessageCount());
+		receiver.unblock();
+		assertTrue(MTConnector.awaitQuiescence(5000));
+		assertEquals(6, receiver.getReceived());
+		assertEquals(Arrays.asList(5, 6, 7, 8, 9), receiver.getSequences());
+		
+		//BLOCK holds an external sender until the receiver has drained its mailbox
+		final BlockingReceiverRole blockingReceiver = new BlockingReceiverRole(true);
+		SystemAgentLoader.newAgent(blockingReceiver, "BlockReceiver");
+		blockingReceiver.getAgent().setMailboxLimit(2, MailboxOverflowPolicies.BLOCK, 5000);
+		for(int i = 0; i < 3; i++){
+			message = new MicroMessage();
+			message.setSender("BlockSender");
+			message.setRecipient("BlockReceiver");
+			MTConnector.send(message);
+			if(i == 0){
+				deadline = System.currentTimeMillis() + 5000;
+				while(!blockingReceiver.isBlocked() && System.currentTimeMillis() < deadline){
+					Thread.sleep(10);
+				}
+				assertTrue(blockingReceiver.isBlocked());
+			}
+		}
+		Thread blockedSender = new Thread(new Runnable(){
+
+			@Override
+			public void run() {
+				MicroMessage blocked = new MicroMessage();
+				blocked.setSender("BlockSender");
+				blocked.setRecipient("BlockReceiver");
+				MTConnector.send(blocked);
+			}
+			
+		});
+		blockedSender.start();
+		Thread.sleep(200);
+		assertTrue(blockedSender.isAlive());
+		blockingReceiver.unblock();
+		blockedSender.join(5000);
+		assertFalse(blockedSender.isAlive());
+		assertTrue(MTConnector.awaitQuiescence(5000));
+		assertEquals(4, blockingReceiver.getReceived());
+		assertEquals(0, blockingReceiver.getAgent().getRejectedMessageCount());
+		
+		//BLOCK rejects once the block timeout has elapsed
+		BlockingReceiverRole timeoutReceiver = new BlockingReceiverRole(true);
+		BlockingReceiverRole timeoutSender = new BlockingReceiverRole(false);
+		SystemAgentLoader.newAgent(timeoutReceiver, "BlockTimeoutReceiver");
+		SystemAgentLoader.newAgent(timeoutSender, "BlockTimeoutSender");
+		timeoutReceiver.getAgent().setMailboxLimit(1, MailboxOverflowPolicies.BLOCK, 100);
+		for(int i = 0; i < 3; i++){
+			message = new MicroMessage();
+			message.setRecipient("BlockTimeoutReceiver");
+			timeoutSender.send(message);
+			if(i == 0){
+				deadline = System.currentTimeMillis() + 5000;
+				while(!timeoutReceiver.isBlocked() && System.currentTimeMillis() < deadline){
+					Thread.sleep(10);
+				}
+				assertTrue(timeoutReceiver.isBlocked());
+			}
+		}
+		assertEquals(1, timeoutReceiver.getAgent().getRejectedMessageCount());
+		deadline = System.currentTimeMillis() + 5000;
+		while(timeoutSender.getErrors() < 1 && System.currentTimeMillis() < deadline){
+			Thread.sleep(10);
+		}
+		assertEquals(1, timeoutSender.getErrors());
+		timeoutReceiver.unblock();
+		assertTrue(MTConnector.awaitQuiescence(5000));
+		assertEquals(2, timeoutReceiver.getReceived());
+	}
+	
+	@Test(timeout = 20000)
+	public void blockingSendOnRecipientsThreadIsRejected() throws InterruptedException{
+		System.out.println("TEST ===== BLOCK policy rejects senders that share the recipient's thread (MICRO_FIBER, RING_BUFFER, JETLANG)");
+		final String[] frameworks = {MessagePassingFrameworks.MICRO_FIBER, MessagePassingFrameworks.RING_BUFFER, MessagePassingFrameworks.JETLANG};
+		for(String framework: frameworks){
+			MicroBootProperties.setInternalMessageTransport(framework);
+			//single worker (or Jetlang thread), which would need to drain the recipient's mailbox
+			MicroBootProperties.setMicroFiberExecutorProperties(1, 8);
+			MicroBootProperties.setJetlangExecutorProperties(true, 0);
+			PlatformController.startPlatform();
+			
+			BlockingReceiverRole receiver = new BlockingReceiverRole(false);
+			SystemAgentLoader.newAgent(receiver, "SharedThreadReceiver");
+			receiver.getAgent().setMailboxLimit(2, MailboxOverflowPolicies.BLOCK, 5000);
+			BurstSenderRole sender = new BurstSenderRole("SharedThreadReceiver", 5);
+			SystemAgentLoader.newAgent(sender, "SharedThreadSender");
+			//agent sending to itself while processing
+			BurstSenderRole selfSender = new BurstSenderRole("SelfSender", 5);
+			SystemAgentLoader.newAgent(selfSender, "SelfSender");
+			selfSender.getAgent().setMailboxLimit(2, MailboxOverflowPolicies.BLOCK, 5000);
+			
+			MicroMessage trigger = new MicroMessage();
+			trigger.setSender("SharedThreadTrigger");
+			trigger.setRecipient("SharedThreadSender");
+			trigger.setCustomField(BurstSenderRole.BURST_FIELD, true);
+			MTConnector.send(trigger);
+			trigger = new MicroMessage();
+			trigger.setSender("SelfTrigger");
+			trigger.setRecipient("SelfSender");
+			trigger.setCustomField(BurstSenderRole.BURST_FIELD, true);
+			MTConnector.send(trigger);
+			
+			assertTrue(MTConnector.awaitQuiescence(5000));
+			assertTrue(sender.getBurstDuration() >= 0 && sender.getBurstDuration() < 2000);
+			assertEquals(3, receiver.getAgent().getRejectedMessageCount());
+			assertEquals(3, sender.getErrors());
+			assertEquals(2, receiver.getReceived());
+			assertTrue(selfSender.getBurstDuration() >= 0 && selfSender.getBurstDuration() < 2000);
+			//notifications on the three rejected messages do not fit into the full mailbox either
+			assertEquals(6, selfSender.getAgent().getRejectedMessageCount());
+			if(!framework.equals(MessagePassingFrameworks.JETLANG)){
+				//Jetlang agents ignore messages sent by themselves
+				assertEquals(2, selfSender.getReceived());
+			}
+			PlatformController.shutdownPlatform();
+		}
+		MicroBootProperties.setJetlangExecutorProperties(false, 0);
+	}
+	
+	@Test(timeout = 20000)
+	public void priorityLanesOvertakeBulkMessages() throws InterruptedException{
+		System.out.println("TEST ===== priority lanes with STRICT and WEIGHTED draining");
+		MicroMessage intentMessage = new MicroMessage(new AdderIntent());
+		assertEquals(MicroMessage.PRIORITY_NORMAL, MessagePriorities.getPriority(intentMessage));
+		MTConnector.registerMessagePriority(AdderIntent.class, 1);
+		assertEquals(1, MessagePriorities.getPriority(intentMessage));
+		intentMessage.setPriority(2);
+		assertEquals(2, MessagePriorities.getPriority(intentMessage));
+		MTConnector.deregisterMessagePriority(AdderIntent.class);
+		
+		String[] frameworks = new String[]{MessagePassingFrameworks.JETLANG, MessagePassingFrameworks.MICRO_FIBER};
+		try{
+			for(String framework: frameworks){
+				MicroBootProperties.setInternalMessageTransport(framework);
+				MicroBootProperties.setMailboxPriorityLanes(3, LaneDrainingPolicies.STRICT);
+				PlatformController.startPlatform();
+				LaneRecorderRole receiver = sendToBlockedRecipient(new int[]{0, 0, 0, 2, MicroMessage.PRIORITY_HIGHEST});
+				receiver.unblock();
+				assertTrue(MTConnector.awaitQuiescence(2000));
+				assertEquals(Arrays.asList(4, 5, 1, 2, 3), receiver.getSequence());
+				PlatformController.shutdownPlatform();
+			}
+			
+			MicroBootProperties.setInternalMessageTransport(MessagePassingFrameworks.MICRO_FIBER);
+			MicroBootProperties.setMailboxPriorityLanes(2, LaneDrainingPolicies.WEIGHTED);
+			PlatformController.startPlatform();
+			LaneRecorderRole receiver = sendToBlockedRecipient(new int[]{0, 0, 0, 0, 1, 1, 1, 1});
+			receiver.unblock();
+			assertTrue(MTConnector.awaitQuiescence(2000));
+			//higher lane receives twice the share of the lower one
+			assertEquals(Arrays.asList(5, 6, 1, 7, 8, 2, 3, 4), receiver.getSequence());
+		} finally {
+			MicroBootProperties.setMailboxPriorityLanes(1, LaneDrainingPolicies.STRICT);
+		}
+	}
+	
+	/**
+	 * Blocks a LaneRecorderRole on a first message and sends messages 
+	 * with given priorities (and sequence numbers starting with 1).
+	 */
+	private LaneRecorderRole sendToBlockedRecipient(int[] priorities) throws InterruptedException{
+		LaneRecorderRole receiver = new LaneRecorderRole();
+		EchoRole sender = new EchoRole();
+		SystemAgentLoader.newAgent(receiver, "LaneReceiver");
+		SystemAgentLoader.newAgent(sender, "LaneSender");
+		MicroMessage message = new MicroMessage();
+		message.setRecipient("LaneReceiver");
+		sender.send(message);
+		while(!receiver.isBlocked()){
+			Thread.sleep(10);
+		}
+		for(int i = 0; i < priorities.length; i++){
+			message = new MicroMessage();
+			message.setRecipient("LaneReceiver");
+			message.setCustomField(LaneRecorderRole.SEQUENCE_FIELD, i + 1);
+			if(priorities[i] != MicroMessage.PRIORITY_NORMAL){
+				message.setPriority(priorities[i]);
+			}
+			sender.send(message);
+		}
+		return receiver;
+	}
+	
+	@Test(timeout = 20000)
+	public void workerAffinityColocatesCommunicatingAgents() throws InterruptedException{
+		System.out.println("TEST ===== worker affinity co-locates communicating agents (MICRO_FIBER)");
+		AtomicReferenceArray<AbstractMicroFiber> fibers = new AtomicReferenceArray<AbstractMicroFiber>(4);
+		for(int i = 0; i < 4; i++){
+			fibers.set(i, new MicroFiber(null, new MailboxLimit(0, MailboxOverflowPolicies.BLOCK, 0)));
+			fibers.get(i).setDispatchIndex(i % 2);
+		}
+		CommunicationAffinity affinity = new CommunicationAffinity(1, 1024);
+		for(int i = 0; i < 100; i++){
+			affinity.sample(0, 1);
+			affinity.sample(1, 0);
+			affinity.sample(2, 3);
+			affinity.sample(3, 2);
+		}
+		assertTrue(affinity.rebalance(fibers, 2) > 0);
+		assertEquals(fibers.get(0).getDispatchIndex(), fibers.get(1).getDispatchIndex());
+		assertEquals(fibers.get(2).getDispatchIndex(), fibers.get(3).getDispatchIndex());
+		assertTrue(fibers.get(0).getDispatchIndex() != fibers.get(2).getDispatchIndex());
+		//samples are consumed by rebalancing
+		assertEquals(0, affinity.rebalance(fibers, 2));
+		
+		try{
+			MicroBootProperties.setInternalMessageTransport(MessagePassingFrameworks.MICRO_FIBER);
+			MicroBootProperties.setMicroFiberExecutorProperties(4, 32);
+			MicroBootProperties.setWorkerAffinity(true, 1, 20L);
+			PlatformController.startPlatform();
+			SequenceRecorderRole recorder = new SequenceRecorderRole();
+			SystemAgentLoader.newAgent(recorder, "AffinityRecorder");
+			SystemAgentLoader.newAgent(new ForwardingRole("AffinityRecorder"), "AffinityForwarder");
+			for(int round = 0; round < 5; round++){
+				for(int i = 0; i < 200; i++){
+					MicroMessage message = new MicroMessage();
+					message.setSender("AffinitySender");
+					message.setRecipient("AffinityForwarder");
+					message.setCustomField(SequenceRecorderRole.SEQUENCE_FIELD, round * 200 + i);
+					MTConnector.send(message);
+				}
+				assertTrue(MTConnector.awaitQuiescence(5000));
+				Thread.sleep(30);
+			}
+			assertEquals(1000, recorder.getReceived());
+			assertTrue(recorder.receivedInOrder());
+		} finally {
+			MicroBootProperties.setWorkerAffinity(false, 64, 1000L);
+		}
+	}
+	
+	@Test(timeout = 10000)
+	public void sendBatchDeliversPerRecipientRuns() throws InterruptedException{
+		System.out.println("TEST ===== sendBatch() delivers messages grouped by recipient (JETLANG, RING_BUFFER, MICRO_FIBER)");
+		final String[] frameworks = {MessagePassingFrameworks.JETLANG, MessagePassingFrameworks.RING_BUFFER, MessagePassingFrameworks.MICRO_FIBER};
+		for(String framework: frameworks){
+			MicroBootProperties.setInternalMessageTransport(framework);
+			PlatformController.startPlatform();
+			
+			SequenceRecorderRole[] recorders = new SequenceRecorderRole[3];
+			for(int i = 0; i < recorders.length; i++){
+				recorders[i] = new SequenceRecorderRole();
+				SystemAgentLoader.newAgent(recorders[i], "BatchRecorder" + i);
+			}
+			BlockingReceiverRole sender = new BlockingReceiverRole(false);
+			SystemAgentLoader.newAgent(sender, "BatchSender");
+			ArrayList<MicroMessage> batch = new ArrayList<MicroMessage>();
+			for(int i = 0; i < 300; i++){
+				MicroMessage message = new MicroMessage();
+				message.setRecipient("BatchRecorder" + (i % recorders.length));
+				message.setCustomField(SequenceRecorderRole.SEQUENCE_FIELD, i / recorders.length);
+				batch.add(message);
+			}
+			//unknown recipients are handled as by send()
+			MicroMessage unknown = new MicroMessage();
+			unknown.setRecipient("UnknownBatchRecipient");
+			batch.add(unknown);
+			sender.sendBatch(batch);
+			
+			assertTrue(MTConnector.awaitQuiescence(5000));
+			for(int i = 0; i < recorders.length; i++){
+				assertEquals(100, recorders[i].getReceived());
+				assertTrue(recorders[i].receivedInOrder());
+			}
+			assertEquals(1, sender.getErrors());
+			PlatformController.shutdownPlatform();
+		}
+	}
+	
+	@Test(timeout = 10000)
+	public void intentDispatchStrategiesSpreadLoad(){
+		System.out.println("TEST ===== Dispatch of intents among multiple capable agents");
+		IntentWorkerRole[] workers = new IntentWorkerRole[3];
+		for(int i = 0; i < workers.length; i++){
+			workers[i] = new IntentWorkerRole();
+			SystemAgentLoader.newAgent(workers[i], "IntentWorker" + i);
+		}
+		BlockingReceiverRole sender = new BlockingReceiverRole(false);
+		SystemAgentLoader.newAgent(sender, "IntentSender");
+		try{
+			//default: first registered agent receives all intents
+			for(int i = 0; i < 6; i++){
+				sender.send(new AdderIntent());
+			}
+			assertTrue(MTConnector.awaitQuiescence(2000));
+			assertEquals(6, workers[0].getReceived());
+			assertEquals(0, workers[1].getReceived() + workers[2].getReceived());
+			
+			assertFalse(MTConnector.setIntentDispatchStrategy(AdderIntent.class, "UNKNOWN"));
+			assertTrue(MTConnector.setIntentDispatchStrategy(AdderIntent.class, IntentDispatchStrategies.ROUND_ROBIN));
+			resetReceived(workers);
+			for(int i = 0; i < 30; i++){
+				sender.send(new AdderIntent());
+			}
+			assertTrue(MTConnector.awaitQuiescence(2000));
+			for(int i = 0; i < workers.length; i++){
+				assertEquals(10, workers[i].getReceived());
+			}
+			
+			//all messages of a conversation reach the same agent
+			MTConnector.setIntentDispatchStrategy(AdderIntent.class, IntentDispatchStrategies.CONVERSATION_AFFINE);
+			resetReceived(workers);
+			for(int i = 0; i < 60; i++){
+				MicroMessage message = new MicroMessage();
+				message.setIntent(new AdderIntent());
+				message.setConversationID("Conversation" + (i % 20));
+				sender.send(message);
+			}
+			assertTrue(MTConnector.awaitQuiescence(2000));
+			HashSet<String> conversations = new HashSet<String>();
+			int received = 0;
+			for(int i = 0; i < workers.length; i++){
+				received += workers[i].getReceived();
+				for(String conversation: workers[i].getConversations()){
+					assertTrue(conversations.add(conversation));
+				}
+			}
+			assertEquals(60, received);
+			assertEquals(20, conversations.size());
+			
+			String[] loadAware = {IntentDispatchStrategies.LEAST_LOADED, IntentDispatchStrategies.TWO_CHOICES};
+			for(String strategy: loadAware){
+				MTConnector.setIntentDispatchStrategy(AdderIntent.class, strategy);
+				resetReceived(workers);
+				for(int i = 0; i < 30; i++){
+					sender.send(new AdderIntent());
+				}
+				assertTrue(MTConnector.awaitQuiescence(2000));
+				assertEquals(30, workers[0].getReceived() + workers[1].getReceived() + workers[2].getReceived());
+			}
+			
+			//two choices are drawn from the sender's seeded stream
+			long seed = MTConnector.getRandomNumberGeneratorSeed();
+			try{
+				int[][] targets = new int[2][10];
+				for(int run = 0; run < targets.length; run++){
+					MTConnector.setRandomNumberGeneratorSeed(11);
+					for(int i = 0; i < targets[run].length; i++){
+						resetReceived(workers);
+						sender.send(new AdderIntent());
+						//idle workers: the first choice is taken
+						assertTrue(MTConnector.awaitQuiescence(2000));
+						for(int j = 0; j < workers.length; j++){
+							if(workers[j].getReceived() == 1){
+								targets[run][i] = j;
+							}
+						}
+					}
+				}
+				assertTrue(Arrays.equals(targets[0], targets[1]));
+			} finally {
+				MTConnector.setRandomNumberGeneratorSeed(seed);
+			}
+		} finally {
+			MTConnector.setIntentDispatchStrategy(AdderIntent.class, null);
+		}
+	}
+	
+	private static void resetReceived(IntentWorkerRole[] workers){
+		for(int i = 0; i < workers.length; i++){
+			workers[i].resetReceived();
+		}
+	}
+	
+	@Test(timeout = 5000)
+	public void semaphoreExcludesConcurrentHolders() throws InterruptedException{
+		final SimpleSemaphore semaphore = new SimpleSemaphore("TestSemaphore", false);
+		final int[] counter = new int[1];
+		Thread[] threads = new Thread[4];
+		for(int i = 0; i < threads.length; i++){
+			threads[i] = new Thread(new Runnable(){
+				@Override
+				public void run() {
+					for(int j = 0; j < 10000; j++){
+						semaphore.acquire();
+						//reentrant acquisition
+						semaphore.acquire();
+						counter[0]++;
+						semaphore.release();
+						semaphore.release();
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for(int i = 0; i < threads.length; i++){
+			threads[i].join();
+		}
+		assertEquals(40000, counter[0]);
+		assertTrue(semaphore.isFree());
+		
+		//release by non-owner leaves semaphore acquired
+		semaphore.acquire();
+		Thread foreignRelease = new Thread(new Runnable(){
+			@Override
+			public void run() {
+				semaphore.release();
+			}
+		});
+		foreignRelease.start();
+		foreignRelease.join();
+		assertFalse(semaphore.isFree());
+		semaphore.release();
+		assertTrue(semaphore.isFree());
+	}
+	
 	/**
 	 * open tests:
 	 * - Network propagation
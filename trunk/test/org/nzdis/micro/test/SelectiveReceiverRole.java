@@ -0,0 +1,58 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.test;
+
+import org.nzdis.micro.DefaultSocialRole;
+import org.nzdis.micro.MicroMessage;
+import org.nzdis.micro.msgvalidator.MicroMessageValidator;
+
+/**
+ * Queues received messages in the role inbox (indexed) and exposes 
+ * the selective receive operations for tests.
+ */
+public class SelectiveReceiverRole extends DefaultSocialRole {
+
+	@Override
+	protected void initialize() {
+		enableMessageIndex();
+	}
+	
+	public MicroMessage next(){
+		return getMessage();
+	}
+	
+	public MicroMessage receive(String conversationId, String performative, long timeout){
+		return receiveMessage(conversationId, performative, timeout);
+	}
+	
+	public MicroMessage receive(MicroMessageValidator validator, long timeout){
+		return receiveMessage(validator, timeout);
+	}
+	
+	public int getQueued(){
+		return getNumberOfUnprocessedMessages();
+	}
+
+	@Override
+	protected void release() {
+	}
+
+}
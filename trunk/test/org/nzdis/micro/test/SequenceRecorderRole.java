@@ -0,0 +1,67 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.test;
+
+import java.util.HashMap;
+
+import org.nzdis.micro.DefaultSocialRole;
+import org.nzdis.micro.MicroMessage;
+
+/**
+ * Records sequence numbers of received messages per sender and 
+ * checks that messages from each sender arrive in order.
+ */
+public class SequenceRecorderRole extends DefaultSocialRole {
+
+	public static final String SEQUENCE_FIELD = "SEQUENCE";
+	
+	private HashMap<String, Integer> lastSequence = new HashMap<String, Integer>();
+	private volatile int received = 0;
+	private volatile boolean inOrder = true;
+	
+	@Override
+	protected void initialize() {
+	}
+
+	@Override
+	public void handleMessage(MicroMessage message) {
+		int sequence = Integer.parseInt(message.getCustomField(SEQUENCE_FIELD).toString());
+		Integer last = lastSequence.get(message.getSender());
+		if(last != null && sequence != last + 1){
+			inOrder = false;
+		}
+		lastSequence.put(message.getSender(), sequence);
+		received++;
+	}
+	
+	public int getReceived(){
+		return received;
+	}
+	
+	public boolean receivedInOrder(){
+		return inOrder;
+	}
+
+	@Override
+	protected void release() {
+	}
+
+}
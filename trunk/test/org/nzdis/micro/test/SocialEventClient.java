@@ -38,7 +38,7 @@ public class SocialEventClient extends DefaultSocialRole{
 
 	@Override
 	public void handleMessage(MicroMessage message) {
-		if(message.getEvent().getClass().equals(TestEvent1.class)){
+		if(message.getEvent() instanceof TestEvent1){
 			eventCalled1 = true;
 			//print("Event1 called.");
 			MicroMessage msg = new MicroMessage();
@@ -97,6 +97,14 @@ public class SocialEventClient extends DefaultSocialRole{
 		subscribed1 = false;
 	}
 	
+	public void subscribeSub1(){
+		subscribe(TestSubEvent1.class);
+	}
+	
+	public void unsubscribeSub1(){
+		unsubscribe(TestSubEvent1.class);
+	}
+	
 	public void unsubscribe2(){
 		//getAgent().unsubscribe(new TestEvent2(getAgent().getAgentName()));
 		unsubscribe(TestEvent2.class);
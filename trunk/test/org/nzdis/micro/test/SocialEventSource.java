@@ -51,6 +51,13 @@ public class SocialEventSource extends DefaultSocialRole{
 		send(msg);
 	}
 	
+	public void raiseSubEvent1(){
+		counter1 = 0;
+		MicroMessage msg = new MicroMessage();
+		msg.setEvent(new TestSubEvent1(getAgent().getAgentName()));
+		send(msg);
+	}
+	
 	public void raiseEvent2(){
 		counter2 = 0;
 		MicroMessage msg = new MicroMessage();
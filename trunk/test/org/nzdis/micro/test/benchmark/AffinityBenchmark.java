@@ -0,0 +1,105 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.test.benchmark;
+
+import org.nzdis.micro.MTConnector;
+import org.nzdis.micro.MicroMessage;
+import org.nzdis.micro.PlatformController;
+import org.nzdis.micro.SystemAgentLoader;
+import org.nzdis.micro.bootloader.MicroBootProperties;
+import org.nzdis.micro.constants.MessagePassingFrameworks;
+
+/**
+ * Compares round-robin placement with worker affinity (MICRO_FIBER) on 
+ * clustered communication graphs: agents mostly forward tokens within their 
+ * cluster and occasionally to other clusters. Each configuration runs a 
+ * warm-up phase (allowing for re-placement) before measurement.
+ * 
+ * Arguments (optional): number of clusters, agents per cluster, 
+ * tokens per agent, hops per token, cross-cluster probability, number of workers.
+ *
+ */
+public class AffinityBenchmark {
+
+	private static final String PREFIX = "ClusterAgent";
+	
+	public static void main(String[] args) throws InterruptedException {
+		int clusters = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		int clusterSize = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int tokensPerAgent = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+		int hops = args.length > 3 ? Integer.parseInt(args[3]) : 20000;
+		double crossClusterProbability = args.length > 4 ? Double.parseDouble(args[4]) : 0.01;
+		int workers = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+		
+		MicroBootProperties.activateNetworkSupport(false);
+		MicroBootProperties.activateClojureSupport(false);
+		MicroBootProperties.setPlatformOutputLevel(0);
+		MicroBootProperties.setAgentConsoleOutputLevel(0);
+		MicroBootProperties.setInternalMessageTransport(MessagePassingFrameworks.MICRO_FIBER);
+		MicroBootProperties.setMicroFiberExecutorProperties(workers, 32);
+		
+		System.out.println("Clusters: " + clusters + ", agents per cluster: " + clusterSize + ", tokens per agent: " + tokensPerAgent 
+				+ ", hops per token: " + hops + ", cross-cluster probability: " + crossClusterProbability + ", workers: " + workers);
+		System.out.println("Placement\tDuration (ms)\tThroughput (msg/s)");
+		boolean[] affinity = {false, true};
+		for(int i = 0; i < affinity.length; i++){
+			MicroBootProperties.setWorkerAffinity(affinity[i], 64, 200L);
+			PlatformController.startPlatform();
+			for(int c = 0; c < clusters; c++){
+				for(int m = 0; m < clusterSize; m++){
+					SystemAgentLoader.newAgent(new ClusterRole(PREFIX, c, clusters, clusterSize, crossClusterProbability), 
+							ClusterRole.getName(PREFIX, c, m));
+				}
+			}
+			//warm-up allows for re-placement of agents
+			run(clusters, clusterSize, tokensPerAgent, hops);
+			Thread.sleep(500);
+			long duration = run(clusters, clusterSize, tokensPerAgent, hops);
+			long messages = (long)clusters * clusterSize * tokensPerAgent * (hops + 1);
+			System.out.println((affinity[i] ? "affinity" : "round-robin") + "\t" + duration + "\t" 
+					+ (duration == 0 ? "n/a" : String.valueOf(messages * 1000 / duration)));
+			PlatformController.shutdownPlatform();
+		}
+		System.exit(0);
+	}
+	
+	private static long run(int clusters, int clusterSize, int tokensPerAgent, int hops){
+		ClusterRole.completed.set(0);
+		long expected = (long)clusters * clusterSize * tokensPerAgent;
+		long startTime = System.nanoTime();
+		for(int c = 0; c < clusters; c++){
+			for(int m = 0; m < clusterSize; m++){
+				for(int t = 0; t < tokensPerAgent; t++){
+					MicroMessage message = new MicroMessage();
+					message.setSender("AffinityBenchmark");
+					message.setRecipient(ClusterRole.getName(PREFIX, c, m));
+					message.setCustomField(ClusterRole.HOPS_FIELD, hops);
+					MTConnector.send(message);
+				}
+			}
+		}
+		if(!ClusterRole.awaitCompleted(expected, 120000)){
+			System.out.println("Incomplete run: " + ClusterRole.completed.get() + "/" + expected);
+		}
+		return (System.nanoTime() - startTime) / 1000000;
+	}
+	
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.test.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.nzdis.micro.DefaultSocialRole;
+import org.nzdis.micro.MicroMessage;
+
+/**
+ * Role for communication graph benchmarks. Forwards each received token 
+ * to a random member of its own cluster or, with a given probability, 
+ * to a random agent of another cluster until the token's hops are used up.
+ *
+ */
+public class ClusterRole extends DefaultSocialRole {
+
+	public static final String HOPS_FIELD = "HOPS";
+	
+	/** number of tokens that used up their hops */
+	public static final AtomicLong completed = new AtomicLong();
+	
+	private final String prefix;
+	private final int cluster;
+	private final int clusters;
+	private final int clusterSize;
+	private final double crossClusterProbability;
+	
+	/**
+	 * @param prefix Name prefix of agents (name: prefix + cluster + "_" + member)
+	 * @param cluster Cluster of this agent
+	 * @param clusters Number of clusters
+	 * @param clusterSize Number of agents per cluster
+	 * @param crossClusterProbability Probability of forwarding to another cluster
+	 */
+	public ClusterRole(String prefix, int cluster, int clusters, int clusterSize, double crossClusterProbability){
+		this.prefix = prefix;
+		this.cluster = cluster;
+		this.clusters = clusters;
+		this.clusterSize = clusterSize;
+		this.crossClusterProbability = crossClusterProbability;
+	}
+	
+	@Override
+	protected void initialize() {
+	}
+
+	@Override
+	public void handleMessage(MicroMessage message) {
+		int hops = Integer.parseInt(message.getCustomField(HOPS_FIELD).toString());
+		if(hops <= 0){
+			completed.incrementAndGet();
+			return;
+		}
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int targetCluster = cluster;
+		if(clusters > 1 && random.nextDouble() < crossClusterProbability){
+			targetCluster = (cluster + 1 + random.nextInt(clusters - 1)) % clusters;
+		}
+		MicroMessage forward = new MicroMessage();
+		forward.setRecipient(getName(prefix, targetCluster, random.nextInt(clusterSize)));
+		forward.setCustomField(HOPS_FIELD, hops - 1);
+		send(forward);
+	}
+
+	@Override
+	protected void release() {
+	}
+	
+	/**
+	 * Returns the name of a cluster member.
+	 */
+	public static String getName(String prefix, int cluster, int member){
+		return prefix + cluster + "_" + member;
+	}
+	
+	/**
+	 * Blocks until the given number of tokens has completed or the timeout elapsed.
+	 * @param expected Number of expected tokens
+	 * @param timeout Timeout in milliseconds
+	 * @return true if all tokens completed
+	 */
+	public static boolean awaitCompleted(long expected, long timeout){
+		long deadline = System.currentTimeMillis() + timeout;
+		while(completed.get() < expected){
+			if(System.currentTimeMillis() > deadline){
+				return false;
+			}
+			Thread.yield();
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.test.benchmark;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.nzdis.micro.DefaultSocialRole;
+import org.nzdis.micro.MicroMessage;
+
+/**
+ * Receiving role for benchmarks. Counts all messages delivered to 
+ * any instance of this role.
+ *
+ */
+public class CountingRole extends DefaultSocialRole {
+
+	/** number of messages received by all instances */
+	public static final AtomicLong received = new AtomicLong();
+	
+	@Override
+	protected void initialize() {
+	}
+
+	@Override
+	public void handleMessage(MicroMessage message) {
+		received.incrementAndGet();
+	}
+
+	@Override
+	protected void release() {
+	}
+	
+	/**
+	 * Blocks until the given number of messages has been received or the timeout elapsed.
+	 * @param expected Number of expected messages
+	 * @param timeout Timeout in milliseconds
+	 * @return true if all expected messages have been received
+	 */
+	public static boolean awaitReceived(long expected, long timeout){
+		long deadline = System.currentTimeMillis() + timeout;
+		while(received.get() < expected){
+			if(System.currentTimeMillis() > deadline){
+				return false;
+			}
+			Thread.yield();
+		}
+		return true;
+	}
+
+}
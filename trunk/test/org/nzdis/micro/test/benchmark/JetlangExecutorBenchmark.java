@@ -0,0 +1,59 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.test.benchmark;
+
+import org.nzdis.micro.bootloader.MicroBootProperties;
+import org.nzdis.micro.constants.MessagePassingFrameworks;
+
+/**
+ * Compares memory usage per agent, number of threads and throughput of the 
+ * JETLANG message transport for the unbounded executor, the shared bounded 
+ * executor and the shared bounded executor with batched delivery.
+ * 
+ * Arguments (optional): number of agents, messages per sender, number of sender 
+ * threads, batch interval in ms (default: 1).
+ *
+ */
+public class JetlangExecutorBenchmark {
+
+	public static void main(String[] args) throws InterruptedException {
+		int agents = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int messagesPerSender = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		int senders = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		int batchInterval = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+		
+		MicroBootProperties.activateNetworkSupport(false);
+		MicroBootProperties.activateClojureSupport(false);
+		MicroBootProperties.setPlatformOutputLevel(0);
+		MicroBootProperties.setAgentConsoleOutputLevel(0);
+		
+		System.out.println("Agents: " + agents + ", senders: " + senders + ", messages per sender: " + messagesPerSender);
+		System.out.println("Executor\tHeap/agent (bytes)\tThreads\tDuration (ms)\tThroughput (msg/s)");
+		MicroBootProperties.setJetlangExecutorProperties(false, 0);
+		TransportComparisonBenchmark.run("unbounded", MessagePassingFrameworks.JETLANG, agents, senders, messagesPerSender);
+		MicroBootProperties.setJetlangExecutorProperties(true, 0);
+		TransportComparisonBenchmark.run("bounded", MessagePassingFrameworks.JETLANG, agents, senders, messagesPerSender);
+		MicroBootProperties.setJetlangExecutorProperties(true, batchInterval);
+		TransportComparisonBenchmark.run("bounded+batch(" + batchInterval + "ms)", MessagePassingFrameworks.JETLANG, agents, senders, messagesPerSender);
+		System.exit(0);
+	}
+	
+}
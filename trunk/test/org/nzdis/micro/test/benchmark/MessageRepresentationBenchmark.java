@@ -0,0 +1,138 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.test.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.nzdis.micro.ImmutableMicroMessage;
+import org.nzdis.micro.MTConnector;
+import org.nzdis.micro.MicroMessage;
+import org.nzdis.micro.PlatformController;
+import org.nzdis.micro.SystemAgentLoader;
+import org.nzdis.micro.bootloader.MicroBootProperties;
+import org.nzdis.micro.constants.MessagePassingFrameworks;
+
+/**
+ * Compares local message passing (MICRO_FIBER) of HashMap-based MicroMessages 
+ * (cloned upon delivery) with ImmutableMicroMessages (shared upon delivery) 
+ * with respect to throughput and bytes allocated by sender threads per message.
+ * 
+ * Arguments (optional): number of agents, messages per sender, number of sender threads.
+ *
+ */
+public class MessageRepresentationBenchmark {
+
+	private static final String RECEIVER_PREFIX = "RepresentationReceiver";
+	
+	public static void main(String[] args) throws InterruptedException {
+		int agents = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int messagesPerSender = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+		int senders = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		
+		MicroBootProperties.activateNetworkSupport(false);
+		MicroBootProperties.activateClojureSupport(false);
+		MicroBootProperties.setPlatformOutputLevel(0);
+		MicroBootProperties.setAgentConsoleOutputLevel(0);
+		MicroBootProperties.setInternalMessageTransport(MessagePassingFrameworks.MICRO_FIBER);
+		
+		System.out.println("Agents: " + agents + ", senders: " + senders + ", messages per sender: " + messagesPerSender);
+		System.out.println("Message\tBytes/message (sender)\tDuration (ms)\tThroughput (msg/s)");
+		//warm-up
+		run("warm-up", false, agents, senders, messagesPerSender / 10, false);
+		run("warm-up", true, agents, senders, messagesPerSender / 10, false);
+		run("MicroMessage", false, agents, senders, messagesPerSender, true);
+		run("ImmutableMicroMessage", true, agents, senders, messagesPerSender, true);
+		System.exit(0);
+	}
+	
+	/**
+	 * Returns the number of bytes allocated by the current thread (if supported by JVM).
+	 * @return allocated bytes or 0
+	 */
+	private static long allocatedBytes(){
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean){
+			return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+	
+	private static void run(String label, final boolean immutable, final int agents, int senders, final int messagesPerSender, boolean print) throws InterruptedException {
+		PlatformController.startPlatform();
+		for(int i = 0; i < agents; i++){
+			SystemAgentLoader.newAgent(new CountingRole(), RECEIVER_PREFIX + i);
+		}
+		CountingRole.received.set(0);
+		
+		final AtomicLong allocated = new AtomicLong(0);
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(senders);
+		for(int s = 0; s < senders; s++){
+			final String senderName = "RepresentationSender" + s;
+			final int offset = s;
+			new Thread(new Runnable(){
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					long before = allocatedBytes();
+					for(int i = 0; i < messagesPerSender; i++){
+						String recipient = RECEIVER_PREFIX + ((i + offset) % agents);
+						MicroMessage message;
+						if(immutable){
+							message = ImmutableMicroMessage.builder().sender(senderName).recipient(recipient)
+									.performative(MicroMessage.INFORM).customField("VALUE", "payload").build();
+						} else {
+							message = new MicroMessage(MicroMessage.INFORM);
+							message.setSender(senderName);
+							message.setRecipient(recipient);
+							message.setCustomField("VALUE", "payload");
+						}
+						MTConnector.send(message);
+					}
+					allocated.addAndGet(allocatedBytes() - before);
+					done.countDown();
+				}
+				
+			}, senderName).start();
+		}
+		
+		long expected = (long)senders * messagesPerSender;
+		long startTime = System.nanoTime();
+		start.countDown();
+		done.await();
+		boolean complete = CountingRole.awaitReceived(expected, 120000);
+		long duration = (System.nanoTime() - startTime) / 1000000;
+		if(print){
+			System.out.println(label + "\t" + (allocated.get() / expected) + "\t" + duration + "\t" 
+					+ (duration == 0 ? "n/a" : String.valueOf(expected * 1000 / duration)) 
+					+ (complete ? "" : "\t(incomplete: " + CountingRole.received.get() + "/" + expected + ")"));
+		}
+		PlatformController.shutdownPlatform();
+	}
+	
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.test.benchmark;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.nzdis.micro.MTConnector;
+import org.nzdis.micro.MicroMessage;
+import org.nzdis.micro.PlatformController;
+import org.nzdis.micro.SystemAgentLoader;
+import org.nzdis.micro.bootloader.MicroBootProperties;
+import org.nzdis.micro.constants.MessagePassingFrameworks;
+
+/**
+ * Measures message throughput on the local routing path (MTConnector.send) 
+ * with increasing numbers of concurrent sender threads.
+ * 
+ * Arguments (optional): transport (MICRO_FIBER|JETLANG), messages per sender, 
+ * number of receiving agents, maximal number of sender threads.
+ *
+ */
+public class RoutingContentionBenchmark {
+
+	private static final String RECEIVER_PREFIX = "ContentionReceiver";
+	
+	public static void main(String[] args) throws InterruptedException {
+		String transport = args.length > 0 ? args[0] : MessagePassingFrameworks.MICRO_FIBER;
+		int messagesPerSender = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		int receivers = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+		int maxSenders = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors() * 2;
+		
+		MicroBootProperties.activateNetworkSupport(false);
+		MicroBootProperties.activateClojureSupport(false);
+		MicroBootProperties.setPlatformOutputLevel(0);
+		MicroBootProperties.setAgentConsoleOutputLevel(0);
+		MicroBootProperties.setInternalMessageTransport(transport);
+		
+		System.out.println("Transport: " + transport + ", messages per sender: " + messagesPerSender + ", receivers: " + receivers);
+		System.out.println("Senders\tDuration (ms)\tThroughput (msg/s)");
+		for(int senders = 1; senders <= maxSenders; senders *= 2){
+			run(senders, messagesPerSender, receivers);
+		}
+		System.exit(0);
+	}
+	
+	private static void run(final int senders, final int messagesPerSender, final int receivers) throws InterruptedException {
+		PlatformController.startPlatform();
+		for(int i = 0; i < receivers; i++){
+			SystemAgentLoader.newAgent(new CountingRole(), RECEIVER_PREFIX + i);
+		}
+		CountingRole.received.set(0);
+		
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(senders);
+		for(int s = 0; s < senders; s++){
+			final String senderName = "ContentionSender" + s;
+			new Thread(new Runnable(){
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for(int i = 0; i < messagesPerSender; i++){
+						MicroMessage message = new MicroMessage();
+						message.setSender(senderName);
+						message.setRecipient(RECEIVER_PREFIX + (i % receivers));
+						MTConnector.send(message);
+					}
+					done.countDown();
+				}
+				
+			}, senderName).start();
+		}
+		
+		long expected = (long)senders * messagesPerSender;
+		long startTime = System.nanoTime();
+		start.countDown();
+		done.await();
+		boolean complete = CountingRole.awaitReceived(expected, 60000);
+		long duration = (System.nanoTime() - startTime) / 1000000;
+		
+		System.out.println(senders + "\t" + duration + "\t" + (duration == 0 ? "n/a" : String.valueOf(expected * 1000 / duration)) 
+				+ (complete ? "" : "\t(incomplete: " + CountingRole.received.get() + "/" + expected + ")"));
+		PlatformController.shutdownPlatform();
+	}
+	
+}
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ *  - Micro-Agent Platform, core of the Otago Agent Platform (OPAL),
+ * developed at the Information Science Department, 
+ * University of Otago, Dunedin, New Zealand.
+ * 
+ * This file is part of the aforementioned software.
+ * 
+ *  is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ *  is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with the Micro-Agents Framework.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.nzdis.micro.test.benchmark;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.nzdis.micro.MTConnector;
+import org.nzdis.micro.MicroMessage;
+import org.nzdis.micro.PlatformController;
+import org.nzdis.micro.SystemAgentLoader;
+import org.nzdis.micro.bootloader.MicroBootProperties;
+import org.nzdis.micro.constants.MessagePassingFrameworks;
+
+/**
+ * Compares the internal message transports (JETLANG, MICRO_FIBER, VIRTUAL_THREAD, RING_BUFFER) 
+ * with respect to throughput, heap usage per agent and number of live threads 
+ * for a large population of mostly idle agents.
+ * 
+ * Arguments (optional): number of agents, messages per sender, number of sender 
+ * threads, transports to compare (default: all).
+ *
+ */
+public class TransportComparisonBenchmark {
+
+	private static final String RECEIVER_PREFIX = "TransportReceiver";
+	
+	public static void main(String[] args) throws InterruptedException {
+		int agents = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int messagesPerSender = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		int senders = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		String[] transports = {MessagePassingFrameworks.JETLANG, MessagePassingFrameworks.MICRO_FIBER, MessagePassingFrameworks.VIRTUAL_THREAD, MessagePassingFrameworks.RING_BUFFER};
+		if(args.length > 3){
+			transports = new String[args.length - 3];
+			System.arraycopy(args, 3, transports, 0, transports.length);
+		}
+		
+		MicroBootProperties.activateNetworkSupport(false);
+		MicroBootProperties.activateClojureSupport(false);
+		MicroBootProperties.setPlatformOutputLevel(0);
+		MicroBootProperties.setAgentConsoleOutputLevel(0);
+		
+		System.out.println("Agents: " + agents + ", senders: " + senders + ", messages per sender: " + messagesPerSender);
+		System.out.println("Transport\tHeap/agent (bytes)\tThreads\tDuration (ms)\tThroughput (msg/s)");
+		for(int i = 0; i < transports.length; i++){
+			run(transports[i], transports[i], agents, senders, messagesPerSender);
+		}
+		System.exit(0);
+	}
+	
+	static long usedHeap(){
+		Runtime runtime = Runtime.getRuntime();
+		for(int i = 0; i < 3; i++){
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+	
+	/**
+	 * Starts the platform with the given transport, creates the agents, sends 
+	 * the messages and prints heap usage per agent, threads and throughput.
+	 * @param label Label of the configuration printed in the results
+	 * @param transport Internal message transport
+	 * @param agents Number of receiving agents
+	 * @param senders Number of sender threads
+	 * @param messagesPerSender Number of messages sent per sender thread
+	 * @throws InterruptedException
+	 */
+	static void run(String label, String transport, final int agents, int senders, final int messagesPerSender) throws InterruptedException {
+		MicroBootProperties.setInternalMessageTransport(transport);
+		PlatformController.startPlatform();
+		
+		long heapBefore = usedHeap();
+		for(int i = 0; i < agents; i++){
+			SystemAgentLoader.newAgent(new CountingRole(), RECEIVER_PREFIX + i);
+		}
+		long heapPerAgent = (usedHeap() - heapBefore) / agents;
+		CountingRole.received.set(0);
+		
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(senders);
+		for(int s = 0; s < senders; s++){
+			final String senderName = "TransportSender" + s;
+			final int offset = s;
+			new Thread(new Runnable(){
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for(int i = 0; i < messagesPerSender; i++){
+						MicroMessage message = new MicroMessage();
+						message.setSender(senderName);
+						message.setRecipient(RECEIVER_PREFIX + ((i + offset) % agents));
+						MTConnector.send(message);
+					}
+					done.countDown();
+				}
+				
+			}, senderName).start();
+		}
+		
+		long expected = (long)senders * messagesPerSender;
+		long startTime = System.nanoTime();
+		start.countDown();
+		done.await();
+		boolean complete = CountingRole.awaitReceived(expected, 120000);
+		long duration = (System.nanoTime() - startTime) / 1000000;
+		int threads = Thread.activeCount();
+		
+		System.out.println(label + "\t" + heapPerAgent + "\t" + threads + "\t" + duration + "\t" 
+				+ (duration == 0 ? "n/a" : String.valueOf(expected * 1000 / duration)) 
+				+ (complete ? "" : "\t(incomplete: " + CountingRole.received.get() + "/" + expected + ")"));
+		PlatformController.shutdownPlatform();
+	}
+	
+}